@@ -0,0 +1,275 @@
+package org.decisiondeck.jmcda.persist.xmcda2;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+import org.decision_deck.jmcda.structure.Alternative;
+import org.decision_deck.utils.matrix.SparseMatrixDRead;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * <p>
+ * An immutable matrix of alternatives stored in a single row-major array of
+ * primitive doubles. The alternatives are given an index, starting at zero,
+ * which is used for both the rows and the columns, and which may be shared
+ * among several matrixes, e.g. one per criterion. Missing entries are recorded
+ * in a bit set, thus the memory used is close to eight bytes per cell, and the
+ * values may be accessed by index without any lookup.
+ * </p>
+ * <p>
+ * The rows, respectively columns, of this matrix are the alternatives having
+ * at least one entry as initial, respectively terminal, alternative. Two
+ * matrixes of this class are equal iff they have the same rows, columns and
+ * entries, independently of the indexes. A matrix of this class is never equal
+ * to a matrix of an other class, as their hash codes are computed
+ * differently: use {@link #approxEquals(SparseMatrixDRead, double)} to compare
+ * them.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class DenseAlternativesMatrix implements SparseMatrixDRead<Alternative, Alternative> {
+	/**
+	 * Creates an index of the given elements, giving to each element its
+	 * position in the list, to be shared by the matrixes built from it.
+	 *
+	 * @param <T>
+	 *            the type of elements.
+	 * @param elements
+	 *            not <code>null</code>, no duplicates.
+	 * @return not <code>null</code>.
+	 */
+	static <T> ImmutableMap<T, Integer> index(List<T> elements) {
+		final ImmutableMap.Builder<T, Integer> index = ImmutableMap.builder();
+		for (int i = 0; i < elements.size(); ++i) {
+			index.put(elements.get(i), Integer.valueOf(i));
+		}
+		return index.build();
+	}
+
+	/**
+	 * Allocates the array of values of a matrix over the given number of
+	 * alternatives.
+	 *
+	 * @param size
+	 *            a non negative number.
+	 * @return not <code>null</code>.
+	 */
+	static double[] newValues(int size) {
+		checkArgument((long) size * size <= Integer.MAX_VALUE, "Too many cells for a dense matrix.");
+		return new double[size * size];
+	}
+
+	private final ImmutableList<Alternative> m_alternatives;
+	private final ImmutableSet<Alternative> m_columns;
+	private final ImmutableMap<Alternative, Integer> m_index;
+	private final ImmutableSet<Alternative> m_rows;
+	private final BitSet m_set;
+	private final int m_valueCount;
+	private final double[] m_values;
+
+	/**
+	 * No copy is done: the given array and bit set must not be modified
+	 * afterwards.
+	 *
+	 * @param index
+	 *            not <code>null</code>, the index of each alternative, from
+	 *            zero to the number of alternatives minus one.
+	 * @param values
+	 *            not <code>null</code>, the values, row after row.
+	 * @param set
+	 *            not <code>null</code>, the cells containing a value.
+	 */
+	DenseAlternativesMatrix(ImmutableMap<Alternative, Integer> index, double[] values, BitSet set) {
+		m_index = checkNotNull(index);
+		m_alternatives = index.keySet().asList();
+		checkArgument(values.length == m_alternatives.size() * m_alternatives.size());
+		m_values = values;
+		m_set = checkNotNull(set);
+		m_valueCount = set.cardinality();
+		final int size = m_alternatives.size();
+		final BitSet rows = new BitSet(size);
+		final BitSet columns = new BitSet(size);
+		for (int cell = set.nextSetBit(0); cell >= 0; cell = set.nextSetBit(cell + 1)) {
+			rows.set(cell / size);
+			columns.set(cell % size);
+		}
+		m_rows = select(rows);
+		m_columns = select(columns);
+	}
+
+	private ImmutableSet<Alternative> select(BitSet indexes) {
+		final ImmutableSet.Builder<Alternative> selected = ImmutableSet.builder();
+		for (int i = indexes.nextSetBit(0); i >= 0; i = indexes.nextSetBit(i + 1)) {
+			selected.add(m_alternatives.get(i));
+		}
+		return selected.build();
+	}
+
+	@Override
+	public boolean approxEquals(SparseMatrixDRead<Alternative, Alternative> m2, double tolerance) {
+		checkNotNull(m2);
+		if (!m_rows.equals(m2.getRows()) || !m_columns.equals(m2.getColumns())
+				|| m_valueCount != m2.getValueCount()) {
+			return false;
+		}
+		final int size = m_alternatives.size();
+		for (int cell = m_set.nextSetBit(0); cell >= 0; cell = m_set.nextSetBit(cell + 1)) {
+			final Double other = m2.getEntry(m_alternatives.get(cell / size), m_alternatives.get(cell % size));
+			if (other == null || Math.abs(other.doubleValue() - m_values[cell]) > tolerance) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof DenseAlternativesMatrix)) {
+			return false;
+		}
+		final DenseAlternativesMatrix m2 = (DenseAlternativesMatrix) obj;
+		if (!m_rows.equals(m2.m_rows) || !m_columns.equals(m2.m_columns) || m_valueCount != m2.m_valueCount) {
+			return false;
+		}
+		final int size = m_alternatives.size();
+		for (int cell = m_set.nextSetBit(0); cell >= 0; cell = m_set.nextSetBit(cell + 1)) {
+			final Double other = m2.getEntry(m_alternatives.get(cell / size), m_alternatives.get(cell % size));
+			if (!Double.valueOf(m_values[cell]).equals(other)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Retrieves the alternative having the given index.
+	 *
+	 * @param index
+	 *            a valid index.
+	 * @return not <code>null</code>.
+	 */
+	public Alternative getAlternative(int index) {
+		return m_alternatives.get(index);
+	}
+
+	/**
+	 * Retrieves the index of the given alternative.
+	 *
+	 * @param alternative
+	 *            not <code>null</code>.
+	 * @return -1 iff the alternative is not indexed in this matrix.
+	 */
+	public int getAlternativeIndex(Alternative alternative) {
+		checkNotNull(alternative);
+		final Integer index = m_index.get(alternative);
+		return index == null ? -1 : index.intValue();
+	}
+
+	/**
+	 * Retrieves the alternatives indexed in this matrix, in the order of their
+	 * indexes. This includes the alternatives without entries.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	public List<Alternative> getAlternatives() {
+		return m_alternatives;
+	}
+
+	@Override
+	public Set<Alternative> getColumns() {
+		return m_columns;
+	}
+
+	@Override
+	public Double getEntry(Alternative row, Alternative column) {
+		final int initial = getAlternativeIndex(row);
+		final int terminal = getAlternativeIndex(column);
+		if (initial == -1 || terminal == -1) {
+			return null;
+		}
+		final int cell = initial * m_alternatives.size() + terminal;
+		return m_set.get(cell) ? Double.valueOf(m_values[cell]) : null;
+	}
+
+	@Override
+	public Set<Alternative> getRows() {
+		return m_rows;
+	}
+
+	/**
+	 * Retrieves the value of the pair of alternatives having the given
+	 * indexes.
+	 *
+	 * @param initial
+	 *            a valid index.
+	 * @param terminal
+	 *            a valid index.
+	 * @return the value, or zero if there is no entry in that cell.
+	 * @see #isSet(int, int)
+	 */
+	public double getValue(int initial, int terminal) {
+		checkElementIndex(initial, m_alternatives.size());
+		checkElementIndex(terminal, m_alternatives.size());
+		return m_values[initial * m_alternatives.size() + terminal];
+	}
+
+	@Override
+	public int getValueCount() {
+		return m_valueCount;
+	}
+
+	@Override
+	public int hashCode() {
+		final int size = m_alternatives.size();
+		int hashCode = 0;
+		for (int cell = m_set.nextSetBit(0); cell >= 0; cell = m_set.nextSetBit(cell + 1)) {
+			hashCode += m_alternatives.get(cell / size).hashCode() ^ (31 * m_alternatives.get(cell % size).hashCode())
+					^ Double.valueOf(m_values[cell]).hashCode();
+		}
+		return hashCode;
+	}
+
+	@Override
+	public boolean isComplete() {
+		return m_valueCount == m_rows.size() * m_columns.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return m_valueCount == 0;
+	}
+
+	/**
+	 * Tests whether this matrix has an entry for the pair of alternatives
+	 * having the given indexes.
+	 *
+	 * @param initial
+	 *            a valid index.
+	 * @param terminal
+	 *            a valid index.
+	 * @return <code>true</code> iff the cell is set.
+	 */
+	public boolean isSet(int initial, int terminal) {
+		checkElementIndex(initial, m_alternatives.size());
+		checkElementIndex(terminal, m_alternatives.size());
+		return m_set.get(initial * m_alternatives.size() + terminal);
+	}
+
+	@Override
+	public String toString() {
+		return "Dense alternatives matrix (" + m_alternatives.size() + " alternatives, " + m_valueCount + " values)";
+	}
+}
@@ -0,0 +1,453 @@
+package org.decisiondeck.jmcda.persist.xmcda2;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.decision_deck.jmcda.structure.Alternative;
+import org.decision_deck.jmcda.structure.Criterion;
+import org.decision_deck.jmcda.structure.matrix.EvaluationsRead;
+import org.decision_deck.utils.matrix.SparseMatrixDRead;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+/**
+ * <p>
+ * Immutable evaluations stored in a single row-major array of primitive
+ * doubles, with one row per alternative and one column per criterion. The
+ * alternatives and criteria are each given an index, starting at zero, in the
+ * order they were first read. Missing evaluations are recorded in a bit set,
+ * thus the memory used is close to eight bytes per cell, and the values may be
+ * accessed by index without any lookup.
+ * </p>
+ * <p>
+ * Every alternative and every criterion has at least one evaluation. Two
+ * evaluations objects of this class are equal iff they have the same rows,
+ * columns and entries, independently of the indexes. An object of this class
+ * is never equal to evaluations of an other class, as their hash codes are
+ * computed differently: use
+ * {@link #approxEquals(SparseMatrixDRead, double)} to compare them.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class DenseEvaluations implements EvaluationsRead {
+
+	/**
+	 * <p>
+	 * Gathers the evaluations of a matrix whose alternatives and criteria are
+	 * all known beforehand. Evaluations are added by table: the evaluations of
+	 * a table are kept apart until the table ends, then added to the matrix,
+	 * unless a row of the table conflicts with a row already in the matrix.
+	 * </p>
+	 */
+	static class Builder {
+		private final ImmutableList<Alternative> m_alternatives;
+		private final ImmutableMap<Alternative, Integer> m_alternativesIndex;
+		private final ImmutableList<Criterion> m_criteria;
+		private final ImmutableMap<Criterion, Integer> m_criteriaIndex;
+		private final BitSet m_set;
+		/**
+		 * The rows of the table being read, unless they are written directly
+		 * into the matrix because the matrix is empty. Only allocated for the
+		 * rows that the table contains.
+		 */
+		private final Map<Integer, double[]> m_tableRows;
+		private final Map<Integer, BitSet> m_tableSets;
+		private boolean m_tableDirect;
+		private final double[] m_values;
+
+		public Builder(List<Alternative> alternatives, List<Criterion> criteria) {
+			m_alternatives = ImmutableList.copyOf(alternatives);
+			m_criteria = ImmutableList.copyOf(criteria);
+			m_alternativesIndex = DenseAlternativesMatrix.index(m_alternatives);
+			m_criteriaIndex = DenseAlternativesMatrix.index(m_criteria);
+			checkArgument((long) m_alternatives.size() * m_criteria.size() <= Integer.MAX_VALUE,
+					"Too many cells for a dense matrix.");
+			m_values = new double[m_alternatives.size() * m_criteria.size()];
+			m_set = new BitSet(m_values.length);
+			m_tableRows = Maps.newLinkedHashMap();
+			m_tableSets = Maps.newHashMap();
+			m_tableDirect = false;
+		}
+
+		/**
+		 * Starts reading a new table.
+		 */
+		public void beginTable() {
+			m_tableRows.clear();
+			m_tableSets.clear();
+			m_tableDirect = m_set.isEmpty();
+		}
+
+		/**
+		 * Tests whether the table being read already contains an evaluation
+		 * for the given alternative and criterion.
+		 *
+		 * @param alternative
+		 *            one of the alternatives given at construction.
+		 * @param criterion
+		 *            one of the criteria given at construction.
+		 * @return <code>true</code> iff the evaluation exists.
+		 */
+		public boolean contains(Alternative alternative, Criterion criterion) {
+			final int row = m_alternativesIndex.get(alternative).intValue();
+			final int column = m_criteriaIndex.get(criterion).intValue();
+			if (m_tableDirect) {
+				return m_set.get(row * m_criteria.size() + column);
+			}
+			final BitSet tableSet = m_tableSets.get(Integer.valueOf(row));
+			return tableSet != null && tableSet.get(column);
+		}
+
+		/**
+		 * Adds an evaluation to the table being read.
+		 *
+		 * @param alternative
+		 *            one of the alternatives given at construction.
+		 * @param criterion
+		 *            one of the criteria given at construction.
+		 * @param value
+		 *            the evaluation.
+		 */
+		public void put(Alternative alternative, Criterion criterion, double value) {
+			final int row = m_alternativesIndex.get(alternative).intValue();
+			final int column = m_criteriaIndex.get(criterion).intValue();
+			if (m_tableDirect) {
+				m_values[row * m_criteria.size() + column] = value;
+				m_set.set(row * m_criteria.size() + column);
+				return;
+			}
+			final Integer rowKey = Integer.valueOf(row);
+			double[] tableRow = m_tableRows.get(rowKey);
+			if (tableRow == null) {
+				tableRow = new double[m_criteria.size()];
+				m_tableRows.put(rowKey, tableRow);
+				m_tableSets.put(rowKey, new BitSet(m_criteria.size()));
+			}
+			tableRow[column] = value;
+			m_tableSets.get(rowKey).set(column);
+		}
+
+		/**
+		 * Ends reading the current table. If a row of the table is also in the
+		 * matrix with different evaluations, the table is not added to the
+		 * matrix and the conflicting alternatives are returned.
+		 *
+		 * @return not <code>null</code>, empty iff the table has been added.
+		 */
+		public Set<Alternative> endTable() {
+			if (m_tableDirect) {
+				return ImmutableSet.of();
+			}
+			final int columns = m_criteria.size();
+			final ImmutableSet.Builder<Alternative> conflicting = ImmutableSet.builder();
+			for (Map.Entry<Integer, double[]> tableRow : m_tableRows.entrySet()) {
+				final int row = tableRow.getKey().intValue();
+				final int start = row * columns;
+				if (m_set.nextSetBit(start) < 0 || m_set.nextSetBit(start) >= start + columns) {
+					continue;
+				}
+				final BitSet tableSet = m_tableSets.get(tableRow.getKey());
+				if (!m_set.get(start, start + columns).equals(tableSet)) {
+					conflicting.add(m_alternatives.get(row));
+					continue;
+				}
+				for (int column = tableSet.nextSetBit(0); column >= 0; column = tableSet.nextSetBit(column + 1)) {
+					if (Double.compare(m_values[start + column], tableRow.getValue()[column]) != 0) {
+						conflicting.add(m_alternatives.get(row));
+						break;
+					}
+				}
+			}
+			final ImmutableSet<Alternative> conflicts = conflicting.build();
+			if (conflicts.isEmpty()) {
+				for (Map.Entry<Integer, double[]> tableRow : m_tableRows.entrySet()) {
+					final int start = tableRow.getKey().intValue() * columns;
+					final BitSet tableSet = m_tableSets.get(tableRow.getKey());
+					for (int column = tableSet.nextSetBit(0); column >= 0; column = tableSet
+							.nextSetBit(column + 1)) {
+						m_values[start + column] = tableRow.getValue()[column];
+						m_set.set(start + column);
+					}
+				}
+			}
+			m_tableRows.clear();
+			m_tableSets.clear();
+			return conflicts;
+		}
+
+		/**
+		 * Retrieves the matrix built, restricted to the alternatives and
+		 * criteria having at least one evaluation.
+		 *
+		 * @return not <code>null</code>.
+		 */
+		public DenseEvaluations build() {
+			final int rows = m_alternatives.size();
+			final int columns = m_criteria.size();
+			final BitSet usedRows = new BitSet(rows);
+			final BitSet usedColumns = new BitSet(columns);
+			for (int cell = m_set.nextSetBit(0); cell >= 0; cell = m_set.nextSetBit(cell + 1)) {
+				usedRows.set(cell / columns);
+				usedColumns.set(cell % columns);
+			}
+			if (usedRows.cardinality() == rows && usedColumns.cardinality() == columns) {
+				return new DenseEvaluations(m_alternatives, m_alternativesIndex, m_criteria, m_criteriaIndex,
+						m_values, m_set);
+			}
+			final ImmutableList.Builder<Alternative> alternatives = ImmutableList.builder();
+			for (int row = usedRows.nextSetBit(0); row >= 0; row = usedRows.nextSetBit(row + 1)) {
+				alternatives.add(m_alternatives.get(row));
+			}
+			final ImmutableList.Builder<Criterion> criteria = ImmutableList.builder();
+			for (int column = usedColumns.nextSetBit(0); column >= 0; column = usedColumns.nextSetBit(column + 1)) {
+				criteria.add(m_criteria.get(column));
+			}
+			final int newColumns = usedColumns.cardinality();
+			final double[] values = new double[usedRows.cardinality() * newColumns];
+			final BitSet set = new BitSet(values.length);
+			int newRow = 0;
+			for (int row = usedRows.nextSetBit(0); row >= 0; row = usedRows.nextSetBit(row + 1)) {
+				int newColumn = 0;
+				for (int column = usedColumns.nextSetBit(0); column >= 0; column = usedColumns
+						.nextSetBit(column + 1)) {
+					if (m_set.get(row * columns + column)) {
+						values[newRow * newColumns + newColumn] = m_values[row * columns + column];
+						set.set(newRow * newColumns + newColumn);
+					}
+					++newColumn;
+				}
+				++newRow;
+			}
+			final ImmutableList<Alternative> newAlternatives = alternatives.build();
+			final ImmutableList<Criterion> newCriteria = criteria.build();
+			return new DenseEvaluations(newAlternatives, DenseAlternativesMatrix.index(newAlternatives), newCriteria,
+					DenseAlternativesMatrix.index(newCriteria), values, set);
+		}
+	}
+
+	private final ImmutableList<Alternative> m_alternatives;
+	private final ImmutableMap<Alternative, Integer> m_alternativesIndex;
+	private final ImmutableList<Criterion> m_criteria;
+	private final ImmutableMap<Criterion, Integer> m_criteriaIndex;
+	private final BitSet m_set;
+	private final int m_valueCount;
+	private final double[] m_values;
+
+	private DenseEvaluations(ImmutableList<Alternative> alternatives,
+			ImmutableMap<Alternative, Integer> alternativesIndex, ImmutableList<Criterion> criteria,
+			ImmutableMap<Criterion, Integer> criteriaIndex, double[] values, BitSet set) {
+		m_alternatives = alternatives;
+		m_alternativesIndex = alternativesIndex;
+		m_criteria = criteria;
+		m_criteriaIndex = criteriaIndex;
+		m_values = values;
+		m_set = set;
+		m_valueCount = set.cardinality();
+	}
+
+	@Override
+	public boolean approxEquals(SparseMatrixDRead<Alternative, Criterion> m2, double tolerance) {
+		checkNotNull(m2);
+		if (!getRows().equals(m2.getRows()) || !getColumns().equals(m2.getColumns())
+				|| m_valueCount != m2.getValueCount()) {
+			return false;
+		}
+		for (int cell = m_set.nextSetBit(0); cell >= 0; cell = m_set.nextSetBit(cell + 1)) {
+			final Double other = m2.getEntry(m_alternatives.get(cell / m_criteria.size()),
+					m_criteria.get(cell % m_criteria.size()));
+			if (other == null || Math.abs(other.doubleValue() - m_values[cell]) > tolerance) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Retrieves a copy of the values of this matrix, row after row. The value
+	 * of the alternative of index <em>i</em> on the criterion of index
+	 * <em>j</em> is at position <em>i</em> * {@link #getColumns()}.size() +
+	 * <em>j</em>. Missing evaluations are represented by zero.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	public double[] copyValues() {
+		return m_values.clone();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof DenseEvaluations)) {
+			return false;
+		}
+		final DenseEvaluations m2 = (DenseEvaluations) obj;
+		if (!getRows().equals(m2.getRows()) || !getColumns().equals(m2.getColumns())
+				|| m_valueCount != m2.m_valueCount) {
+			return false;
+		}
+		for (int cell = m_set.nextSetBit(0); cell >= 0; cell = m_set.nextSetBit(cell + 1)) {
+			final Double other = m2.getEntry(m_alternatives.get(cell / m_criteria.size()),
+					m_criteria.get(cell % m_criteria.size()));
+			if (!Double.valueOf(m_values[cell]).equals(other)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Retrieves the alternative having the given index.
+	 *
+	 * @param index
+	 *            a valid index.
+	 * @return not <code>null</code>.
+	 */
+	public Alternative getAlternative(int index) {
+		return m_alternatives.get(index);
+	}
+
+	/**
+	 * Retrieves the index of the given alternative.
+	 *
+	 * @param alternative
+	 *            not <code>null</code>.
+	 * @return -1 iff the alternative is not a row of this matrix.
+	 */
+	public int getAlternativeIndex(Alternative alternative) {
+		checkNotNull(alternative);
+		final Integer index = m_alternativesIndex.get(alternative);
+		return index == null ? -1 : index.intValue();
+	}
+
+	/**
+	 * Retrieves the columns of this matrix, in the order of their indexes.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	@Override
+	public Set<Criterion> getColumns() {
+		return m_criteriaIndex.keySet();
+	}
+
+	/**
+	 * Retrieves the criterion having the given index.
+	 *
+	 * @param index
+	 *            a valid index.
+	 * @return not <code>null</code>.
+	 */
+	public Criterion getCriterion(int index) {
+		return m_criteria.get(index);
+	}
+
+	/**
+	 * Retrieves the index of the given criterion.
+	 *
+	 * @param criterion
+	 *            not <code>null</code>.
+	 * @return -1 iff the criterion is not a column of this matrix.
+	 */
+	public int getCriterionIndex(Criterion criterion) {
+		checkNotNull(criterion);
+		final Integer index = m_criteriaIndex.get(criterion);
+		return index == null ? -1 : index.intValue();
+	}
+
+	@Override
+	public Double getEntry(Alternative row, Criterion column) {
+		final int alternativeIndex = getAlternativeIndex(row);
+		final int criterionIndex = getCriterionIndex(column);
+		if (alternativeIndex == -1 || criterionIndex == -1) {
+			return null;
+		}
+		final int cell = alternativeIndex * m_criteria.size() + criterionIndex;
+		return m_set.get(cell) ? Double.valueOf(m_values[cell]) : null;
+	}
+
+	/**
+	 * Retrieves the rows of this matrix, in the order of their indexes.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	@Override
+	public Set<Alternative> getRows() {
+		return m_alternativesIndex.keySet();
+	}
+
+	/**
+	 * Retrieves the value of the alternative and criterion having the given
+	 * indexes.
+	 *
+	 * @param alternativeIndex
+	 *            a valid alternative index.
+	 * @param criterionIndex
+	 *            a valid criterion index.
+	 * @return the value, or zero if there is no evaluation in that cell.
+	 * @see #isSet(int, int)
+	 */
+	public double getValue(int alternativeIndex, int criterionIndex) {
+		checkElementIndex(alternativeIndex, m_alternatives.size());
+		checkElementIndex(criterionIndex, m_criteria.size());
+		return m_values[alternativeIndex * m_criteria.size() + criterionIndex];
+	}
+
+	@Override
+	public int getValueCount() {
+		return m_valueCount;
+	}
+
+	@Override
+	public int hashCode() {
+		int hashCode = 0;
+		for (int cell = m_set.nextSetBit(0); cell >= 0; cell = m_set.nextSetBit(cell + 1)) {
+			hashCode += m_alternatives.get(cell / m_criteria.size()).hashCode()
+					^ m_criteria.get(cell % m_criteria.size()).hashCode() ^ Double.valueOf(m_values[cell]).hashCode();
+		}
+		return hashCode;
+	}
+
+	@Override
+	public boolean isComplete() {
+		return m_valueCount == m_values.length;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return m_valueCount == 0;
+	}
+
+	/**
+	 * Tests whether this matrix has an evaluation for the alternative and
+	 * criterion having the given indexes.
+	 *
+	 * @param alternativeIndex
+	 *            a valid alternative index.
+	 * @param criterionIndex
+	 *            a valid criterion index.
+	 * @return <code>true</code> iff the cell is set.
+	 */
+	public boolean isSet(int alternativeIndex, int criterionIndex) {
+		checkElementIndex(alternativeIndex, m_alternatives.size());
+		checkElementIndex(criterionIndex, m_criteria.size());
+		return m_set.get(alternativeIndex * m_criteria.size() + criterionIndex);
+	}
+
+	@Override
+	public String toString() {
+		return "Dense evaluations (" + m_alternatives.size() + " x " + m_criteria.size() + ", " + m_valueCount
+				+ " values)";
+	}
+}
@@ -0,0 +1,112 @@
+package org.decisiondeck.jmcda.persist.xmcda2;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Set;
+
+import org.decision_deck.jmcda.structure.Alternative;
+import org.decision_deck.jmcda.structure.Criterion;
+import org.decision_deck.jmcda.structure.matrix.Evaluations;
+import org.decision_deck.jmcda.structure.matrix.EvaluationsUtils;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Sets;
+
+/**
+ * <p>
+ * Gathers the evaluations read from several performance tables into a single
+ * matrix. Each table is read into the matrix returned by
+ * {@link #beginTable()}, then {@link #endTable()} adds it to the result,
+ * unless one of its rows conflicts with a row read from a previous table.
+ * </p>
+ * <p>
+ * The result is never copied: the first table is read directly into it, and
+ * the following ones are checked then added cell by cell. The cost of reading
+ * several tables is thus linear in their total number of cells.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+class EvaluationsMergeBuilder {
+	private final Evaluations m_all;
+	/**
+	 * <code>null</code> iff no table is being read. Equal to {@link #m_all}
+	 * when the result was empty at the start of the table.
+	 */
+	private Evaluations m_table;
+
+	public EvaluationsMergeBuilder() {
+		m_all = EvaluationsUtils.newEvaluationMatrix();
+		m_table = null;
+	}
+
+	/**
+	 * Starts reading a new table.
+	 *
+	 * @return not <code>null</code>, the matrix where to put the evaluations
+	 *         of the table, initially empty.
+	 */
+	public Evaluations beginTable() {
+		checkState(m_table == null);
+		m_table = m_all.isEmpty() ? m_all : EvaluationsUtils.newEvaluationMatrix();
+		return m_table;
+	}
+
+	/**
+	 * Ends reading the current table. If a row of the table is also in the
+	 * result with different evaluations, the table is not added to the result
+	 * and the conflicting alternatives are returned.
+	 *
+	 * @return not <code>null</code>, empty iff the table has been added.
+	 */
+	public Set<Alternative> endTable() {
+		checkState(m_table != null);
+		final Evaluations table = m_table;
+		m_table = null;
+		final Set<Alternative> conflicting = Sets.newLinkedHashSet();
+		if (table == m_all) {
+			return conflicting;
+		}
+		final Set<Alternative> rows = m_all.getRows();
+		for (Alternative alternative : table.getRows()) {
+			if (rows.contains(alternative) && !isSameRow(table, alternative)) {
+				conflicting.add(alternative);
+			}
+		}
+		if (!conflicting.isEmpty()) {
+			return conflicting;
+		}
+		for (Alternative alternative : table.getRows()) {
+			if (rows.contains(alternative)) {
+				continue;
+			}
+			for (Criterion criterion : table.getColumns()) {
+				final Double entry = table.getEntry(alternative, criterion);
+				if (entry != null) {
+					m_all.put(alternative, criterion, entry.doubleValue());
+				}
+			}
+		}
+		return conflicting;
+	}
+
+	/**
+	 * Retrieves the evaluations gathered so far.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	public Evaluations build() {
+		checkState(m_table == null);
+		return m_all;
+	}
+
+	private boolean isSameRow(Evaluations table, Alternative alternative) {
+		for (Criterion criterion : Sets.union(m_all.getColumns(), table.getColumns())) {
+			if (!Objects.equal(m_all.getEntry(alternative, criterion), table.getEntry(alternative, criterion))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,162 @@
+package org.decisiondeck.jmcda.persist.xmcda2;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.xmlbeans.XmlObject;
+import org.decision_deck.jmcda.structure.DecisionMaker;
+import org.decisiondeck.jmcda.exc.InvalidInputException;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager.ErrorManagement;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAHelper;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * <p>
+ * Converts XMCDA fragments, each bound to a decision maker, into domain
+ * objects, in parallel using a fork-join pool. The results are gathered in the
+ * order of the fragments, as if they had been converted one after the other.
+ * </p>
+ * <p>
+ * Each fragment is converted by a helper object using its own errors manager,
+ * which collects the errors. Once every fragment is converted, the errors are
+ * forwarded, in the order of the fragments, to the target helper, which
+ * manages them according to its strategy. Thus, errors are reported in the same
+ * order as with a sequential conversion, and if the target follows the
+ * {@link ErrorManagement#THROW} strategy, the exception thrown is the one a
+ * sequential conversion would throw.
+ * </p>
+ * <p>
+ * XMLBeans synchronizes accesses to a document on a single lock, thus each
+ * fragment is copied to its own document before being converted.
+ * </p>
+ *
+ * @param <F>
+ *            the type of fragments to convert.
+ * @param <T>
+ *            the type of the resulting objects.
+ */
+abstract class ForkJoinConversion<F extends XmlObject, T> {
+	/**
+	 * The outcome of the conversion of one fragment.
+	 */
+	private static class Converted<T> {
+		public Map.Entry<DecisionMaker, T> m_entry;
+		public List<String> m_errors;
+		public RuntimeException m_failure;
+	}
+
+	private class ConversionTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int m_from;
+		private final int m_to;
+
+		public ConversionTask(int from, int to) {
+			m_from = from;
+			m_to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (m_to - m_from == 1) {
+				m_converted.set(m_from, convertOne(m_fragments.get(m_from)));
+				return;
+			}
+			final int middle = (m_from + m_to) >>> 1;
+			invokeAll(new ConversionTask(m_from, middle), new ConversionTask(middle, m_to));
+		}
+	}
+
+	private List<Converted<T>> m_converted;
+	private List<F> m_fragments;
+
+	/**
+	 * Converts the given fragment using the given errors manager. This method
+	 * is called concurrently and must not modify any shared state.
+	 *
+	 * @param fragment
+	 *            not <code>null</code>.
+	 * @param errorsManager
+	 *            not <code>null</code>, follows the
+	 *            {@link ErrorManagement#COLLECT} strategy.
+	 * @return <code>null</code> iff the fragment is to be skipped.
+	 * @throws InvalidInputException
+	 *             should not happen as the errors manager does not throw.
+	 */
+	protected abstract Map.Entry<DecisionMaker, T> convert(F fragment, XMCDAErrorsManager errorsManager)
+			throws InvalidInputException;
+
+	/**
+	 * Converts the given fragments.
+	 *
+	 * @param fragments
+	 *            not <code>null</code>.
+	 * @param parallelism
+	 *            at least one.
+	 * @param target
+	 *            not <code>null</code>, the helper which the errors are
+	 *            forwarded to.
+	 * @return not <code>null</code>, the iteration order matches the order
+	 *         of the fragments. When several fragments are bound to the same
+	 *         decision maker, the last one wins.
+	 * @throws InvalidInputException
+	 *             iff unexpected content has been read and the target follows
+	 *             the {@link ErrorManagement#THROW} strategy.
+	 */
+	public Map<DecisionMaker, T> convertAll(Collection<F> fragments, int parallelism, XMCDAHelper target)
+			throws InvalidInputException {
+		checkArgument(parallelism >= 1);
+		checkNotNull(target);
+		m_fragments = ImmutableList.copyOf(fragments);
+		m_converted = Lists.newArrayList(Collections.<Converted<T>> nCopies(m_fragments.size(), null));
+		if (!m_fragments.isEmpty()) {
+			final ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				pool.invoke(new ConversionTask(0, m_fragments.size()));
+			} finally {
+				pool.shutdown();
+			}
+		}
+
+		final Map<DecisionMaker, T> all = Maps.newLinkedHashMap();
+		for (Converted<T> converted : m_converted) {
+			for (String error : converted.m_errors) {
+				target.error(error);
+			}
+			if (converted.m_failure != null) {
+				throw converted.m_failure;
+			}
+			if (converted.m_entry != null) {
+				all.put(converted.m_entry.getKey(), converted.m_entry.getValue());
+			}
+		}
+		return all;
+	}
+
+	private Converted<T> convertOne(F fragment) {
+		final XMCDAErrorsManager errorsManager = new XMCDAErrorsManager(ErrorManagement.COLLECT);
+		final Converted<T> converted = new Converted<T>();
+		try {
+			@SuppressWarnings("unchecked")
+			final F own = (F) fragment.copy();
+			converted.m_entry = convert(own, errorsManager);
+		} catch (InvalidInputException exc) {
+			throw new IllegalStateException(exc);
+		} catch (RuntimeException exc) {
+			converted.m_failure = exc;
+		}
+		converted.m_errors = errorsManager.getErrors();
+		return converted;
+	}
+}
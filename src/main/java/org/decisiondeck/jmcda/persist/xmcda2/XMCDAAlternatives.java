@@ -20,6 +20,7 @@ import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc.XMCDA;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager.ErrorManagement;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAHelperWithVarious;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAObjectPool;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicates;
@@ -223,7 +224,7 @@ public class XMCDAAlternatives extends XMCDAHelperWithVarious {
 	    return null;
 	}
 
-	final Alternative alternative = new Alternative(id);
+	final Alternative alternative = toAlternative(id);
 
 	final String name;
 	if (xAlternative.isSetName()) {
@@ -329,10 +330,7 @@ public class XMCDAAlternatives extends XMCDAHelperWithVarious {
 	final Set<Alternative> alternatives = Sets.newLinkedHashSet();
 	final List<XAlternative> xAlternativeList = xAlternatives.getAlternativeList();
 	for (final XAlternative xAlternative : xAlternativeList) {
-	    final String conceptString = xAlternatives.getMcdaConcept();
-	    final X2Concept concept = X2Concept.asConcept(conceptString);
-	    m_currentConcept = concept == X2Concept.UNMARKED ? null : concept;
-	    final Alternative alternative = read(xAlternative);
+	    final Alternative alternative = read(xAlternative, xAlternatives.getMcdaConcept());
 	    if (alternative != null) {
 		alternatives.add(alternative);
 	    }
@@ -340,6 +338,25 @@ public class XMCDAAlternatives extends XMCDAHelperWithVarious {
 	return alternatives;
     }
 
+    /**
+     * Reads the given alternative as {@link #read(XAlternative)} does, considering that it is enclosed in an
+     * alternatives fragment marked with the given concept.
+     * 
+     * @param xAlternative
+     *            not <code>null</code>.
+     * @param enclosingConcept
+     *            the MCDA concept of the enclosing fragment, may be <code>null</code>.
+     * @return possibly <code>null</code>, see {@link #read(XAlternative)}.
+     * @throws InvalidInputException
+     *             iff unexpected content has been read and this object follows the {@link ErrorManagement#THROW}
+     *             strategy.
+     */
+    Alternative read(XAlternative xAlternative, String enclosingConcept) throws InvalidInputException {
+	final X2Concept concept = X2Concept.asConcept(enclosingConcept);
+	m_currentConcept = concept == X2Concept.UNMARKED ? null : concept;
+	return read(xAlternative);
+    }
+
     /**
      * Retrieves the XMCDA equivalent of the given alternatives. For each alternative, also writes the name and the
      * fictive and active status of the alternative if they are known to this object. Optionally, this method may also
@@ -534,10 +551,34 @@ public class XMCDAAlternatives extends XMCDAHelperWithVarious {
      */
     public static Set<Alternative> read(Collection<XAlternatives> xAlternativesCollection, Enum type,
 	    AlternativesParsingMethod parsingMethod) throws InvalidInputException {
+	return read(xAlternativesCollection, type, parsingMethod, null);
+    }
+
+    /**
+     * Reads the alternatives as {@link #read(Collection, Enum, AlternativesParsingMethod)} does, obtaining the
+     * alternatives from the given pool.
+     * 
+     * @param xAlternativesCollection
+     *            not <code>null</code>.
+     * @param type
+     *            unused and may be <code>null</code> if parsing method is {@link AlternativesParsingMethod#TAKE_ALL},
+     *            otherwise, must be one of {@link XAlternativeType#REAL} or {@link XAlternativeType#FICTIVE}.
+     * @param parsingMethod
+     *            not <code>null</code>.
+     * @param pool
+     *            <code>null</code> for no pooling.
+     * @return may be empty, but not <code>null</code>.
+     * @throws InvalidInputException
+     *             iff unexpected content has been read and this object follows the {@link ErrorManagement#THROW}
+     *             strategy.
+     */
+    public static Set<Alternative> read(Collection<XAlternatives> xAlternativesCollection, Enum type,
+	    AlternativesParsingMethod parsingMethod, XMCDAObjectPool pool) throws InvalidInputException {
 	checkArgument(parsingMethod == AlternativesParsingMethod.TAKE_ALL || type != null);
 	checkNotNull(parsingMethod);
 	final XMCDAErrorsManager errorsManager = new XMCDAErrorsManager();
 	final XMCDAAlternatives xmcdaAlternatives = new XMCDAAlternatives(errorsManager);
+	xmcdaAlternatives.setPool(pool);
 	final Set<Alternative> alternatives;
 	switch (parsingMethod) {
 	case TAKE_ALL:
@@ -1,10 +1,13 @@
 package org.decisiondeck.jmcda.persist.xmcda2;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAReadUtils.describe;
 
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.TreeSet;
 
 import org.decision_deck.jmcda.structure.Alternative;
@@ -29,6 +32,9 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -87,7 +93,7 @@ public class XMCDAAlternativesMatrix extends XMCDAHelperWithVarious {
 			error("Found a value without an id.");
 			continue;
 		    }
-		    final Criterion criterion = new Criterion(id);
+		    final Criterion criterion = toCriterion(id);
 		    final Double value = readDouble(xValue);
 		    if (value == null) {
 			continue;
@@ -153,7 +159,9 @@ public class XMCDAAlternativesMatrix extends XMCDAHelperWithVarious {
     private static final Logger s_logger = LoggerFactory.getLogger(XMCDAAlternativesMatrix.class);
 
     /**
-     * Retrieves the XMCDA equivalent of the given matrix.
+     * Retrieves the XMCDA equivalent of the given matrix. A pair is written for each couple of alternatives that has
+     * an entry in at least one of the matrixes, with the values of the matrixes having an entry for that couple. The
+     * pairs are sorted by initial then terminal alternative, and the values by criterion.
      * 
      * @param matrixes
      *            not <code>null</code>, no <code>null</code> key or values. The matrixes in values may be incomplete.
@@ -166,31 +174,51 @@ public class XMCDAAlternativesMatrix extends XMCDAHelperWithVarious {
 		.addNewAlternativesComparisons();
 	final Set<Criterion> critsSorted = new TreeSet<Criterion>();
 	critsSorted.addAll(matrixes.keySet());
-	final Set<Alternative> rowsSorted = new TreeSet<Alternative>();
-	final Set<Alternative> colsSorted = new TreeSet<Alternative>();
-	for (Criterion crit : critsSorted) {
-	    rowsSorted.addAll(matrixes.get(crit).getRows());
-	    colsSorted.addAll(matrixes.get(crit).getColumns());
+	/**
+	 * The entries of all matrixes, merged by pair. As the criteria are visited in order, the values of each pair
+	 * are sorted by criterion.
+	 */
+	final SortedMap<Alternative, SortedMap<Alternative, List<Map.Entry<Criterion, Double>>>> entries = Maps
+		.newTreeMap();
+	for (Criterion criterion : critsSorted) {
+	    final SparseMatrixDRead<Alternative, Alternative> matrix = matrixes.get(criterion);
+	    for (final Alternative initial : matrix.getRows()) {
+		SortedMap<Alternative, List<Map.Entry<Criterion, Double>>> row = null;
+		for (final Alternative terminal : matrix.getColumns()) {
+		    final Double entry = matrix.getEntry(initial, terminal);
+		    if (entry == null) {
+			continue;
+		    }
+		    if (row == null) {
+			row = entries.get(initial);
+			if (row == null) {
+			    row = Maps.newTreeMap();
+			    entries.put(initial, row);
+			}
+		    }
+		    List<Map.Entry<Criterion, Double>> values = row.get(terminal);
+		    if (values == null) {
+			values = Lists.newArrayListWithCapacity(2);
+			row.put(terminal, values);
+		    }
+		    values.add(Maps.immutableEntry(criterion, entry));
+		}
+	    }
 	}
+
 	final XAlternativesComparisons.Pairs pairs = xAlternativesComparisons.addNewPairs();
-	for (final Alternative initial : rowsSorted) {
-	    final XAlternativeReference xInitial = XAlternativeReference.Factory.newInstance();
-	    xInitial.setAlternativeID(initial.getId());
-	    for (final Alternative terminal : colsSorted) {
-		final XAlternativeReference xTerminal = XAlternativeReference.Factory.newInstance();
-		xTerminal.setAlternativeID(terminal.getId());
+	for (final Map.Entry<Alternative, SortedMap<Alternative, List<Map.Entry<Criterion, Double>>>> row : entries
+		.entrySet()) {
+	    final String initialId = row.getKey().getId();
+	    for (final Map.Entry<Alternative, List<Map.Entry<Criterion, Double>>> cell : row.getValue().entrySet()) {
 		final XAlternativesComparisons.Pairs.Pair xPair = pairs.addNewPair();
-		xPair.setInitial(xInitial);
-		xPair.setTerminal(xTerminal);
+		xPair.addNewInitial().setAlternativeID(initialId);
+		xPair.addNewTerminal().setAlternativeID(cell.getKey().getId());
 		final XValues xValues = xPair.addNewValues();
-		for (Criterion criterion : critsSorted) {
-		    final Double entry = matrixes.get(criterion).getEntry(initial, terminal);
-		    if (entry == null) {
-			continue;
-		    }
+		for (Map.Entry<Criterion, Double> value : cell.getValue()) {
 		    final XValue xValue = xValues.addNewValue();
-		    xValue.setId(criterion.getId());
-		    xValue.setReal((float) entry.doubleValue());
+		    xValue.setId(value.getKey().getId());
+		    xValue.setReal((float) value.getValue().doubleValue());
 		}
 	    }
 	}
@@ -236,12 +264,7 @@ public class XMCDAAlternativesMatrix extends XMCDAHelperWithVarious {
 	    if (altTerminal == null) {
 		continue;
 	    }
-	    final List<XValue> xValues = xPair.getValueList();
-	    final XValue xValue = getUnique(xValues, xPair.toString());
-	    if (xValue == null) {
-		continue;
-	    }
-	    final Double value = readDouble(xValue);
+	    final Double value = readValue(xPair);
 	    if (value == null) {
 		continue;
 	    }
@@ -258,7 +281,27 @@ public class XMCDAAlternativesMatrix extends XMCDAHelperWithVarious {
 	}
     }
 
-    private Alternative getTerminal(final XAlternativesComparisons.Pairs.Pair xPair) throws InvalidInputException {
+    /**
+     * Retrieves the unique value associated to the given pair.
+     * 
+     * @param xPair
+     *            not <code>null</code>.
+     * @return <code>null</code> iff unexpected content has been read and this object does not follow the
+     *         {@link ErrorManagement#THROW} strategy.
+     * @throws InvalidInputException
+     *             iff unexpected content has been read and this object follows the {@link ErrorManagement#THROW}
+     *             strategy.
+     */
+    Double readValue(XAlternativesComparisons.Pairs.Pair xPair) throws InvalidInputException {
+	final List<XValue> xValues = xPair.getValueList();
+	final XValue xValue = getUnique(xValues, describe(xPair));
+	if (xValue == null) {
+	    return null;
+	}
+	return readDouble(xValue);
+    }
+
+    Alternative getTerminal(final XAlternativesComparisons.Pairs.Pair xPair) throws InvalidInputException {
 	final XAlternativeReference xTerminal = xPair.getTerminal();
 	if (xTerminal == null) {
 	    error("Found a pair without terminal alternative.");
@@ -273,7 +316,7 @@ public class XMCDAAlternativesMatrix extends XMCDAHelperWithVarious {
 	    error("Found a pair without terminal alternative id.");
 	    return null;
 	}
-	final Alternative alternative = new Alternative(id);
+	final Alternative alternative = toAlternative(id);
 	return alternative;
     }
 
@@ -301,6 +344,196 @@ public class XMCDAAlternativesMatrix extends XMCDAHelperWithVarious {
 	return altMat;
     }
 
+    /**
+     * <p>
+     * Retrieves an alternative matrix corresponding to the given XMCDA information, stored in a dense primitive
+     * array. The entries read, and the errors reported, are the same as with
+     * {@link #readAlternativesFloatMatrix(XAlternativesComparisons)}, but the memory used is close to eight bytes per
+     * couple of alternatives, which is appropriate when most couples have an entry. The returned matrix is not equal
+     * to the one read as a float matrix, compare them with {@link DenseAlternativesMatrix#approxEquals}.
+     * </p>
+     * <p>
+     * In case of unexpected data, an exception is thrown if this object follows the {@link ErrorManagement#THROW}
+     * strategy, otherwise, non conforming informations will be skipped.
+     * </p>
+     * 
+     * @param xAlternativesComparisons
+     *            not <code>null</code>.
+     * @return not <code>null</code>.
+     * @throws InvalidInputException
+     *             iff unexpected content has been read and this object follows the {@link ErrorManagement#THROW}
+     *             strategy.
+     */
+    public DenseAlternativesMatrix readAlternativesDenseMatrix(XAlternativesComparisons xAlternativesComparisons)
+	    throws InvalidInputException {
+	checkNotNull(xAlternativesComparisons);
+	return readDenseInternal(xAlternativesComparisons, Predicates.<Double> alwaysTrue());
+    }
+
+    /**
+     * <p>
+     * Retrieves an alternative matrix corresponding to the given XMCDA information, stored in a dense primitive
+     * array. The entries read, and the errors reported, are the same as with
+     * {@link #readAlternativesFuzzyMatrix(XAlternativesComparisons)}. The returned matrix is not equal to the one read
+     * as a fuzzy matrix, compare them with {@link DenseAlternativesMatrix#approxEquals}.
+     * </p>
+     * <p>
+     * In case of unexpected data, an exception is thrown if this object follows the {@link ErrorManagement#THROW}
+     * strategy, otherwise, non conforming informations will be skipped.
+     * </p>
+     * 
+     * @param xAlternativesComparisons
+     *            not <code>null</code>.
+     * @return not <code>null</code>, with values between zero and one.
+     * @throws InvalidInputException
+     *             iff unexpected content has been read and this object follows the {@link ErrorManagement#THROW}
+     *             strategy.
+     */
+    public DenseAlternativesMatrix readAlternativesDenseFuzzyMatrix(XAlternativesComparisons xAlternativesComparisons)
+	    throws InvalidInputException {
+	checkNotNull(xAlternativesComparisons);
+	return readDenseInternal(xAlternativesComparisons, PredicateUtils.inBetween(0d, 1d));
+    }
+
+    /**
+     * <p>
+     * Retrieves the alternative matrixes corresponding to the given XMCDA information, by criteria, each stored in a
+     * dense primitive array. The matrixes share a single index of the alternatives. The entries read, and the errors
+     * reported, are the same as with {@link #readAlternativesFuzzyMatrixesByCriteria(XAlternativesComparisons)}. The
+     * iteration order of the returned map is the order in which the criteria are first encountered. As for
+     * {@link #readAlternativesDenseFuzzyMatrix(XAlternativesComparisons)}, compare the matrixes with
+     * {@link DenseAlternativesMatrix#approxEquals}.
+     * </p>
+     * <p>
+     * In case of unexpected data, an exception is thrown if this object follows the {@link ErrorManagement#THROW}
+     * strategy, otherwise, non conforming informations will be skipped.
+     * </p>
+     * 
+     * @param xAlternativesComparisons
+     *            not <code>null</code>.
+     * @return not <code>null</code>.
+     * @throws InvalidInputException
+     *             iff unexpected content has been read and this object follows the {@link ErrorManagement#THROW}
+     *             strategy.
+     */
+    public Map<Criterion, DenseAlternativesMatrix> readAlternativesDenseFuzzyMatrixesByCriteria(
+	    XAlternativesComparisons xAlternativesComparisons) throws InvalidInputException {
+	checkNotNull(xAlternativesComparisons);
+	final ImmutableMap<Alternative, Integer> index = indexAlternatives(xAlternativesComparisons);
+	final int size = index.size();
+	final Predicate<Double> fuzzy = PredicateUtils.inBetween(0d, 1d);
+	final Map<Criterion, double[]> allValues = Maps.newLinkedHashMap();
+	final Map<Criterion, BitSet> allSets = Maps.newHashMap();
+
+	final List<XAlternativesComparisons.Pairs.Pair> xPairList = xAlternativesComparisons.getPairs().getPairList();
+	for (final XAlternativesComparisons.Pairs.Pair xPair : xPairList) {
+	    final Alternative initial = getInitial(xPair);
+	    if (initial == null) {
+		continue;
+	    }
+	    final Alternative terminal = getTerminal(xPair);
+	    if (terminal == null) {
+		continue;
+	    }
+	    final int cell = index.get(initial).intValue() * size + index.get(terminal).intValue();
+	    for (final XValues xValues : xPair.getValuesList()) {
+		for (final XValue xValue : xValues.getValueList()) {
+		    final String id = xValue.getId();
+		    if (id == null || id.isEmpty()) {
+			error("Found a value without an id.");
+			continue;
+		    }
+		    final Criterion criterion = toCriterion(id);
+		    final Double value = readDouble(xValue);
+		    if (value == null) {
+			continue;
+		    }
+		    if (!allValues.containsKey(criterion)) {
+			allValues.put(criterion, DenseAlternativesMatrix.newValues(size));
+			allSets.put(criterion, new BitSet(size * size));
+		    }
+		    final BitSet set = allSets.get(criterion);
+		    if (set.get(cell)) {
+			error("More than one value found for " + initial + ", " + terminal + ", " + criterion + ".");
+			break;
+		    }
+		    if (!fuzzy.apply(value)) {
+			error("Invalid value found at " + initial + ", " + terminal + ", " + criterion + ": " + value
+				+ ".");
+			continue;
+		    }
+		    allValues.get(criterion)[cell] = value.doubleValue();
+		    set.set(cell);
+		}
+	    }
+	}
+
+	final Map<Criterion, DenseAlternativesMatrix> matrixes = Maps.newLinkedHashMap();
+	for (Map.Entry<Criterion, double[]> values : allValues.entrySet()) {
+	    final Criterion criterion = values.getKey();
+	    matrixes.put(criterion, new DenseAlternativesMatrix(index, values.getValue(), allSets.get(criterion)));
+	}
+	return matrixes;
+    }
+
+    private DenseAlternativesMatrix readDenseInternal(XAlternativesComparisons xAlternativesComparisons,
+	    Predicate<Double> pValidator) throws InvalidInputException {
+	final ImmutableMap<Alternative, Integer> index = indexAlternatives(xAlternativesComparisons);
+	final int size = index.size();
+	final double[] values = DenseAlternativesMatrix.newValues(size);
+	final BitSet set = new BitSet(values.length);
+	final List<XAlternativesComparisons.Pairs.Pair> xPairList = xAlternativesComparisons.getPairs().getPairList();
+	for (final XAlternativesComparisons.Pairs.Pair xPair : xPairList) {
+	    final Alternative altInit = getInitial(xPair);
+	    if (altInit == null) {
+		continue;
+	    }
+	    final Alternative altTerminal = getTerminal(xPair);
+	    if (altTerminal == null) {
+		continue;
+	    }
+	    final Double value = readValue(xPair);
+	    if (value == null) {
+		continue;
+	    }
+	    final int cell = index.get(altInit).intValue() * size + index.get(altTerminal).intValue();
+	    if (set.get(cell)) {
+		error("More than one value found for pair " + altInit + ", " + altTerminal + ".");
+		continue;
+	    }
+	    if (!pValidator.apply(value)) {
+		throw new InvalidInputException("Invalid value found at " + altInit + ", " + altTerminal + ": " + value
+			+ ".");
+	    }
+	    values[cell] = value.doubleValue();
+	    set.set(cell);
+	}
+	return new DenseAlternativesMatrix(index, values, set);
+    }
+
+    /**
+     * Indexes the alternatives referenced in the given XMCDA information, in the order they are first encountered,
+     * without reporting errors: those are reported while reading the pairs.
+     */
+    private ImmutableMap<Alternative, Integer> indexAlternatives(XAlternativesComparisons xAlternativesComparisons) {
+	final Set<Alternative> alternatives = Sets.newLinkedHashSet();
+	for (final XAlternativesComparisons.Pairs.Pair xPair : xAlternativesComparisons.getPairs().getPairList()) {
+	    addReferenced(xPair.getInitial(), alternatives);
+	    addReferenced(xPair.getTerminal(), alternatives);
+	}
+	return DenseAlternativesMatrix.index(ImmutableList.copyOf(alternatives));
+    }
+
+    private void addReferenced(XAlternativeReference xReference, Set<Alternative> alternatives) {
+	if (xReference == null || !xReference.isSetAlternativeID()) {
+	    return;
+	}
+	final String id = xReference.getAlternativeID();
+	if (id != null && !id.isEmpty()) {
+	    alternatives.add(toAlternative(id));
+	}
+    }
+
     /**
      * Retrieves a writeable view of the set of alternatives stored in this object.
      * 
@@ -322,7 +555,7 @@ public class XMCDAAlternativesMatrix extends XMCDAHelperWithVarious {
 	m_alternatives.addAll(alternatives);
     }
 
-    private Alternative getInitial(final XAlternativesComparisons.Pairs.Pair xPair) throws InvalidInputException {
+    Alternative getInitial(final XAlternativesComparisons.Pairs.Pair xPair) throws InvalidInputException {
 	final XAlternativeReference xInitial = xPair.getInitial();
 	if (xInitial == null) {
 	    error("Found a pair without initial alternative.");
@@ -337,7 +570,7 @@ public class XMCDAAlternativesMatrix extends XMCDAHelperWithVarious {
 	    error("Found a pair without initial alternative id.");
 	    return null;
 	}
-	final Alternative alternative = new Alternative(id);
+	final Alternative alternative = toAlternative(id);
 	return alternative;
     }
 
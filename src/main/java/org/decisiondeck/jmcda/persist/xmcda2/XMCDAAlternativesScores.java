@@ -1,6 +1,7 @@
 package org.decisiondeck.jmcda.persist.xmcda2;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAReadUtils.describe;
 
 import java.util.Collection;
 import java.util.List;
@@ -56,13 +57,13 @@ public class XMCDAAlternativesScores extends XMCDAHelperWithVarious {
 		if (id == null || id.isEmpty()) {
 		    continue;
 		}
-		final Alternative alternative = new Alternative(id);
+		final Alternative alternative = toAlternative(id);
 		if (scores.get(alternative) != null) {
 		    error("Duplicate " + alternative + " score.");
 		    continue;
 		}
 		final List<XValue> xValueList = xAlternativeValue.getValueList();
-		final XValue xValue = getUnique(xValueList, xAlternativeValue.toString());
+		final XValue xValue = getUnique(xValueList, describe(xAlternativeValue));
 		if (xValue == null) {
 		    continue;
 		}
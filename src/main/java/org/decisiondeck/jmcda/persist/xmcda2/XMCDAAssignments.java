@@ -2,11 +2,13 @@ package org.decisiondeck.jmcda.persist.xmcda2;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAReadUtils.describe;
 
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.NavigableSet;
 import java.util.Set;
@@ -86,6 +88,8 @@ public class XMCDAAssignments extends XMCDAHelperWithVarious {
 
     private boolean m_forceIntervals;
 
+    private int m_parallelism;
+
     /**
      * <p>
      * Retrieves assignments to multiple categories objects per decision makers, containing the information in the given
@@ -109,20 +113,51 @@ public class XMCDAAssignments extends XMCDAHelperWithVarious {
     public Map<DecisionMaker, IAssignmentsToMultiple> readAll(
 	    Collection<XAlternativesAffectations> xAllAlternativesAffectations) throws InvalidInputException {
 	checkNotNull(xAllAlternativesAffectations);
+	if (m_parallelism >= 2 && xAllAlternativesAffectations.size() >= 2) {
+	    return new ForkJoinConversion<XAlternativesAffectations, IAssignmentsToMultiple>() {
+		@Override
+		protected Entry<DecisionMaker, IAssignmentsToMultiple> convert(
+			XAlternativesAffectations xAlternativesAffectations, XMCDAErrorsManager errorsManager)
+			throws InvalidInputException {
+		    return newWorker(errorsManager).readDecisionMakerAssignments(xAlternativesAffectations);
+		}
+	    }.convertAll(xAllAlternativesAffectations, m_parallelism, this);
+	}
 	final Map<DecisionMaker, IAssignmentsToMultiple> allAssignments = Maps.newLinkedHashMap();
 	for (XAlternativesAffectations xAlternativesAffectations : xAllAlternativesAffectations) {
-	    final String dmId = xAlternativesAffectations.getName();
-	    if (dmId == null) {
-		error("Affectations has no bound name, name of the corresponding decision maker is required.");
-		continue;
+	    final Entry<DecisionMaker, IAssignmentsToMultiple> entry = readDecisionMakerAssignments(
+		    xAlternativesAffectations);
+	    if (entry != null) {
+		allAssignments.put(entry.getKey(), entry.getValue());
 	    }
-	    final DecisionMaker dm = new DecisionMaker(dmId);
-	    final IAssignmentsToMultiple assignments = read(xAlternativesAffectations);
-	    allAssignments.put(dm, assignments);
 	}
 	return allAssignments;
     }
 
+    private Entry<DecisionMaker, IAssignmentsToMultiple> readDecisionMakerAssignments(
+	    XAlternativesAffectations xAlternativesAffectations) throws InvalidInputException {
+	final String dmId = xAlternativesAffectations.getName();
+	if (dmId == null) {
+	    error("Affectations has no bound name, name of the corresponding decision maker is required.");
+	    return null;
+	}
+	final DecisionMaker dm = toDecisionMaker(dmId);
+	final IAssignmentsToMultiple assignments = read(xAlternativesAffectations);
+	return Maps.immutableEntry(dm, assignments);
+    }
+
+    /**
+     * Creates an object with the same settings as this one, including its pool, which delegates error management to
+     * the given error manager. The export settings are not copied as they only matter when writing.
+     */
+    private XMCDAAssignments newWorker(XMCDAErrorsManager errorsManager) {
+	final XMCDAAssignments worker = new XMCDAAssignments(errorsManager);
+	worker.m_categories = m_categories;
+	worker.m_forceIntervals = m_forceIntervals;
+	worker.setPool(getPool());
+	return worker;
+    }
+
     /**
      * <p>
      * Retrieves an object representing the assignments, possibly to multiple categories, contained in the given
@@ -149,55 +184,12 @@ public class XMCDAAssignments extends XMCDAHelperWithVarious {
 	final List<XAlternativeAffectation> xAlternativeAffectationList = xAlternativesAffectations
 		.getAlternativeAffectationList();
 	for (XAlternativeAffectation xAlternativeAffectation : xAlternativeAffectationList) {
-	    final String alternativeId = xAlternativeAffectation.getAlternativeID();
-	    if (alternativeId == null || alternativeId.isEmpty()) {
-		error("Expected alternative id at " + xAlternativeAffectation + ".");
-		continue;
-	    }
-	    final Alternative alternative = new Alternative(alternativeId);
-	    final String uniqueCategoryId = xAlternativeAffectation.getCategoryID();
-	    final XCategoriesSet xCategoriesSet = xAlternativeAffectation.getCategoriesSet();
-	    final boolean hasCategories = xCategoriesSet != null;
-	    final boolean hasCategory = uniqueCategoryId != null && !uniqueCategoryId.isEmpty();
-	    if (hasCategory && hasCategories) {
-		error("Expected exactly one of category or category set, not both, at " + xAlternativeAffectation + ".");
-		continue;
-	    }
-
-	    final Set<Category> categories;
-	    boolean unknownCategory = false;
-	    if (hasCategory) {
-		final Category category = new Category(uniqueCategoryId);
-		if (unknown(category)) {
-		    unknownCategory = true;
-		    error("Found " + category + " which is not in the set of known categories " + m_categories + ".");
-		}
-		categories = Collections.singleton(category);
-	    } else if (hasCategories) {
-		categories = Sets.newLinkedHashSet();
-		/** <code>true</code> by definition, but we need this to satisfy compiler check. */
-		assert xCategoriesSet != null;
-		final List<XCategoriesSet.Element> xElementList = xCategoriesSet.getElementList();
-		for (XCategoriesSet.Element xElement : xElementList) {
-		    final String elementCategoryId = xElement.getCategoryID();
-		    if (elementCategoryId == null || elementCategoryId.isEmpty()) {
-			error("Expected category id at " + xElement + ".");
-			continue;
-		    }
-		    final Category category = new Category(elementCategoryId);
-		    if (unknown(category)) {
-			unknownCategory = true;
-			error("Found " + category + " which is not in the set of known categories " + m_categories
-				+ ".");
-			break;
-		    }
-		    categories.add(category);
-		}
-	    } else {
-		error("Expected category id or category set at " + xAlternativeAffectation + ".");
+	    final Alternative alternative = readAlternative(xAlternativeAffectation);
+	    if (alternative == null) {
 		continue;
 	    }
-	    if (unknownCategory) {
+	    final Set<Category> categories = readCategories(xAlternativeAffectation);
+	    if (categories == null) {
 		continue;
 	    }
 	    final Set<Category> newAssignments = Sets.newLinkedHashSet();
@@ -213,6 +205,86 @@ public class XMCDAAssignments extends XMCDAHelperWithVarious {
 	return assignments;
     }
 
+    /**
+     * Retrieves the alternative the given fragment is about.
+     * 
+     * @param xAlternativeAffectation
+     *            not <code>null</code>.
+     * @return <code>null</code> iff the alternative id is missing and this object does not follow the
+     *         {@link ErrorManagement#THROW} strategy.
+     * @throws InvalidInputException
+     *             iff unexpected content has been read and this object follows the {@link ErrorManagement#THROW}
+     *             strategy.
+     */
+    Alternative readAlternative(XAlternativeAffectation xAlternativeAffectation) throws InvalidInputException {
+	final String alternativeId = xAlternativeAffectation.getAlternativeID();
+	if (alternativeId == null || alternativeId.isEmpty()) {
+	    error("Expected alternative id at " + xAlternativeAffectation + ".");
+	    return null;
+	}
+	return toAlternative(alternativeId);
+    }
+
+    /**
+     * Retrieves the categories the given fragment assigns its alternative to. If categories are set in this object,
+     * checks that the categories read are included in the categories set.
+     * 
+     * @param xAlternativeAffectation
+     *            not <code>null</code>.
+     * @return <code>null</code> iff unexpected content has been read and this object does not follow the
+     *         {@link ErrorManagement#THROW} strategy.
+     * @throws InvalidInputException
+     *             iff unexpected content has been read and this object follows the {@link ErrorManagement#THROW}
+     *             strategy.
+     */
+    Set<Category> readCategories(XAlternativeAffectation xAlternativeAffectation) throws InvalidInputException {
+	final String uniqueCategoryId = xAlternativeAffectation.getCategoryID();
+	final XCategoriesSet xCategoriesSet = xAlternativeAffectation.getCategoriesSet();
+	final boolean hasCategories = xCategoriesSet != null;
+	final boolean hasCategory = uniqueCategoryId != null && !uniqueCategoryId.isEmpty();
+	if (hasCategory && hasCategories) {
+	    error("Expected exactly one of category or category set, not both, at " + xAlternativeAffectation + ".");
+	    return null;
+	}
+
+	final Set<Category> categories;
+	boolean unknownCategory = false;
+	if (hasCategory) {
+	    final Category category = toCategory(uniqueCategoryId);
+	    if (unknown(category)) {
+		unknownCategory = true;
+		error("Found " + category + " which is not in the set of known categories " + m_categories + ".");
+	    }
+	    categories = Collections.singleton(category);
+	} else if (hasCategories) {
+	    categories = Sets.newLinkedHashSet();
+	    /** <code>true</code> by definition, but we need this to satisfy compiler check. */
+	    assert xCategoriesSet != null;
+	    final List<XCategoriesSet.Element> xElementList = xCategoriesSet.getElementList();
+	    for (XCategoriesSet.Element xElement : xElementList) {
+		final String elementCategoryId = xElement.getCategoryID();
+		if (elementCategoryId == null || elementCategoryId.isEmpty()) {
+		    error("Expected category id at " + xElement + ".");
+		    continue;
+		}
+		final Category category = toCategory(elementCategoryId);
+		if (unknown(category)) {
+		    unknownCategory = true;
+		    error("Found " + category + " which is not in the set of known categories " + m_categories + ".");
+		    break;
+		}
+		categories.add(category);
+	    }
+	} else {
+	    error("Expected category id or category set at " + xAlternativeAffectation + ".");
+	    return null;
+	}
+	if (unknownCategory) {
+	    return null;
+	}
+	return categories;
+    }
+
     private boolean unknown(Category category) {
 	return m_categories != null && !m_categories.contains(category);
     }
@@ -272,7 +344,7 @@ public class XMCDAAssignments extends XMCDAHelperWithVarious {
 		error("Expected alternative id at " + xAlternativeAffectation + ".");
 		continue;
 	    }
-	    final Alternative alternative = new Alternative(alternativeId);
+	    final Alternative alternative = toAlternative(alternativeId);
 	    final String categoryId = xAlternativeAffectation.getCategoryID();
 	    final XCategoriesSet xCategoriesSet = xAlternativeAffectation.getCategoriesSet();
 	    final boolean hasCategoryId = categoryId != null && !categoryId.isEmpty();
@@ -286,9 +358,9 @@ public class XMCDAAssignments extends XMCDAHelperWithVarious {
 		continue;
 	    }
 	    if (hasCategoryId) {
-		final Category category = new Category(categoryId);
+		final Category category = toCategory(categoryId);
 		final List<XValue> xValueList = xAlternativeAffectation.getValueList();
-		final Double value = readDouble(xValueList, xAlternativeAffectation.toString());
+		final Double value = readDouble(xValueList, describe(xAlternativeAffectation));
 		if (value == null) {
 		    continue;
 		}
@@ -303,9 +375,9 @@ public class XMCDAAssignments extends XMCDAHelperWithVarious {
 			error("Expected category id at " + xElement + ".");
 			continue;
 		    }
-		    final Category category = new Category(internalCategoryId);
+		    final Category category = toCategory(internalCategoryId);
 		    final List<XValue> xValues = xElement.getValueList();
-		    final Double value = readDouble(xValues, xElement.toString());
+		    final Double value = readDouble(xValues, describe(xElement));
 		    if (value == null) {
 			continue;
 		    }
@@ -397,20 +469,63 @@ public class XMCDAAssignments extends XMCDAHelperWithVarious {
     public Map<DecisionMaker, IAssignmentsWithCredibilities> readAllWithCredibilities(
 	    Collection<XAlternativesAffectations> xAlternativesAffectationsCollection) throws InvalidInputException {
 	checkNotNull(xAlternativesAffectationsCollection);
+	if (m_parallelism >= 2 && xAlternativesAffectationsCollection.size() >= 2) {
+	    return new ForkJoinConversion<XAlternativesAffectations, IAssignmentsWithCredibilities>() {
+		@Override
+		protected Entry<DecisionMaker, IAssignmentsWithCredibilities> convert(
+			XAlternativesAffectations xAlternativesAffectations, XMCDAErrorsManager errorsManager)
+			throws InvalidInputException {
+		    return newWorker(errorsManager).readDecisionMakerAssignmentsWithCredibilities(
+			    xAlternativesAffectations);
+		}
+	    }.convertAll(xAlternativesAffectationsCollection, m_parallelism, this);
+	}
 	final Map<DecisionMaker, IAssignmentsWithCredibilities> allAssignments = Maps.newLinkedHashMap();
 	for (XAlternativesAffectations xAlternativesAffectations : xAlternativesAffectationsCollection) {
-	    final String dmId = xAlternativesAffectations.getName();
-	    if (dmId == null || dmId.isEmpty()) {
-		error("Expected name at " + xAlternativesAffectations + ".");
-		continue;
+	    final Entry<DecisionMaker, IAssignmentsWithCredibilities> entry = readDecisionMakerAssignmentsWithCredibilities(
+		    xAlternativesAffectations);
+	    if (entry != null) {
+		allAssignments.put(entry.getKey(), entry.getValue());
 	    }
-	    final DecisionMaker dm = new DecisionMaker(dmId);
-	    final IAssignmentsWithCredibilities assignments = readWithCredibilities(xAlternativesAffectations);
-	    allAssignments.put(dm, assignments);
 	}
 	return allAssignments;
     }
 
+    private Entry<DecisionMaker, IAssignmentsWithCredibilities> readDecisionMakerAssignmentsWithCredibilities(
+	    XAlternativesAffectations xAlternativesAffectations) throws InvalidInputException {
+	final String dmId = xAlternativesAffectations.getName();
+	if (dmId == null || dmId.isEmpty()) {
+	    error("Expected name at " + xAlternativesAffectations + ".");
+	    return null;
+	}
+	final DecisionMaker dm = toDecisionMaker(dmId);
+	final IAssignmentsWithCredibilities assignments = readWithCredibilities(xAlternativesAffectations);
+	return Maps.immutableEntry(dm, assignments);
+    }
+
+    /**
+     * Retrieves the number of threads used to convert the fragments of distinct decision makers. The default is one.
+     * 
+     * @return at least one.
+     */
+    public int getParallelism() {
+	return m_parallelism;
+    }
+
+    /**
+     * Sets the number of threads used by {@link #readAll(Collection)} and {@link #readAllWithCredibilities(Collection)}
+     * to convert the fragments of distinct decision makers. With a parallelism of one, the conversion happens in the
+     * calling thread. Otherwise, the results, including the errors reported, are the same as with a sequential
+     * conversion, and the pool of this object, if any, is shared by the threads.
+     * 
+     * @param parallelism
+     *            at least one.
+     */
+    public void setParallelism(int parallelism) {
+	checkArgument(parallelism >= 1);
+	m_parallelism = parallelism;
+    }
+
     /**
      * Retrieves a copy of the categories stored in this object, or <code>null</code> if the categories have not been
      * set yet.
@@ -431,6 +546,10 @@ public class XMCDAAssignments extends XMCDAHelperWithVarious {
 	m_categories = categories == null ? null : ExtentionalTotalOrder.create(categories);
     }
 
+    ExportSettings getExportSettings() {
+	return m_exportSettings;
+    }
+
     public void setAlternativesOrder(Collection<Alternative> alternativesOrder) {
 	m_exportSettings.setAlternativesOrder(alternativesOrder);
     }
@@ -478,6 +597,7 @@ public class XMCDAAssignments extends XMCDAHelperWithVarious {
 	super(errorsManager);
 	m_forceIntervals = false;
 	m_categories = null;
+	m_parallelism = 1;
     }
 
     public boolean forcesIntervals() {
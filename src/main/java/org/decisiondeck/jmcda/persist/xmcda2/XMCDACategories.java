@@ -1,6 +1,7 @@
 package org.decisiondeck.jmcda.persist.xmcda2;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAReadUtils.describe;
 
 import java.util.Iterator;
 import java.util.List;
@@ -99,7 +100,7 @@ public class XMCDACategories extends XMCDAHelperWithVarious {
 		error("Has no id: " + xCategory + ".");
 		continue;
 	    }
-	    final Category category = new Category(id);
+	    final Category category = toCategory(id);
 	    if (!xCategory.isSetRank()) {
 		error("Has no rank: " + xCategory + ".");
 		continue;
@@ -207,9 +208,9 @@ public class XMCDACategories extends XMCDAHelperWithVarious {
 	    error("Expected profile id at " + xCategoryProfile + ".");
 	    return null;
 	}
-	profile = new Alternative(profileId);
+	profile = toAlternative(profileId);
 	final List<XCategoryProfile.Limits> xLimitsList = xCategoryProfile.getLimitsList();
-	final Limits xLimits = getUnique(xLimitsList, xCategoryProfile.toString());
+	final Limits xLimits = getUnique(xLimitsList, describe(xCategoryProfile));
 	if (xLimits == null) {
 	    return null;
 	}
@@ -220,14 +221,14 @@ public class XMCDACategories extends XMCDAHelperWithVarious {
 	    error("Expected lower category id at " + xCategoryProfile + ".");
 	    return null;
 	}
-	final Category lower = new Category(lowerId);
+	final Category lower = toCategory(lowerId);
 
 	final String upperId = xUpper.getCategoryID();
 	if (upperId == null || upperId.isEmpty()) {
 	    error("Expected upper category id at " + xCategoryProfile + ".");
 	    return null;
 	}
-	final Category upper = new Category(upperId);
+	final Category upper = toCategory(upperId);
 
 	if (downCategories.containsKey(profile)) {
 	    error("Duplicate " + profile + " at " + xCategoryProfile + ".");
@@ -1,11 +1,14 @@
 package org.decisiondeck.jmcda.persist.xmcda2;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAReadUtils.describe;
 
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import org.decision_deck.jmcda.structure.Criterion;
@@ -184,6 +187,7 @@ public class XMCDACriteria extends XMCDAHelperWithVarious {
     public static final String VETO_CONCEPT_STRING = "veto";
     public static final String WEIGHTS_CONCEPT_STRING = "Importance";
     private boolean m_markActive;
+    private int m_parallelism;
     private static final String MAJORITY_THRESHOLD_CONCEPT_STRING = "majority threshold";
 
     /**
@@ -317,13 +321,7 @@ public class XMCDACriteria extends XMCDAHelperWithVarious {
      * @see #getVetoThresholds()
      */
     public Set<Criterion> read(XCriteria xCriteria) throws InvalidInputException {
-	m_continuousScales.clear();
-	m_preferenceThresholds.clear();
-	m_indifferenceThresholds.clear();
-	m_vetoThresholds.clear();
-	m_names.clear();
-	m_criteria.clear();
-	m_inactiveCriteria.clear();
+	clear();
 
 	for (final XCriterion xCriterion : xCriteria.getCriterionList()) {
 	    readInternal(xCriterion);
@@ -361,13 +359,7 @@ public class XMCDACriteria extends XMCDAHelperWithVarious {
      * @see #getVetoThresholds()
      */
     public Set<Criterion> readAll(Collection<XCriteria> xAllCriteria) throws InvalidInputException {
-	m_continuousScales.clear();
-	m_preferenceThresholds.clear();
-	m_indifferenceThresholds.clear();
-	m_vetoThresholds.clear();
-	m_names.clear();
-	m_criteria.clear();
-	m_inactiveCriteria.clear();
+	clear();
 
 	for (XCriteria xCriteria : xAllCriteria) {
 	    for (final XCriterion xCriterion : xCriteria.getCriterionList()) {
@@ -377,6 +369,20 @@ public class XMCDACriteria extends XMCDAHelperWithVarious {
 	return Sets.newLinkedHashSet(m_criteria);
     }
 
+    /**
+     * Deletes the informations kept in this object about the criteria read: the criteria, inactive criteria, names,
+     * scales and thresholds.
+     */
+    void clear() {
+	m_continuousScales.clear();
+	m_preferenceThresholds.clear();
+	m_indifferenceThresholds.clear();
+	m_vetoThresholds.clear();
+	m_names.clear();
+	m_criteria.clear();
+	m_inactiveCriteria.clear();
+    }
+
     /**
      * <p>
      * Retrieves a criterion corresponding to the given XMCDA fragment, or <code>null</code> if it is marked as
@@ -409,13 +415,13 @@ public class XMCDACriteria extends XMCDAHelperWithVarious {
      * @see #getIndifferenceThresholds()
      * @see #getVetoThresholds()
      */
-    private Criterion readInternal(XCriterion xCriterion) throws InvalidInputException {
+    Criterion readInternal(XCriterion xCriterion) throws InvalidInputException {
 	final String id = xCriterion.getId();
 	if (id == null || id.isEmpty()) {
 	    error("Found a criterion with no id.");
 	    return null;
 	}
-	final Criterion criterion = new Criterion(id);
+	final Criterion criterion = toCriterion(id);
 	if (m_criteria.contains(criterion)) {
 	    error("Duplicate id: " + criterion + ".");
 	    return null;
@@ -537,7 +543,7 @@ public class XMCDACriteria extends XMCDAHelperWithVarious {
 		continue;
 	    }
 	    final String id = xCriterionValue.getCriterionID();
-	    final Criterion criterion = new Criterion(id);
+	    final Criterion criterion = toCriterion(id);
 	    final List<XValue> xValueList = xCriterionValue.getValueList();
 	    for (final XValue xValue : xValueList) {
 		final Double real = readDouble(xValue);
@@ -613,7 +619,7 @@ public class XMCDACriteria extends XMCDAHelperWithVarious {
 	final List<XCriteriaSet.Element> xmlElements = xCriteriaSet.getElementList();
 	for (XCriteriaSet.Element element : xmlElements) {
 	    final String id = element.getCriterionID();
-	    final Criterion criterion = new Criterion(id);
+	    final Criterion criterion = toCriterion(id);
 	    final List<XValue> xValueList = element.getValueList();
 	    for (XValue xValue : xValueList) {
 		final Double value = readDouble(xValue);
@@ -651,20 +657,72 @@ public class XMCDACriteria extends XMCDAHelperWithVarious {
     public Map<DecisionMaker, Coalitions> readAllCoalitions(Collection<XCriteriaSet> xAllCriteriaSet)
 	    throws InvalidInputException {
 	checkNotNull(xAllCriteriaSet);
+	if (m_parallelism >= 2 && xAllCriteriaSet.size() >= 2) {
+	    return new ForkJoinConversion<XCriteriaSet, Coalitions>() {
+		@Override
+		protected Entry<DecisionMaker, Coalitions> convert(XCriteriaSet xCoalitions,
+			XMCDAErrorsManager errorsManager) throws InvalidInputException {
+		    return newWorker(errorsManager).readDecisionMakerCoalitions(xCoalitions);
+		}
+	    }.convertAll(xAllCriteriaSet, m_parallelism, this);
+	}
 	final Map<DecisionMaker, Coalitions> allCoalitions = Maps.newLinkedHashMap();
 	for (XCriteriaSet xCoalitions : xAllCriteriaSet) {
-	    final String dmId = xCoalitions.getName();
-	    if (dmId == null || dmId.isEmpty()) {
-		error("No id found for coalitions " + xCoalitions + ".");
-		continue;
+	    final Entry<DecisionMaker, Coalitions> entry = readDecisionMakerCoalitions(xCoalitions);
+	    if (entry != null) {
+		allCoalitions.put(entry.getKey(), entry.getValue());
 	    }
-	    final DecisionMaker dm = new DecisionMaker(dmId);
-	    final Coalitions coalitions = readCoalitions(xCoalitions);
-	    allCoalitions.put(dm, coalitions);
 	}
 	return allCoalitions;
     }
 
+    /**
+     * Creates an object with the same settings as this one, including its pool, which delegates error management to
+     * the given error manager. The criteria informations stored in this object are not copied: they are the results of
+     * reads, or data to write, not settings.
+     */
+    private XMCDACriteria newWorker(XMCDAErrorsManager errorsManager) {
+	final XMCDACriteria worker = new XMCDACriteria(errorsManager);
+	worker.m_markActive = m_markActive;
+	worker.setPool(getPool());
+	return worker;
+    }
+
+    private Entry<DecisionMaker, Coalitions> readDecisionMakerCoalitions(XCriteriaSet xCoalitions)
+	    throws InvalidInputException {
+	final String dmId = xCoalitions.getName();
+	if (dmId == null || dmId.isEmpty()) {
+	    error("No id found for coalitions " + xCoalitions + ".");
+	    return null;
+	}
+	final DecisionMaker dm = toDecisionMaker(dmId);
+	final Coalitions coalitions = readCoalitions(xCoalitions);
+	return Maps.immutableEntry(dm, coalitions);
+    }
+
+    /**
+     * Retrieves the number of threads used to convert the fragments of distinct decision makers. The default is one.
+     * 
+     * @return at least one.
+     */
+    public int getParallelism() {
+	return m_parallelism;
+    }
+
+    /**
+     * Sets the number of threads used by {@link #readAllCoalitions(Collection)} to convert the fragments of distinct
+     * decision makers. With a parallelism of one, the conversion happens in the calling thread. Otherwise, the results,
+     * including the errors reported, are the same as with a sequential conversion, and the pool of this object, if
+     * any, is shared by the threads.
+     * 
+     * @param parallelism
+     *            at least one.
+     */
+    public void setParallelism(int parallelism) {
+	checkArgument(parallelism >= 1);
+	m_parallelism = parallelism;
+    }
+
     /**
      * <p>
      * Tests whether the given XMCDA fragment possibly contains coalitions informations per decision maker.
@@ -716,7 +774,7 @@ public class XMCDACriteria extends XMCDAHelperWithVarious {
 	}
 
 	final List<XValue> xmlValueList = xCriteriaSet.getValueList();
-	final Double value = readDouble(xmlValueList, xCriteriaSet.toString());
+	final Double value = readDouble(xmlValueList, describe(xCriteriaSet));
 	if (value != null) {
 	    coalitions.setMajorityThreshold(value.doubleValue());
 	}
@@ -863,6 +921,7 @@ public class XMCDACriteria extends XMCDAHelperWithVarious {
     public XMCDACriteria(XMCDAErrorsManager errorsManager) {
 	super(errorsManager);
 	m_markActive = false;
+	m_parallelism = 1;
     }
 
 }
@@ -71,7 +71,7 @@ public class XMCDADecisionMakers extends XMCDAHelperWithVarious {
 	    if (dmId == null) {
 		continue;
 	    }
-	    dms.add(new DecisionMaker(dmId));
+	    dms.add(toDecisionMaker(dmId));
 	}
 	return dms;
     }
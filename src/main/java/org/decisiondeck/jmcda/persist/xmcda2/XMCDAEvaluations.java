@@ -7,6 +7,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import org.decision_deck.jmcda.structure.Alternative;
@@ -15,7 +16,6 @@ import org.decision_deck.jmcda.structure.DecisionMaker;
 import org.decision_deck.jmcda.structure.matrix.Evaluations;
 import org.decision_deck.jmcda.structure.matrix.EvaluationsRead;
 import org.decision_deck.jmcda.structure.matrix.EvaluationsUtils;
-import org.decision_deck.utils.matrix.Matrixes;
 import org.decisiondeck.jmcda.exc.InvalidInputException;
 import org.decisiondeck.jmcda.persist.utils.ExportSettings;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XAlternativeOnCriteriaPerformances;
@@ -27,6 +27,7 @@ import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager.ErrorManagement;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAHelperWithVarious;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -45,6 +46,8 @@ public class XMCDAEvaluations extends XMCDAHelperWithVarious {
 
 	private final ExportSettings m_exportSettings = new ExportSettings();
 
+	private int m_parallelism;
+
 	/**
 	 * Creates a new object which will use the default error management strategy
 	 * {@link ErrorManagement#THROW}.
@@ -53,6 +56,7 @@ public class XMCDAEvaluations extends XMCDAHelperWithVarious {
 		super();
 		m_conceptToWrite = null;
 		m_conceptToRead = null;
+		m_parallelism = 1;
 	}
 
 	/**
@@ -66,6 +70,7 @@ public class XMCDAEvaluations extends XMCDAHelperWithVarious {
 		super(errorsManager);
 		m_conceptToWrite = null;
 		m_conceptToRead = null;
+		m_parallelism = 1;
 	}
 
 	public X2Concept getConceptToWrite() {
@@ -126,21 +131,60 @@ public class XMCDAEvaluations extends XMCDAHelperWithVarious {
 	 */
 	public Evaluations read(Collection<XPerformanceTable> xPerformanceTables) throws InvalidInputException {
 		checkNotNull(xPerformanceTables);
-		Evaluations allEvaluations = EvaluationsUtils.newEvaluationMatrix();
+		final EvaluationsMergeBuilder builder = new EvaluationsMergeBuilder();
 		for (XPerformanceTable xPerformanceTable : xPerformanceTables) {
 			final String concept = xPerformanceTable.getMcdaConcept();
 			if (readable(concept)) {
-				final Evaluations evaluations = read(xPerformanceTable);
-				final Set<Alternative> duplicates = Matrixes.getDiscordingRows(allEvaluations, evaluations);
-				if (!duplicates.isEmpty()) {
-					error("Found distinct duplicated alternatives: " + duplicates
-							+ ", ignoring all enclosing evaluations.");
-					continue;
-				}
-				allEvaluations = EvaluationsUtils.merge(allEvaluations, evaluations);
+				final Evaluations evaluations = builder.beginTable();
+				readTable(xPerformanceTable, evaluations);
+				ignoreIfConflicting(builder.endTable());
 			}
 		}
-		return allEvaluations;
+		return builder.build();
+	}
+
+	/**
+	 * Signals an error if the evaluations read from a performance table have
+	 * been ignored because they conflict with the evaluations read so far.
+	 *
+	 * @param duplicates
+	 *            not <code>null</code>, the alternatives whose evaluations
+	 *            conflict, empty if the table has not been ignored.
+	 * @throws InvalidInputException
+	 *             iff the evaluations conflict and this object follows the
+	 *             {@link ErrorManagement#THROW} strategy.
+	 */
+	void ignoreIfConflicting(Set<Alternative> duplicates) throws InvalidInputException {
+		if (!duplicates.isEmpty()) {
+			error("Found distinct duplicated alternatives: " + duplicates + ", ignoring all enclosing evaluations.");
+		}
+	}
+
+	/**
+	 * Tests whether the given evaluations already contain an evaluation for the
+	 * given alternative and criterion, and signals an error in that case.
+	 *
+	 * @param evaluations
+	 *            not <code>null</code>.
+	 * @param alternative
+	 *            not <code>null</code>.
+	 * @param criterion
+	 *            not <code>null</code>.
+	 * @param context
+	 *            describes where the evaluation is read, used only in the
+	 *            error message.
+	 * @return <code>true</code> iff an evaluation is already present.
+	 * @throws InvalidInputException
+	 *             iff an evaluation is already present and this object follows
+	 *             the {@link ErrorManagement#THROW} strategy.
+	 */
+	boolean isDuplicate(EvaluationsRead evaluations, Alternative alternative, Criterion criterion, Object context)
+			throws InvalidInputException {
+		if (evaluations.getEntry(alternative, criterion) == null) {
+			return false;
+		}
+		error("Duplicate evaluation for " + alternative + ", " + criterion + " at " + context + ".");
+		return true;
 	}
 
 	/**
@@ -164,36 +208,153 @@ public class XMCDAEvaluations extends XMCDAHelperWithVarious {
 	public Evaluations read(XPerformanceTable xPerformanceTable) throws InvalidInputException {
 		checkNotNull(xPerformanceTable);
 		final Evaluations evaluations = EvaluationsUtils.newEvaluationMatrix();
+		readTable(xPerformanceTable, evaluations);
+		return evaluations;
+	}
+
+	private void readTable(XPerformanceTable xPerformanceTable, Evaluations evaluations)
+			throws InvalidInputException {
 		final List<XAlternativeOnCriteriaPerformances> xAlternativePerformancesList = xPerformanceTable
 				.getAlternativePerformancesList();
 		for (final XAlternativeOnCriteriaPerformances xAlternativePerformances : xAlternativePerformancesList) {
 			if (!xAlternativePerformances.isSetAlternativeID()) {
+				error("Expected alternative id in " + xAlternativePerformances + ".");
 				continue;
 			}
 			final String alternativeId = xAlternativePerformances.getAlternativeID();
-			final Alternative alternative = new Alternative(alternativeId);
-			final List<XAlternativeOnCriteriaPerformances.Performance> xPerformanceList = xAlternativePerformances
-					.getPerformanceList();
-			for (final XAlternativeOnCriteriaPerformances.Performance xAlternativePerformance : xPerformanceList) {
-				if (!xAlternativePerformance.isSetCriterionID() || !xAlternativePerformance.isSetValue()) {
+			final Alternative alternative = toAlternative(alternativeId);
+			readRow(alternative, xAlternativePerformances, evaluations);
+		}
+	}
+
+	/**
+	 * Reads the evaluations of the given alternative contained into the given
+	 * XMCDA fragment and adds them to the given evaluations. Evaluations
+	 * already existing in the given evaluations are considered as duplicates.
+	 *
+	 * @param alternative
+	 *            not <code>null</code>.
+	 * @param xAlternativePerformances
+	 *            not <code>null</code>.
+	 * @param evaluations
+	 *            not <code>null</code>, where to put the evaluations read.
+	 * @throws InvalidInputException
+	 *             iff unexpected content has been read and this object follows
+	 *             the {@link ErrorManagement#THROW} strategy.
+	 */
+	void readRow(Alternative alternative, XAlternativeOnCriteriaPerformances xAlternativePerformances,
+			Evaluations evaluations) throws InvalidInputException {
+		final List<XAlternativeOnCriteriaPerformances.Performance> xPerformanceList = xAlternativePerformances
+				.getPerformanceList();
+		for (final XAlternativeOnCriteriaPerformances.Performance xAlternativePerformance : xPerformanceList) {
+			if (!xAlternativePerformance.isSetCriterionID() || !xAlternativePerformance.isSetValue()) {
+				error("Expected criterion id and value in " + xAlternativePerformance + ".");
+				continue;
+			}
+			final String criterionId = xAlternativePerformance.getCriterionID();
+			final Criterion criterion = toCriterion(criterionId);
+			if (isDuplicate(evaluations, alternative, criterion, xAlternativePerformance)) {
+				continue;
+			}
+			final XValue xValue = xAlternativePerformance.getValue();
+			final Double evaluation = readDouble(xValue);
+			if (evaluation == null) {
+				continue;
+			}
+			evaluations.put(alternative, criterion, evaluation.doubleValue());
+		}
+	}
+
+	/**
+	 * <p>
+	 * Retrieves all the evaluations contained into the given XMCDA fragments,
+	 * as a dense matrix indexed by alternative and criterion. The evaluations
+	 * read, and the errors reported, are the same as with
+	 * {@link #read(Collection)}, but the values are stored in a primitive array
+	 * instead of a map, which is appropriate when most alternatives are
+	 * evaluated on most criteria. The returned matrix is not equal to the one
+	 * {@link #read(Collection)} returns, compare them with
+	 * {@link DenseEvaluations#approxEquals}.
+	 * </p>
+	 * <p>
+	 * In case of unexpected data, an exception is thrown if this object follows
+	 * the {@link ErrorManagement#THROW} strategy, otherwise, non conforming
+	 * informations will be skipped.
+	 * </p>
+	 *
+	 * @param xPerformanceTables
+	 *            not <code>null</code>.
+	 * @return not <code>null</code>.
+	 * @throws InvalidInputException
+	 *             iff unexpected content has been read and this object follows
+	 *             the {@link ErrorManagement#THROW} strategy.
+	 * @see #setConceptToRead
+	 */
+	public DenseEvaluations readDense(Collection<XPerformanceTable> xPerformanceTables) throws InvalidInputException {
+		checkNotNull(xPerformanceTables);
+		/** A first pass indexes the alternatives and criteria, so that the matrix is allocated once. */
+		final Set<Alternative> alternatives = Sets.newLinkedHashSet();
+		final Set<Criterion> criteria = Sets.newLinkedHashSet();
+		for (XPerformanceTable xPerformanceTable : xPerformanceTables) {
+			if (!readable(xPerformanceTable.getMcdaConcept())) {
+				continue;
+			}
+			for (XAlternativeOnCriteriaPerformances xAlternativePerformances : xPerformanceTable
+					.getAlternativePerformancesList()) {
+				if (!xAlternativePerformances.isSetAlternativeID()) {
 					continue;
 				}
-				final String criterionId = xAlternativePerformance.getCriterionID();
-				final Criterion criterion = new Criterion(criterionId);
-				if (evaluations.getEntry(alternative, criterion) != null) {
-					error("Duplicate evaluation for " + alternative + ", " + criterion + " at "
-							+ xAlternativePerformance + ".");
-					continue;
+				alternatives.add(toAlternative(xAlternativePerformances.getAlternativeID()));
+				for (XAlternativeOnCriteriaPerformances.Performance xPerformance : xAlternativePerformances
+						.getPerformanceList()) {
+					if (xPerformance.isSetCriterionID() && xPerformance.isSetValue()) {
+						criteria.add(toCriterion(xPerformance.getCriterionID()));
+					}
 				}
-				final XValue xValue = xAlternativePerformance.getValue();
-				final Double evaluation = readDouble(xValue);
-				if (evaluation == null) {
+			}
+		}
+
+		final DenseEvaluations.Builder builder = new DenseEvaluations.Builder(
+				ImmutableList.copyOf(alternatives), ImmutableList.copyOf(criteria));
+		for (XPerformanceTable xPerformanceTable : xPerformanceTables) {
+			if (!readable(xPerformanceTable.getMcdaConcept())) {
+				continue;
+			}
+			builder.beginTable();
+			for (XAlternativeOnCriteriaPerformances xAlternativePerformances : xPerformanceTable
+					.getAlternativePerformancesList()) {
+				if (!xAlternativePerformances.isSetAlternativeID()) {
+					error("Expected alternative id in " + xAlternativePerformances + ".");
 					continue;
 				}
-				evaluations.put(alternative, criterion, evaluation.doubleValue());
+				final Alternative alternative = toAlternative(xAlternativePerformances.getAlternativeID());
+				readRow(alternative, xAlternativePerformances, builder);
 			}
+			ignoreIfConflicting(builder.endTable());
+		}
+		return builder.build();
+	}
+
+	private void readRow(Alternative alternative, XAlternativeOnCriteriaPerformances xAlternativePerformances,
+			DenseEvaluations.Builder builder) throws InvalidInputException {
+		for (final XAlternativeOnCriteriaPerformances.Performance xAlternativePerformance : xAlternativePerformances
+				.getPerformanceList()) {
+			if (!xAlternativePerformance.isSetCriterionID() || !xAlternativePerformance.isSetValue()) {
+				error("Expected criterion id and value in " + xAlternativePerformance + ".");
+				continue;
+			}
+			final Criterion criterion = toCriterion(xAlternativePerformance.getCriterionID());
+			if (builder.contains(alternative, criterion)) {
+				error("Duplicate evaluation for " + alternative + ", " + criterion + " at " + xAlternativePerformance
+						+ ".");
+				continue;
+			}
+			final Double evaluation = readDouble(xAlternativePerformance.getValue());
+			if (evaluation == null) {
+				continue;
+			}
+			builder.put(alternative, criterion, evaluation.doubleValue());
 		}
-		return evaluations;
 	}
 
 	/**
@@ -220,23 +381,84 @@ public class XMCDAEvaluations extends XMCDAHelperWithVarious {
 	 */
 	public Map<DecisionMaker, Evaluations> readPerDecisionMaker(Collection<XPerformanceTable> xPerformanceTables)
 			throws InvalidInputException {
+		checkNotNull(xPerformanceTables);
+		if (m_parallelism >= 2 && xPerformanceTables.size() >= 2) {
+			return new ForkJoinConversion<XPerformanceTable, Evaluations>() {
+				@Override
+				protected Entry<DecisionMaker, Evaluations> convert(XPerformanceTable xPerformanceTable,
+						XMCDAErrorsManager errorsManager) throws InvalidInputException {
+					return newWorker(errorsManager).readDecisionMakerEvaluations(xPerformanceTable);
+				}
+			}.convertAll(xPerformanceTables, m_parallelism, this);
+		}
 		final Map<DecisionMaker, Evaluations> allEvaluations = Maps.newLinkedHashMap();
 		for (XPerformanceTable xPerformanceTable : xPerformanceTables) {
-			final String concept = xPerformanceTable.getMcdaConcept();
-			if (!readable(concept)) {
-				continue;
-			}
-			final String name = xPerformanceTable.getName();
-			if (name == null || name.isEmpty()) {
-				error("Expected decision maker name at " + xPerformanceTable + ".");
-				continue;
+			final Entry<DecisionMaker, Evaluations> entry = readDecisionMakerEvaluations(xPerformanceTable);
+			if (entry != null) {
+				allEvaluations.put(entry.getKey(), entry.getValue());
 			}
-			final Evaluations evaluations = read(xPerformanceTable);
-			allEvaluations.put(new DecisionMaker(name), evaluations);
 		}
 		return allEvaluations;
 	}
 
+	/**
+	 * Creates an object with the same settings as this one, including its
+	 * pool, which delegates error management to the given error manager. The
+	 * export settings are not copied as they only matter when writing.
+	 */
+	private XMCDAEvaluations newWorker(XMCDAErrorsManager errorsManager) {
+		final XMCDAEvaluations worker = new XMCDAEvaluations(errorsManager);
+		worker.m_conceptToRead = m_conceptToRead;
+		worker.m_conceptToWrite = m_conceptToWrite;
+		worker.setPool(getPool());
+		return worker;
+	}
+
+	private Entry<DecisionMaker, Evaluations> readDecisionMakerEvaluations(XPerformanceTable xPerformanceTable)
+			throws InvalidInputException {
+		final String concept = xPerformanceTable.getMcdaConcept();
+		if (!readable(concept)) {
+			return null;
+		}
+		final String name = xPerformanceTable.getName();
+		if (name == null || name.isEmpty()) {
+			error("Expected decision maker name at " + xPerformanceTable + ".");
+			return null;
+		}
+		final Evaluations evaluations = read(xPerformanceTable);
+		return Maps.immutableEntry(toDecisionMaker(name), evaluations);
+	}
+
+	/**
+	 * Retrieves the number of threads used to convert the fragments of
+	 * distinct decision makers. The default is one.
+	 *
+	 * @return at least one.
+	 */
+	public int getParallelism() {
+		return m_parallelism;
+	}
+
+	/**
+	 * Sets the number of threads used by
+	 * {@link #readPerDecisionMaker(Collection)} to convert the fragments of
+	 * distinct decision makers. With a parallelism of one, the conversion
+	 * happens in the calling thread. Otherwise, the results, including the
+	 * errors reported, are the same as with a sequential conversion, and the
+	 * pool of this object, if any, is shared by the threads.
+	 *
+	 * @param parallelism
+	 *            at least one.
+	 */
+	public void setParallelism(int parallelism) {
+		checkArgument(parallelism >= 1);
+		m_parallelism = parallelism;
+	}
+
+	ExportSettings getExportSettings() {
+		return m_exportSettings;
+	}
+
 	public void setAlternativesOrder(Collection<Alternative> alternativesOrder) {
 		m_exportSettings.setAlternativesOrder(alternativesOrder);
 	}
@@ -334,7 +556,7 @@ public class XMCDAEvaluations extends XMCDAHelperWithVarious {
 		}
 	}
 
-	private boolean readable(String concept) {
+	boolean readable(String concept) {
 		if (m_conceptToRead == null) {
 			return true;
 		}
@@ -0,0 +1,309 @@
+package org.decisiondeck.jmcda.persist.xmcda2;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.decisiondeck.jmcda.persist.xmcda2.XMCDAStreamReader.nextChild;
+import static org.decisiondeck.jmcda.persist.xmcda2.XMCDAStreamReader.openDocument;
+import static org.decisiondeck.jmcda.persist.xmcda2.XMCDAStreamReader.skipElement;
+import static org.decisiondeck.jmcda.persist.xmcda2.XMCDAStreamReader.translate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.xmlbeans.XmlException;
+import org.decision_deck.jmcda.structure.Alternative;
+import org.decision_deck.jmcda.structure.Criterion;
+import org.decision_deck.jmcda.structure.matrix.Evaluations;
+import org.decisiondeck.jmcda.exc.InvalidInputException;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDACompression;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager.ErrorManagement;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAObjectPool;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteSource;
+
+/**
+ * <p>
+ * Reads the evaluations (called performance tables in XMCDA terms) contained in
+ * an XMCDA document without building an XMLBeans (or any other) tree of the
+ * document: the document is read in a streaming way and the evaluations are
+ * stored as they are read. The memory used is thus bounded by the size of the
+ * resulting evaluations rather than by the size of the document.
+ * </p>
+ * <p>
+ * The evaluations read are the same as those read by
+ * {@link XMCDAEvaluations#read(java.util.Collection)} on the performance tables
+ * of the document, and the same incomplete or invalid entries are reported as
+ * errors. The concept to read, duplicate detection and error management
+ * strategy are those of the {@link XMCDAEvaluations} object given at
+ * construction. Elements are recognized by their local names, thus any
+ * XMCDA 2 version can be read. The document is not validated.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class XMCDAEvaluationsStreamReader {
+
+	/**
+	 * The lexical space of <code>xs:float</code>, except the special values
+	 * <code>INF</code>, <code>-INF</code> and <code>NaN</code>. This is narrower
+	 * than what {@link Float#parseFloat(String)} accepts, which includes for
+	 * example <code>1f</code>, <code>Infinity</code> or hexadecimal forms.
+	 */
+	private static final Pattern FLOAT_PATTERN = Pattern
+			.compile("[+-]?([0-9]+(\\.[0-9]*)?|\\.[0-9]+)([eE][+-]?[0-9]+)?");
+
+	/**
+	 * A performance read, whose alternative is possibly not known yet.
+	 */
+	private static class PendingPerformance {
+		public String m_criterionId;
+		public String m_integer;
+		public int m_line;
+		public String m_real;
+		public boolean m_valueSet;
+
+		public boolean isNumeric() {
+			return m_real != null || m_integer != null;
+		}
+
+		@Override
+		public String toString() {
+			return "performance at line " + m_line;
+		}
+	}
+
+	private final XMCDAEvaluations m_evaluations;
+
+	/**
+	 * Creates a new object which will read all the performance tables and use
+	 * the default error management strategy {@link ErrorManagement#THROW}.
+	 */
+	public XMCDAEvaluationsStreamReader() {
+		this(new XMCDAEvaluations());
+	}
+
+	/**
+	 * Creates a new object which will use the concept to read and the error
+	 * management of the given object. Changes to the settings of the given
+	 * object are reflected in this object.
+	 *
+	 * @param evaluations
+	 *            not <code>null</code>.
+	 */
+	public XMCDAEvaluationsStreamReader(XMCDAEvaluations evaluations) {
+		m_evaluations = checkNotNull(evaluations);
+	}
+
+	/**
+	 * <p>
+	 * Retrieves all the evaluations contained into the given XMCDA document.
+	 * See {@link #read(InputStream)}.
+	 * </p>
+	 *
+	 * @param source
+	 *            not <code>null</code>.
+	 * @return not <code>null</code>.
+	 * @throws IOException
+	 *             if an exception happens while opening or reading the source.
+	 * @throws XmlException
+	 *             if the source is not well-formed XML or if its root is not
+	 *             an XMCDA element.
+	 * @throws InvalidInputException
+	 *             iff unexpected content has been read and this object follows
+	 *             the {@link ErrorManagement#THROW} strategy.
+	 */
+	public Evaluations read(ByteSource source) throws IOException, XmlException, InvalidInputException {
+		checkNotNull(source);
+		try (InputStream input = XMCDACompression.decompress(source.openStream())) {
+			return read(input);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Retrieves all the evaluations contained into the given XMCDA document. If
+	 * the concept to read is set to a non <code>null</code> value, reads only
+	 * the performance tables that are marked appropriately.
+	 * </p>
+	 * <p>
+	 * In case of unexpected data, an exception is thrown if this object follows
+	 * the {@link ErrorManagement#THROW} strategy, otherwise, non conforming
+	 * informations will be skipped.
+	 * </p>
+	 *
+	 * @param input
+	 *            not <code>null</code>, not closed by this method.
+	 * @return not <code>null</code>.
+	 * @throws IOException
+	 *             if an exception happens while reading the input.
+	 * @throws XmlException
+	 *             if the input is not well-formed XML or if its root is not an
+	 *             XMCDA element.
+	 * @throws InvalidInputException
+	 *             iff unexpected content has been read and this object follows
+	 *             the {@link ErrorManagement#THROW} strategy.
+	 */
+	public Evaluations read(InputStream input) throws IOException, XmlException, InvalidInputException {
+		checkNotNull(input);
+		try {
+			final XMLStreamReader reader = openDocument(input);
+			try {
+				return readDocument(reader);
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException exc) {
+			throw translate(exc);
+		}
+	}
+
+	private Evaluations readDocument(XMLStreamReader reader) throws XMLStreamException, InvalidInputException {
+		final EvaluationsMergeBuilder builder = new EvaluationsMergeBuilder();
+		/** Each id yields a single object, however many rows or tables it appears in. */
+		final XMCDAObjectPool pool = new XMCDAObjectPool();
+		while (nextChild(reader)) {
+			if (reader.getLocalName().equals("performanceTable")
+					&& m_evaluations.readable(reader.getAttributeValue(null, "mcdaConcept"))) {
+				readPerformanceTable(reader, pool, builder.beginTable());
+				m_evaluations.ignoreIfConflicting(builder.endTable());
+			} else {
+				skipElement(reader);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Reads a performance table, from its start tag to its end tag, into the
+	 * given evaluations.
+	 */
+	private void readPerformanceTable(XMLStreamReader reader, XMCDAObjectPool pool, Evaluations evaluations)
+			throws XMLStreamException, InvalidInputException {
+		final List<PendingPerformance> performances = Lists.newArrayList();
+		while (nextChild(reader)) {
+			if (!reader.getLocalName().equals("alternativePerformances")) {
+				skipElement(reader);
+				continue;
+			}
+			/**
+			 * The alternative id is expected first but we do not rely on it as
+			 * the document is not validated: the performances of one row are
+			 * kept until the row ends.
+			 */
+			final int line = reader.getLocation().getLineNumber();
+			String alternativeId = null;
+			performances.clear();
+			while (nextChild(reader)) {
+				final String name = reader.getLocalName();
+				if (name.equals("alternativeID") && alternativeId == null) {
+					alternativeId = reader.getElementText();
+				} else if (name.equals("performance")) {
+					performances.add(readPerformance(reader));
+				} else {
+					skipElement(reader);
+				}
+			}
+			if (alternativeId == null) {
+				m_evaluations.error("Expected alternative id in alternative performances at line " + line + ".");
+				continue;
+			}
+			final Alternative alternative = pool.getAlternative(alternativeId);
+			for (PendingPerformance performance : performances) {
+				if (performance.m_criterionId == null || !performance.m_valueSet) {
+					m_evaluations.error("Expected criterion id and value in " + performance + ".");
+					continue;
+				}
+				final Criterion criterion = pool.getCriterion(performance.m_criterionId);
+				if (m_evaluations.isDuplicate(evaluations, alternative, criterion, performance)) {
+					continue;
+				}
+				final Double evaluation = readDouble(performance);
+				if (evaluation == null) {
+					continue;
+				}
+				evaluations.put(alternative, criterion, evaluation.doubleValue());
+			}
+		}
+	}
+
+	private PendingPerformance readPerformance(XMLStreamReader reader) throws XMLStreamException {
+		final PendingPerformance performance = new PendingPerformance();
+		performance.m_line = reader.getLocation().getLineNumber();
+		while (nextChild(reader)) {
+			final String name = reader.getLocalName();
+			if (name.equals("criterionID") && performance.m_criterionId == null) {
+				performance.m_criterionId = reader.getElementText();
+			} else if (name.equals("value") && !performance.m_valueSet) {
+				performance.m_valueSet = true;
+				while (nextChild(reader)) {
+					final String valueName = reader.getLocalName();
+					if (valueName.equals("real") && performance.m_real == null) {
+						performance.m_real = reader.getElementText();
+					} else if (valueName.equals("integer") && performance.m_integer == null) {
+						performance.m_integer = reader.getElementText();
+					} else {
+						skipElement(reader);
+					}
+				}
+			} else {
+				skipElement(reader);
+			}
+		}
+		return performance;
+	}
+
+	/**
+	 * Converts the given value the way XMLBeans does: a real is read as a
+	 * float, an integer as an int.
+	 */
+	private Double readDouble(PendingPerformance performance) throws InvalidInputException {
+		if (!performance.isNumeric()) {
+			m_evaluations.error("Expected numeric value instead of non numeric value in " + performance + ".");
+			return null;
+		}
+		final double value;
+		try {
+			if (performance.m_real != null) {
+				value = parseFloat(performance.m_real.trim());
+			} else {
+				value = Integer.parseInt(performance.m_integer.trim());
+			}
+		} catch (NumberFormatException exc) {
+			m_evaluations.error("Expected numeric value instead of "
+					+ (performance.m_real != null ? performance.m_real : performance.m_integer) + " in "
+					+ performance + ".");
+			return null;
+		}
+		return Double.valueOf(value);
+	}
+
+	/**
+	 * Parses the given text as an <code>xs:float</code>.
+	 *
+	 * @throws NumberFormatException
+	 *             if the text is not in the lexical space of
+	 *             <code>xs:float</code>.
+	 */
+	static private float parseFloat(String text) {
+		/** XML Schema special values, spelled differently for Float#parseFloat. */
+		if (text.equals("INF")) {
+			return Float.POSITIVE_INFINITY;
+		}
+		if (text.equals("-INF")) {
+			return Float.NEGATIVE_INFINITY;
+		}
+		if (text.equals("NaN")) {
+			return Float.NaN;
+		}
+		if (!FLOAT_PATTERN.matcher(text).matches()) {
+			throw new NumberFormatException("Not an xs:float: " + text + ".");
+		}
+		return Float.parseFloat(text);
+	}
+}
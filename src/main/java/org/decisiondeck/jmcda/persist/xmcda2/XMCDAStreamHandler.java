@@ -0,0 +1,91 @@
+package org.decisiondeck.jmcda.persist.xmcda2;
+
+import java.util.Set;
+
+import org.decision_deck.jmcda.structure.Alternative;
+import org.decision_deck.jmcda.structure.Criterion;
+import org.decision_deck.jmcda.structure.matrix.EvaluationsRead;
+import org.decision_deck.jmcda.structure.sorting.category.Category;
+import org.decision_deck.jmcda.structure.weights.Weights;
+
+/**
+ * Receives the informations read by an {@link XMCDAStreamReader}, in the order
+ * they appear in the document. Only informations that have been read
+ * successfully are given: non conforming informations are handled by the
+ * reader according to its error management strategy before reaching the
+ * handler.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public interface XMCDAStreamHandler {
+	/**
+	 * Called for each active alternative read.
+	 *
+	 * @param alternative
+	 *            not <code>null</code>.
+	 */
+	public void alternative(Alternative alternative);
+
+	/**
+	 * Called for each active criterion read.
+	 *
+	 * @param criterion
+	 *            not <code>null</code>.
+	 */
+	public void criterion(Criterion criterion);
+
+	/**
+	 * Called for each set of criteria read, with the values associated to each
+	 * criterion.
+	 *
+	 * @param name
+	 *            the name of the set, possibly <code>null</code>.
+	 * @param weights
+	 *            not <code>null</code>, possibly empty.
+	 */
+	public void criteriaSet(String name, Weights weights);
+
+	/**
+	 * Called for each row of a performance table that matches the concept to
+	 * read.
+	 *
+	 * @param tableName
+	 *            the name of the enclosing performance table, possibly
+	 *            <code>null</code>.
+	 * @param alternative
+	 *            not <code>null</code>.
+	 * @param evaluations
+	 *            not <code>null</code>, contains only evaluations of the given
+	 *            alternative, possibly empty.
+	 */
+	public void performances(String tableName, Alternative alternative, EvaluationsRead evaluations);
+
+	/**
+	 * Called for each assignment read.
+	 *
+	 * @param name
+	 *            the name of the enclosing alternatives affectations, possibly
+	 *            <code>null</code>.
+	 * @param alternative
+	 *            not <code>null</code>.
+	 * @param categories
+	 *            not <code>null</code>.
+	 */
+	public void assignment(String name, Alternative alternative, Set<Category> categories);
+
+	/**
+	 * Called for each pair of alternatives read, associated to a single value.
+	 *
+	 * @param name
+	 *            the name of the enclosing alternatives comparisons, possibly
+	 *            <code>null</code>.
+	 * @param initial
+	 *            not <code>null</code>.
+	 * @param terminal
+	 *            not <code>null</code>.
+	 * @param value
+	 *            the value associated to the pair.
+	 */
+	public void comparison(String name, Alternative initial, Alternative terminal, double value);
+}
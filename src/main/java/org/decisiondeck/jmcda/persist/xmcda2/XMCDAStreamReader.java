@@ -0,0 +1,438 @@
+package org.decisiondeck.jmcda.persist.xmcda2;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.xmlbeans.XmlException;
+import org.decision_deck.jmcda.structure.Alternative;
+import org.decision_deck.jmcda.structure.Criterion;
+import org.decision_deck.jmcda.structure.matrix.Evaluations;
+import org.decision_deck.jmcda.structure.matrix.EvaluationsUtils;
+import org.decision_deck.jmcda.structure.sorting.category.Category;
+import org.decisiondeck.jmcda.exc.InvalidInputException;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XAlternative;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XAlternativeAffectation;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XAlternativeOnCriteriaPerformances;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XAlternativesComparisons;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XCriteriaSet;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XCriterion;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDACompression;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager.ErrorManagement;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAObjectPool;
+
+import com.google.common.io.ByteSource;
+
+/**
+ * <p>
+ * Reads an XMCDA document in a single pass and gives the informations read to
+ * a {@link XMCDAStreamHandler}, without building a tree of the whole document.
+ * Each small unit of information (an alternative, a criterion, a set of
+ * criteria, a row of a performance table, an assignment, a pair of
+ * alternatives) is parsed on its own and converted using the same rules as the
+ * corresponding XMCDA helper: {@link XMCDAAlternatives}, {@link XMCDACriteria},
+ * {@link XMCDAEvaluations}, {@link XMCDAAssignments} and
+ * {@link XMCDAAlternativesMatrix}. Those helpers are accessible from this
+ * object, for them to be configured before reading (e.g. to set the concept of
+ * the performance tables to read, or the known categories) or queried after
+ * reading (e.g. to obtain the names of the alternatives). Other informations
+ * are skipped.
+ * </p>
+ * <p>
+ * The memory used does not depend on the size of the document, except for the
+ * informations the helpers keep about alternatives and criteria. Because the
+ * units are not kept after being given to the handler, checks that span
+ * several units are not done: a same evaluation given in two rows of a
+ * performance table, or a same pair given twice, are not detected.
+ * </p>
+ * <p>
+ * Elements are recognized by their local names, thus any XMCDA 2 version can
+ * be read. The document is not validated.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class XMCDAStreamReader {
+
+	private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+	static {
+		/** Sources may be untrusted: DTDs are not read and external entities are not fetched. */
+		INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+
+	/**
+	 * Moves to the next child element of the current element.
+	 *
+	 * @return <code>true</code> iff the reader is positioned on the start tag
+	 *         of a child element, <code>false</code> iff the reader is
+	 *         positioned on the end tag of the current element.
+	 */
+	static boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+		while (reader.hasNext()) {
+			final int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				return true;
+			}
+			if (event == XMLStreamConstants.END_ELEMENT) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Creates a reader positioned on the start tag of the XMCDA root element of
+	 * the given input.
+	 *
+	 * @throws XmlException
+	 *             if the root element is not an XMCDA element.
+	 */
+	static XMLStreamReader openDocument(InputStream input) throws XMLStreamException, XmlException {
+		final XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(input);
+		reader.nextTag();
+		if (!reader.getLocalName().equals("XMCDA")) {
+			final String name = reader.getName().toString();
+			reader.close();
+			throw new XmlException("Expected XMCDA root element, found " + name + ".");
+		}
+		return reader;
+	}
+
+	/**
+	 * Moves from the start tag of the current element to its end tag.
+	 */
+	static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			final int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				++depth;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				--depth;
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the exception to throw when the given exception happened while
+	 * parsing: either the underlying {@link IOException}, which is thrown, or
+	 * an {@link XmlException} which is returned.
+	 */
+	static XmlException translate(XMLStreamException exc) throws IOException {
+		if (exc.getNestedException() instanceof IOException) {
+			throw (IOException) exc.getNestedException();
+		}
+		return new XmlException("Could not parse input.", exc);
+	}
+
+	private final XMCDAAlternatives m_alternatives;
+
+	private final XMCDAAssignments m_assignments;
+
+	private final XMCDACriteria m_criteria;
+
+	private final XMCDAEvaluations m_evaluations;
+
+	private final XMCDAAlternativesMatrix m_matrix;
+
+	/**
+	 * The pool shared by the helpers, emptied after each read.
+	 */
+	private final XMCDAObjectPool m_pool = new XMCDAObjectPool();
+
+	/**
+	 * Creates a new object which will use the default error management strategy
+	 * {@link ErrorManagement#THROW}.
+	 */
+	public XMCDAStreamReader() {
+		this(new XMCDAErrorsManager());
+	}
+
+	/**
+	 * Creates a new object delegating error management to the given error
+	 * manager in case of unexpected data read.
+	 *
+	 * @param errorsManager
+	 *            not <code>null</code>.
+	 */
+	public XMCDAStreamReader(XMCDAErrorsManager errorsManager) {
+		checkNotNull(errorsManager);
+		m_alternatives = new XMCDAAlternatives(errorsManager);
+		m_criteria = new XMCDACriteria(errorsManager);
+		m_evaluations = new XMCDAEvaluations(errorsManager);
+		m_assignments = new XMCDAAssignments(errorsManager);
+		m_matrix = new XMCDAAlternativesMatrix(errorsManager);
+		m_alternatives.setPool(m_pool);
+		m_criteria.setPool(m_pool);
+		m_evaluations.setPool(m_pool);
+		m_assignments.setPool(m_pool);
+		m_matrix.setPool(m_pool);
+	}
+
+	/**
+	 * Retrieves the object used to read alternatives, which keeps the
+	 * informations read about the alternatives.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	public XMCDAAlternatives getAlternatives() {
+		return m_alternatives;
+	}
+
+	/**
+	 * Retrieves the object used to read pairs of alternatives.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	public XMCDAAlternativesMatrix getAlternativesMatrix() {
+		return m_matrix;
+	}
+
+	/**
+	 * Retrieves the object used to read assignments.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	public XMCDAAssignments getAssignments() {
+		return m_assignments;
+	}
+
+	/**
+	 * Retrieves the object used to read criteria and sets of criteria, which
+	 * keeps the informations read about the criteria.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	public XMCDACriteria getCriteria() {
+		return m_criteria;
+	}
+
+	/**
+	 * Retrieves the object used to read performance tables.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	public XMCDAEvaluations getEvaluations() {
+		return m_evaluations;
+	}
+
+	/**
+	 * Reads the given XMCDA document. See {@link #read(InputStream, XMCDAStreamHandler)}.
+	 *
+	 * @param source
+	 *            not <code>null</code>.
+	 * @param handler
+	 *            not <code>null</code>.
+	 * @throws IOException
+	 *             if an exception happens while opening or reading the source.
+	 * @throws XmlException
+	 *             if the source is not well-formed XML or if its root is not
+	 *             an XMCDA element.
+	 * @throws InvalidInputException
+	 *             iff unexpected content has been read and this object follows
+	 *             the {@link ErrorManagement#THROW} strategy.
+	 */
+	public void read(ByteSource source, XMCDAStreamHandler handler) throws IOException, XmlException,
+			InvalidInputException {
+		checkNotNull(source);
+		try (InputStream input = XMCDACompression.decompress(source.openStream())) {
+			read(input, handler);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Reads the given XMCDA document and gives the informations read to the
+	 * given handler, as they are read. The informations kept by the criteria
+	 * helper are deleted before reading. The helpers share a pool of domain
+	 * objects, owned by this object, which is emptied after the read.
+	 * </p>
+	 * <p>
+	 * In case of unexpected data, an exception is thrown if this object follows
+	 * the {@link ErrorManagement#THROW} strategy, otherwise, non conforming
+	 * informations will be skipped.
+	 * </p>
+	 *
+	 * @param input
+	 *            not <code>null</code>, not closed by this method.
+	 * @param handler
+	 *            not <code>null</code>.
+	 * @throws IOException
+	 *             if an exception happens while reading the input.
+	 * @throws XmlException
+	 *             if the input is not well-formed XML or if its root is not an
+	 *             XMCDA element.
+	 * @throws InvalidInputException
+	 *             iff unexpected content has been read and this object follows
+	 *             the {@link ErrorManagement#THROW} strategy.
+	 */
+	public void read(InputStream input, XMCDAStreamHandler handler) throws IOException, XmlException,
+			InvalidInputException {
+		checkNotNull(input);
+		checkNotNull(handler);
+		m_criteria.clear();
+		try {
+			final XMLStreamReader reader = openDocument(input);
+			try {
+				readDocument(reader, handler);
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException exc) {
+			throw translate(exc);
+		} finally {
+			m_pool.clear();
+		}
+	}
+
+	private void readAlternatives(XMLStreamReader reader, XMCDAStreamHandler handler) throws XMLStreamException,
+			XmlException, InvalidInputException {
+		final String concept = reader.getAttributeValue(null, "mcdaConcept");
+		while (nextChild(reader)) {
+			if (!reader.getLocalName().equals("alternative")) {
+				skipElement(reader);
+				continue;
+			}
+			final XAlternative xAlternative = XAlternative.Factory.parse(reader);
+			final Alternative alternative = m_alternatives.read(xAlternative, concept);
+			if (alternative != null) {
+				handler.alternative(alternative);
+			}
+		}
+	}
+
+	private void readAlternativesAffectations(XMLStreamReader reader, XMCDAStreamHandler handler)
+			throws XMLStreamException, XmlException, InvalidInputException {
+		final String name = reader.getAttributeValue(null, "name");
+		while (nextChild(reader)) {
+			if (!reader.getLocalName().equals("alternativeAffectation")) {
+				skipElement(reader);
+				continue;
+			}
+			final XAlternativeAffectation xAlternativeAffectation = XAlternativeAffectation.Factory.parse(reader);
+			final Alternative alternative = m_assignments.readAlternative(xAlternativeAffectation);
+			if (alternative == null) {
+				continue;
+			}
+			final Set<Category> categories = m_assignments.readCategories(xAlternativeAffectation);
+			if (categories == null) {
+				continue;
+			}
+			handler.assignment(name, alternative, categories);
+		}
+	}
+
+	private void readAlternativesComparisons(XMLStreamReader reader, XMCDAStreamHandler handler)
+			throws XMLStreamException, XmlException, InvalidInputException {
+		final String name = reader.getAttributeValue(null, "name");
+		while (nextChild(reader)) {
+			if (!reader.getLocalName().equals("pairs")) {
+				skipElement(reader);
+				continue;
+			}
+			while (nextChild(reader)) {
+				if (!reader.getLocalName().equals("pair")) {
+					skipElement(reader);
+					continue;
+				}
+				final XAlternativesComparisons.Pairs.Pair xPair = XAlternativesComparisons.Pairs.Pair.Factory
+						.parse(reader);
+				final Alternative initial = m_matrix.getInitial(xPair);
+				if (initial == null) {
+					continue;
+				}
+				final Alternative terminal = m_matrix.getTerminal(xPair);
+				if (terminal == null) {
+					continue;
+				}
+				final Double value = m_matrix.readValue(xPair);
+				if (value == null) {
+					continue;
+				}
+				handler.comparison(name, initial, terminal, value.doubleValue());
+			}
+		}
+	}
+
+	private void readCriteria(XMLStreamReader reader, XMCDAStreamHandler handler) throws XMLStreamException,
+			XmlException, InvalidInputException {
+		while (nextChild(reader)) {
+			if (!reader.getLocalName().equals("criterion")) {
+				skipElement(reader);
+				continue;
+			}
+			final XCriterion xCriterion = XCriterion.Factory.parse(reader);
+			final Criterion criterion = m_criteria.readInternal(xCriterion);
+			if (criterion != null) {
+				handler.criterion(criterion);
+			}
+		}
+	}
+
+	private void readDocument(XMLStreamReader reader, XMCDAStreamHandler handler) throws XMLStreamException,
+			XmlException, InvalidInputException {
+		while (nextChild(reader)) {
+			final String localName = reader.getLocalName();
+			switch (localName) {
+			case "alternatives":
+				readAlternatives(reader, handler);
+				break;
+			case "criteria":
+				readCriteria(reader, handler);
+				break;
+			case "criteriaSet": {
+				final XCriteriaSet xCriteriaSet = XCriteriaSet.Factory.parse(reader);
+				handler.criteriaSet(xCriteriaSet.getName(), m_criteria.readWeights(xCriteriaSet));
+				break;
+			}
+			case "performanceTable":
+				if (m_evaluations.readable(reader.getAttributeValue(null, "mcdaConcept"))) {
+					readPerformanceTable(reader, handler);
+				} else {
+					skipElement(reader);
+				}
+				break;
+			case "alternativesAffectations":
+				readAlternativesAffectations(reader, handler);
+				break;
+			case "alternativesComparisons":
+				readAlternativesComparisons(reader, handler);
+				break;
+			default:
+				skipElement(reader);
+			}
+		}
+	}
+
+	private void readPerformanceTable(XMLStreamReader reader, XMCDAStreamHandler handler)
+			throws XMLStreamException, XmlException, InvalidInputException {
+		final String name = reader.getAttributeValue(null, "name");
+		while (nextChild(reader)) {
+			if (!reader.getLocalName().equals("alternativePerformances")) {
+				skipElement(reader);
+				continue;
+			}
+			final XAlternativeOnCriteriaPerformances xAlternativePerformances = XAlternativeOnCriteriaPerformances.Factory
+					.parse(reader);
+			if (!xAlternativePerformances.isSetAlternativeID()) {
+				m_evaluations.error("Expected alternative id in " + xAlternativePerformances + ".");
+				continue;
+			}
+			final Alternative alternative = m_pool.getAlternative(xAlternativePerformances.getAlternativeID());
+			final Evaluations row = EvaluationsUtils.newEvaluationMatrix();
+			m_evaluations.readRow(alternative, xAlternativePerformances, row);
+			handler.performances(name, alternative, row);
+		}
+	}
+}
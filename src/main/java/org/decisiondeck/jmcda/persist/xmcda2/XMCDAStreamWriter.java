@@ -0,0 +1,567 @@
+package org.decisiondeck.jmcda.persist.xmcda2;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.decision_deck.jmcda.structure.Alternative;
+import org.decision_deck.jmcda.structure.Criterion;
+import org.decision_deck.jmcda.structure.interval.Interval;
+import org.decision_deck.jmcda.structure.interval.PreferenceDirection;
+import org.decision_deck.jmcda.structure.matrix.EvaluationsRead;
+import org.decision_deck.jmcda.structure.sorting.category.Category;
+import org.decision_deck.utils.StringUtils;
+import org.decision_deck.utils.collection.CollectionUtils;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XAlternativeType;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAReadUtils;
+import org.decisiondeck.jmcda.structure.sorting.assignment.IOrderedAssignmentsToMultipleRead;
+import org.decisiondeck.jmcda.structure.sorting.assignment.credibilities.IOrderedAssignmentsWithCredibilitiesRead;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Iterables;
+
+/**
+ * <p>
+ * Writes an XMCDA document section by section, directly to an output stream:
+ * each section is written as soon as it is given to this object, without
+ * building XMLBeans objects or a tree of the document. The memory used thus
+ * does not depend on the size of the written document.
+ * </p>
+ * <p>
+ * The sections are written the same way as the corresponding XMCDA helpers
+ * write their fragments: {@link XMCDAAlternatives}, {@link XMCDACriteria},
+ * {@link XMCDAEvaluations} and {@link XMCDAAssignments}. Those helpers are
+ * accessible from this object, for them to be configured before writing (e.g.
+ * to set the names of the alternatives, the thresholds of the criteria, or the
+ * order of the alternatives). Contrary to the XMLBeans based writers, the
+ * written document is not validated.
+ * </p>
+ * <p>
+ * The document is started when this object is created and ended when it is
+ * closed, the document is thus complete only once this object is closed. The
+ * document is encoded in UTF-8 and indented.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class XMCDAStreamWriter implements Closeable {
+
+	private static final String INDENT = "  ";
+
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+	/**
+	 * Retrieves the given number in the lexical form XMLBeans uses for reals,
+	 * thus as a float.
+	 */
+	static private String printReal(double value) {
+		final float real = (float) value;
+		if (Float.isNaN(real)) {
+			return "NaN";
+		}
+		if (real == Float.POSITIVE_INFINITY) {
+			return "INF";
+		}
+		if (real == Float.NEGATIVE_INFINITY) {
+			return "-INF";
+		}
+		return Float.toString(real);
+	}
+
+	private final XMCDAAlternatives m_alternatives = new XMCDAAlternatives();
+
+	private final XMCDAAssignments m_assignments = new XMCDAAssignments();
+
+	private boolean m_closed;
+
+	private final XMCDACriteria m_criteria = new XMCDACriteria();
+
+	private int m_depth;
+
+	private final XMCDAEvaluations m_evaluations = new XMCDAEvaluations();
+
+	private final OutputStream m_output;
+
+	private final XMLStreamWriter m_writer;
+
+	/**
+	 * Creates a new object writing to the given output a document of the
+	 * default XMCDA version, and starts the document.
+	 *
+	 * @param output
+	 *            not <code>null</code>, closed when this object is closed.
+	 * @throws IOException
+	 *             if an exception happens while writing to the given output.
+	 */
+	public XMCDAStreamWriter(OutputStream output) throws IOException {
+		this(output, null);
+	}
+
+	/**
+	 * Creates a new object writing to the given output a document of the given
+	 * XMCDA version, and starts the document.
+	 *
+	 * @param output
+	 *            not <code>null</code>, closed when this object is closed.
+	 * @param version
+	 *            <code>null</code> for
+	 *            {@link XMCDAReadUtils#DEFAULT_XMCDA_VERSION}.
+	 * @throws IOException
+	 *             if an exception happens while writing to the given output.
+	 */
+	public XMCDAStreamWriter(OutputStream output, String version) throws IOException {
+		m_output = checkNotNull(output);
+		final String namespace = XMCDAReadUtils.XMCDA_NAMESPACE_PREFIX
+				+ (version == null ? XMCDAReadUtils.DEFAULT_XMCDA_VERSION : version);
+		m_closed = false;
+		m_depth = 0;
+		try {
+			m_writer = OUTPUT_FACTORY.createXMLStreamWriter(output, Charsets.UTF_8.name());
+			m_writer.writeStartDocument(Charsets.UTF_8.name(), "1.0");
+			m_writer.writeCharacters("\n");
+			m_writer.setPrefix("xmcda", namespace);
+			m_writer.writeStartElement("xmcda", "XMCDA", namespace);
+			m_writer.writeNamespace("xmcda", namespace);
+			++m_depth;
+		} catch (XMLStreamException exc) {
+			throw new IOException(exc);
+		}
+	}
+
+	/**
+	 * Ends the document and closes the underlying output. Does nothing if this
+	 * object is already closed.
+	 *
+	 * @throws IOException
+	 *             if an exception happens while writing to or closing the
+	 *             underlying output.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (m_closed) {
+			return;
+		}
+		m_closed = true;
+		try {
+			end();
+			m_writer.writeEndDocument();
+			m_writer.writeCharacters("\n");
+			m_writer.close();
+		} catch (XMLStreamException exc) {
+			throw new IOException(exc);
+		} finally {
+			m_output.close();
+		}
+	}
+
+	/**
+	 * Retrieves the object whose names, fictive status and inactive
+	 * alternatives are written together with the alternatives.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	public XMCDAAlternatives getAlternatives() {
+		return m_alternatives;
+	}
+
+	/**
+	 * Retrieves the object whose alternatives order and intervals setting are
+	 * used to write the assignments.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	public XMCDAAssignments getAssignments() {
+		return m_assignments;
+	}
+
+	/**
+	 * Retrieves the object whose names, scales, thresholds and inactive
+	 * criteria are written together with the criteria.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	public XMCDACriteria getCriteria() {
+		return m_criteria;
+	}
+
+	/**
+	 * Retrieves the object whose concept to write and alternatives and criteria
+	 * orders are used to write the performance tables.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	public XMCDAEvaluations getEvaluations() {
+		return m_evaluations;
+	}
+
+	/**
+	 * Writes the given alternatives, in the iteration order of the given set,
+	 * as {@link XMCDAAlternatives#writeAlternatives} does, except that active
+	 * alternatives are not marked.
+	 *
+	 * @param alternatives
+	 *            not <code>null</code>, may be empty.
+	 * @param type
+	 *            may be <code>null</code>.
+	 * @throws IOException
+	 *             if an exception happens while writing to the underlying
+	 *             output.
+	 */
+	public void writeAlternatives(Set<Alternative> alternatives, XAlternativeType.Enum type) throws IOException {
+		checkNotNull(alternatives);
+		checkState(!m_closed);
+		final Map<Alternative, String> names = m_alternatives.getNames();
+		final Map<Alternative, X2Concept> fictiveStatus = m_alternatives.getFictiveStatus();
+		final Set<Alternative> inactive = m_alternatives.getInactiveAlternatives();
+		try {
+			start("alternatives");
+			if (type != null) {
+				m_writer.writeAttribute("mcdaConcept", StringUtils.getWithFirstCap(type.toString()));
+			}
+			for (Alternative alternative : alternatives) {
+				final X2Concept status = fictiveStatus.get(alternative);
+				final boolean isInactive = inactive.contains(alternative);
+				final boolean empty = status == null && !isInactive;
+				if (empty) {
+					indent();
+					m_writer.writeEmptyElement("alternative");
+				} else {
+					start("alternative");
+				}
+				m_writer.writeAttribute("id", alternative.getId());
+				final String name = names.get(alternative);
+				if (name != null) {
+					m_writer.writeAttribute("name", name);
+				}
+				if (!empty) {
+					if (status != null) {
+						leaf("type", status == X2Concept.FICTIVE ? XAlternativeType.FICTIVE.toString()
+								: XAlternativeType.REAL.toString());
+					}
+					if (isInactive) {
+						leaf("active", "false");
+					}
+					end();
+				}
+			}
+			end();
+			m_writer.flush();
+		} catch (XMLStreamException exc) {
+			throw new IOException(exc);
+		}
+	}
+
+	/**
+	 * Writes the given assignments, as
+	 * {@link XMCDAAssignments#write(IOrderedAssignmentsToMultipleRead)} does.
+	 *
+	 * @param assignments
+	 *            not <code>null</code>, not empty.
+	 * @param name
+	 *            the name of the assignments (typically, the decision maker
+	 *            id), <code>null</code> for none.
+	 * @throws IOException
+	 *             if an exception happens while writing to the underlying
+	 *             output.
+	 */
+	public void writeAssignments(IOrderedAssignmentsToMultipleRead assignments, String name) throws IOException {
+		checkNotNull(assignments);
+		checkArgument(assignments.getAlternatives().size() >= 1, "assignments may not be empty");
+		checkState(!m_closed);
+		try {
+			start("alternativesAffectations");
+			if (name != null) {
+				m_writer.writeAttribute("name", name);
+			}
+			for (Alternative alternative : m_assignments.getExportSettings().interOrderAlternatives(
+					assignments.getAlternatives())) {
+				final NavigableSet<Category> categories = assignments.getCategories(alternative);
+				start("alternativeAffectation");
+				leaf("alternativeID", alternative.getId());
+				if (m_assignments.forcesIntervals()) {
+					if (!CollectionUtils.isContiguous(categories, assignments.getCategories())) {
+						throw new IllegalStateException("Must use intervals but non contiguous set of categories for "
+								+ alternative + ".");
+					}
+					start("categoriesInterval");
+					start("lowerBound");
+					leaf("categoryID", categories.first().getId());
+					end();
+					start("upperBound");
+					leaf("categoryID", categories.last().getId());
+					end();
+					end();
+				} else if (categories.size() == 1) {
+					leaf("categoryID", Iterables.getOnlyElement(categories).getId());
+				} else {
+					start("categoriesSet");
+					for (Category category : categories) {
+						start("element");
+						leaf("categoryID", category.getId());
+						end();
+					}
+					end();
+				}
+				end();
+			}
+			end();
+			m_writer.flush();
+		} catch (XMLStreamException exc) {
+			throw new IOException(exc);
+		}
+	}
+
+	/**
+	 * Writes the given assignments, as
+	 * {@link XMCDAAssignments#write(IOrderedAssignmentsWithCredibilitiesRead)}
+	 * does.
+	 *
+	 * @param assignments
+	 *            not <code>null</code>, not empty.
+	 * @param name
+	 *            the name of the assignments (typically, the decision maker
+	 *            id), <code>null</code> for none.
+	 * @throws IOException
+	 *             if an exception happens while writing to the underlying
+	 *             output.
+	 */
+	public void writeAssignmentsWithCredibilities(IOrderedAssignmentsWithCredibilitiesRead assignments, String name)
+			throws IOException {
+		checkNotNull(assignments);
+		checkArgument(assignments.getAlternatives().size() >= 1, "assignments may not be empty");
+		checkState(!m_closed);
+		try {
+			start("alternativesAffectations");
+			if (name != null) {
+				m_writer.writeAttribute("name", name);
+			}
+			for (Alternative alternative : m_assignments.getExportSettings().interOrderAlternatives(
+					assignments.getAlternatives())) {
+				final NavigableMap<Category, Double> assigned = assignments.getCredibilities(alternative);
+				start("alternativeAffectation");
+				leaf("alternativeID", alternative.getId());
+				if (assigned.size() == 1) {
+					final Map.Entry<Category, Double> entry = assigned.firstEntry();
+					leaf("categoryID", entry.getKey().getId());
+					writeValue("value", entry.getValue().doubleValue());
+				} else {
+					start("categoriesSet");
+					for (Map.Entry<Category, Double> entry : assigned.entrySet()) {
+						start("element");
+						leaf("categoryID", entry.getKey().getId());
+						writeValue("value", entry.getValue().doubleValue());
+						end();
+					}
+					end();
+				}
+				end();
+			}
+			end();
+			m_writer.flush();
+		} catch (XMLStreamException exc) {
+			throw new IOException(exc);
+		}
+	}
+
+	/**
+	 * Writes the given criteria, in the iteration order of the given set, as
+	 * {@link XMCDACriteria#write(Set)} does, except that active criteria are
+	 * not marked.
+	 *
+	 * @param criteria
+	 *            not <code>null</code>, may be empty.
+	 * @throws IOException
+	 *             if an exception happens while writing to the underlying
+	 *             output.
+	 */
+	public void writeCriteria(Set<Criterion> criteria) throws IOException {
+		checkNotNull(criteria);
+		checkState(!m_closed);
+		final Map<Criterion, String> names = m_criteria.getNames();
+		final Map<Criterion, Interval> scales = m_criteria.getScales();
+		final Map<Criterion, Double> preferenceThresholds = m_criteria.getPreferenceThresholds();
+		final Map<Criterion, Double> indifferenceThresholds = m_criteria.getIndifferenceThresholds();
+		final Map<Criterion, Double> vetoThresholds = m_criteria.getVetoThresholds();
+		final Set<Criterion> inactive = m_criteria.getInactiveCriteria();
+		try {
+			start("criteria");
+			for (Criterion criterion : criteria) {
+				start("criterion");
+				m_writer.writeAttribute("id", criterion.getId());
+				final String name = names.get(criterion);
+				if (name != null) {
+					m_writer.writeAttribute("name", name);
+				}
+				if (inactive.contains(criterion)) {
+					leaf("active", "false");
+				}
+				final Interval scale = scales.get(criterion);
+				if (scale != null) {
+					writeScale(scale);
+				}
+				final Double pThresh = preferenceThresholds.get(criterion);
+				final Double iThresh = indifferenceThresholds.get(criterion);
+				final Double vThresh = vetoThresholds.get(criterion);
+				if (pThresh != null || iThresh != null || vThresh != null) {
+					start("thresholds");
+					if (pThresh != null) {
+						writeThreshold(XMCDACriteria.PREFERENCE_CONCEPT_STRING, pThresh.doubleValue());
+					}
+					if (iThresh != null) {
+						writeThreshold(XMCDACriteria.INDIFFERENCE_CONCEPT_STRING, iThresh.doubleValue());
+					}
+					if (vThresh != null) {
+						writeThreshold(XMCDACriteria.VETO_CONCEPT_STRING, vThresh.doubleValue());
+					}
+					end();
+				}
+				end();
+			}
+			end();
+			m_writer.flush();
+		} catch (XMLStreamException exc) {
+			throw new IOException(exc);
+		}
+	}
+
+	/**
+	 * Writes the given evaluations as a performance table, as
+	 * {@link XMCDAEvaluations#write(EvaluationsRead)} does.
+	 *
+	 * @param evaluations
+	 *            not <code>null</code>, not empty.
+	 * @param name
+	 *            the name of the performance table (typically, the decision
+	 *            maker id), <code>null</code> for none.
+	 * @throws IOException
+	 *             if an exception happens while writing to the underlying
+	 *             output.
+	 */
+	public void writePerformanceTable(EvaluationsRead evaluations, String name) throws IOException {
+		checkNotNull(evaluations);
+		checkArgument(evaluations.getValueCount() >= 1);
+		checkState(!m_closed);
+		final Set<Alternative> alternatives = m_evaluations.getExportSettings().interOrderAlternatives(
+				evaluations.getRows());
+		final Set<Criterion> criteria = m_evaluations.getExportSettings().interOrderCriteria(
+				evaluations.getColumns());
+		final X2Concept concept = m_evaluations.getConceptToWrite();
+		try {
+			start("performanceTable");
+			if (name != null) {
+				m_writer.writeAttribute("name", name);
+			}
+			if (concept != null) {
+				m_writer.writeAttribute("mcdaConcept", concept.toString().toUpperCase(Locale.ENGLISH));
+			}
+			for (Alternative alternative : alternatives) {
+				start("alternativePerformances");
+				leaf("alternativeID", alternative.getId());
+				for (Criterion criterion : criteria) {
+					final Double entry = evaluations.getEntry(alternative, criterion);
+					if (entry == null) {
+						continue;
+					}
+					start("performance");
+					leaf("criterionID", criterion.getId());
+					writeValue("value", entry.doubleValue());
+					end();
+				}
+				end();
+			}
+			end();
+			m_writer.flush();
+		} catch (XMLStreamException exc) {
+			throw new IOException(exc);
+		}
+	}
+
+	/**
+	 * Ends the current element, which is expected to have children.
+	 */
+	private void end() throws XMLStreamException {
+		--m_depth;
+		indent();
+		m_writer.writeEndElement();
+	}
+
+	private void indent() throws XMLStreamException {
+		m_writer.writeCharacters("\n");
+		for (int i = 0; i < m_depth; ++i) {
+			m_writer.writeCharacters(INDENT);
+		}
+	}
+
+	/**
+	 * Writes an element containing only the given text.
+	 */
+	private void leaf(String localName, String text) throws XMLStreamException {
+		indent();
+		m_writer.writeStartElement(localName);
+		m_writer.writeCharacters(text);
+		m_writer.writeEndElement();
+	}
+
+	/**
+	 * Starts an element which is expected to have children.
+	 */
+	private void start(String localName) throws XMLStreamException {
+		indent();
+		m_writer.writeStartElement(localName);
+		++m_depth;
+	}
+
+	private void writeScale(Interval scale) throws XMLStreamException {
+		checkArgument(scale.getStepSize() == null);
+		final PreferenceDirection preferenceDirection = scale.getPreferenceDirection();
+		final double minimum = scale.getMinimum();
+		final double maximum = scale.getMaximum();
+		if (preferenceDirection == null && Double.isInfinite(minimum) && Double.isInfinite(maximum)) {
+			return;
+		}
+		start("scale");
+		start("quantitative");
+		if (preferenceDirection != null) {
+			leaf("preferenceDirection", new XMCDAOrderedIntervals().write(preferenceDirection).toString());
+		}
+		if (!Double.isInfinite(minimum)) {
+			writeValue("minimum", minimum);
+		}
+		if (!Double.isInfinite(maximum)) {
+			writeValue("maximum", maximum);
+		}
+		end();
+		end();
+	}
+
+	private void writeThreshold(String concept, double value) throws XMLStreamException {
+		start("threshold");
+		m_writer.writeAttribute("mcdaConcept", concept);
+		writeValue("constant", value);
+		end();
+	}
+
+	/**
+	 * Writes an element with the given name containing the given value as a
+	 * real.
+	 */
+	private void writeValue(String localName, double value) throws XMLStreamException {
+		start(localName);
+		leaf("real", printReal(value));
+		end();
+	}
+}
@@ -20,6 +20,7 @@ import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager.ErrorManag
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAHelper;
 
 import com.google.common.base.Function;
+import com.google.common.base.Supplier;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.Lists;
 
@@ -136,6 +137,30 @@ public class XMCDAVarious extends XMCDAHelper {
 	return readDouble(xValue);
     }
 
+    /**
+     * Equivalent to {@link #readDouble(Collection, String)}, except that the context message is only built when an
+     * error is reported.
+     * 
+     * @param xValues
+     *            not <code>null</code>.
+     * @param contextMessageIfEmpty
+     *            not <code>null</code>, supplies the context message, possibly <code>null</code>.
+     * @return a real number, or <code>null</code> iff unexpected content has been read and this object follows a
+     *         permissive strategy.
+     * @throws InvalidInputException
+     *             iff unexpected content has been read and this object follows the {@link ErrorManagement#THROW}
+     *             strategy.
+     */
+    public Double readDouble(Collection<XValue> xValues, Supplier<String> contextMessageIfEmpty)
+	    throws InvalidInputException {
+	checkNotNull(xValues);
+	final XValue xValue = getUnique(xValues, contextMessageIfEmpty);
+	if (xValue == null) {
+	    return null;
+	}
+	return readDouble(xValue);
+    }
+
     /**
      * <p>
      * Retrieves the boolean value embedded in the given fragment.
@@ -0,0 +1,358 @@
+package org.decisiondeck.jmcda.persist.xmcda2.aggregates;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import org.decision_deck.jmcda.structure.Alternative;
+import org.decision_deck.jmcda.structure.Criterion;
+import org.decision_deck.jmcda.structure.DecisionMaker;
+import org.decision_deck.jmcda.structure.interval.Intervals;
+import org.decision_deck.jmcda.structure.interval.PreferenceDirection;
+import org.decision_deck.jmcda.structure.matrix.Evaluations;
+import org.decision_deck.jmcda.structure.matrix.EvaluationsUtils;
+import org.decision_deck.jmcda.structure.sorting.category.Categories;
+import org.decision_deck.jmcda.structure.sorting.category.Category;
+import org.decision_deck.jmcda.structure.sorting.category.CatsAndProfs;
+import org.decision_deck.jmcda.structure.thresholds.Thresholds;
+import org.decision_deck.jmcda.structure.thresholds.ThresholdsUtils;
+import org.decision_deck.jmcda.structure.weights.Coalitions;
+import org.decision_deck.jmcda.structure.weights.CoalitionsUtils;
+import org.decisiondeck.jmcda.exc.InvalidInputException;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAObjectPool;
+import org.decisiondeck.jmcda.structure.sorting.assignment.credibilities.IAssignmentsWithCredibilities;
+import org.decisiondeck.jmcda.structure.sorting.assignment.utils.AssignmentsFactory;
+import org.decisiondeck.jmcda.structure.sorting.assignment.utils.AssignmentsUtils;
+import org.decisiondeck.jmcda.structure.sorting.problem.ProblemFactory;
+import org.decisiondeck.jmcda.structure.sorting.problem.data.ISortingData;
+import org.decisiondeck.jmcda.structure.sorting.problem.group_results.IGroupSortingResultsWithCredibilities;
+import org.decisiondeck.jmcda.structure.sorting.problem.preferences.ISortingPreferences;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteSource;
+
+/**
+ * <p>
+ * Reads the binary snapshots written by a {@link SortingSnapshotWriter}. The
+ * source is read once, sequentially. Its checksum, version and kind are
+ * verified: a snapshot written by another version of the format is rejected,
+ * in which case the corresponding XMCDA documents should be read instead, and
+ * the snapshot written again.
+ * </p>
+ * <p>
+ * The objects read (alternatives, criteria, and so on) are shared among the
+ * structures returned by a given read.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class SortingSnapshotReader {
+	/**
+	 * The content of a snapshot being read.
+	 */
+	static private class Body {
+		private List<String> m_ids;
+		private final DataInputStream m_input;
+		private final XMCDAObjectPool m_pool = new XMCDAObjectPool();
+
+		public Body(DataInputStream input) {
+			m_input = checkNotNull(input);
+			m_ids = null;
+		}
+
+		public Set<Alternative> readAlternatives() throws IOException {
+			final int size = readSize();
+			final Set<Alternative> alternatives = Sets.newLinkedHashSet();
+			for (int i = 0; i < size; ++i) {
+				alternatives.add(m_pool.getAlternative(readId()));
+			}
+			return alternatives;
+		}
+
+		public CatsAndProfs readCatsAndProfs() throws IOException {
+			final int size = readSize();
+			final List<Category> categories = Lists.newArrayList();
+			for (int i = 0; i < size; ++i) {
+				categories.add(m_pool.getCategory(readId()));
+			}
+			final CatsAndProfs catsAndProfs = Categories.newCatsAndProfs();
+			final boolean withProfiles = m_input.readBoolean();
+			if (!withProfiles || categories.isEmpty()) {
+				for (Category category : categories) {
+					catsAndProfs.addCategory(category);
+				}
+				return catsAndProfs;
+			}
+			catsAndProfs.addCategory(categories.get(0).getId());
+			for (int i = 1; i < categories.size(); ++i) {
+				final Alternative profile = m_pool.getAlternative(readId());
+				catsAndProfs.setProfileUp(categories.get(i - 1).getId(), profile);
+				catsAndProfs.setCategoryUp(profile, categories.get(i));
+			}
+			return catsAndProfs;
+		}
+
+		public Coalitions readCoalitions() throws IOException {
+			final Coalitions coalitions = CoalitionsUtils.newCoalitions();
+			final int size = readSize();
+			for (int i = 0; i < size; ++i) {
+				final Criterion criterion = m_pool.getCriterion(readId());
+				coalitions.putWeight(criterion, m_input.readDouble());
+			}
+			if (m_input.readBoolean()) {
+				coalitions.setMajorityThreshold(m_input.readDouble());
+			}
+			return coalitions;
+		}
+
+		public IAssignmentsWithCredibilities readCredibilities() throws IOException {
+			final IAssignmentsWithCredibilities assignments = AssignmentsFactory.newAssignmentsWithCredibilities();
+			final int size = readSize();
+			for (int i = 0; i < size; ++i) {
+				final Alternative alternative = m_pool.getAlternative(readId());
+				final int nbCategories = readSize();
+				final Map<Category, Double> credibilities = Maps.newLinkedHashMap();
+				for (int j = 0; j < nbCategories; ++j) {
+					final Category category = m_pool.getCategory(readId());
+					credibilities.put(category, Double.valueOf(m_input.readDouble()));
+				}
+				assignments.setCredibilities(alternative, credibilities);
+			}
+			return assignments;
+		}
+
+		public Set<Criterion> readCriteria() throws IOException {
+			final int size = readSize();
+			final Set<Criterion> criteria = Sets.newLinkedHashSet();
+			for (int i = 0; i < size; ++i) {
+				criteria.add(m_pool.getCriterion(readId()));
+			}
+			return criteria;
+		}
+
+		public void readData(ISortingData target) throws IOException {
+			target.getAlternatives().addAll(readAlternatives());
+			target.getProfiles().addAll(readAlternatives());
+			target.getCriteria().addAll(readCriteria());
+			final int nbScales = readSize();
+			for (int i = 0; i < nbScales; ++i) {
+				final Criterion criterion = m_pool.getCriterion(readId());
+				final PreferenceDirection direction;
+				final byte directionCode = m_input.readByte();
+				switch (directionCode) {
+				case 0:
+					direction = null;
+					break;
+				case 1:
+					direction = PreferenceDirection.MINIMIZE;
+					break;
+				case 2:
+					direction = PreferenceDirection.MAXIMIZE;
+					break;
+				default:
+					throw new IOException("Unknown preference direction code: " + directionCode + ".");
+				}
+				final double minimum = m_input.readDouble();
+				final double maximum = m_input.readDouble();
+				target.setScale(criterion, Intervals.newUnrestrictedInterval(direction, minimum, maximum));
+			}
+			target.getCatsAndProfs().clear();
+			target.getCatsAndProfs().addAll(readCatsAndProfs());
+			target.setEvaluations(readEvaluations());
+		}
+
+		public Set<DecisionMaker> readDms() throws IOException {
+			final int size = readSize();
+			final Set<DecisionMaker> dms = Sets.newLinkedHashSet();
+			for (int i = 0; i < size; ++i) {
+				dms.add(m_pool.getDecisionMaker(readId()));
+			}
+			return dms;
+		}
+
+		public Evaluations readEvaluations() throws IOException {
+			final List<Alternative> rows = ImmutableList.copyOf(readAlternatives());
+			final List<Criterion> columns = ImmutableList.copyOf(readCriteria());
+			final long nbCells = (long) rows.size() * columns.size();
+			final int nbWords = readSize();
+			if (nbWords > (nbCells + 63) / 64) {
+				throw new IOException("Too many cells for " + rows.size() + " rows and " + columns.size()
+						+ " columns.");
+			}
+			final long[] words = new long[nbWords];
+			for (int i = 0; i < nbWords; ++i) {
+				words[i] = m_input.readLong();
+			}
+			final BitSet set = BitSet.valueOf(words);
+			final Evaluations evaluations = EvaluationsUtils.newEvaluationMatrix();
+			for (int cell = set.nextSetBit(0); cell >= 0; cell = set.nextSetBit(cell + 1)) {
+				final Alternative row = rows.get(cell / columns.size());
+				final Criterion column = columns.get(cell % columns.size());
+				evaluations.put(row, column, m_input.readDouble());
+			}
+			return evaluations;
+		}
+
+		public void readIds() throws IOException {
+			final int size = readSize();
+			final String[] ids = new String[size];
+			for (int i = 0; i < size; ++i) {
+				ids[i] = m_input.readUTF();
+			}
+			m_ids = ImmutableList.copyOf(ids);
+		}
+
+		public Thresholds readThresholds() throws IOException {
+			final Map<Criterion, Double> preference = readValues();
+			final Map<Criterion, Double> indifference = readValues();
+			final Map<Criterion, Double> veto = readValues();
+			return ThresholdsUtils.newThresholds(preference, indifference, veto);
+		}
+
+		private String readId() throws IOException {
+			final int index = m_input.readInt();
+			if (index < 0 || index >= m_ids.size()) {
+				throw new IOException("Unknown identifier index: " + index + ".");
+			}
+			return m_ids.get(index);
+		}
+
+		private int readSize() throws IOException {
+			final int size = m_input.readInt();
+			if (size < 0) {
+				throw new IOException("Negative size: " + size + ".");
+			}
+			return size;
+		}
+
+		private Map<Criterion, Double> readValues() throws IOException {
+			final int size = readSize();
+			final Map<Criterion, Double> values = Maps.newLinkedHashMap();
+			for (int i = 0; i < size; ++i) {
+				final Criterion criterion = m_pool.getCriterion(readId());
+				values.put(criterion, Double.valueOf(m_input.readDouble()));
+			}
+			return values;
+		}
+	}
+
+	/**
+	 * Reads the group results snapshot contained in the given source.
+	 *
+	 * @param source
+	 *            not <code>null</code>.
+	 * @return not <code>null</code>.
+	 * @throws IOException
+	 *             if an exception happens while reading the source, or if it
+	 *             does not contain a group results snapshot in the version
+	 *             supported by this class, or if the snapshot is corrupted.
+	 * @throws InvalidInputException
+	 *             if the assignments do not match the categories.
+	 */
+	public IGroupSortingResultsWithCredibilities readGroupResultsWithCredibilities(ByteSource source)
+			throws IOException, InvalidInputException {
+		checkNotNull(source);
+		try (InputStream raw = source.openBufferedStream()) {
+			final CheckedInputStream checked = new CheckedInputStream(raw, new CRC32());
+			final Body body = readHeader(checked, SortingSnapshotWriter.KIND_GROUP_RESULTS_WITH_CREDIBILITIES);
+			final IGroupSortingResultsWithCredibilities results = ProblemFactory
+					.newGroupSortingResultsWithCredibilities();
+			body.readData(results);
+			final Set<DecisionMaker> dms = body.readDms();
+			results.getDms().addAll(dms);
+			results.setSharedThresholds(body.readThresholds());
+
+			if (body.m_input.readBoolean()) {
+				results.setSharedCoalitions(body.readCoalitions());
+			} else {
+				for (DecisionMaker dm : body.readDms()) {
+					results.setCoalitions(dm, body.readCoalitions());
+				}
+			}
+
+			if (body.m_input.readBoolean()) {
+				results.setSharedProfilesEvaluations(body.readEvaluations());
+			} else {
+				for (DecisionMaker dm : body.readDms()) {
+					results.setProfilesEvaluations(dm, body.readEvaluations());
+				}
+			}
+
+			for (DecisionMaker dm : dms) {
+				final IAssignmentsWithCredibilities assignments = body.readCredibilities();
+				AssignmentsUtils.copyAssignmentsWithCredibilitiesToOrderedTarget(assignments,
+						results.getAssignments(dm));
+			}
+			readChecksum(checked, raw);
+			return results;
+		}
+	}
+
+	/**
+	 * Reads the preferences snapshot contained in the given source.
+	 *
+	 * @param source
+	 *            not <code>null</code>.
+	 * @return not <code>null</code>.
+	 * @throws IOException
+	 *             if an exception happens while reading the source, or if it
+	 *             does not contain a preferences snapshot in the version
+	 *             supported by this class, or if the snapshot is corrupted.
+	 */
+	public ISortingPreferences readPreferences(ByteSource source) throws IOException {
+		checkNotNull(source);
+		try (InputStream raw = source.openBufferedStream()) {
+			final CheckedInputStream checked = new CheckedInputStream(raw, new CRC32());
+			final Body body = readHeader(checked, SortingSnapshotWriter.KIND_PREFERENCES);
+			final ISortingPreferences preferences = ProblemFactory.newSortingPreferences();
+			body.readData(preferences);
+			preferences.setProfilesEvaluations(body.readEvaluations());
+			preferences.setCoalitions(body.readCoalitions());
+			preferences.setThresholds(body.readThresholds());
+			readChecksum(checked, raw);
+			return preferences;
+		}
+	}
+
+	private void readChecksum(CheckedInputStream checked, InputStream raw) throws IOException {
+		final int expected = (int) checked.getChecksum().getValue();
+		final int stored = new DataInputStream(raw).readInt();
+		if (stored != expected) {
+			throw new IOException("Corrupted snapshot: checksum does not match.");
+		}
+		if (raw.read() != -1) {
+			throw new IOException("Unexpected data after the end of the snapshot.");
+		}
+	}
+
+	private Body readHeader(CheckedInputStream checked, byte expectedKind) throws IOException {
+		final DataInputStream input = new DataInputStream(checked);
+		if (input.readInt() != SortingSnapshotWriter.MAGIC) {
+			throw new IOException("Not a snapshot.");
+		}
+		final int version = input.readInt();
+		if (version != SortingSnapshotWriter.VERSION) {
+			throw new IOException("Unsupported snapshot version: " + version + ", expected "
+					+ SortingSnapshotWriter.VERSION + ".");
+		}
+		final byte kind = input.readByte();
+		if (kind != expectedKind) {
+			throw new IOException("Unexpected snapshot kind: " + kind + ", expected " + expectedKind + ".");
+		}
+		final Body body = new Body(input);
+		body.readIds();
+		return body;
+	}
+}
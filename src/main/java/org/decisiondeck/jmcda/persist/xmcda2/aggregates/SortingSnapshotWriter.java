@@ -0,0 +1,333 @@
+package org.decisiondeck.jmcda.persist.xmcda2.aggregates;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.decision_deck.jmcda.structure.Alternative;
+import org.decision_deck.jmcda.structure.Criterion;
+import org.decision_deck.jmcda.structure.DecisionMaker;
+import org.decision_deck.jmcda.structure.interval.Interval;
+import org.decision_deck.jmcda.structure.interval.PreferenceDirection;
+import org.decision_deck.jmcda.structure.matrix.EvaluationsRead;
+import org.decision_deck.jmcda.structure.sorting.category.Category;
+import org.decision_deck.jmcda.structure.sorting.category.CatsAndProfs;
+import org.decision_deck.jmcda.structure.thresholds.Thresholds;
+import org.decision_deck.jmcda.structure.thresholds.ThresholdsUtils;
+import org.decision_deck.jmcda.structure.weights.Coalitions;
+import org.decision_deck.jmcda.structure.weights.Weights;
+import org.decisiondeck.jmcda.structure.sorting.assignment.credibilities.IOrderedAssignmentsWithCredibilitiesRead;
+import org.decisiondeck.jmcda.structure.sorting.problem.data.ISortingData;
+import org.decisiondeck.jmcda.structure.sorting.problem.group_results.IGroupSortingResultsWithCredibilities;
+import org.decisiondeck.jmcda.structure.sorting.problem.preferences.ISortingPreferences;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteSink;
+
+/**
+ * <p>
+ * Writes sorting problems as binary snapshots, which may be read back much
+ * faster than the equivalent XMCDA documents using a
+ * {@link SortingSnapshotReader}. Snapshots are meant as a cache of the XMCDA
+ * documents, e.g. stored next to them, not as an exchange format: the format
+ * is specific to this library and may change between versions, in which case
+ * the version number written in each snapshot changes as well.
+ * </p>
+ * <p>
+ * A snapshot starts with {@link #MAGIC}, the {@link #VERSION} of the format
+ * and the kind of object it contains. Then comes a table of the identifiers of
+ * every object in the snapshot, which are referred to by their index in the
+ * table afterwards. Evaluations are written as a bit set of the cells that
+ * have a value, followed by the values of these cells, row after row. The
+ * snapshot ends with a CRC-32 checksum of all the preceding bytes.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class SortingSnapshotWriter {
+	/**
+	 * The content of a snapshot, apart from its identifiers table. The
+	 * identifiers are added to the table as they are written.
+	 */
+	static private class Body {
+		private final ByteArrayOutputStream m_bytes = new ByteArrayOutputStream();
+		private final Map<String, Integer> m_ids = Maps.newLinkedHashMap();
+		private final DataOutputStream m_output = new DataOutputStream(m_bytes);
+
+		public void writeAlternatives(Set<Alternative> alternatives) throws IOException {
+			m_output.writeInt(alternatives.size());
+			for (Alternative alternative : alternatives) {
+				writeId(alternative.getId());
+			}
+		}
+
+		public void writeCatsAndProfs(CatsAndProfs catsAndProfs) throws IOException {
+			final List<Category> categories = ImmutableList.copyOf(catsAndProfs.getCategories());
+			final Set<Alternative> profiles = catsAndProfs.getProfiles();
+			checkArgument(profiles.isEmpty() || profiles.size() == categories.size() - 1,
+					"Incomplete categories and profiles: " + catsAndProfs + ".");
+			m_output.writeInt(categories.size());
+			for (Category category : categories) {
+				writeId(category.getId());
+			}
+			m_output.writeBoolean(!profiles.isEmpty());
+			if (profiles.isEmpty()) {
+				return;
+			}
+			final Map<Category, Alternative> profilesUp = Maps.newHashMap();
+			for (Alternative profile : profiles) {
+				profilesUp.put(catsAndProfs.getCategoryDown(profile), profile);
+			}
+			for (Category category : categories.subList(0, categories.size() - 1)) {
+				final Alternative profile = profilesUp.get(category);
+				checkArgument(profile != null, "No profile above " + category + ".");
+				writeId(profile.getId());
+			}
+		}
+
+		public void writeCoalitions(Coalitions coalitions) throws IOException {
+			final Weights weights = coalitions.getWeights();
+			m_output.writeInt(weights.keySet().size());
+			for (Criterion criterion : weights.keySet()) {
+				writeId(criterion.getId());
+				m_output.writeDouble(weights.getWeightBetter(criterion));
+			}
+			m_output.writeBoolean(coalitions.containsMajorityThreshold());
+			if (coalitions.containsMajorityThreshold()) {
+				m_output.writeDouble(coalitions.getMajorityThreshold());
+			}
+		}
+
+		public void writeCredibilities(IOrderedAssignmentsWithCredibilitiesRead assignments) throws IOException {
+			final Set<Alternative> alternatives = assignments.getAlternatives();
+			m_output.writeInt(alternatives.size());
+			for (Alternative alternative : alternatives) {
+				writeId(alternative.getId());
+				final NavigableMap<Category, Double> credibilities = assignments.getCredibilities(alternative);
+				m_output.writeInt(credibilities.size());
+				for (Category category : credibilities.keySet()) {
+					writeId(category.getId());
+					m_output.writeDouble(credibilities.get(category).doubleValue());
+				}
+			}
+		}
+
+		public void writeCriteria(Set<Criterion> criteria) throws IOException {
+			m_output.writeInt(criteria.size());
+			for (Criterion criterion : criteria) {
+				writeId(criterion.getId());
+			}
+		}
+
+		public void writeData(ISortingData data) throws IOException {
+			writeAlternatives(data.getAlternatives());
+			writeAlternatives(data.getProfiles());
+			writeCriteria(data.getCriteria());
+			writeScales(data.getScales());
+			writeCatsAndProfs(data.getCatsAndProfs());
+			writeEvaluations(data.getAlternativesEvaluations());
+		}
+
+		public void writeDms(Set<DecisionMaker> dms) throws IOException {
+			m_output.writeInt(dms.size());
+			for (DecisionMaker dm : dms) {
+				writeId(dm.getId());
+			}
+		}
+
+		public void writeEvaluations(EvaluationsRead evaluations) throws IOException {
+			final List<Alternative> rows = ImmutableList.copyOf(evaluations.getRows());
+			final List<Criterion> columns = ImmutableList.copyOf(evaluations.getColumns());
+			writeAlternatives(evaluations.getRows());
+			writeCriteria(evaluations.getColumns());
+			final double[] values = new double[evaluations.getValueCount()];
+			final BitSet set = new BitSet(rows.size() * columns.size());
+			int nbValues = 0;
+			for (int row = 0; row < rows.size(); ++row) {
+				for (int column = 0; column < columns.size(); ++column) {
+					final Double entry = evaluations.getEntry(rows.get(row), columns.get(column));
+					if (entry != null) {
+						set.set(row * columns.size() + column);
+						values[nbValues] = entry.doubleValue();
+						++nbValues;
+					}
+				}
+			}
+			checkArgument(nbValues == values.length);
+			final long[] words = set.toLongArray();
+			m_output.writeInt(words.length);
+			for (long word : words) {
+				m_output.writeLong(word);
+			}
+			for (double value : values) {
+				m_output.writeDouble(value);
+			}
+		}
+
+		public void writeId(String id) throws IOException {
+			checkNotNull(id);
+			Integer index = m_ids.get(id);
+			if (index == null) {
+				index = Integer.valueOf(m_ids.size());
+				m_ids.put(id, index);
+			}
+			m_output.writeInt(index.intValue());
+		}
+
+		public void writeScales(Map<Criterion, Interval> scales) throws IOException {
+			m_output.writeInt(scales.size());
+			for (Criterion criterion : scales.keySet()) {
+				final Interval scale = scales.get(criterion);
+				checkArgument(scale.getStepSize() == null, "Incorrect scale for " + criterion + ": " + scale
+						+ ", step size is not supported.");
+				writeId(criterion.getId());
+				final PreferenceDirection direction = scale.getPreferenceDirection();
+				m_output.writeByte(direction == null ? 0 : direction == PreferenceDirection.MINIMIZE ? 1 : 2);
+				m_output.writeDouble(scale.getMinimum());
+				m_output.writeDouble(scale.getMaximum());
+			}
+		}
+
+		public void writeThresholds(Thresholds thresholds) throws IOException {
+			writeValues(thresholds.getPreferenceThresholds());
+			writeValues(thresholds.getIndifferenceThresholds());
+			writeValues(thresholds.getVetoThresholds());
+		}
+
+		public void writeTo(DataOutputStream output) throws IOException {
+			m_output.flush();
+			output.writeInt(m_ids.size());
+			for (String id : m_ids.keySet()) {
+				output.writeUTF(id);
+			}
+			m_bytes.writeTo(output);
+		}
+
+		private void writeValues(Map<Criterion, Double> values) throws IOException {
+			m_output.writeInt(values.size());
+			for (Criterion criterion : values.keySet()) {
+				writeId(criterion.getId());
+				m_output.writeDouble(values.get(criterion).doubleValue());
+			}
+		}
+	}
+
+	/**
+	 * The first bytes of every snapshot: "XSNP" in ASCII.
+	 */
+	static public final int MAGIC = 0x58534E50;
+
+	/**
+	 * The version of the format written by this class.
+	 */
+	static public final int VERSION = 1;
+
+	static final byte KIND_GROUP_RESULTS_WITH_CREDIBILITIES = 2;
+
+	static final byte KIND_PREFERENCES = 1;
+
+	/**
+	 * Writes a snapshot of the given group results to the given destination.
+	 * The thresholds must be shared among the decision makers.
+	 *
+	 * @param data
+	 *            not <code>null</code>.
+	 * @param destination
+	 *            not <code>null</code>.
+	 * @throws IOException
+	 *             if an exception happens while writing to the destination.
+	 */
+	public void writeGroupResultsWithCredibilities(IGroupSortingResultsWithCredibilities data,
+			ByteSink destination) throws IOException {
+		checkNotNull(data);
+		checkNotNull(destination);
+		final Body body = new Body();
+		body.writeData(data);
+		final Set<DecisionMaker> dms = data.getDms();
+		body.writeDms(dms);
+
+		final Map<DecisionMaker, Thresholds> allThresholds = data.getThresholds();
+		if (!Iterables.all(allThresholds.values(), ThresholdsUtils.getPredicateIsEmpty())) {
+			throw new UnsupportedOperationException("Writing individual thresholds is unsupported.");
+		}
+		body.writeThresholds(data.getSharedThresholds());
+
+		final boolean sharedCoalitions = !data.getSharedCoalitions().isEmpty();
+		body.m_output.writeBoolean(sharedCoalitions);
+		if (sharedCoalitions) {
+			body.writeCoalitions(data.getSharedCoalitions());
+		} else {
+			final Map<DecisionMaker, Coalitions> allCoalitions = data.getCoalitions();
+			body.writeDms(allCoalitions.keySet());
+			for (Coalitions coalitions : allCoalitions.values()) {
+				body.writeCoalitions(coalitions);
+			}
+		}
+
+		final boolean sharedProfilesEvaluations = !data.getSharedProfilesEvaluations().isEmpty();
+		body.m_output.writeBoolean(sharedProfilesEvaluations);
+		if (sharedProfilesEvaluations) {
+			body.writeEvaluations(data.getSharedProfilesEvaluations());
+		} else {
+			final Map<DecisionMaker, EvaluationsRead> allProfilesEvaluations = data.getProfilesEvaluations();
+			body.writeDms(allProfilesEvaluations.keySet());
+			for (EvaluationsRead profilesEvaluations : allProfilesEvaluations.values()) {
+				body.writeEvaluations(profilesEvaluations);
+			}
+		}
+
+		for (DecisionMaker dm : dms) {
+			body.writeCredibilities(data.getAssignments(dm));
+		}
+		write(KIND_GROUP_RESULTS_WITH_CREDIBILITIES, body, destination);
+	}
+
+	/**
+	 * Writes a snapshot of the given preferences to the given destination.
+	 *
+	 * @param data
+	 *            not <code>null</code>.
+	 * @param destination
+	 *            not <code>null</code>.
+	 * @throws IOException
+	 *             if an exception happens while writing to the destination.
+	 */
+	public void writePreferences(ISortingPreferences data, ByteSink destination) throws IOException {
+		checkNotNull(data);
+		checkNotNull(destination);
+		final Body body = new Body();
+		body.writeData(data);
+		body.writeEvaluations(data.getProfilesEvaluations());
+		body.writeCoalitions(data.getCoalitions());
+		body.writeThresholds(data.getThresholds());
+		write(KIND_PREFERENCES, body, destination);
+	}
+
+	private void write(byte kind, Body body, ByteSink destination) throws IOException {
+		try (OutputStream raw = destination.openBufferedStream()) {
+			final CheckedOutputStream checked = new CheckedOutputStream(raw, new CRC32());
+			final DataOutputStream output = new DataOutputStream(checked);
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeByte(kind);
+			body.writeTo(output);
+			output.flush();
+			new DataOutputStream(raw).writeInt((int) checked.getChecksum().getValue());
+			raw.flush();
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package org.decisiondeck.jmcda.persist.xmcda2.aggregates;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.List;
@@ -76,6 +77,7 @@ public class X2SimpleReader extends XMCDAHelper {
     private Map<DecisionMaker, Coalitions> m_allCoalitions;
     private Map<DecisionMaker, IAssignmentsToMultiple> m_allAssignments;
     private boolean m_hasReadAssignments;
+    private int m_parallelism;
 
     public X2SimpleReader(XMCDA source) {
 	checkNotNull(source);
@@ -94,12 +96,35 @@ public class X2SimpleReader extends XMCDAHelper {
 	m_allAssignments = null;
 	m_allAssignmentsWithCredibilities = null;
 	m_allCoalitions = null;
+	m_parallelism = 1;
     }
 
     public X2SimpleReader(XMCDADoc source) {
 	this(source.getXMCDA());
     }
 
+    /**
+     * Retrieves the number of threads used to convert the informations of distinct decision makers. The default is one.
+     * 
+     * @return at least one.
+     */
+    public int getParallelism() {
+	return m_parallelism;
+    }
+
+    /**
+     * Sets the number of threads used to convert the per decision maker informations (coalitions, assignments) into
+     * domain objects. With a parallelism of one, the conversion happens in the calling thread. Otherwise, the
+     * informations read, including the errors reported, are the same as with a sequential conversion.
+     * 
+     * @param parallelism
+     *            at least one.
+     */
+    public void setParallelism(int parallelism) {
+	checkArgument(parallelism >= 1);
+	m_parallelism = parallelism;
+    }
+
     public ISortingPreferences readSortingPreferences() throws InvalidInputException {
 	readAlternatives();
 	final Set<Alternative> alternativesOnly = m_xmcdaAlternatives.getMarkedAlternatives(X2Concept.REAL);
@@ -165,6 +190,7 @@ public class X2SimpleReader extends XMCDAHelper {
 		m_allCoalitions = null;
 	    } else {
 		final XMCDACriteria reader = new XMCDACriteria();
+		reader.setParallelism(m_parallelism);
 		m_allCoalitions = reader.readAllCoalitions(xCriteriaSetList);
 	    }
 	}
@@ -480,6 +506,7 @@ public class X2SimpleReader extends XMCDAHelper {
 		m_allAssignmentsWithCredibilities = null;
 	    } else {
 		final XMCDAAssignments xmcdaAssignments = new XMCDAAssignments();
+		xmcdaAssignments.setParallelism(m_parallelism);
 		if (knownCategories != null) {
 		    xmcdaAssignments.setCategories(knownCategories);
 		}
@@ -535,6 +562,7 @@ public class X2SimpleReader extends XMCDAHelper {
 		m_allAssignments = null;
 	    } else {
 		final XMCDAAssignments xmcdaAssignments = new XMCDAAssignments();
+		xmcdaAssignments.setParallelism(m_parallelism);
 		m_assignments = null;
 		if (knownCategories != null) {
 		    xmcdaAssignments.setCategories(knownCategories);
@@ -1,5 +1,6 @@
 package org.decisiondeck.jmcda.persist.xmcda2.aggregates;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.IOException;
@@ -9,8 +10,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.impl.values.XmlValueOutOfRangeException;
 import org.decision_deck.jmcda.structure.Alternative;
 import org.decision_deck.jmcda.structure.Criterion;
 import org.decision_deck.jmcda.structure.DecisionMaker;
@@ -35,9 +39,13 @@ import org.decisiondeck.jmcda.persist.xmcda2.generated.XCriteriaSet;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc.XMCDA;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XMethodParameters;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XPerformanceTable;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDADocumentsCache;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager.ErrorManagement;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAHelperWithVarious;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAObjectPool;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAReadUtils.ValidationMode;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDASectionIndex;
 import org.decisiondeck.jmcda.structure.sorting.assignment.AssignmentsToMultipleFiltering;
 import org.decisiondeck.jmcda.structure.sorting.assignment.IAssignments;
 import org.decisiondeck.jmcda.structure.sorting.assignment.IAssignmentsRead;
@@ -64,6 +72,7 @@ import org.decisiondeck.xmcda_oo.structure.sorting.SortingProblemUtils;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicates;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Sets.SetView;
@@ -93,6 +102,7 @@ public class XMCDAGroupSortingProblemReader extends XMCDAHelperWithVarious {
 	private Set<DecisionMaker> m_dms;
 	private final XMCDASortingProblemReader m_problemReader;
 	private ByteSource m_sourceDms;
+	private int m_parallelism;
 
 	/**
 	 * Creates a new reader which will use the default error management strategy
@@ -129,6 +139,27 @@ public class XMCDAGroupSortingProblemReader extends XMCDAHelperWithVarious {
 		init();
 	}
 
+	/**
+	 * Creates a new reader with a main source, delegating error management to
+	 * the given error manager in case of unexpected data read, and retrieving
+	 * the documents it reads through the given cache.
+	 *
+	 * @param mainSource
+	 *            not <code>null</code>.
+	 * @param errorsManager
+	 *            not <code>null</code>.
+	 * @param documentsCache
+	 *            not <code>null</code>, e.g.
+	 *            {@link XMCDADocumentsCache#getShared()}.
+	 */
+	public XMCDAGroupSortingProblemReader(ByteSource mainSource, XMCDAErrorsManager errorsManager,
+			XMCDADocumentsCache documentsCache) {
+		super(errorsManager);
+		checkNotNull(mainSource);
+		m_problemReader = new XMCDASortingProblemReader(mainSource, errorsManager, documentsCache);
+		init();
+	}
+
 	/**
 	 * Creates a new reader with a main source. The reader will use the default
 	 * error management strategy {@link ErrorManagement#THROW}.
@@ -153,6 +184,23 @@ public class XMCDAGroupSortingProblemReader extends XMCDAHelperWithVarious {
 		init();
 	}
 
+	/**
+	 * Creates a new reader delegating error management to the given error
+	 * manager in case of unexpected data read, and retrieving the documents it
+	 * reads through the given cache.
+	 *
+	 * @param errorsManager
+	 *            not <code>null</code>.
+	 * @param documentsCache
+	 *            not <code>null</code>, e.g.
+	 *            {@link XMCDADocumentsCache#getShared()}.
+	 */
+	public XMCDAGroupSortingProblemReader(XMCDAErrorsManager errorsManager, XMCDADocumentsCache documentsCache) {
+		super(errorsManager);
+		m_problemReader = new XMCDASortingProblemReader(errorsManager, documentsCache);
+		init();
+	}
+
 	/**
 	 * Clears the information cached in this class, resulting in the loss of any
 	 * previously read information that had been remembered by this class. After
@@ -303,10 +351,155 @@ public class XMCDAGroupSortingProblemReader extends XMCDAHelperWithVarious {
 		return m_problemReader.getSourceVersion();
 	}
 
+	/**
+	 * Retrieves the validation mode this object follows. The default is
+	 * {@link ValidationMode#FULL}.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	public ValidationMode getValidationMode() {
+		return m_problemReader.getValidationMode();
+	}
+
+	/**
+	 * Sets the validation mode this object follows. As the documents already
+	 * read have been validated (or not) according to the previous mode, this
+	 * clears the cache.
+	 *
+	 * @param validationMode
+	 *            not <code>null</code>.
+	 */
+	public void setValidationMode(ValidationMode validationMode) {
+		m_problemReader.setValidationMode(validationMode);
+		clearCache();
+	}
+
+	<T extends XmlObject> List<T> validated(List<T> fragments) throws XmlException {
+		return m_problemReader.validated(fragments);
+	}
+
+	void validateAfterFailure(XMCDA xmcda, Exception failure) throws XmlException {
+		m_problemReader.validateAfterFailure(xmcda, failure);
+	}
+
 	public XMCDA getXMCDA(ByteSource source) throws IOException, XmlException {
 		return m_problemReader.getXMCDA(source);
 	}
 
+	XMCDA getXMCDA(ByteSource source, String tag) throws IOException, XmlException {
+		return m_problemReader.getXMCDA(source, tag);
+	}
+
+	XMCDAObjectPool getPool(ByteSource source) {
+		return m_problemReader.getPool(source);
+	}
+
+	/**
+	 * Tells whether this object parses only the top level sections it needs,
+	 * located through an index of each source.
+	 *
+	 * @return <code>false</code> by default.
+	 */
+	public boolean isSectionsIndexed() {
+		return m_problemReader.isSectionsIndexed();
+	}
+
+	/**
+	 * Sets whether this object parses only the top level sections it needs.
+	 * See {@link XMCDAProblemReader#setSectionsIndexed(boolean)}.
+	 *
+	 * @param sectionsIndexed
+	 *            <code>true</code> to parse only the sections needed.
+	 */
+	public void setSectionsIndexed(boolean sectionsIndexed) {
+		m_problemReader.setSectionsIndexed(sectionsIndexed);
+	}
+
+	/**
+	 * Sets the index to use to locate the sections of the given source. See
+	 * {@link XMCDAProblemReader#putSectionIndex(ByteSource, XMCDASectionIndex)}
+	 * .
+	 *
+	 * @param source
+	 *            not <code>null</code>.
+	 * @param index
+	 *            not <code>null</code>, an up to date index of the given
+	 *            source.
+	 */
+	public void putSectionIndex(ByteSource source, XMCDASectionIndex index) {
+		m_problemReader.putSectionIndex(source, index);
+	}
+
+	/**
+	 * Retrieves the number of threads used to convert the informations of
+	 * distinct decision makers. The default is one.
+	 *
+	 * @return at least one.
+	 */
+	public int getParallelism() {
+		return m_parallelism;
+	}
+
+	/**
+	 * Sets the number of threads used to convert the per decision maker
+	 * informations (evaluations, coalitions, assignments) into domain objects.
+	 * With a parallelism of one, the conversion happens in the calling thread.
+	 * Otherwise, the informations read, including the errors reported, are the
+	 * same as with a sequential conversion.
+	 *
+	 * @param parallelism
+	 *            at least one.
+	 */
+	public void setParallelism(int parallelism) {
+		checkArgument(parallelism >= 1);
+		m_parallelism = parallelism;
+	}
+
+	/**
+	 * Tells whether the alternatives evaluations are read into a dense matrix.
+	 *
+	 * @return <code>false</code> by default.
+	 */
+	public boolean isDenseEvaluations() {
+		return m_problemReader.isDenseEvaluations();
+	}
+
+	/**
+	 * Sets whether the alternatives evaluations are read into a dense matrix.
+	 * See {@link XMCDAProblemReader#setDenseEvaluations(boolean)}.
+	 *
+	 * @param denseEvaluations
+	 *            <code>true</code> to read dense matrixes.
+	 */
+	public void setDenseEvaluations(boolean denseEvaluations) {
+		m_problemReader.setDenseEvaluations(denseEvaluations);
+	}
+
+	/**
+	 * Retrieves the executor used to parse several sources concurrently.
+	 *
+	 * @return <code>null</code> if not set.
+	 */
+	public Executor getExecutor() {
+		return m_problemReader.getExecutor();
+	}
+
+	/**
+	 * Sets the executor used to parse concurrently the distinct sources read
+	 * by {@link #readGroupPreferencesTo(IGroupSortingPreferences)} and the
+	 * methods using it. The informations are then read from the parsed
+	 * documents one after the other as when no executor is set, thus the
+	 * errors management is unchanged. This object itself is not thread-safe:
+	 * the executor is only used internally.
+	 *
+	 * @param executor
+	 *            <code>null</code> to parse the sources one after the other,
+	 *            when they are first needed.
+	 */
+	public void setExecutor(Executor executor) {
+		m_problemReader.setExecutor(executor);
+	}
+
 	/**
 	 * <p>
 	 * Reads the assignments per decision maker from the dedicated source, or
@@ -342,14 +535,21 @@ public class XMCDAGroupSortingProblemReader extends XMCDAHelperWithVarious {
 						}
 					}));
 		}
-		final XMCDA xmcda = getXMCDA(getSourceAssignments());
+		final XMCDA xmcda = getXMCDA(getSourceAssignments(), "alternativesAffectations");
 		if (xmcda == null) {
 			m_allAssignments = Collections.emptyMap();
 		} else {
-			final List<XAlternativesAffectations> xAlternativesAffectationsList = xmcda
-					.getAlternativesAffectationsList();
-			final XMCDAAssignments xmcdaAssignments = new XMCDAAssignments();
-			m_allAssignments = xmcdaAssignments.readAll(xAlternativesAffectationsList);
+			try {
+				final List<XAlternativesAffectations> xAlternativesAffectationsList = validated(xmcda
+						.getAlternativesAffectationsList());
+				final XMCDAAssignments xmcdaAssignments = new XMCDAAssignments();
+				xmcdaAssignments.setPool(getPool(getSourceAssignments()));
+				xmcdaAssignments.setParallelism(m_parallelism);
+				m_allAssignments = xmcdaAssignments.readAll(xAlternativesAffectationsList);
+			} catch (InvalidInputException | XmlValueOutOfRangeException exc) {
+				validateAfterFailure(xmcda, exc);
+				throw exc;
+			}
 		}
 		return Collections.unmodifiableMap(Maps.transformValues(m_allAssignments,
 				new Function<IAssignmentsToMultiple, IAssignmentsToMultipleRead>() {
@@ -372,15 +572,22 @@ public class XMCDAGroupSortingProblemReader extends XMCDAHelperWithVarious {
 						}
 					}));
 		}
-		final XMCDA xmcda = getXMCDA(getSourceAssignments());
+		final XMCDA xmcda = getXMCDA(getSourceAssignments(), "alternativesAffectations");
 		if (xmcda == null) {
 			m_allAssignmentsWithCredibilities = Collections.emptyMap();
 		} else {
-			final List<XAlternativesAffectations> xAlternativesAffectationsList = xmcda
-					.getAlternativesAffectationsList();
-			final XMCDAAssignments xmcdaAssignments = new XMCDAAssignments();
-			m_allAssignmentsWithCredibilities = xmcdaAssignments
-					.readAllWithCredibilities(xAlternativesAffectationsList);
+			try {
+				final List<XAlternativesAffectations> xAlternativesAffectationsList = validated(xmcda
+						.getAlternativesAffectationsList());
+				final XMCDAAssignments xmcdaAssignments = new XMCDAAssignments();
+				xmcdaAssignments.setPool(getPool(getSourceAssignments()));
+				xmcdaAssignments.setParallelism(m_parallelism);
+				m_allAssignmentsWithCredibilities = xmcdaAssignments
+						.readAllWithCredibilities(xAlternativesAffectationsList);
+			} catch (InvalidInputException | XmlValueOutOfRangeException exc) {
+				validateAfterFailure(xmcda, exc);
+				throw exc;
+			}
 		}
 		return Collections.unmodifiableMap(Maps.transformValues(m_allAssignmentsWithCredibilities,
 				new Function<IAssignmentsWithCredibilities, IAssignmentsWithCredibilitiesRead>() {
@@ -426,16 +633,23 @@ public class XMCDAGroupSortingProblemReader extends XMCDAHelperWithVarious {
 					}));
 		}
 
-		final XMCDA xmcda = getXMCDA(getSourceCoalitions());
+		final XMCDA xmcda = getXMCDA(getSourceCoalitions(), "criteriaSet");
 		if (xmcda == null) {
 			m_allCoalitions = Collections.emptyMap();
 		} else {
-			final List<XCriteriaSet> xCriteriaSetList = xmcda.getCriteriaSetList();
-			final XMCDACriteria xmcdaCriteria = new XMCDACriteria();
-			if (xmcdaCriteria.mightBeCoalitionsPerDecisionMaker(xCriteriaSetList)) {
-				m_allCoalitions = xmcdaCriteria.readAllCoalitions(xCriteriaSetList);
-			} else {
-				m_allCoalitions = Collections.emptyMap();
+			try {
+				final List<XCriteriaSet> xCriteriaSetList = validated(xmcda.getCriteriaSetList());
+				final XMCDACriteria xmcdaCriteria = new XMCDACriteria();
+				xmcdaCriteria.setPool(getPool(getSourceCoalitions()));
+				xmcdaCriteria.setParallelism(m_parallelism);
+				if (xmcdaCriteria.mightBeCoalitionsPerDecisionMaker(xCriteriaSetList)) {
+					m_allCoalitions = xmcdaCriteria.readAllCoalitions(xCriteriaSetList);
+				} else {
+					m_allCoalitions = Collections.emptyMap();
+				}
+			} catch (InvalidInputException | XmlValueOutOfRangeException exc) {
+				validateAfterFailure(xmcda, exc);
+				throw exc;
 			}
 		}
 
@@ -623,21 +837,28 @@ public class XMCDAGroupSortingProblemReader extends XMCDAHelperWithVarious {
 					}));
 		}
 
-		final XMCDA xmcda = getXMCDA(getSourceProfilesEvaluations());
+		final XMCDA xmcda = getXMCDA(getSourceProfilesEvaluations(), "performanceTable");
 		if (xmcda == null) {
 			m_allEvaluations = Collections.emptyMap();
 		} else {
-			final List<XPerformanceTable> xPerformanceTableList = xmcda.getPerformanceTableList();
-			final XMCDAEvaluations xmcdaEvaluations = new XMCDAEvaluations();
-			/** TODO think about the difference between these two states. */
-			if (m_problemReader.getAlternativesParsingMethod() == AlternativesParsingMethod.SEEK_CONCEPT
-					|| getAlternativesParsingMethod() == AlternativesParsingMethod.USE_MARKING) {
-				xmcdaEvaluations.setConceptToRead(XAlternativeType.FICTIVE);
-			}
-			if (xmcdaEvaluations.hasNames(xPerformanceTableList)) {
-				m_allEvaluations = xmcdaEvaluations.readPerDecisionMaker(xPerformanceTableList);
-			} else {
-				m_allEvaluations = Collections.emptyMap();
+			try {
+				final List<XPerformanceTable> xPerformanceTableList = validated(xmcda.getPerformanceTableList());
+				final XMCDAEvaluations xmcdaEvaluations = new XMCDAEvaluations();
+				xmcdaEvaluations.setPool(getPool(getSourceProfilesEvaluations()));
+				xmcdaEvaluations.setParallelism(m_parallelism);
+				/** TODO think about the difference between these two states. */
+				if (m_problemReader.getAlternativesParsingMethod() == AlternativesParsingMethod.SEEK_CONCEPT
+						|| getAlternativesParsingMethod() == AlternativesParsingMethod.USE_MARKING) {
+					xmcdaEvaluations.setConceptToRead(XAlternativeType.FICTIVE);
+				}
+				if (xmcdaEvaluations.hasNames(xPerformanceTableList)) {
+					m_allEvaluations = xmcdaEvaluations.readPerDecisionMaker(xPerformanceTableList);
+				} else {
+					m_allEvaluations = Collections.emptyMap();
+				}
+			} catch (InvalidInputException | XmlValueOutOfRangeException exc) {
+				validateAfterFailure(xmcda, exc);
+				throw exc;
 			}
 		}
 
@@ -855,16 +1076,23 @@ public class XMCDAGroupSortingProblemReader extends XMCDAHelperWithVarious {
 		if (m_dms != null) {
 			return Collections.unmodifiableSet(m_dms);
 		}
-		final XMCDA xmcda = getXMCDA(m_sourceDms);
+		final XMCDA xmcda = getXMCDA(m_sourceDms, "methodParameters");
 		if (xmcda == null) {
 			m_dms = Collections.emptySet();
 		} else {
-			final List<XMethodParameters> xMethodParametersList = xmcda.getMethodParametersList();
-			final XMethodParameters xMethodParameters = getUniqueOrZero(xMethodParametersList);
-			if (xMethodParameters == null) {
-				m_dms = Collections.emptySet();
-			} else {
-				m_dms = new XMCDADecisionMakers().read(xMethodParameters);
+			try {
+				final List<XMethodParameters> xMethodParametersList = validated(xmcda.getMethodParametersList());
+				final XMethodParameters xMethodParameters = getUniqueOrZero(xMethodParametersList);
+				if (xMethodParameters == null) {
+					m_dms = Collections.emptySet();
+				} else {
+					final XMCDADecisionMakers xmcdaDecisionMakers = new XMCDADecisionMakers();
+					xmcdaDecisionMakers.setPool(getPool(m_sourceDms));
+					m_dms = xmcdaDecisionMakers.read(xMethodParameters);
+				}
+			} catch (InvalidInputException | XmlValueOutOfRangeException exc) {
+				validateAfterFailure(xmcda, exc);
+				throw exc;
 			}
 		}
 		return Collections.unmodifiableSet(m_dms);
@@ -911,6 +1139,10 @@ public class XMCDAGroupSortingProblemReader extends XMCDAHelperWithVarious {
 
 	public void readGroupPreferencesTo(final IGroupSortingPreferences preferences)
 			throws IOException, XmlException, InvalidInputException {
+		final List<ByteSource> sources = Lists.newArrayList(m_problemReader.getPreferencesSources());
+		sources.add(m_sourceDms);
+		m_problemReader.preload(sources);
+
 		SortingProblemUtils.copyDataToTarget(m_problemReader.readSortingData(false), preferences);
 
 		final Set<DecisionMaker> dms = readDms();
@@ -1411,6 +1643,7 @@ public class XMCDAGroupSortingProblemReader extends XMCDAHelperWithVarious {
 
 	private void init() {
 		m_sourceDms = null;
+		m_parallelism = 1;
 
 		clearCache();
 	}
@@ -4,12 +4,20 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.impl.values.XmlValueOutOfRangeException;
 import org.decision_deck.jmcda.structure.Alternative;
 import org.decision_deck.jmcda.structure.Criterion;
 import org.decision_deck.jmcda.structure.interval.Interval;
@@ -21,6 +29,7 @@ import org.decision_deck.jmcda.structure.thresholds.ThresholdsUtils;
 import org.decision_deck.jmcda.structure.weights.Coalitions;
 import org.decision_deck.jmcda.structure.weights.CoalitionsUtils;
 import org.decisiondeck.jmcda.exc.InvalidInputException;
+import org.decisiondeck.jmcda.persist.xmcda2.DenseEvaluations;
 import org.decisiondeck.jmcda.persist.xmcda2.XMCDAAlternatives;
 import org.decisiondeck.jmcda.persist.xmcda2.XMCDAAlternatives.AlternativesParsingMethod;
 import org.decisiondeck.jmcda.persist.xmcda2.XMCDACriteria;
@@ -31,15 +40,27 @@ import org.decisiondeck.jmcda.persist.xmcda2.generated.XCriteria;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XCriteriaSet;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc.XMCDA;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XPerformanceTable;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDADocumentsCache;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager.ErrorManagement;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAHelperWithVarious;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAObjectPool;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAReadUtils;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAReadUtils.ValidationMode;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDASectionIndex;
 
 import com.google.common.base.Objects;
+import com.google.common.base.Optional;
 import com.google.common.base.Predicates;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.collect.Table;
 import com.google.common.io.ByteSource;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 /**
  * <p>
@@ -55,6 +76,19 @@ import com.google.common.io.ByteSource;
  */
 public class XMCDAProblemReader extends XMCDAHelperWithVarious {
 
+    /**
+     * A document parsed by a preloading task.
+     */
+    private static class ParsedDocument {
+	public final String m_versionRead;
+	public final XMCDA m_xmcda;
+
+	public ParsedDocument(XMCDA xmcda, String versionRead) {
+	    m_xmcda = xmcda;
+	    m_versionRead = versionRead;
+	}
+    }
+
     /**
      * Clears the information cached in this class, resulting in the loss of any previously read information that had
      * been remembered by this class. After this method is called, using any read method results in an effective read of
@@ -62,9 +96,14 @@ public class XMCDAProblemReader extends XMCDAHelperWithVarious {
      */
     public void clearCache() {
 	m_sourceVersion = null;
+	m_documents.clear();
+	m_sections.clear();
+	m_indexes.clear();
+	m_pools.clear();
 
 	m_alternatives = null;
 	m_alternativesEvaluations = null;
+	m_denseAlternativesEvaluations = null;
 	m_coalitions = null;
 	m_criteria = null;
 	m_scales = null;
@@ -204,7 +243,10 @@ public class XMCDAProblemReader extends XMCDAHelperWithVarious {
 
     /**
      * Retrieves the XMCDA document from the given source <em>or</em> from the main source if the given source is
-     * <code>null</code>. Ensures that it contains an XMCDA document conforming to the XMCDA schema.
+     * <code>null</code>. Ensures that it contains an XMCDA document conforming to the XMCDA schema, if this object
+     * follows the {@link ValidationMode#FULL} validation mode. Each distinct
+     * effective source (in the sense of {@link #equal(ByteSource, ByteSource)}) is parsed and validated only once, the
+     * resulting document is then shared by every read method until the cache is cleared.
      * 
      * @param source
      *            may be <code>null</code>, in which case the main source in this object must be non <code>null</code>.
@@ -226,19 +268,294 @@ public class XMCDAProblemReader extends XMCDAHelperWithVarious {
 	    realSource = source;
 	}
 
-	final XMCDAReadUtils xmcdaUtils = new XMCDAReadUtils();
-	final XMCDA xmcda = xmcdaUtils.getXMCDA(realSource);
+	final XMCDA cached = m_documents.get(realSource);
+	if (cached != null) {
+	    return cached;
+	}
+
+	final XMCDA xmcda = m_readUtils.getXMCDA(realSource);
+	cache(realSource, xmcda, m_readUtils.getLastVersionRead());
+	return xmcda;
+    }
+
+    /**
+     * Retrieves the XMCDA document from the given source or from the main source if the given source is
+     * <code>null</code>, possibly restricted to the top level sections having the given tag if this object reads
+     * sections through an index. The document, restricted or not, is parsed and validated only once until the cache is
+     * cleared. If the whole document has been parsed already, it is returned instead.
+     * 
+     * @param source
+     *            may be <code>null</code>, in which case the main source in this object must be non <code>null</code>.
+     * @param tag
+     *            not <code>null</code>, the local name of the top level sections to read, e.g. <code>criteria</code>.
+     * @return <code>null</code> iff the given source and the main source are <code>null</code>.
+     * @throws IOException
+     *             if an exception happens while opening or closing the given reader, or while parsing the source.
+     * @throws XmlException
+     *             if an exception related to the contents of the source happens while parsing the source, including if
+     *             the given source does not contain a valid XMCDA document.
+     * @see #setSectionsIndexed(boolean)
+     */
+    XMCDA getXMCDA(ByteSource source, String tag) throws IOException, XmlException {
+	checkNotNull(tag);
+	if (!m_sectionsIndexed) {
+	    return getXMCDA(source);
+	}
+	final ByteSource realSource = source == null ? m_sourceMain : source;
+	if (realSource == null) {
+	    return null;
+	}
+	final XMCDA whole = m_documents.get(realSource);
+	if (whole != null) {
+	    return whole;
+	}
+	final XMCDA cached = m_sections.get(realSource, tag);
+	if (cached != null) {
+	    return cached;
+	}
+
+	XMCDASectionIndex index = m_indexes.get(realSource);
+	if (index == null || !matchesSize(index, realSource)) {
+	    index = XMCDASectionIndex.build(realSource);
+	    m_indexes.put(realSource, index);
+	}
+	final XMCDA xmcda = m_readUtils.getXMCDA(index.getSectionsSource(realSource, ImmutableSet.of(tag)));
+	m_sections.put(realSource, tag, xmcda);
+	updateSourceVersion(m_readUtils.getLastVersionRead());
+	return xmcda;
+    }
+
+    /**
+     * Tests whether the given index may be used to locate the sections of the given source. When the size of the
+     * source is known without reading it, it must be the size recorded in the index, otherwise the index is out of
+     * date. An index is assumed to be up to date when the size of the source is unknown.
+     */
+    static private boolean matchesSize(XMCDASectionIndex index, ByteSource source) {
+	final Optional<Long> size = source.sizeIfKnown();
+	return !size.isPresent() || size.get().longValue() == index.getSourceSize();
+    }
+
+    private void cache(ByteSource source, XMCDA xmcda, String versionRead) {
+	m_documents.put(source, xmcda);
+	updateSourceVersion(versionRead);
+    }
+
+    /**
+     * Retrieves the pool of domain objects shared by every helper reading from the given source, so that each
+     * identifier read from that source yields a single object until the cache is cleared.
+     * 
+     * @param source
+     *            may be <code>null</code>, in which case the main source in this object is used.
+     * @return <code>null</code> iff the given source and the main source are <code>null</code>.
+     */
+    XMCDAObjectPool getPool(ByteSource source) {
+	final ByteSource realSource = source == null ? m_sourceMain : source;
+	if (realSource == null) {
+	    return null;
+	}
+	XMCDAObjectPool pool = m_pools.get(realSource);
+	if (pool == null) {
+	    pool = new XMCDAObjectPool();
+	    m_pools.put(realSource, pool);
+	}
+	return pool;
+    }
 
-	final String lastVersionRead = xmcdaUtils.getLastVersionRead();
+    private void updateSourceVersion(String versionRead) {
 	if (m_sourceVersion == null) {
-	    m_sourceVersion = lastVersionRead;
+	    m_sourceVersion = versionRead;
 	} else {
-	    if (!m_sourceVersion.equals(lastVersionRead)) {
+	    if (!m_sourceVersion.equals(versionRead)) {
 		m_sourceVersion = null;
 	    }
 	}
+    }
+
+    /**
+     * <p>
+     * Parses and validates concurrently, using the executor set in this object, the documents from the given sources
+     * that are not in cache yet, and puts them in cache. A <code>null</code> source designates the main source. Sources
+     * that are equal in the sense of {@link #equal(ByteSource, ByteSource)} are parsed only once. Only the parsing is
+     * done concurrently: the documents are then read from the cache by the usual read methods, in the usual order, thus
+     * errors regarding the contents are reported as when no executor is set.
+     * </p>
+     * <p>
+     * If parsing fails for some sources, the exception corresponding to the first of these sources, in the given
+     * order, is thrown, after the documents of the preceding sources have been cached. This is thus as if the sources
+     * had been parsed one after the other.
+     * </p>
+     * <p>
+     * If no executor is set, or if this object reads sections through an index, this method does nothing: the
+     * documents are parsed lazily when read.
+     * </p>
+     * 
+     * @param sources
+     *            not <code>null</code>, may contain <code>null</code> sources.
+     * @throws IOException
+     *             if an exception happens while opening or closing a source, or while parsing it.
+     * @throws XmlException
+     *             if an exception related to the contents of a source happens while parsing the source, including if
+     *             the source does not contain a valid XMCDA document.
+     * @see #setExecutor(Executor)
+     */
+    public void preload(Collection<ByteSource> sources) throws IOException, XmlException {
+	checkNotNull(sources);
+	if (m_executor == null || m_sectionsIndexed) {
+	    return;
+	}
+	final Set<ByteSource> toParse = Sets.newLinkedHashSet();
+	for (ByteSource source : sources) {
+	    final ByteSource realSource = source == null ? m_sourceMain : source;
+	    if (realSource != null && !m_documents.containsKey(realSource)) {
+		toParse.add(realSource);
+	    }
+	}
 
-	return xmcda;
+	final ValidationMode validationMode = m_readUtils.getValidationMode();
+	final XMCDADocumentsCache documentsCache = m_readUtils.getDocumentsCache();
+	final List<FutureTask<ParsedDocument>> tasks = Lists.newArrayList();
+	for (final ByteSource source : toParse) {
+	    final FutureTask<ParsedDocument> task = new FutureTask<ParsedDocument>(new Callable<ParsedDocument>() {
+		@Override
+		public ParsedDocument call() throws IOException, XmlException {
+		    /** The version read is held by the utils object, thus each task uses its own. */
+		    final XMCDAReadUtils utils = documentsCache == null ? new XMCDAReadUtils() : new XMCDAReadUtils(
+			    new XMCDAErrorsManager(), documentsCache);
+		    utils.setValidationMode(validationMode);
+		    final XMCDA xmcda = utils.getXMCDA(source);
+		    return new ParsedDocument(xmcda, utils.getLastVersionRead());
+		}
+	    });
+	    tasks.add(task);
+	    m_executor.execute(task);
+	}
+
+	final Iterator<FutureTask<ParsedDocument>> tasksIterator = tasks.iterator();
+	for (ByteSource source : toParse) {
+	    final FutureTask<ParsedDocument> task = tasksIterator.next();
+	    final ParsedDocument parsed;
+	    try {
+		parsed = Uninterruptibles.getUninterruptibly(task);
+	    } catch (ExecutionException exc) {
+		final Throwable cause = exc.getCause();
+		if (cause instanceof IOException) {
+		    throw (IOException) cause;
+		}
+		if (cause instanceof XmlException) {
+		    throw (XmlException) cause;
+		}
+		if (cause instanceof RuntimeException) {
+		    throw (RuntimeException) cause;
+		}
+		if (cause instanceof Error) {
+		    throw (Error) cause;
+		}
+		throw new IllegalStateException(cause);
+	    }
+	    cache(source, parsed.m_xmcda, parsed.m_versionRead);
+	}
+    }
+
+    /**
+     * Tells whether the evaluations are read into a dense matrix.
+     * 
+     * @return <code>false</code> by default.
+     * @see #setDenseEvaluations(boolean)
+     */
+    public boolean isDenseEvaluations() {
+	return m_denseEvaluations;
+    }
+
+    /**
+     * Sets whether the evaluations are read into a dense matrix, indexed by alternative and criterion, instead of the
+     * default sparse matrix. The evaluations read are the same, but when most alternatives are evaluated on most
+     * criteria, the dense matrix uses less memory and is faster to access. The evaluations are then returned as
+     * {@link DenseEvaluations} objects, which are immutable.
+     * <p>
+     * A dense matrix is never equal, in the sense of {@link Object#equals(Object)}, to evaluations of an other class,
+     * thus evaluations read with this option set are not equal to those read without it, even with the same entries.
+     * Use {@link DenseEvaluations#approxEquals} with a zero tolerance to compare them.
+     * </p>
+     * 
+     * @param denseEvaluations
+     *            <code>true</code> to read dense matrixes.
+     * @see XMCDAEvaluations#readDense(Collection)
+     */
+    public void setDenseEvaluations(boolean denseEvaluations) {
+	m_denseEvaluations = denseEvaluations;
+	clearCache();
+    }
+
+    /**
+     * Tells whether this object parses only the top level sections it needs, located through an index of each source.
+     * 
+     * @return <code>false</code> by default.
+     * @see #setSectionsIndexed(boolean)
+     */
+    public boolean isSectionsIndexed() {
+	return m_sectionsIndexed;
+    }
+
+    /**
+     * <p>
+     * Sets whether this object parses only the top level sections it needs, e.g. only the <code>criteria</code>
+     * sections when reading criteria, instead of the whole documents. The sections are located through an
+     * {@link XMCDASectionIndex} of each source, built when the source is first read, or given using
+     * {@link #putSectionIndex(ByteSource, XMCDASectionIndex)}. This is useful when reading a few objects from big
+     * documents, e.g. the criteria of a document that also contains a huge performance table.
+     * </p>
+     * <p>
+     * The objects read are the same, but each kind of section is parsed separately, thus reading every object of a
+     * document is slower this way. In the {@link ValidationMode#FULL} validation mode, only the sections parsed are
+     * validated.
+     * </p>
+     * 
+     * @param sectionsIndexed
+     *            <code>true</code> to parse only the sections needed.
+     */
+    public void setSectionsIndexed(boolean sectionsIndexed) {
+	m_sectionsIndexed = sectionsIndexed;
+	clearCache();
+    }
+
+    /**
+     * Sets the index to use to locate the sections of the given source, instead of building it, e.g. an index written
+     * next to the source. The index is forgotten when the cache is cleared, including when a source or an option of
+     * this object is set. It is only used if this object reads sections through an index. If, when it is used, the
+     * size of the source is known and differs from the one recorded in the index, the index is rebuilt instead.
+     * 
+     * @param source
+     *            not <code>null</code>.
+     * @param index
+     *            not <code>null</code>, an up to date index of the given source.
+     * @see #setSectionsIndexed(boolean)
+     */
+    public void putSectionIndex(ByteSource source, XMCDASectionIndex index) {
+	checkNotNull(source);
+	checkNotNull(index);
+	m_indexes.put(source, index);
+    }
+
+    /**
+     * Retrieves the executor used to parse several sources concurrently.
+     * 
+     * @return <code>null</code> if not set.
+     * @see #preload(Collection)
+     */
+    public Executor getExecutor() {
+	return m_executor;
+    }
+
+    /**
+     * Sets the executor used to parse several sources concurrently when several objects are read at once. This object
+     * itself is not thread-safe: the executor is only used internally.
+     * 
+     * @param executor
+     *            <code>null</code> to parse the sources one after the other, when they are first needed.
+     * @see #preload(Collection)
+     */
+    public void setExecutor(Executor executor) {
+	m_executor = executor;
     }
 
     /**
@@ -270,22 +587,28 @@ public class XMCDAProblemReader extends XMCDAHelperWithVarious {
 	if (m_alternatives != null) {
 	    return Collections.unmodifiableSet(m_alternatives);
 	}
-	final XMCDA xmcda = getXMCDA(m_sourceAlternatives);
+	final XMCDA xmcda = getXMCDA(m_sourceAlternatives, "alternatives");
 	if (xmcda == null) {
 	    m_alternatives = Collections.emptySet();
 	} else {
-	    final List<XAlternatives> xAlternativesList = xmcda.getAlternativesList();
-	    final AlternativesParsingMethod parsingMethod;
-	    if (m_alternativesParsingMethod == null) {
-		if (xAlternativesList.size() <= 1) {
-		    parsingMethod = AlternativesParsingMethod.TAKE_ALL;
+	    try {
+		final List<XAlternatives> xAlternativesList = validated(xmcda.getAlternativesList());
+		final AlternativesParsingMethod parsingMethod;
+		if (m_alternativesParsingMethod == null) {
+		    if (xAlternativesList.size() <= 1) {
+			parsingMethod = AlternativesParsingMethod.TAKE_ALL;
+		    } else {
+			parsingMethod = AlternativesParsingMethod.SEEK_CONCEPT;
+		    }
 		} else {
-		    parsingMethod = AlternativesParsingMethod.SEEK_CONCEPT;
+		    parsingMethod = m_alternativesParsingMethod;
 		}
-	    } else {
-		parsingMethod = m_alternativesParsingMethod;
+		m_alternatives = XMCDAAlternatives.read(xAlternativesList, XAlternativeType.REAL, parsingMethod,
+			getPool(m_sourceAlternatives));
+	    } catch (InvalidInputException | XmlValueOutOfRangeException exc) {
+		validateAfterFailure(xmcda, exc);
+		throw exc;
 	    }
-	    m_alternatives = XMCDAAlternatives.read(xAlternativesList, XAlternativeType.REAL, parsingMethod);
 	}
 	return Collections.unmodifiableSet(m_alternatives);
     }
@@ -300,11 +623,43 @@ public class XMCDAProblemReader extends XMCDAHelperWithVarious {
     private AlternativesParsingMethod m_alternativesParsingMethod;
     private Set<Alternative> m_alternatives;
     private Evaluations m_alternativesEvaluations;
+    /**
+     * Used instead of {@link #m_alternativesEvaluations} when reading dense evaluations.
+     */
+    private DenseEvaluations m_denseAlternativesEvaluations;
+    private boolean m_denseEvaluations;
     private Coalitions m_coalitions;
     private Set<Criterion> m_criteria;
     private Map<Criterion, Interval> m_scales;
     private Thresholds m_thresholds;
     private String m_sourceVersion;
+    /**
+     * <code>null</code> for sequential parsing.
+     */
+    private Executor m_executor;
+    /**
+     * The documents already parsed, indexed by their (effective) source. Never <code>null</code>, sources and documents
+     * are not <code>null</code>.
+     */
+    private final Map<ByteSource, XMCDA> m_documents = Maps.newHashMap();
+    /**
+     * Used instead of {@link #m_documents} when reading sections through an index: the documents restricted to the
+     * sections of a given tag, indexed by their (effective) source and the tag.
+     */
+    private final Table<ByteSource, String, XMCDA> m_sections = HashBasedTable.create();
+    /**
+     * The indexes of the sources read, when reading sections through an index.
+     */
+    private final Map<ByteSource, XMCDASectionIndex> m_indexes = Maps.newHashMap();
+    /**
+     * The pools of domain objects shared by the helpers reading from a source, indexed by their (effective) source.
+     */
+    private final Map<ByteSource, XMCDAObjectPool> m_pools = Maps.newHashMap();
+    private boolean m_sectionsIndexed;
+    /**
+     * Used to parse the documents, holds the validation mode.
+     */
+    private final XMCDAReadUtils m_readUtils;
 
     /**
      * Creates a new reader which will use the default error management strategy {@link ErrorManagement#THROW}.
@@ -332,6 +687,22 @@ public class XMCDAProblemReader extends XMCDAHelperWithVarious {
      */
     public XMCDAProblemReader(XMCDAErrorsManager errorsManager) {
 	super(errorsManager);
+	m_readUtils = new XMCDAReadUtils();
+	init(null);
+    }
+
+    /**
+     * Creates a new reader delegating error management to the given error manager in case of unexpected data read, and
+     * retrieving the documents it reads through the given cache.
+     * 
+     * @param errorsManager
+     *            not <code>null</code>.
+     * @param documentsCache
+     *            not <code>null</code>, e.g. {@link XMCDADocumentsCache#getShared()}.
+     */
+    public XMCDAProblemReader(XMCDAErrorsManager errorsManager, XMCDADocumentsCache documentsCache) {
+	super(errorsManager);
+	m_readUtils = new XMCDAReadUtils(new XMCDAErrorsManager(), documentsCache);
 	init(null);
     }
 
@@ -347,6 +718,26 @@ public class XMCDAProblemReader extends XMCDAHelperWithVarious {
     public XMCDAProblemReader(ByteSource mainSource, XMCDAErrorsManager errorsManager) {
 	super(errorsManager);
 	checkNotNull(mainSource);
+	m_readUtils = new XMCDAReadUtils();
+	init(mainSource);
+    }
+
+    /**
+     * Creates a new reader with a main source, delegating error management to the given error manager in case of
+     * unexpected data read, and retrieving the documents it reads through the given cache.
+     * 
+     * @param mainSource
+     *            not <code>null</code>.
+     * @param errorsManager
+     *            not <code>null</code>.
+     * @param documentsCache
+     *            not <code>null</code>, e.g. {@link XMCDADocumentsCache#getShared()}.
+     */
+    public XMCDAProblemReader(ByteSource mainSource, XMCDAErrorsManager errorsManager,
+	    XMCDADocumentsCache documentsCache) {
+	super(errorsManager);
+	checkNotNull(mainSource);
+	m_readUtils = new XMCDAReadUtils(new XMCDAErrorsManager(), documentsCache);
 	init(mainSource);
     }
 
@@ -359,6 +750,8 @@ public class XMCDAProblemReader extends XMCDAHelperWithVarious {
 	m_sourceMain = mainSource;
 
 	m_alternativesParsingMethod = null;
+	m_denseEvaluations = false;
+	m_sectionsIndexed = false;
 
 	clearCache();
     }
@@ -384,21 +777,34 @@ public class XMCDAProblemReader extends XMCDAHelperWithVarious {
      *             strategy.
      */
     public EvaluationsRead readAlternativeEvaluations() throws IOException, XmlException, InvalidInputException {
+	if (m_denseAlternativesEvaluations != null) {
+	    return m_denseAlternativesEvaluations;
+	}
 	if (m_alternativesEvaluations != null) {
 	    return EvaluationsUtils.getFilteredView(m_alternativesEvaluations, Predicates.<Alternative> alwaysTrue(),
 		    null);
 	}
-	final XMCDA xmcda = getXMCDA(m_sourceAlternativesEvaluations);
+	final XMCDA xmcda = getXMCDA(m_sourceAlternativesEvaluations, "performanceTable");
 	if (xmcda == null) {
 	    m_alternativesEvaluations = EvaluationsUtils.newEvaluationMatrix();
 	} else {
-	    final List<XPerformanceTable> xPerformanceTableList = xmcda.getPerformanceTableList();
-	    final XMCDAEvaluations xmcdaEvaluations = new XMCDAEvaluations();
-	    if (getAlternativesParsingMethod() == AlternativesParsingMethod.SEEK_CONCEPT
-		    || getAlternativesParsingMethod() == AlternativesParsingMethod.USE_MARKING) {
-		xmcdaEvaluations.setConceptToRead(XAlternativeType.REAL);
+	    try {
+		final List<XPerformanceTable> xPerformanceTableList = validated(xmcda.getPerformanceTableList());
+		final XMCDAEvaluations xmcdaEvaluations = new XMCDAEvaluations();
+		xmcdaEvaluations.setPool(getPool(m_sourceAlternativesEvaluations));
+		if (getAlternativesParsingMethod() == AlternativesParsingMethod.SEEK_CONCEPT
+			|| getAlternativesParsingMethod() == AlternativesParsingMethod.USE_MARKING) {
+		    xmcdaEvaluations.setConceptToRead(XAlternativeType.REAL);
+		}
+		if (m_denseEvaluations) {
+		    m_denseAlternativesEvaluations = xmcdaEvaluations.readDense(xPerformanceTableList);
+		    return m_denseAlternativesEvaluations;
+		}
+		m_alternativesEvaluations = xmcdaEvaluations.read(xPerformanceTableList);
+	    } catch (InvalidInputException | XmlValueOutOfRangeException exc) {
+		validateAfterFailure(xmcda, exc);
+		throw exc;
 	    }
-	    m_alternativesEvaluations = xmcdaEvaluations.read(xPerformanceTableList);
 	}
 	return EvaluationsUtils.getFilteredView(m_alternativesEvaluations, Predicates.<Alternative> alwaysTrue(), null);
     }
@@ -427,18 +833,24 @@ public class XMCDAProblemReader extends XMCDAHelperWithVarious {
 	if (m_coalitions != null) {
 	    return CoalitionsUtils.asReadView(m_coalitions);
 	}
-	final XMCDA xmcda = getXMCDA(m_sourceCoalitions);
+	final XMCDA xmcda = getXMCDA(m_sourceCoalitions, "criteriaSet");
 	if (xmcda == null) {
 	    m_coalitions = CoalitionsUtils.newCoalitions();
 	} else {
-	    final List<XCriteriaSet> xCriteriaSetList = xmcda.getCriteriaSetList();
-	    final XCriteriaSet xCriteriaSet = xCriteriaSetList.size() != 1 ? null : Iterables
-		    .getOnlyElement(xCriteriaSetList);
-	    if (xCriteriaSet == null) {
-		m_coalitions = CoalitionsUtils.newCoalitions();
-	    } else {
-		final XMCDACriteria xmcdaCriteria = new XMCDACriteria();
-		m_coalitions = xmcdaCriteria.readCoalitions(xCriteriaSet);
+	    try {
+		final List<XCriteriaSet> xCriteriaSetList = validated(xmcda.getCriteriaSetList());
+		final XCriteriaSet xCriteriaSet = xCriteriaSetList.size() != 1 ? null : Iterables
+			.getOnlyElement(xCriteriaSetList);
+		if (xCriteriaSet == null) {
+		    m_coalitions = CoalitionsUtils.newCoalitions();
+		} else {
+		    final XMCDACriteria xmcdaCriteria = new XMCDACriteria();
+		    xmcdaCriteria.setPool(getPool(m_sourceCoalitions));
+		    m_coalitions = xmcdaCriteria.readCoalitions(xCriteriaSet);
+		}
+	    } catch (InvalidInputException | XmlValueOutOfRangeException exc) {
+		validateAfterFailure(xmcda, exc);
+		throw exc;
 	    }
 	}
 	return CoalitionsUtils.asReadView(m_coalitions);
@@ -469,23 +881,29 @@ public class XMCDAProblemReader extends XMCDAHelperWithVarious {
 	if (m_criteria != null) {
 	    return Collections.unmodifiableSet(m_criteria);
 	}
-	final XMCDA xmcda = getXMCDA(m_sourceCriteria);
+	final XMCDA xmcda = getXMCDA(m_sourceCriteria, "criteria");
 	if (xmcda == null) {
 	    m_criteria = Collections.emptySet();
 	    m_scales = Collections.emptyMap();
 	    m_thresholds = ThresholdsUtils.newThresholds();
 	} else {
-	    final List<XCriteria> xCriteriaList = xmcda.getCriteriaList();
-	    final XCriteria xCriteria = getUniqueOrZero(xCriteriaList);
-	    if (xCriteria == null) {
-		m_criteria = Collections.emptySet();
-		m_scales = Collections.emptyMap();
-		m_thresholds = ThresholdsUtils.newThresholds();
-	    } else {
-		final XMCDACriteria xmcdaCriteria = new XMCDACriteria();
-		m_criteria = xmcdaCriteria.read(xCriteria);
-		m_scales = xmcdaCriteria.getScales();
-		m_thresholds = xmcdaCriteria.getThresholds();
+	    try {
+		final List<XCriteria> xCriteriaList = validated(xmcda.getCriteriaList());
+		final XCriteria xCriteria = getUniqueOrZero(xCriteriaList);
+		if (xCriteria == null) {
+		    m_criteria = Collections.emptySet();
+		    m_scales = Collections.emptyMap();
+		    m_thresholds = ThresholdsUtils.newThresholds();
+		} else {
+		    final XMCDACriteria xmcdaCriteria = new XMCDACriteria();
+		    xmcdaCriteria.setPool(getPool(m_sourceCriteria));
+		    m_criteria = xmcdaCriteria.read(xCriteria);
+		    m_scales = xmcdaCriteria.getScales();
+		    m_thresholds = xmcdaCriteria.getThresholds();
+		}
+	    } catch (InvalidInputException | XmlValueOutOfRangeException exc) {
+		validateAfterFailure(xmcda, exc);
+		throw exc;
 	    }
 	}
 	return Collections.unmodifiableSet(m_criteria);
@@ -541,6 +959,61 @@ public class XMCDAProblemReader extends XMCDAHelperWithVarious {
 	return ThresholdsUtils.getReadView(m_thresholds);
     }
 
+    /**
+     * Retrieves the validation mode this object follows. The default is {@link ValidationMode#FULL}.
+     * 
+     * @return not <code>null</code>.
+     */
+    public ValidationMode getValidationMode() {
+	return m_readUtils.getValidationMode();
+    }
+
+    /**
+     * Sets the validation mode this object follows. As the documents already read have been validated (or not)
+     * according to the previous mode, this clears the cache.
+     * 
+     * @param validationMode
+     *            not <code>null</code>.
+     */
+    public void setValidationMode(ValidationMode validationMode) {
+	m_readUtils.setValidationMode(validationMode);
+	clearCache();
+    }
+
+    /**
+     * Returns the given fragments, after having ensured that they validate if this object follows the
+     * {@link ValidationMode#FRAGMENT} validation mode.
+     * 
+     * @param fragments
+     *            not <code>null</code>.
+     * @return the given fragments.
+     * @throws XmlException
+     *             if this object follows the {@link ValidationMode#FRAGMENT} validation mode and some fragment does not
+     *             validate.
+     */
+    <T extends XmlObject> List<T> validated(List<T> fragments) throws XmlException {
+	m_readUtils.validateFragments(fragments);
+	return fragments;
+    }
+
+    /**
+     * To be called when reading from the given document failed. If this object follows the
+     * {@link ValidationMode#ON_ERROR_ONLY} validation mode, ensures that the document validates. The document is the
+     * one the failed read used, thus possibly restricted to some sections if this object reads sections through an
+     * index: only those sections are validated, and the rest of the source is not parsed.
+     * 
+     * @param xmcda
+     *            not <code>null</code>.
+     * @param failure
+     *            not <code>null</code>.
+     * @throws XmlException
+     *             if the given document does not validate and this object follows the
+     *             {@link ValidationMode#ON_ERROR_ONLY} validation mode.
+     */
+    void validateAfterFailure(XMCDA xmcda, Exception failure) throws XmlException {
+	m_readUtils.validateAfterFailure(xmcda, failure);
+    }
+
     /**
      * Tests whether two sources are equal when replacing a <code>null</code> source with the main source. If both
      * resulting sources are <code>null</code>, this method returns <code>true</code>. This method can be used to test
@@ -582,17 +1055,30 @@ public class XMCDAProblemReader extends XMCDAHelperWithVarious {
     public EvaluationsRead readEvaluationsIgnoreConcept() throws IOException, XmlException, InvalidInputException {
 	checkState(getAlternativesParsingMethod() == null
 		|| getAlternativesParsingMethod() == AlternativesParsingMethod.TAKE_ALL);
+	if (m_denseAlternativesEvaluations != null) {
+	    return m_denseAlternativesEvaluations;
+	}
         if (m_alternativesEvaluations != null) {
             return EvaluationsUtils.getFilteredView(m_alternativesEvaluations, Predicates.<Alternative> alwaysTrue(),
         	    null);
         }
-        final XMCDA xmcda = getXMCDA(m_sourceAlternativesEvaluations);
+        final XMCDA xmcda = getXMCDA(m_sourceAlternativesEvaluations, "performanceTable");
         if (xmcda == null) {
 	    m_alternativesEvaluations = EvaluationsUtils.newEvaluationMatrix();
         } else {
-            final List<XPerformanceTable> xPerformanceTableList = xmcda.getPerformanceTableList();
-            final XMCDAEvaluations xmcdaEvaluations = new XMCDAEvaluations();
-            m_alternativesEvaluations = xmcdaEvaluations.read(xPerformanceTableList);
+	    try {
+		final List<XPerformanceTable> xPerformanceTableList = validated(xmcda.getPerformanceTableList());
+		final XMCDAEvaluations xmcdaEvaluations = new XMCDAEvaluations();
+		xmcdaEvaluations.setPool(getPool(m_sourceAlternativesEvaluations));
+		if (m_denseEvaluations) {
+		    m_denseAlternativesEvaluations = xmcdaEvaluations.readDense(xPerformanceTableList);
+		    return m_denseAlternativesEvaluations;
+		}
+		m_alternativesEvaluations = xmcdaEvaluations.read(xPerformanceTableList);
+	    } catch (InvalidInputException | XmlValueOutOfRangeException exc) {
+		validateAfterFailure(xmcda, exc);
+		throw exc;
+	    }
         }
         return EvaluationsUtils.getFilteredView(m_alternativesEvaluations, Predicates.<Alternative> alwaysTrue(), null);
     }
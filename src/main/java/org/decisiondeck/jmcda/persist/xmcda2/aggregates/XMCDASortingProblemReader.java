@@ -5,13 +5,18 @@ import static com.google.common.base.Preconditions.checkState;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.impl.values.XmlValueOutOfRangeException;
 import org.decision_deck.jmcda.structure.Alternative;
 import org.decision_deck.jmcda.structure.Criterion;
 import org.decision_deck.jmcda.structure.interval.Interval;
@@ -37,9 +42,13 @@ import org.decisiondeck.jmcda.persist.xmcda2.generated.XCategories;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XCategoriesProfiles;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc.XMCDA;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XPerformanceTable;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDADocumentsCache;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager.ErrorManagement;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAHelperWithVarious;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAObjectPool;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAReadUtils.ValidationMode;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDASectionIndex;
 import org.decisiondeck.jmcda.structure.sorting.assignment.AssignmentsToMultipleFiltering;
 import org.decisiondeck.jmcda.structure.sorting.assignment.IAssignmentsRead;
 import org.decisiondeck.jmcda.structure.sorting.assignment.IAssignmentsToMultiple;
@@ -126,6 +135,25 @@ public class XMCDASortingProblemReader extends XMCDAHelperWithVarious {
 	init();
     }
 
+    /**
+     * Creates a new reader with a main source, delegating error management to the given error manager in case of
+     * unexpected data read, and retrieving the documents it reads through the given cache.
+     * 
+     * @param mainSource
+     *            not <code>null</code>.
+     * @param errorsManager
+     *            not <code>null</code>.
+     * @param documentsCache
+     *            not <code>null</code>, e.g. {@link XMCDADocumentsCache#getShared()}.
+     */
+    public XMCDASortingProblemReader(ByteSource mainSource, XMCDAErrorsManager errorsManager,
+	    XMCDADocumentsCache documentsCache) {
+	super(errorsManager);
+	checkNotNull(mainSource);
+	m_problemReader = new XMCDAProblemReader(mainSource, errorsManager, documentsCache);
+	init();
+    }
+
     private void init() {
 	m_sourceCategories = null;
 	m_sourceCategoriesProfiles = null;
@@ -207,17 +235,23 @@ public class XMCDASortingProblemReader extends XMCDAHelperWithVarious {
 	if (m_categories != null) {
 	    return Sets.unmodifiableNavigableSet(m_categories);
 	}
-	final XMCDA xmcda = getXMCDA(m_sourceCategories);
+	final XMCDA xmcda = getXMCDA(m_sourceCategories, "categories");
 	if (xmcda == null) {
 	    m_categories = ExtentionalTotalOrder.create();
 	} else {
-	    final List<XCategories> xCategoriesList = xmcda.getCategoriesList();
-	    final XCategories xCategories = getUniqueOrZero(xCategoriesList);
-	    if (xCategories == null) {
-		m_categories = ExtentionalTotalOrder.create();
-	    } else {
-		final XMCDACategories xmcdaCategories = new XMCDACategories();
-		m_categories = xmcdaCategories.read(xCategories);
+	    try {
+		final List<XCategories> xCategoriesList = validated(xmcda.getCategoriesList());
+		final XCategories xCategories = getUniqueOrZero(xCategoriesList);
+		if (xCategories == null) {
+		    m_categories = ExtentionalTotalOrder.create();
+		} else {
+		    final XMCDACategories xmcdaCategories = new XMCDACategories();
+		    xmcdaCategories.setPool(getPool(m_sourceCategories));
+		    m_categories = xmcdaCategories.read(xCategories);
+		}
+	    } catch (InvalidInputException | XmlValueOutOfRangeException exc) {
+		validateAfterFailure(xmcda, exc);
+		throw exc;
 	    }
 	}
 	return Sets.unmodifiableNavigableSet(m_categories);
@@ -248,17 +282,23 @@ public class XMCDASortingProblemReader extends XMCDAHelperWithVarious {
 	if (m_catsAndProfs != null) {
 	    return Categories.getReadView(m_catsAndProfs);
 	}
-	final XMCDA xmcda = getXMCDA(m_sourceCategoriesProfiles);
+	final XMCDA xmcda = getXMCDA(m_sourceCategoriesProfiles, "categoriesProfiles");
 	if (xmcda == null) {
 	    m_catsAndProfs = Categories.newCatsAndProfs();
 	} else {
-	    final List<XCategoriesProfiles> xCategoriesProfilesList = xmcda.getCategoriesProfilesList();
-	    final XCategoriesProfiles xCategoriesProfiles = getUniqueOrZero(xCategoriesProfilesList);
-	    if (xCategoriesProfiles == null) {
-		m_catsAndProfs = Categories.newCatsAndProfs();
-	    } else {
-		final XMCDACategories xmcdaCategories = new XMCDACategories();
-		m_catsAndProfs = xmcdaCategories.read(xCategoriesProfiles);
+	    try {
+		final List<XCategoriesProfiles> xCategoriesProfilesList = validated(xmcda.getCategoriesProfilesList());
+		final XCategoriesProfiles xCategoriesProfiles = getUniqueOrZero(xCategoriesProfilesList);
+		if (xCategoriesProfiles == null) {
+		    m_catsAndProfs = Categories.newCatsAndProfs();
+		} else {
+		    final XMCDACategories xmcdaCategories = new XMCDACategories();
+		    xmcdaCategories.setPool(getPool(m_sourceCategoriesProfiles));
+		    m_catsAndProfs = xmcdaCategories.read(xCategoriesProfiles);
+		}
+	    } catch (InvalidInputException | XmlValueOutOfRangeException exc) {
+		validateAfterFailure(xmcda, exc);
+		throw exc;
 	    }
 	}
 	return Categories.getReadView(m_catsAndProfs);
@@ -293,22 +333,28 @@ public class XMCDASortingProblemReader extends XMCDAHelperWithVarious {
 	if (m_profiles != null) {
 	    return m_profiles;
 	}
-	final XMCDA xmcda = getXMCDA(m_sourceProfiles);
+	final XMCDA xmcda = getXMCDA(m_sourceProfiles, "alternatives");
 	if (xmcda == null) {
 	    m_profiles = Collections.emptySet();
 	} else {
-	    final List<XAlternatives> xAlternativesList = xmcda.getAlternativesList();
-	    final AlternativesParsingMethod parsingMethod;
-	    if (getAlternativesParsingMethod() == null) {
-		if (xAlternativesList.size() <= 1) {
-		    parsingMethod = AlternativesParsingMethod.TAKE_ALL;
+	    try {
+		final List<XAlternatives> xAlternativesList = validated(xmcda.getAlternativesList());
+		final AlternativesParsingMethod parsingMethod;
+		if (getAlternativesParsingMethod() == null) {
+		    if (xAlternativesList.size() <= 1) {
+			parsingMethod = AlternativesParsingMethod.TAKE_ALL;
+		    } else {
+			parsingMethod = AlternativesParsingMethod.SEEK_CONCEPT;
+		    }
 		} else {
-		    parsingMethod = AlternativesParsingMethod.SEEK_CONCEPT;
+		    parsingMethod = getAlternativesParsingMethod();
 		}
-	    } else {
-		parsingMethod = getAlternativesParsingMethod();
+		m_profiles = XMCDAAlternatives.read(xAlternativesList, XAlternativeType.FICTIVE, parsingMethod,
+			getPool(m_sourceProfiles));
+	    } catch (InvalidInputException | XmlValueOutOfRangeException exc) {
+		validateAfterFailure(xmcda, exc);
+		throw exc;
 	    }
-	    m_profiles = XMCDAAlternatives.read(xAlternativesList, XAlternativeType.FICTIVE, parsingMethod);
 	}
 	return m_profiles;
     }
@@ -350,19 +396,25 @@ public class XMCDASortingProblemReader extends XMCDAHelperWithVarious {
     }
 
     private EvaluationsRead readProfilesEvaluationsReally() throws IOException, XmlException, InvalidInputException {
-	final XMCDA xmcda = getXMCDA(m_sourceProfilesEvaluations);
+	final XMCDA xmcda = getXMCDA(m_sourceProfilesEvaluations, "performanceTable");
 	if (xmcda == null) {
 	    m_profilesEvaluationsView = EvaluationsUtils.newEvaluationMatrix();
 	} else {
-	    final List<XPerformanceTable> xPerformanceTableList = xmcda.getPerformanceTableList();
-	    final XMCDAEvaluations xmcdaEvaluations = new XMCDAEvaluations();
-	    if (getAlternativesParsingMethod() == AlternativesParsingMethod.SEEK_CONCEPT
-		    || getAlternativesParsingMethod() == AlternativesParsingMethod.USE_MARKING) {
-		xmcdaEvaluations.setConceptToRead(XAlternativeType.FICTIVE);
+	    try {
+		final List<XPerformanceTable> xPerformanceTableList = validated(xmcda.getPerformanceTableList());
+		final XMCDAEvaluations xmcdaEvaluations = new XMCDAEvaluations();
+		xmcdaEvaluations.setPool(getPool(m_sourceProfilesEvaluations));
+		if (getAlternativesParsingMethod() == AlternativesParsingMethod.SEEK_CONCEPT
+			|| getAlternativesParsingMethod() == AlternativesParsingMethod.USE_MARKING) {
+		    xmcdaEvaluations.setConceptToRead(XAlternativeType.FICTIVE);
+		}
+		final Evaluations evaluations = xmcdaEvaluations.read(xPerformanceTableList);
+		m_profilesEvaluationsView = EvaluationsUtils.getFilteredView(evaluations,
+			Predicates.<Alternative> alwaysTrue(), null);
+	    } catch (InvalidInputException | XmlValueOutOfRangeException exc) {
+		validateAfterFailure(xmcda, exc);
+		throw exc;
 	    }
-	    final Evaluations evaluations = xmcdaEvaluations.read(xPerformanceTableList);
-	    m_profilesEvaluationsView = EvaluationsUtils.getFilteredView(evaluations,
-		    Predicates.<Alternative> alwaysTrue(), null);
 	}
 	return m_profilesEvaluationsView;
     }
@@ -412,6 +464,21 @@ public class XMCDASortingProblemReader extends XMCDAHelperWithVarious {
 	init();
     }
 
+    /**
+     * Creates a new reader delegating error management to the given error manager in case of unexpected data read, and
+     * retrieving the documents it reads through the given cache.
+     * 
+     * @param errorsManager
+     *            not <code>null</code>.
+     * @param documentsCache
+     *            not <code>null</code>, e.g. {@link XMCDADocumentsCache#getShared()}.
+     */
+    public XMCDASortingProblemReader(XMCDAErrorsManager errorsManager, XMCDADocumentsCache documentsCache) {
+	super(errorsManager);
+	m_problemReader = new XMCDAProblemReader(errorsManager, documentsCache);
+	init();
+    }
+
     /**
      * Creates a new reader with a main source. The reader will use the default error management strategy
      * {@link ErrorManagement#THROW}.
@@ -668,9 +735,39 @@ public class XMCDASortingProblemReader extends XMCDAHelperWithVarious {
 	return m_problemReader.readThresholds();
     }
 
+    /**
+     * Retrieves the validation mode this object follows. The default is {@link ValidationMode#FULL}.
+     * 
+     * @return not <code>null</code>.
+     */
+    public ValidationMode getValidationMode() {
+	return m_problemReader.getValidationMode();
+    }
+
+    /**
+     * Sets the validation mode this object follows. As the documents already read have been validated (or not)
+     * according to the previous mode, this clears the cache.
+     * 
+     * @param validationMode
+     *            not <code>null</code>.
+     */
+    public void setValidationMode(ValidationMode validationMode) {
+	m_problemReader.setValidationMode(validationMode);
+	clearCache();
+    }
+
+    <T extends XmlObject> List<T> validated(List<T> fragments) throws XmlException {
+	return m_problemReader.validated(fragments);
+    }
+
+    void validateAfterFailure(XMCDA xmcda, Exception failure) throws XmlException {
+	m_problemReader.validateAfterFailure(xmcda, failure);
+    }
+
     /**
      * Retrieves the XMCDA document from the given source <em>or</em> from the main source if the given source is
-     * <code>null</code>. Ensures that it contains an XMCDA document conforming to the XMCDA schema.
+     * <code>null</code>. Ensures that it contains an XMCDA document conforming to the XMCDA schema, if this object
+     * follows the {@link ValidationMode#FULL} validation mode.
      * 
      * @param source
      *            may be <code>null</code>, in which case the main source in this object must be non <code>null</code>.
@@ -685,6 +782,115 @@ public class XMCDASortingProblemReader extends XMCDAHelperWithVarious {
 	return m_problemReader.getXMCDA(source);
     }
 
+    /**
+     * See {@link XMCDAProblemReader#getXMCDA(ByteSource, String)}.
+     */
+    XMCDA getXMCDA(ByteSource source, String tag) throws IOException, XmlException {
+	return m_problemReader.getXMCDA(source, tag);
+    }
+
+    /**
+     * See {@link XMCDAProblemReader#getPool(ByteSource)}.
+     */
+    XMCDAObjectPool getPool(ByteSource source) {
+	return m_problemReader.getPool(source);
+    }
+
+    /**
+     * Tells whether this object parses only the top level sections it needs, located through an index of each source.
+     * 
+     * @return <code>false</code> by default.
+     */
+    public boolean isSectionsIndexed() {
+	return m_problemReader.isSectionsIndexed();
+    }
+
+    /**
+     * Sets whether this object parses only the top level sections it needs. See
+     * {@link XMCDAProblemReader#setSectionsIndexed(boolean)}.
+     * 
+     * @param sectionsIndexed
+     *            <code>true</code> to parse only the sections needed.
+     */
+    public void setSectionsIndexed(boolean sectionsIndexed) {
+	m_problemReader.setSectionsIndexed(sectionsIndexed);
+    }
+
+    /**
+     * Sets the index to use to locate the sections of the given source. See
+     * {@link XMCDAProblemReader#putSectionIndex(ByteSource, XMCDASectionIndex)}.
+     * 
+     * @param source
+     *            not <code>null</code>.
+     * @param index
+     *            not <code>null</code>, an up to date index of the given source.
+     */
+    public void putSectionIndex(ByteSource source, XMCDASectionIndex index) {
+	m_problemReader.putSectionIndex(source, index);
+    }
+
+    /**
+     * Tells whether the alternatives evaluations are read into a dense matrix.
+     * 
+     * @return <code>false</code> by default.
+     */
+    public boolean isDenseEvaluations() {
+	return m_problemReader.isDenseEvaluations();
+    }
+
+    /**
+     * Sets whether the alternatives evaluations are read into a dense matrix. See
+     * {@link XMCDAProblemReader#setDenseEvaluations(boolean)}.
+     * 
+     * @param denseEvaluations
+     *            <code>true</code> to read dense matrixes.
+     */
+    public void setDenseEvaluations(boolean denseEvaluations) {
+	m_problemReader.setDenseEvaluations(denseEvaluations);
+    }
+
+    /**
+     * Retrieves the executor used to parse several sources concurrently.
+     * 
+     * @return <code>null</code> if not set.
+     */
+    public Executor getExecutor() {
+	return m_problemReader.getExecutor();
+    }
+
+    /**
+     * Sets the executor used to parse concurrently the distinct sources read by
+     * {@link #readSortingPreferences()} and the methods using it. The informations are then read from the parsed
+     * documents one after the other as when no executor is set, thus the errors management is unchanged. This object
+     * itself is not thread-safe: the executor is only used internally.
+     * 
+     * @param executor
+     *            <code>null</code> to parse the sources one after the other, when they are first needed.
+     * @see XMCDAProblemReader#preload(Collection)
+     */
+    public void setExecutor(Executor executor) {
+	m_problemReader.setExecutor(executor);
+    }
+
+    /**
+     * See {@link XMCDAProblemReader#preload(Collection)}.
+     */
+    void preload(Collection<ByteSource> sources) throws IOException, XmlException {
+	m_problemReader.preload(sources);
+    }
+
+    /**
+     * Retrieves the sources read by {@link #readSortingPreferences()}, dedicated sources being <code>null</code> when
+     * not set.
+     * 
+     * @return not <code>null</code>.
+     */
+    List<ByteSource> getPreferencesSources() {
+	return Arrays.asList(getSourceAlternatives(), getSourceCriteria(), getSourceCategories(),
+		getSourceCategoriesProfiles(), getSourceProfiles(), getSourceAlternativesEvaluations(),
+		getSourceProfilesEvaluations(), getSourceCoalitions());
+    }
+
     /**
      * Retrieves the source dedicated to assignments.
      * 
@@ -757,18 +963,24 @@ public class XMCDASortingProblemReader extends XMCDAHelperWithVarious {
 	if (m_assignments != null) {
 	    return new AssignmentsToMultipleFiltering(m_assignments, Predicates.<Alternative> alwaysTrue());
 	}
-	final XMCDA xmcda = getXMCDA(m_sourceAssignments);
+	final XMCDA xmcda = getXMCDA(m_sourceAssignments, "alternativesAffectations");
 	if (xmcda == null) {
 	    m_assignments = AssignmentsFactory.newAssignmentsToMultiple();
 	} else {
-	    final List<XAlternativesAffectations> xAlternativesAffectationsList = xmcda
-		    .getAlternativesAffectationsList();
-	    final XAlternativesAffectations xAlternativesAffectations = getUniqueOrZero(xAlternativesAffectationsList);
-	    if (xAlternativesAffectations == null) {
-		m_assignments = AssignmentsFactory.newAssignmentsToMultiple();
-	    } else {
-		final XMCDAAssignments xmcdaAssignments = new XMCDAAssignments();
-		m_assignments = xmcdaAssignments.read(xAlternativesAffectations);
+	    try {
+		final List<XAlternativesAffectations> xAlternativesAffectationsList = validated(xmcda
+			.getAlternativesAffectationsList());
+		final XAlternativesAffectations xAlternativesAffectations = getUniqueOrZero(xAlternativesAffectationsList);
+		if (xAlternativesAffectations == null) {
+		    m_assignments = AssignmentsFactory.newAssignmentsToMultiple();
+		} else {
+		    final XMCDAAssignments xmcdaAssignments = new XMCDAAssignments();
+		    xmcdaAssignments.setPool(getPool(m_sourceAssignments));
+		    m_assignments = xmcdaAssignments.read(xAlternativesAffectations);
+		}
+	    } catch (InvalidInputException | XmlValueOutOfRangeException exc) {
+		validateAfterFailure(xmcda, exc);
+		throw exc;
 	    }
 	}
 	return new AssignmentsToMultipleFiltering(m_assignments, Predicates.<Alternative> alwaysTrue());
@@ -800,18 +1012,24 @@ public class XMCDASortingProblemReader extends XMCDAHelperWithVarious {
 	if (m_assignmentsWithCredibilities != null) {
 	    return new AssignmentsWithCredibilitiesFiltering(m_assignmentsWithCredibilities);
 	}
-	final XMCDA xmcda = getXMCDA(m_sourceAssignments);
+	final XMCDA xmcda = getXMCDA(m_sourceAssignments, "alternativesAffectations");
 	if (xmcda == null) {
 	    m_assignmentsWithCredibilities = AssignmentsFactory.newAssignmentsWithCredibilities();
 	} else {
-	    final List<XAlternativesAffectations> xAlternativesAffectationsList = xmcda
-		    .getAlternativesAffectationsList();
-	    final XAlternativesAffectations xAlternativesAffectations = getUniqueOrZero(xAlternativesAffectationsList);
-	    if (xAlternativesAffectations == null) {
-		m_assignmentsWithCredibilities = AssignmentsFactory.newAssignmentsWithCredibilities();
-	    } else {
-		final XMCDAAssignments xmcdaAssignments = new XMCDAAssignments();
-		m_assignmentsWithCredibilities = xmcdaAssignments.readWithCredibilities(xAlternativesAffectations);
+	    try {
+		final List<XAlternativesAffectations> xAlternativesAffectationsList = validated(xmcda
+			.getAlternativesAffectationsList());
+		final XAlternativesAffectations xAlternativesAffectations = getUniqueOrZero(xAlternativesAffectationsList);
+		if (xAlternativesAffectations == null) {
+		    m_assignmentsWithCredibilities = AssignmentsFactory.newAssignmentsWithCredibilities();
+		} else {
+		    final XMCDAAssignments xmcdaAssignments = new XMCDAAssignments();
+		    xmcdaAssignments.setPool(getPool(m_sourceAssignments));
+		    m_assignmentsWithCredibilities = xmcdaAssignments.readWithCredibilities(xAlternativesAffectations);
+		}
+	    } catch (InvalidInputException | XmlValueOutOfRangeException exc) {
+		validateAfterFailure(xmcda, exc);
+		throw exc;
 	    }
 	}
 	return new AssignmentsWithCredibilitiesFiltering(m_assignmentsWithCredibilities);
@@ -1045,6 +1263,7 @@ public class XMCDASortingProblemReader extends XMCDAHelperWithVarious {
      *             strategy.
      */
     public ISortingPreferences readSortingPreferences() throws IOException, XmlException, InvalidInputException {
+	preload(getPreferencesSources());
 	final ISortingPreferences data = ProblemFactory.newSortingPreferences();
 
 	SortingProblemUtils.copyDataToTarget(readSortingData(), data);
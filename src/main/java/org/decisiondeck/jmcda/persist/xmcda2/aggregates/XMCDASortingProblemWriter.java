@@ -38,6 +38,7 @@ import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc.XMCDA;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XMethodParameters;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XPerformanceTable;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDACompression;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAReadUtils;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAWriteUtils;
 import org.decisiondeck.jmcda.structure.sorting.assignment.IOrderedAssignmentsToMultipleRead;
@@ -77,6 +78,10 @@ import com.google.common.io.ByteSink;
  * is because the writer hides the encoding used, which disables the possibility to correctly write the encoding used in
  * the XML header. Objects of this class use the UTF-8 encoding by default. See {@link #getSaveOptions()}.
  * </p>
+ * <p>
+ * The append methods do not validate the fragments they append, the whole document is validated once, when it is
+ * written.
+ * </p>
  * 
  * @author Olivier Cailloux
  * 
@@ -130,10 +135,31 @@ public class XMCDASortingProblemWriter {
 
 	m_writeIfEmpty = false;
 
+	m_writeUtils.setCompression(XMCDACompression.NONE);
 	m_writeUtils.getSaveOptions().setSavePrettyPrint();
 	m_writeUtils.getSaveOptions().setCharacterEncoding(Charsets.UTF_8.name());
     }
 
+    /**
+     * Retrieves the compression applied to the documents this object writes. The default is
+     * {@link XMCDACompression#NONE}.
+     * 
+     * @return not <code>null</code>.
+     */
+    public XMCDACompression getCompression() {
+	return m_writeUtils.getCompression();
+    }
+
+    /**
+     * Sets the compression applied to the documents this object writes.
+     * 
+     * @param compression
+     *            not <code>null</code>.
+     */
+    public void setCompression(XMCDACompression compression) {
+	m_writeUtils.setCompression(compression);
+    }
+
     /**
      * Retrieves a writable view of the options used to save XML streams. Default options are to use pretty print and to
      * use the UTF-8 encoding.
@@ -157,9 +183,9 @@ public class XMCDASortingProblemWriter {
 	if (m_writeIfEmpty || !catsAndProfs.isEmpty()) {
 	    final XMCDACategories xmcdaCategories = new XMCDACategories();
 	    final XCategories xCategories = xmcdaCategories.write(catsAndProfs.getCategories());
-	    m_writeUtils.appendTo(xCategories, xmcda);
+	    XMCDAWriteUtils.appendTo(xCategories, xmcda, false);
 	    final XCategoriesProfiles xCatsAndProfs = xmcdaCategories.write(catsAndProfs);
-	    m_writeUtils.appendTo(xCatsAndProfs, xmcda);
+	    XMCDAWriteUtils.appendTo(xCatsAndProfs, xmcda, false);
 	}
     }
 
@@ -174,7 +200,7 @@ public class XMCDASortingProblemWriter {
 	    xmcdaEvaluations.setCriteriaOrder(criteriaOrder);
 	    xmcdaEvaluations.setConceptToWrite(concept);
 	    final XPerformanceTable xEvaluations = xmcdaEvaluations.write(evaluations);
-	    m_writeUtils.appendTo(xEvaluations, xmcda);
+	    XMCDAWriteUtils.appendTo(xEvaluations, xmcda, false);
 	}
     }
 
@@ -196,7 +222,7 @@ public class XMCDASortingProblemWriter {
 		xmcdaCriteria.setVetoThresholds(thresholds.getVetoThresholds());
 	    }
 	    final XCriteria xCriteria = xmcdaCriteria.write(criteria);
-	    m_writeUtils.appendTo(xCriteria, xmcda);
+	    XMCDAWriteUtils.appendTo(xCriteria, xmcda, false);
 	}
     }
 
@@ -204,7 +230,7 @@ public class XMCDASortingProblemWriter {
 	if (m_writeIfEmpty || alternatives.size() >= 1) {
 	    final XMCDAAlternatives xmcdaAlternatives = new XMCDAAlternatives();
 	    final XAlternatives xAlternatives = xmcdaAlternatives.writeAlternatives(alternatives, type);
-	    m_writeUtils.appendTo(xAlternatives, xmcda);
+	    XMCDAWriteUtils.appendTo(xAlternatives, xmcda, false);
 	}
     }
 
@@ -487,7 +513,7 @@ public class XMCDASortingProblemWriter {
 	    final XMCDAAssignments xmcdaAssignments = new XMCDAAssignments();
 	    xmcdaAssignments.setAlternativesOrder(alternativesOrder);
 	    final XAlternativesAffectations xAssignments = xmcdaAssignments.write(assignments);
-	    m_writeUtils.appendTo(xAssignments, xmcda);
+	    XMCDAWriteUtils.appendTo(xAssignments, xmcda, false);
 	}
     }
 
@@ -496,7 +522,7 @@ public class XMCDASortingProblemWriter {
 	    final XMCDACriteria xmcdaCriteria = new XMCDACriteria();
 	    xmcdaCriteria.setCriteriaOrder(criteriaOrder);
 	    final XCriteriaSet xCriteriaSet = xmcdaCriteria.writeCoalitions(coalitions);
-	    m_writeUtils.appendTo(xCriteriaSet, xmcda);
+	    XMCDAWriteUtils.appendTo(xCriteriaSet, xmcda, false);
 	}
     }
 
@@ -505,7 +531,7 @@ public class XMCDASortingProblemWriter {
 	    final XMCDAAssignments xmcdaAssignments = new XMCDAAssignments();
 	    xmcdaAssignments.setAlternativesOrder(alternativesOrder);
 	    final XAlternativesAffectations xAssignments = xmcdaAssignments.write(assignments);
-	    m_writeUtils.appendTo(xAssignments, xmcda);
+	    XMCDAWriteUtils.appendTo(xAssignments, xmcda, false);
 	}
     }
 
@@ -652,7 +678,7 @@ public class XMCDASortingProblemWriter {
 	    xmcdaEvaluations.setCriteriaOrder(criteriaOrder);
 
 	    final Collection<XPerformanceTable> xEvaluations = xmcdaEvaluations.write(profilesEvaluations);
-	    m_writeUtils.appendTo(xEvaluations, xmcda);
+	    XMCDAWriteUtils.appendTo(xEvaluations, xmcda, false);
 	}
     }
 
@@ -663,7 +689,7 @@ public class XMCDASortingProblemWriter {
 	    xmcdaCriteria.setDmsOrder(dmsOrder);
 	    xmcdaCriteria.setCriteriaOrder(criteriaOrder);
 	    final List<XCriteriaSet> xCoalitions = xmcdaCriteria.write(coalitions);
-	    m_writeUtils.appendTo(xCoalitions, xmcda);
+	    XMCDAWriteUtils.appendTo(xCoalitions, xmcda, false);
 	}
     }
 
@@ -671,7 +697,7 @@ public class XMCDASortingProblemWriter {
 	if (m_writeIfEmpty || dms.size() >= 1) {
 	    final XMCDADecisionMakers xmcdaDecisionMakers = new XMCDADecisionMakers();
 	    final XMethodParameters xDms = xmcdaDecisionMakers.write(dms);
-	    m_writeUtils.appendTo(xDms, xmcda);
+	    XMCDAWriteUtils.appendTo(xDms, xmcda, false);
 	}
     }
 
@@ -682,7 +708,7 @@ public class XMCDASortingProblemWriter {
 	    xmcdaAssignments.setDmsOrder(dmsOrder);
 	    xmcdaAssignments.setAlternativesOrder(alternativesOrder);
 	    final Collection<XAlternativesAffectations> xAssignments = xmcdaAssignments.writeAll(assignments);
-	    m_writeUtils.appendTo(xAssignments, xmcda);
+	    XMCDAWriteUtils.appendTo(xAssignments, xmcda, false);
 	}
     }
 
@@ -722,7 +748,7 @@ public class XMCDASortingProblemWriter {
 	    xmcdaAssignments.setAlternativesOrder(alternativesOrder);
 	    final Collection<XAlternativesAffectations> xAssignments = xmcdaAssignments
 		    .writeAllWithCredibilities(assignments);
-	    m_writeUtils.appendTo(xAssignments, xmcda);
+	    XMCDAWriteUtils.appendTo(xAssignments, xmcda, false);
 	}
     }
 
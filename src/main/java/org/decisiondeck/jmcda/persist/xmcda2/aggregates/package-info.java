@@ -68,7 +68,10 @@
  * Reader classes will avoid reading twice the same information when possible by
  * caching information the first time it is read. Asking for the same bit of
  * information twice without changing the sources in between will result in only
- * one read. The second time, the cached object will be returned.
+ * one read. The second time, the cached object will be returned. Similarly,
+ * when several types of objects are read from the same source (for example,
+ * from the main source), the underlying XMCDA document is parsed and validated
+ * only once and then shared among the read methods.
  * </p>
  * <p>
  * The intended usage of these reader classes is to <em>first</em> set up all
@@ -0,0 +1,215 @@
+package org.decisiondeck.jmcda.persist.xmcda2.utils;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+import com.google.common.base.Optional;
+import com.google.common.io.ByteSource;
+
+/**
+ * <p>
+ * A source reading a file through a memory mapping instead of a
+ * {@link java.io.FileInputStream}. The streams this source opens read directly
+ * from the mapped pages, avoiding the system calls and the copies of a file
+ * stream, and several streams opened on the same file share the same pages of
+ * the operating system cache. This is mostly useful for big inputs, e.g. some
+ * hundreds of megabytes, which the readers of this library may open several
+ * times.
+ * </p>
+ * <p>
+ * The file is mapped in regions of at most {@link #REGION_SIZE} bytes, one
+ * after the other, thus files bigger than two gigabytes are supported. The
+ * mappings are released when they are garbage collected, not when the stream
+ * is closed: on some platforms, the file can't be deleted until then.
+ * </p>
+ * <p>
+ * The file must not be modified while it is being read.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class MappedFileByteSource extends ByteSource {
+	/**
+	 * A stream reading the successive regions of a file.
+	 */
+	static private class MappedInputStream extends InputStream {
+		private MappedByteBuffer m_buffer;
+		private final FileChannel m_channel;
+		/**
+		 * The position in the file of the start of the current region.
+		 */
+		private long m_regionStart;
+		private final long m_size;
+
+		public MappedInputStream(FileChannel channel) throws IOException {
+			m_channel = checkNotNull(channel);
+			m_size = channel.size();
+			m_regionStart = 0;
+			m_buffer = map(0);
+		}
+
+		@Override
+		public int available() {
+			return m_buffer.remaining();
+		}
+
+		@Override
+		public void close() throws IOException {
+			m_channel.close();
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!ensureRemaining()) {
+				return -1;
+			}
+			return m_buffer.get() & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+			if (!ensureRemaining()) {
+				return -1;
+			}
+			final int read = Math.min(length, m_buffer.remaining());
+			m_buffer.get(bytes, offset, read);
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			if (n <= 0) {
+				return 0;
+			}
+			final long position = m_regionStart + m_buffer.position();
+			final long target = Math.min(m_size, position + n);
+			if (target < m_regionStart + m_buffer.limit()) {
+				m_buffer.position((int) (target - m_regionStart));
+			} else {
+				m_regionStart = target;
+				m_buffer = map(target);
+			}
+			return target - position;
+		}
+
+		/**
+		 * Maps the next region if the current one has been read entirely.
+		 *
+		 * @return <code>false</code> iff the end of the file has been reached.
+		 */
+		private boolean ensureRemaining() throws IOException {
+			if (m_buffer.hasRemaining()) {
+				return true;
+			}
+			final long next = m_regionStart + m_buffer.limit();
+			if (next >= m_size) {
+				return false;
+			}
+			m_regionStart = next;
+			m_buffer = map(next);
+			return true;
+		}
+
+		private MappedByteBuffer map(long start) throws IOException {
+			final long length = Math.min(REGION_SIZE, m_size - start);
+			return m_channel.map(MapMode.READ_ONLY, start, length);
+		}
+	}
+
+	/**
+	 * The maximal number of bytes mapped at once by a stream. The mappings are
+	 * only released when garbage collected, thus a moderate size bounds the
+	 * address space a stream holds while it is being read.
+	 */
+	static public final int REGION_SIZE = 64 * 1024 * 1024;
+
+	private final File m_file;
+
+	/**
+	 * @param file
+	 *            not <code>null</code>.
+	 */
+	public MappedFileByteSource(File file) {
+		m_file = checkNotNull(file);
+	}
+
+	/**
+	 * Retrieves the file this source reads.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	public File getFile() {
+		return m_file;
+	}
+
+	@Override
+	public InputStream openStream() throws IOException {
+		final FileChannel channel = FileChannel.open(m_file.toPath(), StandardOpenOption.READ);
+		try {
+			return new MappedInputStream(channel);
+		} catch (IOException exc) {
+			channel.close();
+			throw exc;
+		}
+	}
+
+	/**
+	 * Returns the stream as is: it reads from memory, thus needs no buffering.
+	 */
+	@Override
+	public InputStream openBufferedStream() throws IOException {
+		return openStream();
+	}
+
+	/**
+	 * Reads the whole file with a single copy from the mapping, if it fits in a
+	 * single region.
+	 */
+	@Override
+	public byte[] read() throws IOException {
+		try (FileChannel channel = FileChannel.open(m_file.toPath(), StandardOpenOption.READ)) {
+			final long size = channel.size();
+			if (size > REGION_SIZE) {
+				return super.read();
+			}
+			final byte[] bytes = new byte[(int) size];
+			channel.map(MapMode.READ_ONLY, 0, size).get(bytes);
+			return bytes;
+		}
+	}
+
+	@Override
+	public long size() throws IOException {
+		try (FileChannel channel = FileChannel.open(m_file.toPath(), StandardOpenOption.READ)) {
+			return channel.size();
+		}
+	}
+
+	/**
+	 * Returns the size of the file, known without reading it, if it is a
+	 * regular file.
+	 */
+	@Override
+	public Optional<Long> sizeIfKnown() {
+		if (!m_file.isFile()) {
+			return Optional.absent();
+		}
+		return Optional.of(Long.valueOf(m_file.length()));
+	}
+
+	@Override
+	public String toString() {
+		return "MappedFileByteSource(" + m_file + ")";
+	}
+}
@@ -0,0 +1,175 @@
+package org.decisiondeck.jmcda.persist.xmcda2.utils;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.google.common.io.ByteSink;
+import com.google.common.io.ByteSource;
+
+/**
+ * <p>
+ * The compression formats of XMCDA documents. XMCDA documents are very
+ * repetitive, thus usually compress well.
+ * </p>
+ * <p>
+ * The readers of this library accept compressed sources transparently: the
+ * format is detected from the first bytes of the source, and the content is
+ * inflated while it is being parsed, without being first entirely inflated in
+ * memory. When writing, the compression format is an option of the writer.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public enum XMCDACompression {
+	/**
+	 * The zlib format (RFC 1950), as written by a {@link DeflaterOutputStream}.
+	 * Raw deflate data without the zlib header can't be detected, thus is not
+	 * supported.
+	 */
+	DEFLATE,
+	/**
+	 * The gzip format (RFC 1952).
+	 */
+	GZIP,
+	/**
+	 * No compression.
+	 */
+	NONE;
+
+	/**
+	 * Retrieves a view of the given source which inflates its content if it is
+	 * compressed. The format is detected each time the view is opened.
+	 *
+	 * @param source
+	 *            not <code>null</code>.
+	 * @return not <code>null</code>.
+	 */
+	static public ByteSource decompressing(final ByteSource source) {
+		checkNotNull(source);
+		return new ByteSource() {
+			@Override
+			public InputStream openStream() throws IOException {
+				return decompress(source.openStream());
+			}
+
+			@Override
+			public String toString() {
+				return "decompressing(" + source + ")";
+			}
+		};
+	}
+
+	/**
+	 * Retrieves a stream which inflates the content of the given stream if it
+	 * is compressed. Closing the returned stream closes the given one, which is
+	 * also closed if this method fails.
+	 *
+	 * @param input
+	 *            not <code>null</code>, not read yet.
+	 * @return not <code>null</code>.
+	 * @throws IOException
+	 *             if an exception happens while reading the first bytes of the
+	 *             given stream.
+	 */
+	static public InputStream decompress(InputStream input) throws IOException {
+		checkNotNull(input);
+		final InputStream markable = input.markSupported() ? input : new BufferedInputStream(input);
+		try {
+			switch (detect(markable)) {
+			case GZIP:
+				return new GZIPInputStream(markable);
+			case DEFLATE:
+				return new InflaterInputStream(markable);
+			case NONE:
+				return markable;
+			default:
+				throw new AssertionError();
+			}
+		} catch (IOException exc) {
+			markable.close();
+			throw exc;
+		}
+	}
+
+	/**
+	 * Detects the compression format of the given stream from its first bytes.
+	 * The stream is reset to its initial position.
+	 *
+	 * @param input
+	 *            not <code>null</code>, supports mark.
+	 * @return not <code>null</code>.
+	 * @throws IOException
+	 *             if an exception happens while reading the stream.
+	 */
+	static public XMCDACompression detect(InputStream input) throws IOException {
+		checkNotNull(input);
+		input.mark(2);
+		final int first = input.read();
+		final int second = first == -1 ? -1 : input.read();
+		input.reset();
+		if (second == -1) {
+			return NONE;
+		}
+		if (first == 0x1F && second == 0x8B) {
+			return GZIP;
+		}
+		/** Compression method 8, window of at most 32K, and header checksum. */
+		if ((first & 0x0F) == 8 && (first >> 4) <= 7 && ((first << 8) | second) % 31 == 0) {
+			return DEFLATE;
+		}
+		return NONE;
+	}
+
+	/**
+	 * Retrieves a view of the given sink which compresses, according to this
+	 * format, what is written to it.
+	 *
+	 * @param sink
+	 *            not <code>null</code>.
+	 * @return not <code>null</code>, the given sink iff this format is
+	 *         {@link #NONE}.
+	 */
+	public ByteSink compressing(final ByteSink sink) {
+		checkNotNull(sink);
+		if (this == NONE) {
+			return sink;
+		}
+		return new ByteSink() {
+			@Override
+			public OutputStream openStream() throws IOException {
+				final OutputStream output = sink.openStream();
+				try {
+					return compress(output);
+				} catch (IOException exc) {
+					output.close();
+					throw exc;
+				}
+			}
+
+			@Override
+			public String toString() {
+				return "compressing(" + sink + ", " + XMCDACompression.this + ")";
+			}
+		};
+	}
+
+	private OutputStream compress(OutputStream output) throws IOException {
+		switch (this) {
+		case GZIP:
+			return new GZIPOutputStream(output, 8192);
+		case DEFLATE:
+			return new DeflaterOutputStream(output);
+		default:
+			throw new AssertionError();
+		}
+	}
+}
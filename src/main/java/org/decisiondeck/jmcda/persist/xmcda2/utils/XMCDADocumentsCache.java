@@ -0,0 +1,357 @@
+package org.decisiondeck.jmcda.persist.xmcda2.utils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.xmlbeans.XmlException;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * <p>
+ * A cache of parsed XMCDA documents, which may be shared among readers and
+ * threads, typically process-wide (see {@link #getShared()}), so that sources
+ * containing the same bytes are parsed only once. The documents are indexed by
+ * a hash of the content of their source, independently of where the content
+ * comes from: two distinct files with identical contents share the same
+ * document. Looking up a source thus requires reading it entirely once, which
+ * is much cheaper than parsing and validating it; the source is read a second
+ * time, to be parsed, only if its content is not in cache.
+ * </p>
+ * <p>
+ * Sources whose identity is known, namely {@link MappedFileByteSource}s, are
+ * not hashed before being looked up. The hash of the content of a file is
+ * remembered together with the path, length and modification time of the
+ * file: as long as these do not change, the file is not read at all to find
+ * its document in cache. When they are not known, the content of the file is
+ * hashed while it is parsed, and the file is thus read only once.
+ * </p>
+ * <p>
+ * The cache is bounded by the estimated heap size of the documents it
+ * contains, estimated as {@link #WEIGHT_PER_SOURCE_BYTE} times the size of their
+ * source. The least recently used documents are evicted first when the bound is
+ * reached. Statistics about the hits and misses are recorded.
+ * </p>
+ * <p>
+ * The documents obtained through a cache are shared with every other user of
+ * the cache, thus they must not be modified. The readers of this library only
+ * read the documents they parse.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class XMCDADocumentsCache {
+	/**
+	 * A document in cache, together with the information obtained when parsing
+	 * it.
+	 */
+	static class CachedDocument {
+		private final XMCDADoc m_document;
+		/**
+		 * Set by the cache, before the document is put in cache.
+		 */
+		private long m_sourceSize;
+		/**
+		 * <code>true</code> iff the document is known to validate.
+		 */
+		private boolean m_validated;
+		private final String m_versionRead;
+
+		CachedDocument(XMCDADoc document, String versionRead, boolean validated) {
+			m_document = checkNotNull(document);
+			m_versionRead = versionRead;
+			m_validated = validated;
+			m_sourceSize = 0;
+		}
+
+		/**
+		 * Ensures that the document validates, validating it if it has not been
+		 * validated yet.
+		 *
+		 * @throws XmlException
+		 *             if the document does not validate.
+		 */
+		synchronized void ensureValid() throws XmlException {
+			if (m_validated) {
+				return;
+			}
+			if (!m_document.validate()) {
+				throw new XmlException("Input does not validate.");
+			}
+			m_validated = true;
+		}
+
+		XMCDADoc getDocument() {
+			return m_document;
+		}
+
+		String getVersionRead() {
+			return m_versionRead;
+		}
+	}
+
+	/**
+	 * The default maximal estimated heap size of the shared cache, in bytes.
+	 */
+	static public final long DEFAULT_MAXIMUM_WEIGHT = 256L * 1024 * 1024;
+
+	/**
+	 * The estimated number of bytes in the heap used by a parsed document, per
+	 * byte of its source. This is a rough estimation of the memory used by the
+	 * XMLBeans store.
+	 */
+	static public final int WEIGHT_PER_SOURCE_BYTE = 5;
+
+	/**
+	 * The maximal number of file identities whose content hash is remembered.
+	 */
+	static public final int MAXIMUM_IDENTITIES = 1024;
+
+	static private final XMCDADocumentsCache s_shared = new XMCDADocumentsCache(DEFAULT_MAXIMUM_WEIGHT);
+
+	/**
+	 * Retrieves the identity of the given source, if it is known without
+	 * reading the source.
+	 *
+	 * @return <code>null</code> if unknown.
+	 */
+	static private Object getIdentity(ByteSource source) {
+		if (!(source instanceof MappedFileByteSource)) {
+			return null;
+		}
+		final File file = ((MappedFileByteSource) source).getFile().getAbsoluteFile();
+		if (!file.isFile()) {
+			return null;
+		}
+		return ImmutableList.of(file, Long.valueOf(file.length()), Long.valueOf(file.lastModified()));
+	}
+
+	/**
+	 * Retrieves the process-wide cache, bounded by
+	 * {@link #DEFAULT_MAXIMUM_WEIGHT}.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	static public XMCDADocumentsCache getShared() {
+		return s_shared;
+	}
+
+	private final Cache<HashCode, CachedDocument> m_documents;
+
+	/**
+	 * The hashes of the contents of the sources whose identity is known, indexed
+	 * by their identity.
+	 */
+	private final Cache<Object, HashCode> m_hashes;
+
+	private final long m_maximumWeight;
+
+	/**
+	 * Creates a new, empty, cache.
+	 *
+	 * @param maximumWeight
+	 *            the maximal estimated heap size of the documents in this
+	 *            cache, in bytes, positive.
+	 */
+	public XMCDADocumentsCache(long maximumWeight) {
+		checkArgument(maximumWeight > 0);
+		m_maximumWeight = maximumWeight;
+		m_documents = CacheBuilder.newBuilder().maximumWeight(maximumWeight)
+				.weigher(new Weigher<HashCode, CachedDocument>() {
+					@Override
+					public int weigh(HashCode key, CachedDocument value) {
+						return (int) Math.min(Integer.MAX_VALUE, value.m_sourceSize * WEIGHT_PER_SOURCE_BYTE);
+					}
+				}).recordStats().build();
+		m_hashes = CacheBuilder.newBuilder().maximumSize(MAXIMUM_IDENTITIES).build();
+	}
+
+	/**
+	 * Retrieves the maximal estimated heap size of the documents in this cache.
+	 *
+	 * @return the size, in bytes, positive.
+	 */
+	public long getMaximumWeight() {
+		return m_maximumWeight;
+	}
+
+	/**
+	 * Retrieves the statistics of this cache, including the number of hits and
+	 * misses, since its creation.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	public CacheStats getStats() {
+		return m_documents.stats();
+	}
+
+	/**
+	 * Removes every document from this cache. The statistics are not reset.
+	 */
+	public void invalidateAll() {
+		m_documents.invalidateAll();
+		m_hashes.invalidateAll();
+	}
+
+	/**
+	 * Retrieves the approximate number of documents in this cache.
+	 *
+	 * @return a non negative number.
+	 */
+	public long size() {
+		return m_documents.size();
+	}
+
+	/**
+	 * Retrieves the document corresponding to the content of the given source,
+	 * using the given parser if it is not in cache. Concurrent requests for the
+	 * same content wait for a single parse.
+	 *
+	 * @param source
+	 *            not <code>null</code>.
+	 * @param parser
+	 *            not <code>null</code>, parses the content of the given source.
+	 *            Parse failures are not cached.
+	 * @return not <code>null</code>.
+	 * @throws IOException
+	 *             if an exception happens while reading the source, or is
+	 *             thrown by the parser.
+	 * @throws XmlException
+	 *             if thrown by the parser.
+	 */
+	CachedDocument get(final ByteSource source, final Parser parser) throws IOException, XmlException {
+		checkNotNull(source);
+		checkNotNull(parser);
+		final Object identity = getIdentity(source);
+		if (identity != null) {
+			final HashCode known = m_hashes.getIfPresent(identity);
+			if (known != null) {
+				return get(known, new Callable<CachedDocument>() {
+					@Override
+					public CachedDocument call() throws IOException, XmlException {
+						return parse(source, parser, source.size());
+					}
+				});
+			}
+			return getHashingWhileParsing(identity, source, parser);
+		}
+
+		final Hasher hasher = Hashing.sha256().newHasher();
+		final CountingOutputStream counting = new CountingOutputStream(Funnels.asOutputStream(hasher));
+		source.copyTo(counting);
+		final long size = counting.getCount();
+		return get(hasher.hash(), new Callable<CachedDocument>() {
+			@Override
+			public CachedDocument call() throws IOException, XmlException {
+				return parse(source, parser, size);
+			}
+		});
+	}
+
+	private CachedDocument get(HashCode hash, Callable<CachedDocument> loader) throws IOException, XmlException {
+		try {
+			return m_documents.get(hash, loader);
+		} catch (ExecutionException exc) {
+			final Throwable cause = exc.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof XmlException) {
+				throw (XmlException) cause;
+			}
+			throw new IllegalStateException(cause);
+		} catch (UncheckedExecutionException exc) {
+			final Throwable cause = exc.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw exc;
+		} catch (ExecutionError exc) {
+			throw (Error) exc.getCause();
+		}
+	}
+
+	/**
+	 * Parses the given source while hashing its content, then retrieves the
+	 * document in cache with the same content, if any, or puts the document
+	 * parsed in cache. Used for sources seen for the first time with the given
+	 * identity, which thus need to be parsed anyway if their content is not in
+	 * cache, and are read only once this way.
+	 */
+	private CachedDocument getHashingWhileParsing(Object identity, ByteSource source, Parser parser)
+			throws IOException, XmlException {
+		final HashingInputStream hashing;
+		final CountingInputStream counting;
+		final CachedDocument parsed;
+		try (InputStream input = source.openStream()) {
+			hashing = new HashingInputStream(Hashing.sha256(), input);
+			counting = new CountingInputStream(hashing);
+			parsed = parser.parse(new FilterInputStream(counting) {
+				@Override
+				public void close() {
+					/** The content following the document, if any, is still to be hashed. */
+				}
+			});
+			ByteStreams.exhaust(counting);
+		}
+		parsed.m_sourceSize = counting.getCount();
+		final HashCode hash = hashing.hash();
+		m_hashes.put(identity, hash);
+		return get(hash, new Callable<CachedDocument>() {
+			@Override
+			public CachedDocument call() {
+				return parsed;
+			}
+		});
+	}
+
+	static private CachedDocument parse(ByteSource source, Parser parser, long sourceSize)
+			throws IOException, XmlException {
+		try (InputStream input = source.openStream()) {
+			final CachedDocument parsed = parser.parse(input);
+			parsed.m_sourceSize = sourceSize;
+			return parsed;
+		}
+	}
+
+	/**
+	 * Parses the source of a document that is not in cache.
+	 */
+	static interface Parser {
+		/**
+		 * @param input
+		 *            not <code>null</code>, the content of the source, closed
+		 *            by the caller.
+		 * @return not <code>null</code>.
+		 * @throws IOException
+		 *             if an exception happens while reading the source.
+		 * @throws XmlException
+		 *             if the source does not contain an acceptable document.
+		 */
+		CachedDocument parse(InputStream input) throws IOException, XmlException;
+	}
+}
@@ -9,6 +9,7 @@ import org.decisiondeck.jmcda.exc.InvalidInputException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Supplier;
 import com.google.common.collect.Lists;
 
 /**
@@ -109,6 +110,26 @@ public class XMCDAErrorsManager {
 		}
 	}
 
+	/**
+	 * Equivalent to {@link #error(String)} with the message given by the
+	 * supplier. The supplier is queried only when the error is actually thrown,
+	 * collected or logged, which permits to avoid building costly messages
+	 * (typically, string representations of fragments) on the normal path.
+	 * 
+	 * @param error
+	 *            not <code>null</code>, supplies <code>null</code> or empty
+	 *            for no error message.
+	 * @throws InvalidInputException
+	 *             if the strategy is {@link ErrorManagement#THROW}.
+	 */
+	public void error(Supplier<String> error) throws InvalidInputException {
+		checkNotNull(error);
+		if (m_strategy == ErrorManagement.LOG && !s_logger.isErrorEnabled()) {
+			return;
+		}
+		error(error.get());
+	}
+
 	/**
 	 * Retrieves a read-only view to the list of errors collected in this
 	 * object. The list is populated only if this object uses the
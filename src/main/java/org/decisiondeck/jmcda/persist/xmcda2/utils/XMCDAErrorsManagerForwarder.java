@@ -7,6 +7,8 @@ import java.util.List;
 import org.decisiondeck.jmcda.exc.InvalidInputException;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager.ErrorManagement;
 
+import com.google.common.base.Supplier;
+
 public class XMCDAErrorsManagerForwarder {
 
     /**
@@ -28,6 +30,20 @@ public class XMCDAErrorsManagerForwarder {
 	m_errors.error(error);
     }
 
+    /**
+     * Equivalent to {@link #error(String)} with the message given by the supplier, which is queried only when the
+     * error is actually reported.
+     * 
+     * @param error
+     *            not <code>null</code>.
+     * @throws InvalidInputException
+     *             if the strategy is {@link ErrorManagement#THROW}.
+     * @see XMCDAErrorsManager#error(Supplier)
+     */
+    public void error(Supplier<String> error) throws InvalidInputException {
+	m_errors.error(error);
+    }
+
     /**
      * Retrieves the strategy this object currently follows.
      * 
@@ -7,10 +7,16 @@ import java.util.Collection;
 import org.apache.xmlbeans.SchemaType;
 import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.XmlTokenSource;
+import org.decision_deck.jmcda.structure.Alternative;
+import org.decision_deck.jmcda.structure.Criterion;
+import org.decision_deck.jmcda.structure.DecisionMaker;
+import org.decision_deck.jmcda.structure.sorting.category.Category;
 import org.decisiondeck.jmcda.exc.InvalidInputException;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XPerformanceTable;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager.ErrorManagement;
 
+import com.google.common.base.Supplier;
+
 /**
  * An errors manager forwarder combined with methods from {@link XMCDAReadUtils} to help parsing XMCDA fragments.
  * 
@@ -24,10 +30,83 @@ public class XMCDAHelper {
      */
     private final XMCDAReadUtils m_utils;
 
+    /**
+     * <code>null</code> for no pooling.
+     */
+    private XMCDAObjectPool m_pool;
+
+    /**
+     * Retrieves the pool this object uses to obtain the domain objects corresponding to the identifiers read.
+     * 
+     * @return <code>null</code> iff each identifier read yields a new object.
+     */
+    public XMCDAObjectPool getPool() {
+	return m_pool;
+    }
+
+    /**
+     * Sets the pool this object uses to obtain the domain objects corresponding to the identifiers read. Readers
+     * working on the same document may share a pool so that each identifier yields a single object.
+     * 
+     * @param pool
+     *            <code>null</code> for each identifier read to yield a new object.
+     */
+    public void setPool(XMCDAObjectPool pool) {
+	m_pool = pool;
+    }
+
+    /**
+     * Retrieves the alternative having the given id, from the pool if this object uses one.
+     * 
+     * @param id
+     *            not <code>null</code>.
+     * @return not <code>null</code>.
+     */
+    protected Alternative toAlternative(String id) {
+	return m_pool == null ? new Alternative(id) : m_pool.getAlternative(id);
+    }
+
+    /**
+     * Retrieves the category having the given id, from the pool if this object uses one.
+     * 
+     * @param id
+     *            not <code>null</code>.
+     * @return not <code>null</code>.
+     */
+    protected Category toCategory(String id) {
+	return m_pool == null ? new Category(id) : m_pool.getCategory(id);
+    }
+
+    /**
+     * Retrieves the criterion having the given id, from the pool if this object uses one.
+     * 
+     * @param id
+     *            not <code>null</code>.
+     * @return not <code>null</code>.
+     */
+    protected Criterion toCriterion(String id) {
+	return m_pool == null ? new Criterion(id) : m_pool.getCriterion(id);
+    }
+
+    /**
+     * Retrieves the decision maker having the given id, from the pool if this object uses one.
+     * 
+     * @param id
+     *            not <code>null</code>.
+     * @return not <code>null</code>.
+     */
+    protected DecisionMaker toDecisionMaker(String id) {
+	return m_pool == null ? new DecisionMaker(id) : m_pool.getDecisionMaker(id);
+    }
+
     public void error(String error) throws InvalidInputException {
 	m_utils.error(error);
     }
 
+    public void error(Supplier<String> error) throws InvalidInputException {
+	m_utils.error(error);
+    }
+
     public ErrorManagement getStrategy() {
 	return m_utils.getStrategy();
     }
@@ -95,6 +174,27 @@ public class XMCDAHelper {
 	return m_utils.getUnique(collection, contextMessageIfEmpty);
     }
 
+    /**
+     * Equivalent to {@link #getUnique(Collection, String)}, except that the context message is only built when an
+     * error is reported.
+     * 
+     * @param <T>
+     *            the type of content of the collection.
+     * @param collection
+     *            not <code>null</code>.
+     * @param contextMessageIfEmpty
+     *            not <code>null</code>, supplies the context message, possibly <code>null</code>.
+     * @return <code>null</code> iff the collection contains more or less than one element and this object follows a
+     *         permissive strategy.
+     * @throws InvalidInputException
+     *             iff the collection contains more or less than one element and this object follows the
+     *             {@link ErrorManagement#THROW} strategy.
+     */
+    protected <T extends XmlTokenSource> T getUnique(Collection<T> collection,
+	    Supplier<String> contextMessageIfEmpty) throws InvalidInputException {
+	return m_utils.getUnique(collection, contextMessageIfEmpty);
+    }
+
     /**
      * <p>
      * Retrieves the only element from the given collection of elements, or <code>null</code> if the collection is
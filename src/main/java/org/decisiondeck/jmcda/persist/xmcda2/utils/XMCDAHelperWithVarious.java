@@ -10,6 +10,8 @@ import org.decisiondeck.jmcda.persist.xmcda2.generated.XParameter;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XValue;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager.ErrorManagement;
 
+import com.google.common.base.Supplier;
+
 /**
  * An errors manager forwarder combined with methods from {@link XMCDAVarious} and {@link XMCDAReadUtils} to help parsing
  * XMCDA fragments. Reader classes may inherit from this class to get initial implementation support.
@@ -53,6 +55,25 @@ public class XMCDAHelperWithVarious extends XMCDAHelper {
 	return m_various.readDouble(xValues, contextMessageIfEmpty);
     }
 
+    /**
+     * Equivalent to {@link #readDouble(Collection, String)}, except that the context message is only built when an
+     * error is reported.
+     * 
+     * @param xValues
+     *            not <code>null</code>.
+     * @param contextMessageIfEmpty
+     *            not <code>null</code>, supplies the context message, possibly <code>null</code>.
+     * @return a real number, or <code>null</code> iff unexpected content has been read and this object follows a
+     *         permissive strategy.
+     * @throws InvalidInputException
+     *             iff unexpected content has been read and this object follows the {@link ErrorManagement#THROW}
+     *             strategy.
+     */
+    protected Double readDouble(Collection<XValue> xValues, Supplier<String> contextMessageIfEmpty)
+	    throws InvalidInputException {
+	return m_various.readDouble(xValues, contextMessageIfEmpty);
+    }
+
     /**
      * <p>
      * Retrieves the number embedded in the given fragment.
@@ -0,0 +1,282 @@
+package org.decisiondeck.jmcda.persist.xmcda2.utils;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.EndElement;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteSource;
+
+/**
+ * <p>
+ * Changes a namespace into an other one in XML documents, in a streaming way:
+ * the document is never entirely held in memory, the rewriting proceeds as the
+ * resulting stream is read. Elements, attributes and namespace declarations
+ * using the source namespace are changed to use the target namespace, all the
+ * rest is copied as is. The result is encoded in UTF-8.
+ * </p>
+ * <p>
+ * This is used to transform XMCDA documents from one version to an other, as
+ * the XMCDA version is reflected only in the namespace of the document.
+ * </p>
+ * <p>
+ * If the content to rewrite is not well-formed XML, the streams obtained from
+ * this object throw an {@link IOException} caused by an
+ * {@link XMLStreamException}.
+ * </p>
+ * <p>
+ * The StAX factories are created once and shared by all rewritings, thus
+ * starting to rewrite a document only costs the creation of a reader and a
+ * writer.
+ * </p>
+ * <p>
+ * Instances of this class are immutable and may be shared among threads.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class XMCDANamespaceRewriter {
+
+	private static final XMLEventFactory EVENT_FACTORY = XMLEventFactory.newInstance();
+	private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+	static {
+		/** DTDs are copied as they are, but never read, and no external entity is fetched. */
+		INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+
+	/**
+	 * An input stream that pulls events from the source, one at a time, only when
+	 * more bytes are needed.
+	 */
+	private class RewritingInputStream extends InputStream {
+		private final EventBuffer m_buffer = new EventBuffer();
+		private boolean m_ended = false;
+		private int m_position = 0;
+		private final XMLEventReader m_reader;
+		private final InputStream m_source;
+		private final XMLEventWriter m_writer;
+
+		public RewritingInputStream(InputStream source) throws XMLStreamException {
+			m_source = source;
+			m_reader = INPUT_FACTORY.createXMLEventReader(source);
+			m_writer = OUTPUT_FACTORY.createXMLEventWriter(m_buffer, Charsets.UTF_8.name());
+		}
+
+		@Override
+		public int available() {
+			return m_buffer.size() - m_position;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				m_reader.close();
+			} catch (XMLStreamException exc) {
+				throw new IOException(exc);
+			} finally {
+				m_source.close();
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!fill()) {
+				return -1;
+			}
+			return m_buffer.get(m_position++);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			checkNotNull(b);
+			if (len == 0) {
+				return 0;
+			}
+			if (!fill()) {
+				return -1;
+			}
+			final int nb = Math.min(len, m_buffer.size() - m_position);
+			m_buffer.copy(m_position, b, off, nb);
+			m_position += nb;
+			return nb;
+		}
+
+		/**
+		 * Ensures that some bytes are available in the buffer, unless the source is
+		 * exhausted.
+		 *
+		 * @return <code>false</code> iff the end of the stream has been reached.
+		 */
+		private boolean fill() throws IOException {
+			try {
+				while (m_position == m_buffer.size()) {
+					if (m_ended) {
+						return false;
+					}
+					m_buffer.reset();
+					m_position = 0;
+					if (m_reader.hasNext()) {
+						m_writer.add(rewriteEvent(m_reader.nextEvent()));
+						m_writer.flush();
+					} else {
+						m_writer.close();
+						m_ended = true;
+					}
+				}
+			} catch (XMLStreamException exc) {
+				throw new IOException(exc);
+			}
+			return true;
+		}
+
+		/**
+		 * Changes the namespace of the given event if it is an element. The start
+		 * of the document is changed to declare UTF-8, which is always the output
+		 * encoding, whatever the source declares.
+		 */
+		private XMLEvent rewriteEvent(XMLEvent event) {
+			switch (event.getEventType()) {
+			case XMLEvent.START_DOCUMENT: {
+				final StartDocument start = (StartDocument) event;
+				if (start.standaloneSet()) {
+					return EVENT_FACTORY.createStartDocument(Charsets.UTF_8.name(), start.getVersion(),
+							start.isStandalone());
+				}
+				return EVENT_FACTORY.createStartDocument(Charsets.UTF_8.name(), start.getVersion());
+			}
+			case XMLEvent.START_ELEMENT: {
+				final StartElement start = event.asStartElement();
+				final List<Attribute> attributes = Lists.newArrayList();
+				for (Iterator<?> iterator = start.getAttributes(); iterator.hasNext();) {
+					final Attribute attribute = (Attribute) iterator.next();
+					attributes.add(EVENT_FACTORY.createAttribute(rewriteName(attribute.getName()),
+							attribute.getValue()));
+				}
+				return EVENT_FACTORY.createStartElement(rewriteName(start.getName()), attributes.iterator(),
+						rewriteNamespaces(start.getNamespaces()));
+			}
+			case XMLEvent.END_ELEMENT: {
+				final EndElement end = event.asEndElement();
+				return EVENT_FACTORY.createEndElement(rewriteName(end.getName()),
+						rewriteNamespaces(end.getNamespaces()));
+			}
+			default:
+				return event;
+			}
+		}
+
+		private Iterator<Namespace> rewriteNamespaces(Iterator<?> namespaces) {
+			final List<Namespace> rewritten = Lists.newArrayList();
+			while (namespaces.hasNext()) {
+				final Namespace namespace = (Namespace) namespaces.next();
+				if (m_from.equals(namespace.getNamespaceURI())) {
+					if (namespace.isDefaultNamespaceDeclaration()) {
+						rewritten.add(EVENT_FACTORY.createNamespace(m_to));
+					} else {
+						rewritten.add(EVENT_FACTORY.createNamespace(namespace.getPrefix(), m_to));
+					}
+				} else {
+					rewritten.add(namespace);
+				}
+			}
+			return rewritten.iterator();
+		}
+	}
+
+	/**
+	 * Exposes the bytes written so far, to avoid copying them.
+	 */
+	private static class EventBuffer extends ByteArrayOutputStream {
+		public EventBuffer() {
+			super(1024);
+		}
+
+		public void copy(int from, byte[] target, int off, int len) {
+			System.arraycopy(buf, from, target, off, len);
+		}
+
+		public int get(int index) {
+			return buf[index] & 0xff;
+		}
+	}
+
+	private final String m_from;
+
+	private final String m_to;
+
+	/**
+	 * @param fromNamespace not <code>null</code>, the namespace to change.
+	 * @param toNamespace   not <code>null</code>, the namespace to use instead.
+	 */
+	public XMCDANamespaceRewriter(String fromNamespace, String toNamespace) {
+		m_from = checkNotNull(fromNamespace);
+		m_to = checkNotNull(toNamespace);
+	}
+
+	/**
+	 * Returns a view of the given source where the namespace is changed. Each
+	 * stream opened from the returned source opens a stream from the given source
+	 * and rewrites it as it is being read.
+	 *
+	 * @param source not <code>null</code>.
+	 * @return not <code>null</code>.
+	 */
+	public ByteSource rewrite(final ByteSource source) {
+		checkNotNull(source);
+		return new ByteSource() {
+			@Override
+			public InputStream openStream() throws IOException {
+				return rewrite(source.openStream());
+			}
+		};
+	}
+
+	/**
+	 * Returns a stream reading the given source with the namespace changed. Closing
+	 * the returned stream closes the given one.
+	 *
+	 * @param source not <code>null</code>.
+	 * @return not <code>null</code>.
+	 * @throws IOException if the beginning of the source can't be read or parsed.
+	 *                     In that case, the given stream is closed.
+	 */
+	public InputStream rewrite(InputStream source) throws IOException {
+		checkNotNull(source);
+		try {
+			return new RewritingInputStream(source);
+		} catch (XMLStreamException exc) {
+			source.close();
+			throw new IOException(exc);
+		}
+	}
+
+	private QName rewriteName(QName name) {
+		if (!m_from.equals(name.getNamespaceURI())) {
+			return name;
+		}
+		return new QName(m_to, name.getLocalPart(), name.getPrefix());
+	}
+}
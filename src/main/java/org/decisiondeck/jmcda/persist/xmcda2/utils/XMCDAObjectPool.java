@@ -0,0 +1,162 @@
+package org.decisiondeck.jmcda.persist.xmcda2.utils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.decision_deck.jmcda.structure.Alternative;
+import org.decision_deck.jmcda.structure.Criterion;
+import org.decision_deck.jmcda.structure.DecisionMaker;
+import org.decision_deck.jmcda.structure.sorting.category.Category;
+
+import com.google.common.collect.Maps;
+
+/**
+ * <p>
+ * A symbol table giving, for each identifier read, a single canonical domain
+ * object (alternative, criterion, category, decision maker). Readers sharing an
+ * object of this class while reading a document thus create each domain object
+ * only once, however many times its identifier appears in the document, and
+ * retain a single copy of each identifier string.
+ * </p>
+ * <p>
+ * The pool only grows: it is meant to live as long as a read (or a set of
+ * related reads) and to be released, or cleared, afterwards.
+ * </p>
+ * <p>
+ * This class is thread-safe, so that readers converting fragments in parallel
+ * may share a pool: when several threads ask concurrently for the same
+ * identifier, they all obtain the same object. Clearing a pool while it is
+ * being used is not supported.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class XMCDAObjectPool {
+	private final ConcurrentMap<String, Alternative> m_alternatives;
+	private final ConcurrentMap<String, Category> m_categories = Maps.newConcurrentMap();
+	private final ConcurrentMap<String, Criterion> m_criteria;
+	private final ConcurrentMap<String, DecisionMaker> m_dms = Maps.newConcurrentMap();
+
+	/**
+	 * Creates a new empty pool with a default initial capacity.
+	 */
+	public XMCDAObjectPool() {
+		m_alternatives = Maps.newConcurrentMap();
+		m_criteria = Maps.newConcurrentMap();
+	}
+
+	/**
+	 * Creates a new empty pool sized to hold the given number of alternatives
+	 * and criteria without resizing.
+	 *
+	 * @param expectedAlternatives
+	 *            a non negative number.
+	 * @param expectedCriteria
+	 *            a non negative number.
+	 */
+	public XMCDAObjectPool(int expectedAlternatives, int expectedCriteria) {
+		checkArgument(expectedAlternatives >= 0);
+		checkArgument(expectedCriteria >= 0);
+		m_alternatives = new ConcurrentHashMap<String, Alternative>(expectedAlternatives);
+		m_criteria = new ConcurrentHashMap<String, Criterion>(expectedCriteria);
+	}
+
+	/**
+	 * Removes every object from this pool.
+	 */
+	public void clear() {
+		m_alternatives.clear();
+		m_categories.clear();
+		m_criteria.clear();
+		m_dms.clear();
+	}
+
+	/**
+	 * Retrieves the canonical alternative having the given id, creating it if
+	 * this is the first time it is asked for.
+	 *
+	 * @param id
+	 *            not <code>null</code>.
+	 * @return not <code>null</code>.
+	 */
+	public Alternative getAlternative(String id) {
+		checkNotNull(id);
+		final Alternative existing = m_alternatives.get(id);
+		if (existing != null) {
+			return existing;
+		}
+		final Alternative alternative = new Alternative(id);
+		final Alternative raced = m_alternatives.putIfAbsent(id, alternative);
+		return raced == null ? alternative : raced;
+	}
+
+	/**
+	 * Retrieves the canonical category having the given id, creating it if this
+	 * is the first time it is asked for.
+	 *
+	 * @param id
+	 *            not <code>null</code>.
+	 * @return not <code>null</code>.
+	 */
+	public Category getCategory(String id) {
+		checkNotNull(id);
+		final Category existing = m_categories.get(id);
+		if (existing != null) {
+			return existing;
+		}
+		final Category category = new Category(id);
+		final Category raced = m_categories.putIfAbsent(id, category);
+		return raced == null ? category : raced;
+	}
+
+	/**
+	 * Retrieves the canonical criterion having the given id, creating it if
+	 * this is the first time it is asked for.
+	 *
+	 * @param id
+	 *            not <code>null</code>.
+	 * @return not <code>null</code>.
+	 */
+	public Criterion getCriterion(String id) {
+		checkNotNull(id);
+		final Criterion existing = m_criteria.get(id);
+		if (existing != null) {
+			return existing;
+		}
+		final Criterion criterion = new Criterion(id);
+		final Criterion raced = m_criteria.putIfAbsent(id, criterion);
+		return raced == null ? criterion : raced;
+	}
+
+	/**
+	 * Retrieves the canonical decision maker having the given id, creating it
+	 * if this is the first time it is asked for.
+	 *
+	 * @param id
+	 *            not <code>null</code>.
+	 * @return not <code>null</code>.
+	 */
+	public DecisionMaker getDecisionMaker(String id) {
+		checkNotNull(id);
+		final DecisionMaker existing = m_dms.get(id);
+		if (existing != null) {
+			return existing;
+		}
+		final DecisionMaker dm = new DecisionMaker(id);
+		final DecisionMaker raced = m_dms.putIfAbsent(id, dm);
+		return raced == null ? dm : raced;
+	}
+
+	/**
+	 * Retrieves the number of objects in this pool.
+	 *
+	 * @return a non negative number.
+	 */
+	public int size() {
+		return m_alternatives.size() + m_categories.size() + m_criteria.size() + m_dms.size();
+	}
+}
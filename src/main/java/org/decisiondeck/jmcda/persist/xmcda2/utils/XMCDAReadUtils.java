@@ -2,36 +2,40 @@ package org.decisiondeck.jmcda.persist.xmcda2.utils;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.lang.reflect.Field;
 import java.net.URL;
 import java.util.Collection;
 
 import javax.xml.namespace.QName;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.xmlbeans.SchemaType;
 import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.XmlTokenSource;
-import org.decision_deck.utils.persist.XmlReadUtils;
 import org.decisiondeck.jmcda.exc.InvalidInputException;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc.XMCDA;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XPerformanceTable;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDADocumentsCache.CachedDocument;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager.ErrorManagement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.Iterables;
 import com.google.common.io.ByteSource;
 import com.google.common.io.Resources;
@@ -44,12 +48,105 @@ import com.google.common.io.Resources;
  */
 public class XMCDAReadUtils extends XMCDAErrorsManagerForwarder {
 
+	/**
+	 * Indicates when the documents read are checked against the XMCDA schema.
+	 * Validating a big document has a significant cost, which users reading from
+	 * trusted sources may want to avoid. Reading an invalid document that has not
+	 * been validated may lead to unexpected data being read (thus, to
+	 * {@link InvalidInputException}s or errors collected according to the error
+	 * management strategy), or to runtime exceptions thrown by the underlying
+	 * XMLBeans objects.
+	 *
+	 * @author Olivier Cailloux
+	 *
+	 */
+	static public enum ValidationMode {
+		/**
+		 * Validate every document entirely right after it has been parsed.
+		 */
+		FULL,
+		/**
+		 * Validate only the fragments (direct children of the XMCDA tag) that are
+		 * effectively read.
+		 */
+		FRAGMENT,
+		/**
+		 * Validate a document only when reading data from it failed, in order to
+		 * report an invalid document instead of the read failure when relevant.
+		 */
+		ON_ERROR_ONLY,
+		/**
+		 * Never validate.
+		 */
+		NONE
+	}
+
+	/**
+	 * Copies the bytes read from the underlying stream into a given output
+	 * stream. Does not support marking.
+	 */
+	private static class RecordingInputStream extends FilterInputStream {
+		private final OutputStream m_record;
+
+		public RecordingInputStream(InputStream input, OutputStream record) {
+			super(input);
+			m_record = record;
+		}
+
+		@Override
+		public void mark(int readlimit) {
+			/** Not supported. */
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int read = in.read();
+			if (read != -1) {
+				m_record.write(read);
+			}
+			return read;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			final int read = in.read(b, off, len);
+			if (read > 0) {
+				m_record.write(b, off, read);
+			}
+			return read;
+		}
+
+		@Override
+		public void reset() throws IOException {
+			throw new IOException("Mark not supported.");
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			final byte[] skipped = new byte[(int) Math.min(n, 8192)];
+			final int read = read(skipped, 0, skipped.length);
+			return Math.max(read, 0);
+		}
+	}
+
 	static public String DEFAULT_XMCDA_VERSION = "2.1.0";
 	public static final String SAMPLES_PACKAGE = "/org/decision_deck/xmcda2/samples/";
-	@SuppressWarnings("unused")
 	private static final Logger LOGGER = LoggerFactory.getLogger(XMCDAReadUtils.class);
 
-	private static final String XMCDA_NAMESPACE_PREFIX = "http://www.decision-deck.org/2009/XMCDA-";
+	public static final String XMCDA_NAMESPACE_PREFIX = "http://www.decision-deck.org/2009/XMCDA-";
+
+	private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+	static {
+		/** Looking for the root element must not read DTDs or fetch external entities. */
+		INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
 
 	/**
 	 * <p>
@@ -61,6 +158,14 @@ public class XMCDAReadUtils extends XMCDAErrorsManagerForwarder {
 	 * therefore not necessarily a valid XMCDA document.
 	 * </p>
 	 * <p>
+	 * The returned source is a view of the given one: the transformation happens,
+	 * in a streaming way, each time the returned source is read. It is thus not
+	 * held in memory. Reading the returned source fails with an IOException caused
+	 * by an {@link XMLStreamException} if the given source does
+	 * not contain well-formed XML. The given source may be compressed (see
+	 * {@link XMCDACompression}), the returned one is not.
+	 * </p>
+	 * <p>
 	 * This method may typically be useful in two situations: transforming an old
 	 * version of an XMCDA document into the version supported by this library (see
 	 * {@link #DEFAULT_XMCDA_VERSION}) in order to be able to read data using the
@@ -80,44 +185,17 @@ public class XMCDAReadUtils extends XMCDAErrorsManagerForwarder {
 		checkNotNull(source);
 		checkNotNull(version);
 
-		final String xsltBase = Resources.toString(XMCDAReadUtils.class.getResource("Change namespace.xslt"),
-				Charsets.UTF_8);
-
-		final String sourceNamespace = XmlReadUtils.getNamespace(source);
+		final ByteSource inflated = XMCDACompression.decompressing(source);
+		final String sourceNamespace;
+		try (InputStream input = inflated.openBufferedStream()) {
+			sourceNamespace = readNamespace(input);
+		}
 		if (sourceNamespace == null || !sourceNamespace.startsWith(XMCDA_NAMESPACE_PREFIX)) {
 			throw new XmlException("Given source namespace: '" + sourceNamespace + "' should start with "
 					+ XMCDA_NAMESPACE_PREFIX + ".");
 		}
 
-		// final DOMImplementation domImpl = db.getDOMImplementation();
-		// Document document1 =
-		// domImpl.createDocument("http://www.decision-deck.org/2009/XMCDA-2.1.0",
-		// "xmcda:XMCDA",
-		// null);
-		// final NodeList childNodes = doc.getDocumentElement().getChildNodes();
-		// for (int i = 0; i < childNodes.getLength(); ++i) {
-		// final Node node = childNodes.item(0);
-		// final Node imported = document1.adoptNode(node);
-		// document1.getDocumentElement().appendChild(imported);
-		// }
-		// DOMImplementationLS ls = (DOMImplementationLS) domImpl;
-		// LSSerializer lss = ls.createLSSerializer();
-		// LSOutput lso = ls.createLSOutput();
-		// lso.setByteStream(System.out);
-		// lss.write(document1, lso);
-
-		final String xslt = xsltBase.replace("FROM_NAMESPACE", sourceNamespace).replace("TO_NAMESPACE",
-				XMCDA_NAMESPACE_PREFIX + version);
-		Transformer tr;
-		final ByteArrayOutputStream writer = new ByteArrayOutputStream();
-		try (InputStream input = source.openBufferedStream()) {
-			tr = TransformerFactory.newInstance().newTransformer(new StreamSource(new StringReader(xslt)));
-			tr.transform(new StreamSource(input), new StreamResult(writer));
-		} catch (TransformerException exc) {
-			throw new XmlException(exc);
-		}
-
-		return ByteSource.wrap(writer.toByteArray());
+		return new XMCDANamespaceRewriter(sourceNamespace, XMCDA_NAMESPACE_PREFIX + version).rewrite(inflated);
 	}
 
 	static public String getTagName(Class<? extends XmlObject> targetType) {
@@ -141,6 +219,13 @@ public class XMCDAReadUtils extends XMCDAErrorsManagerForwarder {
 
 	private String m_lastVersionRead;
 
+	private ValidationMode m_validationMode;
+
+	/**
+	 * <code>null</code> for no cache.
+	 */
+	private final XMCDADocumentsCache m_documentsCache;
+
 	/**
 	 * Creates a new object which will use the default error management strategy
 	 * {@link ErrorManagement#THROW}.
@@ -148,6 +233,8 @@ public class XMCDAReadUtils extends XMCDAErrorsManagerForwarder {
 	public XMCDAReadUtils() {
 		super();
 		m_lastVersionRead = null;
+		m_validationMode = ValidationMode.FULL;
+		m_documentsCache = null;
 	}
 
 	/**
@@ -159,6 +246,95 @@ public class XMCDAReadUtils extends XMCDAErrorsManagerForwarder {
 	public XMCDAReadUtils(XMCDAErrorsManager errorsManager) {
 		super(errorsManager);
 		m_lastVersionRead = null;
+		m_validationMode = ValidationMode.FULL;
+		m_documentsCache = null;
+	}
+
+	/**
+	 * Creates a new object delegating error management to the given error manager
+	 * in case of unexpected data read, and retrieving the documents it reads
+	 * through the given cache. The documents this object returns are then shared
+	 * with the other users of the cache and must not be modified.
+	 *
+	 * @param errorsManager  not <code>null</code>.
+	 * @param documentsCache not <code>null</code>, e.g.
+	 *                       {@link XMCDADocumentsCache#getShared()}.
+	 */
+	public XMCDAReadUtils(XMCDAErrorsManager errorsManager, XMCDADocumentsCache documentsCache) {
+		super(errorsManager);
+		m_lastVersionRead = null;
+		m_validationMode = ValidationMode.FULL;
+		m_documentsCache = checkNotNull(documentsCache);
+	}
+
+	/**
+	 * Retrieves the cache through which this object reads documents.
+	 *
+	 * @return <code>null</code> iff this object parses every document it reads.
+	 */
+	public XMCDADocumentsCache getDocumentsCache() {
+		return m_documentsCache;
+	}
+
+	/**
+	 * Retrieves the validation mode this object follows. The default is
+	 * {@link ValidationMode#FULL}.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	public ValidationMode getValidationMode() {
+		return m_validationMode;
+	}
+
+	/**
+	 * Sets the validation mode this object follows.
+	 *
+	 * @param validationMode not <code>null</code>.
+	 */
+	public void setValidationMode(ValidationMode validationMode) {
+		m_validationMode = checkNotNull(validationMode);
+	}
+
+	/**
+	 * Ensures that each of the given fragments validates, if this object follows
+	 * the {@link ValidationMode#FRAGMENT} validation mode. Otherwise, does nothing.
+	 *
+	 * @param fragments not <code>null</code>.
+	 * @throws XmlException if this object follows the
+	 *                      {@link ValidationMode#FRAGMENT} validation mode and
+	 *                      some fragment does not validate.
+	 */
+	public void validateFragments(Collection<? extends XmlObject> fragments) throws XmlException {
+		checkNotNull(fragments);
+		if (m_validationMode != ValidationMode.FRAGMENT) {
+			return;
+		}
+		for (XmlObject fragment : fragments) {
+			if (!fragment.validate()) {
+				throw new XmlException("Fragment does not validate: " + fragment + ".");
+			}
+		}
+	}
+
+	/**
+	 * Ensures that the given XMCDA document validates, if this object follows the
+	 * {@link ValidationMode#ON_ERROR_ONLY} validation mode. This is intended to be
+	 * called when reading data from that document has failed. Otherwise, does
+	 * nothing.
+	 *
+	 * @param xmcda   not <code>null</code>.
+	 * @param failure not <code>null</code>, the reason why reading failed.
+	 * @throws XmlException if this object follows the
+	 *                      {@link ValidationMode#ON_ERROR_ONLY} validation mode
+	 *                      and the document does not validate. The given failure
+	 *                      is the cause of the exception.
+	 */
+	public void validateAfterFailure(XMCDA xmcda, Exception failure) throws XmlException {
+		checkNotNull(xmcda);
+		checkNotNull(failure);
+		if (m_validationMode == ValidationMode.ON_ERROR_ONLY && !xmcda.validate()) {
+			throw new XmlException("Input does not validate.", failure);
+		}
 	}
 
 	/**
@@ -176,7 +352,8 @@ public class XMCDAReadUtils extends XMCDAErrorsManagerForwarder {
 	/**
 	 * <p>
 	 * Retrieves the XMCDA document representing the requested sample. Ensures that
-	 * it validates.
+	 * it validates, if this object follows the {@link ValidationMode#FULL}
+	 * validation mode.
 	 * </p>
 	 * <p>
 	 * The sample is searched for by requesting the given name prepended with
@@ -197,7 +374,7 @@ public class XMCDAReadUtils extends XMCDAErrorsManagerForwarder {
 		final ByteSource source = getSampleAsInputSupplier(name);
 		try (InputStream input = source.openBufferedStream()) {
 			final XMCDADoc doc = XMCDADoc.Factory.parse(input);
-			if (!doc.validate()) {
+			if (m_validationMode == ValidationMode.FULL && !doc.validate()) {
 				throw new XmlException("Input does not validate.");
 			}
 			return doc;
@@ -255,9 +432,51 @@ public class XMCDAReadUtils extends XMCDAErrorsManagerForwarder {
 	 */
 	public <T extends XmlTokenSource> T getUnique(Collection<T> collection, String contextMessageIfEmpty)
 			throws InvalidInputException {
+		return getUnique(collection, false, Suppliers.ofInstance(contextMessageIfEmpty));
+	}
+
+	/**
+	 * Equivalent to {@link #getUnique(Collection, String)}, except that the
+	 * context message is only built when an error is reported. This is
+	 * preferable when the context message is costly to build, e.g. the string
+	 * representation of an enclosing fragment, as the normal path then incurs no
+	 * cost.
+	 *
+	 * @param                       <T> the type of content of the collection.
+	 * @param collection            not <code>null</code>.
+	 * @param contextMessageIfEmpty not <code>null</code>, supplies the context
+	 *                              message, possibly <code>null</code>.
+	 * @return <code>null</code> iff the collection contains more or less than one
+	 *         element and this object follows a permissive strategy.
+	 * @throws InvalidInputException iff the collection contains more or less than
+	 *                               one element and this object follows the
+	 *                               {@link ErrorManagement#THROW} strategy.
+	 * @see #describe(Object)
+	 */
+	public <T extends XmlTokenSource> T getUnique(Collection<T> collection, Supplier<String> contextMessageIfEmpty)
+			throws InvalidInputException {
+		Preconditions.checkNotNull(contextMessageIfEmpty);
 		return getUnique(collection, false, contextMessageIfEmpty);
 	}
 
+	/**
+	 * Returns a supplier giving the string representation of the given object,
+	 * computed only when asked for. Typically used to give the enclosing
+	 * fragment as context of an error message without serializing it when no
+	 * error occurs.
+	 *
+	 * @param object may be <code>null</code>.
+	 * @return not <code>null</code>.
+	 */
+	static public Supplier<String> describe(final Object object) {
+		return new Supplier<String>() {
+			@Override
+			public String get() {
+				return String.valueOf(object);
+			}
+		};
+	}
+
 	/**
 	 * <p>
 	 * Retrieves the only element from the given collection of elements, or
@@ -287,7 +506,8 @@ public class XMCDAReadUtils extends XMCDAErrorsManagerForwarder {
 	/**
 	 * <p>
 	 * Retrieves the XMCDA document from the given source. Ensures that it
-	 * validates.
+	 * validates, if this object follows the {@link ValidationMode#FULL} validation
+	 * mode.
 	 * </p>
 	 * <p>
 	 * If the document contained in the given source appears, according to its
@@ -315,7 +535,8 @@ public class XMCDAReadUtils extends XMCDAErrorsManagerForwarder {
 	/**
 	 * <p>
 	 * Retrieves the XMCDA document from the given source. Ensures that it
-	 * validates.
+	 * validates, if this object follows the {@link ValidationMode#FULL} validation
+	 * mode.
 	 * </p>
 	 * <p>
 	 * If the document contained in the given source appears, according to its
@@ -324,7 +545,21 @@ public class XMCDAReadUtils extends XMCDAErrorsManagerForwarder {
 	 * source version matched the expected one.
 	 * </p>
 	 * <p>
-	 * The underlying reader is closed when this method returns.
+	 * The source is opened only once: the bytes that precede its root element
+	 * are kept in memory while its namespace is looked for, then re-used to
+	 * parse the document. The underlying reader is closed when this method
+	 * returns.
+	 * </p>
+	 * <p>
+	 * The source may be compressed, as detected by {@link XMCDACompression}. Big
+	 * files may be read through a {@link MappedFileByteSource}.
+	 * </p>
+	 * <p>
+	 * If this object has a documents cache, the document is retrieved from the
+	 * cache when a source with the same content has been read already, without
+	 * parsing the source again. The returned document is then shared and must
+	 * not be modified. See {@link XMCDADocumentsCache} about how many times the
+	 * source is read in that case.
 	 * </p>
 	 *
 	 * @param source not <code>null</code>, with a non <code>null</code> reader.
@@ -336,27 +571,119 @@ public class XMCDAReadUtils extends XMCDAErrorsManagerForwarder {
 	 *                      source document does not validate.
 	 * @see #getLastVersionRead
 	 */
-	public XMCDADoc getXMCDADoc(ByteSource source) throws IOException, XmlException {
+	public XMCDADoc getXMCDADoc(final ByteSource source) throws IOException, XmlException {
 		checkNotNull(source);
-		final ByteSource effectiveSource;
-		final String sourceNamespace = XmlReadUtils.getNamespace(source);
+		if (m_documentsCache == null) {
+			return parse(source.openStream(), m_validationMode == ValidationMode.FULL);
+		}
+		final CachedDocument cached = m_documentsCache.get(source, new XMCDADocumentsCache.Parser() {
+			@Override
+			public CachedDocument parse(InputStream input) throws IOException, XmlException {
+				/** A document in cache is validated at most once, when first required. */
+				final XMCDADoc doc = XMCDAReadUtils.this.parse(input, false);
+				return new CachedDocument(doc, m_lastVersionRead, false);
+			}
+		});
+		m_lastVersionRead = cached.getVersionRead();
+		if (m_validationMode == ValidationMode.FULL) {
+			cached.ensureValid();
+		}
+		return cached.getDocument();
+	}
+
+	/**
+	 * Parses the document read from the given stream. The bytes read while
+	 * looking for the namespace of the root element are kept in memory, then
+	 * parsed again followed by the rest of the stream, so that the source is
+	 * opened only once.
+	 *
+	 * @param sourceInput not <code>null</code>, a stream opened from the source,
+	 *                    closed by this method.
+	 * @param validate    <code>true</code> to ensure that the document validates.
+	 * @return not <code>null</code>.
+	 */
+	private XMCDADoc parse(InputStream sourceInput, boolean validate) throws IOException, XmlException {
+		m_lastVersionRead = null;
+		try (InputStream input = XMCDACompression.decompress(sourceInput)) {
+			final ByteArrayOutputStream prelude = new ByteArrayOutputStream();
+			final String sourceNamespace;
+			try {
+				sourceNamespace = readNamespace(new RecordingInputStream(input, prelude));
+			} catch (XMLStreamException exc) {
+				throw new XmlException("Root element not found: " + exc.getMessage(), exc);
+			}
+			return parse(new SequenceInputStream(new ByteArrayInputStream(prelude.toByteArray()), input),
+					sourceNamespace, validate);
+		} catch (IOException exc) {
+			if (exc.getCause() instanceof XMLStreamException) {
+				throw new XmlException(exc.getCause().getMessage(), exc.getCause());
+			}
+			throw exc;
+		}
+	}
+
+	/**
+	 * Parses the document contained in the given stream, changing its namespace
+	 * to the one of the default XMCDA version if it is the namespace of an other
+	 * XMCDA version.
+	 *
+	 * @param input           not <code>null</code>, positioned at the start of
+	 *                        the document, not closed by this method.
+	 * @param sourceNamespace the namespace of the root element of the document,
+	 *                        <code>null</code> if it has none.
+	 * @param validate        <code>true</code> to ensure that the document
+	 *                        validates.
+	 * @return not <code>null</code>.
+	 */
+	private XMCDADoc parse(InputStream input, String sourceNamespace, boolean validate)
+			throws IOException, XmlException {
+		final InputStream effectiveInput;
 		if (sourceNamespace != null && sourceNamespace.startsWith(XMCDA_NAMESPACE_PREFIX)) {
 			m_lastVersionRead = sourceNamespace.substring(XMCDA_NAMESPACE_PREFIX.length());
 			LOGGER.info("Version read: " + m_lastVersionRead + ".");
 			if (!sourceNamespace.equals(XMCDA_NAMESPACE_PREFIX + DEFAULT_XMCDA_VERSION)) {
-				effectiveSource = getAsVersion(source, DEFAULT_XMCDA_VERSION);
+				effectiveInput = new XMCDANamespaceRewriter(sourceNamespace,
+						XMCDA_NAMESPACE_PREFIX + DEFAULT_XMCDA_VERSION).rewrite(input);
 			} else {
-				effectiveSource = source;
+				effectiveInput = input;
 			}
 		} else {
-			effectiveSource = source;
+			effectiveInput = input;
 		}
-		try (InputStream input = effectiveSource.openBufferedStream()) {
-			final XMCDADoc doc = XMCDADoc.Factory.parse(input);
-			if (!doc.validate()) {
-				throw new XmlException("Input does not validate.");
+		final XMCDADoc doc = XMCDADoc.Factory.parse(effectiveInput);
+		if (validate && !doc.validate()) {
+			throw new XmlException("Input does not validate.");
+		}
+		return doc;
+	}
+
+	/**
+	 * Reads the namespace of the root element of the document contained in the
+	 * given stream. The stream is read up to the root element, but not closed.
+	 *
+	 * @param input not <code>null</code>.
+	 * @return <code>null</code> if the root element has no namespace.
+	 * @throws IOException        if an exception happens while reading the
+	 *                            stream.
+	 * @throws XMLStreamException if the stream ends before the root element, or
+	 *                            if what precedes it is not well-formed.
+	 */
+	static private String readNamespace(InputStream input) throws IOException, XMLStreamException {
+		final XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(input);
+		try {
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+					return Strings.emptyToNull(reader.getNamespaceURI());
+				}
 			}
-			return doc;
+			throw new XMLStreamException("No root element.");
+		} catch (XMLStreamException exc) {
+			if (exc.getNestedException() instanceof IOException) {
+				throw (IOException) exc.getNestedException();
+			}
+			throw exc;
+		} finally {
+			reader.close();
 		}
 	}
 
@@ -389,21 +716,31 @@ public class XMCDAReadUtils extends XMCDAErrorsManagerForwarder {
 	 *                               follows the {@link ErrorManagement#THROW}
 	 *                               strategy.
 	 */
-	private <T> T getUnique(Collection<T> collection, boolean acceptZero, final String contextMessageIfZero)
-			throws InvalidInputException {
+	private <T> T getUnique(final Collection<T> collection, boolean acceptZero,
+			final Supplier<String> contextMessageIfZero) throws InvalidInputException {
 		Preconditions.checkNotNull(collection);
 		final String expected = acceptZero ? "zero or one" : "one";
 		final T unique;
 		if (collection.size() > 1) {
-			error("Found more than one element at " + collection + ", expected " + expected + ".");
+			error(new Supplier<String>() {
+				@Override
+				public String get() {
+					return "Found more than one element at " + collection + ", expected " + expected + ".";
+				}
+			});
 			unique = null;
 		} else if (collection.size() == 1) {
 			unique = Iterables.getOnlyElement(collection);
 		} else {
 			if (!acceptZero) {
-				final String printContext = contextMessageIfZero == null ? "in collection"
-						: "at " + contextMessageIfZero;
-				error("Found zero elements " + printContext + ", expected " + expected + ".");
+				error(new Supplier<String>() {
+					@Override
+					public String get() {
+						final String context = contextMessageIfZero == null ? null : contextMessageIfZero.get();
+						final String printContext = context == null ? "in collection" : "at " + context;
+						return "Found zero elements " + printContext + ", expected " + expected + ".";
+					}
+				});
 			}
 			unique = null;
 		}
@@ -0,0 +1,758 @@
+package org.decisiondeck.jmcda.persist.xmcda2.utils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.xmlbeans.XmlException;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteSink;
+import com.google.common.io.ByteSource;
+import com.google.common.io.CountingInputStream;
+
+/**
+ * <p>
+ * An index of the top level sections of an XMCDA document, i.e., of the
+ * children of its XMCDA root element. Each section is recorded with its tag,
+ * its <code>mcdaConcept</code> and <code>name</code> attributes, and its
+ * position in the document. An index permits to parse only the sections that
+ * are needed, e.g. the criteria of a document that also contains a huge
+ * performance table, using {@link #getSectionsSource(ByteSource, Set)}.
+ * </p>
+ * <p>
+ * An index is built by a single scan of the bytes of the document, which
+ * recognizes the markup without parsing the content nor validating it. This
+ * is much faster than parsing the document. The index may then be kept in
+ * memory, or written next to the document and read back later, see
+ * {@link #write(ByteSink)}. An index does not detect changes in the document
+ * it indexes: it is up to the user to rebuild it when the document changes,
+ * e.g. using {@link #getSourceSize()} as a cheap check.
+ * </p>
+ * <p>
+ * Compressed documents (see {@link XMCDACompression}) are supported, the
+ * positions then refer to the inflated content. Reading a section of such a
+ * document requires inflating the preceding content, thus indexes are mostly
+ * useful for uncompressed documents. Documents must use an encoding that is
+ * compatible with ASCII, such as UTF-8 or ISO-8859-1.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class XMCDASectionIndex {
+	/**
+	 * A top level section of an XMCDA document.
+	 */
+	static public class Section {
+		private final String m_concept;
+		private final long m_length;
+		private final String m_name;
+		private final long m_offset;
+		private final String m_tag;
+
+		Section(String tag, String concept, String name, long offset, long length) {
+			m_tag = checkNotNull(tag);
+			m_concept = concept;
+			m_name = name;
+			checkArgument(offset >= 0 && length > 0);
+			m_offset = offset;
+			m_length = length;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Section)) {
+				return false;
+			}
+			final Section section = (Section) obj;
+			return m_tag.equals(section.m_tag) && Objects.equal(m_concept, section.m_concept)
+					&& Objects.equal(m_name, section.m_name) && m_offset == section.m_offset
+					&& m_length == section.m_length;
+		}
+
+		/**
+		 * Retrieves the value of the <code>mcdaConcept</code> attribute of this
+		 * section.
+		 *
+		 * @return <code>null</code> iff the attribute is not set.
+		 */
+		public String getConcept() {
+			return m_concept;
+		}
+
+		/**
+		 * Retrieves the number of bytes of this section, from the start of its
+		 * start tag to the end of its end tag.
+		 *
+		 * @return a positive number.
+		 */
+		public long getLength() {
+			return m_length;
+		}
+
+		/**
+		 * Retrieves the value of the <code>name</code> attribute of this
+		 * section.
+		 *
+		 * @return <code>null</code> iff the attribute is not set.
+		 */
+		public String getName() {
+			return m_name;
+		}
+
+		/**
+		 * Retrieves the position of the first byte of the start tag of this
+		 * section in the document.
+		 *
+		 * @return a non negative number.
+		 */
+		public long getOffset() {
+			return m_offset;
+		}
+
+		/**
+		 * Retrieves the local name of the element of this section, e.g.
+		 * <code>performanceTable</code>.
+		 *
+		 * @return not <code>null</code>.
+		 */
+		public String getTag() {
+			return m_tag;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(m_tag, m_concept, m_name, Long.valueOf(m_offset), Long.valueOf(m_length));
+		}
+
+		@Override
+		public String toString() {
+			return "Section(" + m_tag + ", concept " + m_concept + ", name " + m_name + ", bytes " + m_offset + "+"
+					+ m_length + ")";
+		}
+	}
+
+	/**
+	 * The informations of interest read from a start tag.
+	 */
+	static private class StartTag {
+		public final String m_concept;
+		public final String m_localName;
+		public final String m_name;
+
+		public StartTag(String localName, String concept, String name) {
+			m_localName = localName;
+			m_concept = concept;
+			m_name = name;
+		}
+
+		public Section asSection(long offset, long length) {
+			return new Section(m_localName, m_concept, m_name, offset, length);
+		}
+	}
+
+	/**
+	 * Scans the bytes of a document, keeping track of the position of the
+	 * bytes read.
+	 */
+	static private class Scanner {
+		static private final Pattern ATTRIBUTE = Pattern.compile("([^\\s=/]+)\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')");
+
+		static private final Pattern ENCODING = Pattern.compile("encoding\\s*=\\s*[\"']([^\"']+)[\"']");
+
+		private final byte[] m_buffer = new byte[64 * 1024];
+		/**
+		 * The position in the document of the first byte of the buffer.
+		 */
+		private long m_bufferStart;
+		private Charset m_charset;
+		/**
+		 * The number of valid bytes in the buffer.
+		 */
+		private int m_count;
+		/**
+		 * The index in the buffer of the next byte to read.
+		 */
+		private int m_index;
+		private final InputStream m_input;
+
+		public Scanner(InputStream input) {
+			m_input = checkNotNull(input);
+			m_bufferStart = 0;
+			m_count = 0;
+			m_index = 0;
+			m_charset = Charsets.UTF_8;
+		}
+
+		public long getPosition() {
+			return m_bufferStart + m_index;
+		}
+
+		/**
+		 * Scans the whole document.
+		 *
+		 * @param source
+		 *            the (possibly compressed) source being scanned, whose
+		 *            size is recorded in the index.
+		 */
+		public XMCDASectionIndex index(CountingInputStream source) throws IOException, XmlException {
+			if (fill() && m_count >= 2 && (m_buffer[0] == 0 || m_buffer[1] == 0 || (m_buffer[0] & 0xFF) >= 0xFE)) {
+				throw new XmlException("Only encodings compatible with ASCII are supported.");
+			}
+			final List<Section> sections = Lists.newArrayList();
+			int depth = 0;
+			long prologLength = -1;
+			long epilogOffset = -1;
+			/** The start tag of the section being scanned. */
+			StartTag current = null;
+			long currentStart = -1;
+			while (skipTo('<')) {
+				final long start = getPosition();
+				++m_index;
+				final int first = next();
+				switch (first) {
+				case '?': {
+					final ByteArrayOutputStream content = prologLength < 0 ? new ByteArrayOutputStream() : null;
+					skipPast(new byte[] { '?', '>' }, content);
+					if (content != null) {
+						readDeclaration(content);
+					}
+					break;
+				}
+				case '!': {
+					final int second = next();
+					if (second == '-') {
+						skipPast(new byte[] { '-', '-', '>' }, null);
+					} else if (second == '[') {
+						skipPast(new byte[] { ']', ']', '>' }, null);
+					} else {
+						skipDeclaration();
+					}
+					break;
+				}
+				case '/':
+					skipPast(new byte[] { '>' }, null);
+					--depth;
+					if (depth < 0) {
+						throw new XmlException("Unexpected end tag at byte " + start + ".");
+					}
+					if (depth == 1) {
+						sections.add(current.asSection(currentStart, getPosition() - currentStart));
+					} else if (depth == 0) {
+						epilogOffset = start;
+					}
+					break;
+				default: {
+					final ByteArrayOutputStream content = depth <= 1 ? new ByteArrayOutputStream() : null;
+					if (content != null) {
+						content.write(first);
+					}
+					final boolean empty = skipStartTag(content);
+					if (depth == 0) {
+						if (prologLength >= 0) {
+							throw new XmlException("Unexpected second root element at byte " + start + ".");
+						}
+						final StartTag root = readStartTag(content);
+						if (!root.m_localName.equals("XMCDA")) {
+							throw new XmlException("Expected XMCDA root element, found " + root.m_localName + ".");
+						}
+						prologLength = getPosition();
+						if (empty) {
+							epilogOffset = prologLength;
+						} else {
+							depth = 1;
+						}
+					} else if (depth == 1) {
+						final StartTag tag = readStartTag(content);
+						if (empty) {
+							sections.add(tag.asSection(start, getPosition() - start));
+						} else {
+							current = tag;
+							currentStart = start;
+							depth = 2;
+						}
+					} else if (!empty) {
+						++depth;
+					}
+				}
+				}
+			}
+			if (prologLength < 0) {
+				throw new XmlException("No root element found.");
+			}
+			if (depth != 0) {
+				throw new XmlException("Unexpected end of document.");
+			}
+			return new XMCDASectionIndex(sections, prologLength, epilogOffset, getPosition(), source.getCount());
+		}
+
+		private boolean fill() throws IOException {
+			m_bufferStart += m_count;
+			m_index = 0;
+			m_count = Math.max(0, m_input.read(m_buffer));
+			return m_count > 0;
+		}
+
+		private int next() throws IOException, XmlException {
+			if (m_index == m_count && !fill()) {
+				throw new XmlException("Unexpected end of document at byte " + getPosition() + ".");
+			}
+			return m_buffer[m_index++] & 0xFF;
+		}
+
+		/**
+		 * Reads the encoding from the content of the XML declaration, if the
+		 * given content is an XML declaration.
+		 */
+		private void readDeclaration(ByteArrayOutputStream content) throws XmlException {
+			final String declaration = new String(content.toByteArray(), Charsets.US_ASCII);
+			if (!declaration.startsWith("xml")) {
+				return;
+			}
+			final Matcher matcher = ENCODING.matcher(declaration);
+			if (!matcher.find()) {
+				return;
+			}
+			final String encoding = matcher.group(1);
+			if (encoding.toUpperCase().startsWith("UTF-16") || encoding.toUpperCase().startsWith("UTF-32")) {
+				throw new XmlException("Only encodings compatible with ASCII are supported, found " + encoding + ".");
+			}
+			try {
+				m_charset = Charset.forName(encoding);
+			} catch (IllegalCharsetNameException | UnsupportedCharsetException exc) {
+				throw new XmlException("Unsupported encoding: " + encoding + ".", exc);
+			}
+		}
+
+		/**
+		 * Reads the local name and the attributes of interest of a start tag.
+		 *
+		 * @param content
+		 *            the content of the tag, excluding the surrounding angle
+		 *            brackets.
+		 * @return not <code>null</code>.
+		 */
+		private StartTag readStartTag(ByteArrayOutputStream content) throws XmlException {
+			final String tag = new String(content.toByteArray(), m_charset);
+			int nameEnd = 0;
+			while (nameEnd < tag.length() && !Character.isWhitespace(tag.charAt(nameEnd))
+					&& tag.charAt(nameEnd) != '/') {
+				++nameEnd;
+			}
+			final String qualifiedName = tag.substring(0, nameEnd);
+			final String localName = qualifiedName.substring(qualifiedName.indexOf(':') + 1);
+			String concept = null;
+			String name = null;
+			final Matcher matcher = ATTRIBUTE.matcher(tag);
+			matcher.region(nameEnd, tag.length());
+			while (matcher.find()) {
+				final String value = unescape(matcher.group(2) == null ? matcher.group(3) : matcher.group(2));
+				if (matcher.group(1).equals("mcdaConcept")) {
+					concept = value;
+				} else if (matcher.group(1).equals("name")) {
+					name = value;
+				}
+			}
+			return new StartTag(localName, concept, name);
+		}
+
+		/**
+		 * Skips a document type declaration, including its internal subset.
+		 */
+		private void skipDeclaration() throws IOException, XmlException {
+			int quote = 0;
+			int brackets = 0;
+			while (true) {
+				final int c = next();
+				if (quote != 0) {
+					if (c == quote) {
+						quote = 0;
+					}
+				} else if (c == '"' || c == '\'') {
+					quote = c;
+				} else if (c == '[') {
+					++brackets;
+				} else if (c == ']') {
+					--brackets;
+				} else if (c == '>' && brackets == 0) {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Reads bytes until the given terminator has been read.
+		 *
+		 * @param content
+		 *            if not <code>null</code>, receives the bytes read,
+		 *            excluding the terminator.
+		 */
+		private void skipPast(byte[] terminator, ByteArrayOutputStream content) throws IOException, XmlException {
+			final int length = terminator.length;
+			final byte[] window = new byte[length];
+			long read = 0;
+			while (true) {
+				final int c = next();
+				if (content != null && read >= length) {
+					content.write(window[0]);
+				}
+				System.arraycopy(window, 1, window, 0, length - 1);
+				window[length - 1] = (byte) c;
+				++read;
+				if (read >= length && Arrays.equals(window, terminator)) {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Reads the rest of a start tag, the first character of its name being
+		 * read already.
+		 *
+		 * @param content
+		 *            if not <code>null</code>, receives the bytes read,
+		 *            excluding the final angle bracket.
+		 * @return <code>true</code> iff the tag is an empty element tag.
+		 */
+		private boolean skipStartTag(ByteArrayOutputStream content) throws IOException, XmlException {
+			int quote = 0;
+			int previous = 0;
+			while (true) {
+				final int c = next();
+				if (quote != 0) {
+					if (c == quote) {
+						quote = 0;
+					}
+				} else if (c == '"' || c == '\'') {
+					quote = c;
+				} else if (c == '>') {
+					return previous == '/';
+				}
+				if (content != null) {
+					content.write(c);
+				}
+				previous = c;
+			}
+		}
+
+		/**
+		 * Positions the scanner on the next occurrence of the given byte.
+		 *
+		 * @return <code>false</code> iff the end of the document has been
+		 *         reached.
+		 */
+		private boolean skipTo(char b) throws IOException {
+			while (true) {
+				for (; m_index < m_count; ++m_index) {
+					if (m_buffer[m_index] == b) {
+						return true;
+					}
+				}
+				if (!fill()) {
+					return false;
+				}
+			}
+		}
+
+		static private String unescape(String value) throws XmlException {
+			final String normalized = value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+			if (normalized.indexOf('&') < 0) {
+				return normalized;
+			}
+			final StringBuilder unescaped = new StringBuilder();
+			int index = 0;
+			while (index < normalized.length()) {
+				final int ampersand = normalized.indexOf('&', index);
+				if (ampersand < 0) {
+					unescaped.append(normalized, index, normalized.length());
+					break;
+				}
+				final int semicolon = normalized.indexOf(';', ampersand);
+				if (semicolon < 0) {
+					throw new XmlException("Unterminated reference in attribute value: " + value + ".");
+				}
+				unescaped.append(normalized, index, ampersand);
+				final String entity = normalized.substring(ampersand + 1, semicolon);
+				switch (entity) {
+				case "amp":
+					unescaped.append('&');
+					break;
+				case "lt":
+					unescaped.append('<');
+					break;
+				case "gt":
+					unescaped.append('>');
+					break;
+				case "quot":
+					unescaped.append('"');
+					break;
+				case "apos":
+					unescaped.append('\'');
+					break;
+				default:
+					try {
+						if (entity.startsWith("#x")) {
+							unescaped.appendCodePoint(Integer.parseInt(entity.substring(2), 16));
+						} else if (entity.startsWith("#")) {
+							unescaped.appendCodePoint(Integer.parseInt(entity.substring(1)));
+						} else {
+							throw new XmlException("Unsupported entity in attribute value: " + value + ".");
+						}
+					} catch (IllegalArgumentException exc) {
+						throw new XmlException("Invalid character reference in attribute value: " + value + ".", exc);
+					}
+				}
+				index = semicolon + 1;
+			}
+			return unescaped.toString();
+		}
+	}
+
+	/**
+	 * The first bytes of a written index.
+	 */
+	static public final int MAGIC = 0x58534958;
+
+	/**
+	 * The version of the format of the written indexes.
+	 */
+	static public final int VERSION = 1;
+
+	/**
+	 * Builds the index of the given XMCDA document, which may be compressed.
+	 *
+	 * @param source
+	 *            not <code>null</code>.
+	 * @return not <code>null</code>.
+	 * @throws IOException
+	 *             if an exception happens while reading the source.
+	 * @throws XmlException
+	 *             if the markup of the document is not well-formed, if its root
+	 *             is not an XMCDA element, or if its encoding is not supported.
+	 *             Documents which are not valid, or not well-formed in ways
+	 *             which do not affect the markup, are not detected.
+	 */
+	static public XMCDASectionIndex build(ByteSource source) throws IOException, XmlException {
+		checkNotNull(source);
+		final CountingInputStream counting = new CountingInputStream(source.openStream());
+		try (InputStream input = XMCDACompression.decompress(counting)) {
+			return new Scanner(input).index(counting);
+		}
+	}
+
+	/**
+	 * Reads an index written by {@link #write(ByteSink)}.
+	 *
+	 * @param source
+	 *            not <code>null</code>.
+	 * @return not <code>null</code>.
+	 * @throws IOException
+	 *             if an exception happens while reading the source, or if it
+	 *             does not contain an index written with the current
+	 *             {@link #VERSION} of the format.
+	 */
+	static public XMCDASectionIndex read(ByteSource source) throws IOException {
+		checkNotNull(source);
+		try (DataInputStream input = new DataInputStream(source.openBufferedStream())) {
+			if (input.readInt() != MAGIC) {
+				throw new IOException("Not an index.");
+			}
+			final int version = input.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported index version: " + version + ", expected " + VERSION + ".");
+			}
+			final long sourceSize = input.readLong();
+			final long length = input.readLong();
+			final long prologLength = input.readLong();
+			final long epilogOffset = input.readLong();
+			final int count = input.readInt();
+			if (prologLength < 0 || prologLength > epilogOffset || epilogOffset > length || count < 0) {
+				throw new IOException("Corrupted index.");
+			}
+			final List<Section> sections = Lists.newArrayList();
+			for (int i = 0; i < count; ++i) {
+				final String tag = input.readUTF();
+				final String concept = input.readBoolean() ? input.readUTF() : null;
+				final String name = input.readBoolean() ? input.readUTF() : null;
+				final long offset = input.readLong();
+				final long sectionLength = input.readLong();
+				if (offset < prologLength || sectionLength <= 0 || offset + sectionLength > epilogOffset) {
+					throw new IOException("Corrupted index: section out of bounds.");
+				}
+				sections.add(new Section(tag, concept, name, offset, sectionLength));
+			}
+			if (input.read() != -1) {
+				throw new IOException("Unexpected data after the end of the index.");
+			}
+			return new XMCDASectionIndex(sections, prologLength, epilogOffset, length, sourceSize);
+		}
+	}
+
+	static private void writeOptional(DataOutputStream output, String value) throws IOException {
+		output.writeBoolean(value != null);
+		if (value != null) {
+			output.writeUTF(value);
+		}
+	}
+
+	private final long m_epilogOffset;
+
+	private final long m_length;
+
+	private final long m_prologLength;
+
+	private final ImmutableList<Section> m_sections;
+
+	private final long m_sourceSize;
+
+	private XMCDASectionIndex(List<Section> sections, long prologLength, long epilogOffset, long length,
+			long sourceSize) {
+		m_sections = ImmutableList.copyOf(sections);
+		m_prologLength = prologLength;
+		m_epilogOffset = epilogOffset;
+		m_length = length;
+		m_sourceSize = sourceSize;
+	}
+
+	/**
+	 * Retrieves the number of bytes of the indexed document, after inflating
+	 * it if it is compressed.
+	 *
+	 * @return a positive number.
+	 */
+	public long getLength() {
+		return m_length;
+	}
+
+	/**
+	 * Retrieves the top level sections of the indexed document.
+	 *
+	 * @return not <code>null</code>, in the order of the document.
+	 */
+	public List<Section> getSections() {
+		return m_sections;
+	}
+
+	/**
+	 * Retrieves the top level sections of the indexed document whose element
+	 * has the given local name.
+	 *
+	 * @param tag
+	 *            not <code>null</code>, e.g. <code>criteria</code>.
+	 * @return not <code>null</code>, in the order of the document.
+	 */
+	public List<Section> getSections(String tag) {
+		checkNotNull(tag);
+		final ImmutableList.Builder<Section> sections = ImmutableList.builder();
+		for (Section section : m_sections) {
+			if (section.getTag().equals(tag)) {
+				sections.add(section);
+			}
+		}
+		return sections.build();
+	}
+
+	/**
+	 * <p>
+	 * Retrieves a view of the indexed document restricted to the top level
+	 * sections whose element has one of the given local names. The view is an
+	 * XMCDA document containing the XML declaration and the root element of
+	 * the indexed document, with the same version of XMCDA, but only the
+	 * requested sections, which are read from the given source when the view
+	 * is opened. It may thus be parsed by an {@link XMCDAReadUtils} object as
+	 * usual: the sections it does not contain are simply not parsed.
+	 * </p>
+	 * <p>
+	 * The view of an uncompressed document skips the other sections without
+	 * reading them, if the given source supports it, as is the case for file
+	 * sources and {@link MappedFileByteSource}.
+	 * </p>
+	 *
+	 * @param source
+	 *            not <code>null</code>, the source of the indexed document.
+	 * @param tags
+	 *            not <code>null</code>.
+	 * @return not <code>null</code>.
+	 */
+	public ByteSource getSectionsSource(ByteSource source, Set<String> tags) {
+		checkNotNull(source);
+		checkNotNull(tags);
+		final ByteSource content = XMCDACompression.decompressing(source);
+		final List<ByteSource> parts = Lists.newArrayList();
+		parts.add(content.slice(0, m_prologLength));
+		for (Section section : m_sections) {
+			if (tags.contains(section.getTag())) {
+				parts.add(content.slice(section.getOffset(), section.getLength()));
+			}
+		}
+		parts.add(content.slice(m_epilogOffset, m_length - m_epilogOffset));
+		return ByteSource.concat(parts);
+	}
+
+	/**
+	 * Retrieves the number of bytes of the source of the indexed document, as
+	 * read when building the index, thus before inflating it if it is
+	 * compressed. An index whose source size differs from the current size
+	 * of the document is out of date.
+	 *
+	 * @return a positive number.
+	 */
+	public long getSourceSize() {
+		return m_sourceSize;
+	}
+
+	@Override
+	public String toString() {
+		return "XMCDASectionIndex(" + m_length + " bytes, " + m_sections + ")";
+	}
+
+	/**
+	 * Writes this index in a binary format specific to this library, which may
+	 * be read back using {@link #read(ByteSource)}. The format starts with
+	 * {@link #MAGIC} and the {@link #VERSION} of the format.
+	 *
+	 * @param sink
+	 *            not <code>null</code>.
+	 * @throws IOException
+	 *             if an exception happens while writing.
+	 */
+	public void write(ByteSink sink) throws IOException {
+		checkNotNull(sink);
+		try (OutputStream stream = sink.openBufferedStream()) {
+			final DataOutputStream output = new DataOutputStream(stream);
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeLong(m_sourceSize);
+			output.writeLong(m_length);
+			output.writeLong(m_prologLength);
+			output.writeLong(m_epilogOffset);
+			output.writeInt(m_sections.size());
+			for (Section section : m_sections) {
+				output.writeUTF(section.getTag());
+				writeOptional(output, section.getConcept());
+				writeOptional(output, section.getName());
+				output.writeLong(section.getOffset());
+				output.writeLong(section.getLength());
+			}
+			output.flush();
+		}
+	}
+}
@@ -3,24 +3,20 @@ package org.decisiondeck.jmcda.persist.xmcda2.utils;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
+import java.util.Collections;
 
-import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.XmlOptions;
-import org.decision_deck.utils.ByteArraysSupplier;
-import org.decision_deck.utils.StringUtils;
 import org.decision_deck.utils.persist.XmlWriteUtils;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc.XMCDA;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
-import com.google.common.collect.Iterables;
 import com.google.common.io.ByteSink;
 import com.google.common.io.ByteSource;
 
@@ -28,28 +24,54 @@ public class XMCDAWriteUtils {
 
 	private static final Logger s_logger = LoggerFactory.getLogger(XMCDAWriteUtils.class);
 
+	/**
+	 * Appends copies of the given fragments, in order, as last children of the
+	 * given XMCDA tag. The fragments are copied from their store to the store of
+	 * the given tag, without going through a DOM representation. If requested,
+	 * the resulting document is validated once, after all fragments have been
+	 * appended.
+	 *
+	 * @param xFragments not <code>null</code>, each must be allowed as a direct
+	 *                   child of the XMCDA tag.
+	 * @param xmcda      not <code>null</code>.
+	 * @param validate   if <code>true</code>, this method will check that the
+	 *                   resulting document is valid.
+	 */
 	static public void appendTo(Collection<? extends XmlObject> xFragments, XMCDA xmcda, boolean validate) {
 		checkNotNull(xFragments);
 		checkNotNull(xmcda);
-		for (XmlObject fragment : xFragments) {
-			appendTo(fragment, xmcda, validate);
+		final XmlCursor target = xmcda.newCursor();
+		try {
+			target.toEndToken();
+			for (XmlObject fragment : xFragments) {
+				final XmlCursor source = fragment.newCursor();
+				try {
+					source.copyXml(target);
+				} finally {
+					source.dispose();
+				}
+			}
+		} finally {
+			target.dispose();
+		}
+		if (validate) {
+			checkState(xmcda.validate(), "Resulting document does not validate after appending %s.", xFragments);
 		}
 	}
 
+	/**
+	 * Appends a copy of the given fragment as last child of the given XMCDA tag.
+	 * See {@link #appendTo(Collection, XMCDA, boolean)}.
+	 *
+	 * @param fragment not <code>null</code>, must be allowed as a direct child of
+	 *                 the XMCDA tag.
+	 * @param xmcda    not <code>null</code>.
+	 * @param validate if <code>true</code>, this method will check that the
+	 *                 resulting document is valid.
+	 */
 	static public void appendTo(XmlObject fragment, XMCDA xmcda, boolean validate) {
 		checkNotNull(fragment);
-		checkNotNull(xmcda);
-		final Document docNode = xmcda.getDomNode().getOwnerDocument();
-		s_logger.info("Getting dom node.");
-		final Node domNode = fragment.getDomNode();
-		s_logger.info("Importing node.");
-		final Node importedFragment = docNode.importNode(domNode, true);
-		s_logger.info("Imported node.");
-		xmcda.getDomNode().appendChild(importedFragment);
-		s_logger.info("Appened child.");
-		if (validate) {
-			checkState(xmcda.validate(), "Resulting document does not validate after appending " + fragment + ".");
-		}
+		appendTo(Collections.singleton(fragment), xmcda, validate);
 	}
 
 	/**
@@ -100,8 +122,10 @@ public class XMCDAWriteUtils {
 
 	private final XmlWriteUtils m_helper = new XmlWriteUtils();
 
+	private XMCDACompression m_compression;
+
 	public XMCDAWriteUtils() {
-		// nothing
+		m_compression = XMCDACompression.NONE;
 	}
 
 	public void appendTo(Collection<? extends XmlObject> xFragments, XMCDA xmcda) {
@@ -137,6 +161,16 @@ public class XMCDAWriteUtils {
 		return getDoc(fragment, m_helper.doesValidate());
 	}
 
+	/**
+	 * Retrieves the compression applied to the documents this object writes.
+	 * The default is {@link XMCDACompression#NONE}.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	public XMCDACompression getCompression() {
+		return m_compression;
+	}
+
 	/**
 	 * Retrieves a writable view of the options used to save XML streams. Default
 	 * options are to use pretty print and to use the UTF-8 encoding.
@@ -147,6 +181,18 @@ public class XMCDAWriteUtils {
 		return m_helper.getSaveOptions();
 	}
 
+	/**
+	 * Sets the compression applied to the documents this object writes. The
+	 * documents are compressed while being written, whatever the version to
+	 * write.
+	 *
+	 * @param compression
+	 *            not <code>null</code>.
+	 */
+	public void setCompression(XMCDACompression compression) {
+		m_compression = checkNotNull(compression);
+	}
+
 	/**
 	 * Enables or disables the check for validation before writing any document. The
 	 * default is <code>true</code>, thus this object validates each document before
@@ -172,13 +218,15 @@ public class XMCDAWriteUtils {
 	public void write(XMCDADoc doc, ByteSink destination) throws IOException {
 		checkNotNull(destination);
 		checkNotNull(doc);
-		m_helper.write(doc, destination);
+		m_helper.write(doc, m_compression.compressing(destination));
 	}
 
 	/**
 	 * Writes the given XMCDA document to the given destination. The document must
 	 * be valid, except if this object is specifically set to not validate
-	 * documents.
+	 * documents. When an other version than the default one is requested, the
+	 * document is converted while being written, without being first written in
+	 * memory.
 	 *
 	 * @param doc            not <code>null</code>, must conform to the XMCDA
 	 *                       schema.
@@ -189,25 +237,26 @@ public class XMCDAWriteUtils {
 	 *                     given writer, or while writing to the destination.
 	 * @see #setValidate(boolean)
 	 */
-	public void write(XMCDADoc doc, final ByteSink destination, String versionToWrite) throws IOException {
+	public void write(final XMCDADoc doc, final ByteSink destination, String versionToWrite) throws IOException {
 		checkNotNull(doc);
 		checkNotNull(destination);
 
 		if (versionToWrite == null || versionToWrite.equals(XMCDAReadUtils.DEFAULT_XMCDA_VERSION)) {
 			write(doc, destination);
 		} else {
-			final ByteArraysSupplier supplier = StringUtils.newByteArraysSupplier();
-			write(doc, supplier);
-			final ByteArrayOutputStream writtenDefaultVersion = Iterables.getOnlyElement(supplier.getArrays());
-
-			final ByteSource outVersion;
-			try {
-				outVersion = XMCDAReadUtils.getAsVersion(ByteSource.wrap(writtenDefaultVersion.toByteArray()),
-						versionToWrite);
-			} catch (XmlException exc) {
-				throw new IllegalStateException("Couldn't parse again document just written.");
+			if (doesValidate()) {
+				checkState(doc.validate(), "Document to write does not validate: %s.", doc);
 			}
-			outVersion.copyTo(destination);
+			final ByteSource written = new ByteSource() {
+				@Override
+				public InputStream openStream() {
+					return doc.newInputStream(getSaveOptions());
+				}
+			};
+			final XMCDANamespaceRewriter rewriter = new XMCDANamespaceRewriter(
+					XMCDAReadUtils.XMCDA_NAMESPACE_PREFIX + XMCDAReadUtils.DEFAULT_XMCDA_VERSION,
+					XMCDAReadUtils.XMCDA_NAMESPACE_PREFIX + versionToWrite);
+			rewriter.rewrite(written).copyTo(m_compression.compressing(destination));
 		}
 	}
 
@@ -0,0 +1,101 @@
+package org.decisiondeck.jmcda.xws.transformer;
+
+import java.io.File;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+import org.decisiondeck.jmcda.exc.FunctionWithInputCheck;
+import org.decisiondeck.jmcda.exc.InvalidInputException;
+import org.decisiondeck.jmcda.exc.InvalidInvocationException;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/**
+ * <p>
+ * One invocation of a method, during which all the inputs of the method are
+ * resolved using the same input transformer and input directory. The documents
+ * read from files during an invocation are kept, indexed by the canonical path
+ * of their file, and re-used when the same file is asked for again. Thus, when
+ * several inputs of a method are to be found in the same file, the file is
+ * parsed and validated only once, and every input is extracted from the same
+ * document.
+ * </p>
+ * <p>
+ * This only applies to the documents read from files, thus not when an
+ * alternative transformer from name to source is set in the transformer.
+ * </p>
+ * <p>
+ * An invocation may be used from several threads, but distinct invocations
+ * never share their documents, even when they use the same transformer. The
+ * documents are released together with this object.
+ * </p>
+ */
+public class InputInvocation {
+	private final Map<File, XMCDADoc> m_documents = Maps.newConcurrentMap();
+
+	private final File m_inputDirectory;
+
+	private final InputTransformer m_transformer;
+
+	/**
+	 * @param transformer
+	 *            not <code>null</code>.
+	 * @param inputDirectory
+	 *            may be <code>null</code> iff the transformer does not use the
+	 *            default name to file transformer.
+	 */
+	public InputInvocation(InputTransformer transformer, File inputDirectory) {
+		Preconditions.checkNotNull(transformer);
+		m_transformer = transformer;
+		m_inputDirectory = inputDirectory;
+	}
+
+	/**
+	 * Resolves one input of this invocation. See
+	 * {@link InputTransformer#get(Type, Class, String, File, boolean, InputInvocation)}
+	 * .
+	 *
+	 * @param <D>
+	 *            the type of value returned.
+	 * @param targetType
+	 *            not <code>null</code>.
+	 * @param intermediateTransform
+	 *            may be <code>null</code>.
+	 * @param name
+	 *            the name of the input.
+	 * @param optional
+	 *            <code>true</code> to allow a <code>null</code> return value
+	 *            when the input is missing.
+	 * @return the input value.
+	 * @throws InvalidInputException
+	 *             if the input can't be read or is invalid.
+	 * @throws InvalidInvocationException
+	 *             if the transformer can't be built.
+	 */
+	public <D> D get(Type targetType, Class<? extends FunctionWithInputCheck<Object, Object>> intermediateTransform,
+			String name, boolean optional) throws InvalidInputException, InvalidInvocationException {
+		return m_transformer.<Object, Object, D> get(targetType, intermediateTransform, name, m_inputDirectory,
+				optional, this);
+	}
+
+	public File getInputDirectory() {
+		return m_inputDirectory;
+	}
+
+	public InputTransformer getTransformer() {
+		return m_transformer;
+	}
+
+	/**
+	 * Retrieves the documents read during this invocation, indexed by the
+	 * canonical path of their file. The returned map is writable and safe for
+	 * concurrent use.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	Map<File, XMCDADoc> getDocuments() {
+		return m_documents;
+	}
+}
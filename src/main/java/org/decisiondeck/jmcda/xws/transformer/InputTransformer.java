@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlObject;
@@ -19,6 +20,7 @@ import org.decisiondeck.jmcda.exc.FunctionWithInputCheck;
 import org.decisiondeck.jmcda.exc.InvalidInputException;
 import org.decisiondeck.jmcda.exc.InvalidInvocationException;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.MappedFileByteSource;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAReadUtils;
 import org.decisiondeck.jmcda.xws.transformer.xml.ToAllAssignments;
 import org.decisiondeck.jmcda.xws.transformer.xml.ToAlternatives;
@@ -37,12 +39,50 @@ import org.decisiondeck.jmcda.xws.transformer.xml.ToString;
 import org.decisiondeck.jmcda.xws.transformer.xml.ToThresholds;
 import org.decisiondeck.jmcda.xws.transformer.xml.ToWeights;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Iterators;
 import com.google.common.io.ByteSource;
 import com.google.common.io.InputSupplier;
 
 public class InputTransformer {
+	/**
+	 * Identifies a chain of transformations, see
+	 * {@link InputTransformer#getTransformer(Type, Class, File, boolean)}.
+	 */
+	private static final class ChainKey {
+		private final File m_inputDirectory;
+		private final Class<?> m_intermediateTransform;
+		private final boolean m_optional;
+		private final Type m_targetType;
+
+		public ChainKey(Type targetType, Class<?> intermediateTransform, File inputDirectory, boolean optional) {
+			m_targetType = targetType;
+			m_intermediateTransform = intermediateTransform;
+			m_inputDirectory = inputDirectory;
+			m_optional = optional;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ChainKey)) {
+				return false;
+			}
+			final ChainKey other = (ChainKey) obj;
+			return m_targetType.equals(other.m_targetType)
+					&& Objects.equal(m_intermediateTransform, other.m_intermediateTransform)
+					&& Objects.equal(m_inputDirectory, other.m_inputDirectory) && m_optional == other.m_optional;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(m_targetType, m_intermediateTransform, m_inputDirectory,
+					Boolean.valueOf(m_optional));
+		}
+	}
+
 	public static FunctionWithInputCheck<XMCDADoc, XmlObject> functionDocToTag(String tagName) {
 		return new InputTransformerDocToTag(tagName);
 	}
@@ -56,6 +96,18 @@ public class InputTransformer {
 		return FunctionUtils.functionWithInputCheck(new InputTransformerFileToSource());
 	}
 
+	/**
+	 * Returns a function which, given a file, returns a source reading that
+	 * file through a memory mapping, which may be given to
+	 * {@link #setFileToSource(FunctionWithInputCheck)} when the inputs are big.
+	 *
+	 * @return not <code>null</code>.
+	 * @see MappedFileByteSource
+	 */
+	public static FunctionWithInputCheck<File, ByteSource> functionMappedFileToSource() {
+		return FunctionUtils.functionWithInputCheck(new InputTransformerFileToSource(true));
+	}
+
 	/**
 	 * Returns a function which, given a file name as a String, returns a
 	 * {@link File} representing the given file, assuming the file is to be
@@ -87,11 +139,33 @@ public class InputTransformer {
 		return new InputTransformerSourceToDoc();
 	}
 
+	/**
+	 * The maximal number of chains of transformations kept. As a chain depends
+	 * on the input directory, a long running service that reads each request
+	 * from a new directory would otherwise keep a chain per request.
+	 */
+	static final int MAXIMUM_CHAINS = 256;
+
+	/**
+	 * The chains of transformations already built, which do not depend on the
+	 * input they are applied to. The least recently used ones are evicted
+	 * beyond {@link #MAXIMUM_CHAINS}. Invalidated when a transformer is added
+	 * or replaced.
+	 */
+	private final Cache<ChainKey, FunctionWithInputCheck<String, ?>> m_chains = CacheBuilder.newBuilder()
+			.maximumSize(MAXIMUM_CHAINS).build();
+
 	private FunctionWithInputCheck<XMCDADoc, ? extends XmlObject> m_docToTag;
 	private FunctionWithInputCheck<XMCDADoc, List<XmlObject>> m_docToTags;
 
 	private FunctionWithInputCheck<File, ByteSource> m_fileToSource;
 
+	/**
+	 * The invocation in which the current thread is resolving an input, if
+	 * any.
+	 */
+	private final ThreadLocal<InputInvocation> m_invocation = new ThreadLocal<InputInvocation>();
+
 	private FunctionWithInputCheck<String, File> m_nameToFile;
 
 	private FunctionWithInputCheck<String, ByteSource> m_nameToSource;
@@ -137,11 +211,51 @@ public class InputTransformer {
 	 */
 	public void add(FunctionWithInputCheck<?, ?> function) {
 		m_transformers.add(function);
+		m_chains.invalidateAll();
 	}
 
 	public <B, C, D> D get(Type targetType,
 			Class<? extends FunctionWithInputCheck<Object, Object>> intermediateTransform, String name,
 			File inputDirectory, boolean optional) throws InvalidInputException, InvalidInvocationException {
+		return this.<B, C, D> get(targetType, intermediateTransform, name, inputDirectory, optional, null);
+	}
+
+	/**
+	 * Resolves the input having the given name, as part of the given
+	 * invocation, if any. The documents read from files while resolving this
+	 * input are shared with the other inputs resolved as part of the same
+	 * invocation, see {@link InputInvocation}.
+	 *
+	 * @param <B>
+	 *            the type the intermediate transform reads.
+	 * @param <C>
+	 *            the type the intermediate transform returns.
+	 * @param <D>
+	 *            the type of value returned.
+	 * @param targetType
+	 *            not <code>null</code>.
+	 * @param intermediateTransform
+	 *            may be <code>null</code>.
+	 * @param name
+	 *            the name of the input.
+	 * @param inputDirectory
+	 *            may be <code>null</code>.
+	 * @param optional
+	 *            <code>true</code> to allow a <code>null</code> return value
+	 *            when the input is missing.
+	 * @param invocation
+	 *            <code>null</code> to not share the documents read with any
+	 *            other input.
+	 * @return the input value.
+	 * @throws InvalidInputException
+	 *             if the input can't be read or is invalid.
+	 * @throws InvalidInvocationException
+	 *             if the transformer can't be built.
+	 */
+	public <B, C, D> D get(Type targetType,
+			Class<? extends FunctionWithInputCheck<Object, Object>> intermediateTransform, String name,
+			File inputDirectory, boolean optional, InputInvocation invocation) throws InvalidInputException,
+			InvalidInvocationException {
 		final Type fakeTarget;
 		if (targetType.equals(double.class)) {
 			fakeTarget = Double.class;
@@ -151,7 +265,17 @@ public class InputTransformer {
 
 		final FunctionWithInputCheck<String, ? extends D> transformer = getTransformer(fakeTarget,
 				intermediateTransform, inputDirectory, optional);
-		return transformer.apply(name);
+		final InputInvocation previous = m_invocation.get();
+		m_invocation.set(invocation);
+		try {
+			return transformer.apply(name);
+		} finally {
+			if (previous == null) {
+				m_invocation.remove();
+			} else {
+				m_invocation.set(previous);
+			}
+		}
 	}
 
 	public FunctionWithInputCheck<XMCDADoc, ? extends XmlObject> getDocToTag(String tagName) {
@@ -211,9 +335,36 @@ public class InputTransformer {
 	 */
 	public FunctionWithInputCheck<String, XMCDADoc> getNameToDoc(File inputDirectory, boolean optional)
 			throws InvalidInvocationException {
+		if (m_nameToSource == null) {
+			return compose(getFileToDoc(), getNameToFile(inputDirectory, optional));
+		}
 		return compose(getSourceToDoc(), getNameToSource(inputDirectory, optional));
 	}
 
+	/**
+	 * Returns a function which, given a file, returns an {@link XMCDADoc}
+	 * containing the contents of the file, using the transformers from file to
+	 * source and from source to document. During an invocation, the function
+	 * reads each file only once, see {@link InputInvocation}.
+	 *
+	 * @return not <code>null</code>.
+	 */
+	public FunctionWithInputCheck<File, XMCDADoc> getFileToDoc() {
+		return new InputTransformerFileToDoc(compose(getSourceToDoc(), getFileToSource()), this);
+	}
+
+	/**
+	 * Retrieves the documents read during the invocation in which the current
+	 * thread is resolving an input.
+	 *
+	 * @return <code>null</code> iff the current thread is not resolving an
+	 *         input as part of an invocation.
+	 */
+	Map<File, XMCDADoc> getInvocationDocuments() {
+		final InputInvocation invocation = m_invocation.get();
+		return invocation == null ? null : invocation.getDocuments();
+	}
+
 	/**
 	 * Retrieves the alternative transformer from name to file set in this
 	 * object, or the default one if none is set.
@@ -401,6 +552,7 @@ public class InputTransformer {
 	}
 
 	/**
+	 * <p>
 	 * Returns a transformer that chains transformation in order to pass from a
 	 * String (supposedly containing a file name) to the given target type, and
 	 * going through the given intermediate transformer if it is not
@@ -410,6 +562,13 @@ public class InputTransformer {
 	 * type C, then again the default strategy is used to get a final object of
 	 * type D. If some of these types are equal, for example C and D, no
 	 * transformation occurs for that step.
+	 * </p>
+	 * <p>
+	 * The chain is resolved, using reflection, the first time it is asked for,
+	 * then kept in this object: asking again for the same chain returns the
+	 * same function, as long as no transformer has been added or replaced.
+	 * The returned function itself does not use reflection.
+	 * </p>
 	 *
 	 * @param <B>
 	 *            the input type of the intermediate transformer, if given. If
@@ -438,6 +597,22 @@ public class InputTransformer {
 			Class<? extends FunctionWithInputCheck<B, C>> intermediateTransform, File inputDirectory, boolean optional)
 			throws InvalidInvocationException {
 		Preconditions.checkNotNull(targetType);
+		final ChainKey key = new ChainKey(targetType, intermediateTransform, inputDirectory, optional);
+		final FunctionWithInputCheck<String, ?> cached = m_chains.getIfPresent(key);
+		if (cached != null) {
+			@SuppressWarnings("unchecked")
+			final FunctionWithInputCheck<String, ? extends D> typed = (FunctionWithInputCheck<String, ? extends D>) cached;
+			return typed;
+		}
+		final FunctionWithInputCheck<String, ? extends D> built = buildTransformer(targetType, intermediateTransform,
+				inputDirectory, optional);
+		m_chains.put(key, built);
+		return built;
+	}
+
+	private <B, C, D> FunctionWithInputCheck<String, ? extends D> buildTransformer(Type targetType,
+			Class<? extends FunctionWithInputCheck<B, C>> intermediateTransform, File inputDirectory, boolean optional)
+			throws InvalidInvocationException {
 		final boolean toManaged = isManagedType(targetType)
 				|| (intermediateTransform != null && TransformersWithInputCheck.getApplyMethod(intermediateTransform)
 						.getGenericReturnType().equals(targetType));
@@ -623,12 +798,12 @@ public class InputTransformer {
 				return (FunctionWithInputCheck<F, ? extends V>) function;
 			}
 			if (isAssignableFrom(toType, XMCDADoc.class, requireExactReturnType)) {
-				final FunctionWithInputCheck<File, XMCDADoc> function = compose(getSourceToDoc(), getFileToSource());
+				final FunctionWithInputCheck<File, XMCDADoc> function = getFileToDoc();
 				return (FunctionWithInputCheck<F, ? extends V>) function;
 			}
 
 			if (isAssignableFrom(XmlObject.class, toType, false)) {
-				final FunctionWithInputCheck<File, XMCDADoc> function1 = compose(getSourceToDoc(), getFileToSource());
+				final FunctionWithInputCheck<File, XMCDADoc> function1 = getFileToDoc();
 				final Class<? extends XmlObject> toType2 = (Class<? extends XmlObject>) toType;
 				final String resTagName = XMCDAReadUtils.getTagName(toType2);
 				final FunctionWithInputCheck<File, ? extends XmlObject> function = compose(getDocToTag(resTagName),
@@ -640,7 +815,7 @@ public class InputTransformer {
 				final Type parameterType = ReflectUtils.getParameterType(toType);
 				final Class<? extends XmlObject> parameterClass = (Class<? extends XmlObject>) toClass(parameterType);
 				final String tagName = XMCDAReadUtils.getTagName(parameterClass);
-				final FunctionWithInputCheck<File, XMCDADoc> function1 = compose(getSourceToDoc(), getFileToSource());
+				final FunctionWithInputCheck<File, XMCDADoc> function1 = getFileToDoc();
 				final FunctionWithInputCheck<File, List<XmlObject>> function = compose(getDocToTags(tagName, optional),
 						function1);
 				return (FunctionWithInputCheck<F, ? extends V>) function;
@@ -682,26 +857,32 @@ public class InputTransformer {
 
 	public void setDocToTag(FunctionWithInputCheck<XMCDADoc, ? extends XmlObject> docToTag) {
 		m_docToTag = docToTag;
+		m_chains.invalidateAll();
 	}
 
 	public void setDocToTags(FunctionWithInputCheck<XMCDADoc, List<XmlObject>> docToTags) {
 		m_docToTags = docToTags;
+		m_chains.invalidateAll();
 	}
 
 	public void setFileToSource(FunctionWithInputCheck<File, ByteSource> fileToSource) {
 		m_fileToSource = fileToSource;
+		m_chains.invalidateAll();
 	}
 
 	public void setNameToFile(FunctionWithInputCheck<String, File> nameToFile) {
 		m_nameToFile = nameToFile;
+		m_chains.invalidateAll();
 	}
 
 	public void setNameToSource(FunctionWithInputCheck<String, ByteSource> nameToSource) {
 		m_nameToSource = nameToSource;
+		m_chains.invalidateAll();
 	}
 
 	public void setSourceToDoc(FunctionWithInputCheck<ByteSource, XMCDADoc> sourceToDoc) {
 		m_sourceToDoc = sourceToDoc;
+		m_chains.invalidateAll();
 	}
 
 	private <F, V> FunctionWithInputCheck<F, V> getTransformerFromExact(Class<? extends F> fromType, Type toType,
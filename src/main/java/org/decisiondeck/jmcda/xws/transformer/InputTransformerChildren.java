@@ -0,0 +1,53 @@
+package org.decisiondeck.jmcda.xws.transformer;
+
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Retrieves the direct children of the root of XMCDA documents, by tag name, as would the XPath expression
+ * <code>$this/child::tagName</code> evaluated on the root. Instead of compiling and evaluating a path, the children of
+ * the root are visited with a cursor. Nothing is kept between calls.
+ */
+class InputTransformerChildren {
+    /**
+     * Retrieves the children of the root of the given document that have the given tag name and no namespace, in
+     * document order.
+     *
+     * @param doc
+     *            not <code>null</code>.
+     * @param tagName
+     *            not <code>null</code>.
+     * @return not <code>null</code>, possibly empty.
+     */
+    static public List<XmlObject> getChildren(XMCDADoc doc, String tagName) {
+	Preconditions.checkNotNull(doc);
+	Preconditions.checkNotNull(tagName);
+	final QName name = new QName(tagName);
+	final List<XmlObject> children = Lists.newArrayList();
+	final XmlCursor cursor = doc.getXMCDA().newCursor();
+	try {
+	    if (cursor.toFirstChild()) {
+		do {
+		    if (name.equals(cursor.getName())) {
+			children.add(cursor.getObject());
+		    }
+		} while (cursor.toNextSibling());
+	    }
+	} finally {
+	    cursor.dispose();
+	}
+	return children;
+    }
+
+    private InputTransformerChildren() {
+	/** Static methods only. */
+    }
+}
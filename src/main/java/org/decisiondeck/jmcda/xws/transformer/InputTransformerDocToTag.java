@@ -1,6 +1,5 @@
 package org.decisiondeck.jmcda.xws.transformer;
 
-import java.util.Arrays;
 import java.util.List;
 
 import org.apache.xmlbeans.XmlObject;
@@ -29,7 +28,7 @@ class InputTransformerDocToTag implements FunctionWithInputCheck<XMCDADoc, XmlOb
 	if (doc == null) {
 	    return null;
 	}
-	final List<XmlObject> tags = Arrays.asList(doc.getXMCDA().selectPath("$this/child::" + m_tagName));
+	final List<XmlObject> tags = InputTransformerChildren.getChildren(doc, m_tagName);
 	return m_utils.getUnique(tags, m_tagName);
     }
 }
\ No newline at end of file
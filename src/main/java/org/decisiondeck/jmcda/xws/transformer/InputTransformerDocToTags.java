@@ -1,6 +1,5 @@
 package org.decisiondeck.jmcda.xws.transformer;
 
-import java.util.Arrays;
 import java.util.List;
 
 import org.apache.xmlbeans.XmlObject;
@@ -28,8 +27,7 @@ class InputTransformerDocToTags implements FunctionWithInputCheck<XMCDADoc, List
 
     @Override
     public List<XmlObject> apply(XMCDADoc doc) throws InvalidInputException {
-	final List<XmlObject> list = doc == null ? null : Arrays.asList(doc.getXMCDA().selectPath(
-		"$this/child::" + m_tagName));
+	final List<XmlObject> list = doc == null ? null : InputTransformerChildren.getChildren(doc, m_tagName);
 	if (doc == null && !m_optional) {
 	    throw new InvalidInputException("Didn't find the required tag " + m_tagName + ": document is missing.");
 	}
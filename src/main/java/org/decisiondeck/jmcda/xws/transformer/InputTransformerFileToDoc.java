@@ -0,0 +1,56 @@
+package org.decisiondeck.jmcda.xws.transformer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.decisiondeck.jmcda.exc.FunctionWithInputCheck;
+import org.decisiondeck.jmcda.exc.InvalidInputException;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Reads a document from a file, re-using the document already read from the
+ * same file during the current invocation of the owner, if any.
+ */
+class InputTransformerFileToDoc implements FunctionWithInputCheck<File, XMCDADoc> {
+    private final FunctionWithInputCheck<File, XMCDADoc> m_delegate;
+    private final InputTransformer m_owner;
+
+    /**
+     * @param delegate
+     *            not <code>null</code>, used to effectively read the documents.
+     * @param owner
+     *            not <code>null</code>, holds the documents of the current invocation.
+     */
+    public InputTransformerFileToDoc(FunctionWithInputCheck<File, XMCDADoc> delegate, InputTransformer owner) {
+	Preconditions.checkNotNull(delegate);
+	Preconditions.checkNotNull(owner);
+	m_delegate = delegate;
+	m_owner = owner;
+    }
+
+    @Override
+    public XMCDADoc apply(File file) throws InvalidInputException {
+	final Map<File, XMCDADoc> documents = m_owner.getInvocationDocuments();
+	if (file == null || documents == null) {
+	    return m_delegate.apply(file);
+	}
+	File key;
+	try {
+	    key = file.getCanonicalFile();
+	} catch (IOException exc) {
+	    key = file.getAbsoluteFile();
+	}
+	final XMCDADoc known = documents.get(key);
+	if (known != null) {
+	    return known;
+	}
+	final XMCDADoc doc = m_delegate.apply(file);
+	if (doc != null) {
+	    documents.put(key, doc);
+	}
+	return doc;
+    }
+}
@@ -2,17 +2,33 @@ package org.decisiondeck.jmcda.xws.transformer;
 
 import java.io.File;
 
+import org.decisiondeck.jmcda.persist.xmcda2.utils.MappedFileByteSource;
+
 import com.google.common.base.Function;
 import com.google.common.io.ByteSource;
 import com.google.common.io.Files;
 
 class InputTransformerFileToSource implements Function<File, ByteSource> {
+	private final boolean m_mapped;
+
 	public InputTransformerFileToSource() {
-		/** Default public constructor. */
+		this(false);
+	}
+
+	/**
+	 * @param mapped
+	 *            <code>true</code> to read the files through a memory mapping.
+	 * @see MappedFileByteSource
+	 */
+	public InputTransformerFileToSource(boolean mapped) {
+		m_mapped = mapped;
 	}
 
 	@Override
 	public ByteSource apply(File file) {
-		return file == null ? null : Files.asByteSource(file);
+		if (file == null) {
+			return null;
+		}
+		return m_mapped ? new MappedFileByteSource(file) : Files.asByteSource(file);
 	}
 }
\ No newline at end of file
@@ -1,8 +1,15 @@
 package org.decisiondeck.jmcda.persist.xmcda2;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Map;
+
 import org.decision_deck.jmcda.structure.Alternative;
+import org.decision_deck.jmcda.structure.Criterion;
+import org.decision_deck.jmcda.structure.matrix.SparseAlternativesMatrixFuzzy;
+import org.decision_deck.utils.matrix.Matrixes;
 import org.decision_deck.utils.matrix.SparseMatrixD;
 import org.decision_deck.utils.matrix.SparseMatrixDRead;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XAlternativesComparisons;
@@ -12,6 +19,7 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.io.ByteSource;
 import com.google.common.io.Resources;
@@ -39,4 +47,54 @@ public class PersistAlternativesMatrixTest {
 		assertTrue("Deserialized concordance does not match.", conc.approxEquals(read, 0.00005f));
 	}
 
+	@Test
+	public void writeSparseByCriteriaTest() throws Exception {
+		final Alternative a1 = new Alternative("a1");
+		final Alternative a2 = new Alternative("a2");
+		final Alternative a3 = new Alternative("a3");
+		final Criterion g1 = new Criterion("g1");
+		final Criterion g2 = new Criterion("g2");
+		final SparseMatrixD<Alternative, Alternative> m1 = Matrixes.newSparseD();
+		m1.put(a1, a2, 0.5d);
+		m1.put(a3, a1, 1d);
+		final SparseMatrixD<Alternative, Alternative> m2 = Matrixes.newSparseD();
+		m2.put(a1, a2, 0.25d);
+		m2.put(a2, a3, 0d);
+
+		final XAlternativesComparisons written = new XMCDAAlternativesMatrix().write(ImmutableMap.of(g2, m2, g1, m1));
+		assertEquals(3, written.getPairs().sizeOfPairArray());
+		assertEquals("a1", written.getPairs().getPairArray(0).getInitial().getAlternativeID());
+		assertEquals("g1", written.getPairs().getPairArray(0).getValuesArray(0).getValueArray(0).getId());
+		final Map<Criterion, SparseAlternativesMatrixFuzzy> read = new XMCDAAlternativesMatrix()
+				.readAlternativesFuzzyMatrixesByCriteria(written);
+		assertTrue(m1.approxEquals(read.get(g1), 1e-6d));
+		assertTrue(m2.approxEquals(read.get(g2), 1e-6d));
+	}
+
+	@Test
+	public void readDenseTest() throws Exception {
+		final ByteSource supplier = Resources.asByteSource(getClass().getResource("SixRealCars - Concordance.xml"));
+		final XAlternativesComparisons xAlternativesComparisons = Iterables.getOnlyElement(new XMCDAReadUtils()
+				.getXMCDA(supplier).getAlternativesComparisonsList());
+		final SparseMatrixD<Alternative, Alternative> sparse = new XMCDAAlternativesMatrix()
+				.readAlternativesFloatMatrix(xAlternativesComparisons);
+		final DenseAlternativesMatrix dense = new XMCDAAlternativesMatrix()
+				.readAlternativesDenseFuzzyMatrix(xAlternativesComparisons);
+		assertTrue(dense.approxEquals(sparse, 0d));
+		assertFalse(dense.equals(sparse));
+		final DenseAlternativesMatrix again = new XMCDAAlternativesMatrix()
+				.readAlternativesDenseFuzzyMatrix(xAlternativesComparisons);
+		assertEquals(dense, again);
+		assertEquals(dense.hashCode(), again.hashCode());
+		assertEquals(sparse.getValueCount(), dense.getValueCount());
+		for (Alternative initial : dense.getRows()) {
+			for (Alternative terminal : dense.getColumns()) {
+				final int initialIndex = dense.getAlternativeIndex(initial);
+				final int terminalIndex = dense.getAlternativeIndex(terminal);
+				assertEquals(sparse.getEntry(initial, terminal), dense.isSet(initialIndex, terminalIndex) ? Double
+						.valueOf(dense.getValue(initialIndex, terminalIndex)) : null);
+			}
+		}
+	}
+
 }
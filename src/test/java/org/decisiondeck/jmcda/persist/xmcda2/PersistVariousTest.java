@@ -1,17 +1,24 @@
 package org.decisiondeck.jmcda.persist.xmcda2;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
+import java.util.Collections;
 
 import org.decision_deck.utils.ByteArraysSupplier;
 import org.decision_deck.utils.StringUtils;
 import org.decisiondeck.jmcda.persist.xmcda2.aggregates.XMCDASortingProblemReader;
 import org.decisiondeck.jmcda.persist.xmcda2.aggregates.XMCDASortingProblemWriter;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XValue;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager.ErrorManagement;
 import org.decisiondeck.jmcda.structure.sorting.problem.results.ISortingResults;
 import org.decisiondeck.xmcda_oo.structure.sorting.SortingProblemUtils;
 import org.junit.Test;
 
+import com.google.common.base.Supplier;
 import com.google.common.collect.Iterables;
 import com.google.common.io.ByteSource;
 
@@ -29,4 +36,27 @@ public class PersistVariousTest {
 		assertTrue(read.getCatsAndProfs().isEmpty());
 		assertTrue(read.getCoalitions().isEmpty());
 	}
+
+	@Test
+	public void testLazyContext() throws Exception {
+		final XMCDAErrorsManager errors = new XMCDAErrorsManager(ErrorManagement.COLLECT);
+		final XMCDAVarious various = new XMCDAVarious(errors);
+		final int[] calls = new int[1];
+		final Supplier<String> context = new Supplier<String>() {
+			@Override
+			public String get() {
+				++calls[0];
+				return "ctx";
+			}
+		};
+		final XValue xValue = XValue.Factory.newInstance();
+		xValue.setReal(3f);
+		assertEquals(3d, various.readDouble(Collections.singletonList(xValue), context).doubleValue(), 0d);
+		assertEquals(0, calls[0]);
+		assertTrue(errors.getErrors().isEmpty());
+
+		assertNull(various.readDouble(Collections.<XValue> emptyList(), context));
+		assertEquals(1, calls[0]);
+		assertEquals("Found zero elements at ctx, expected one.", Iterables.getOnlyElement(errors.getErrors()));
+	}
 }
@@ -1,9 +1,18 @@
 package org.decisiondeck.jmcda.persist.xmcda2;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.xmlbeans.XmlException;
 import org.decision_deck.jmcda.structure.Criterion;
@@ -11,10 +20,14 @@ import org.decisiondeck.jmcda.persist.xmcda2.aggregates.XMCDASortingProblemReade
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XCriteria;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAReadUtils;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAWriteUtils;
 import org.decisiondeck.jmcda.sample_problems.SixRealCars;
 import org.junit.Test;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
 import com.google.common.collect.Iterables;
+import com.google.common.io.ByteSink;
 import com.google.common.io.ByteSource;
 import com.google.common.io.Resources;
 
@@ -52,4 +65,64 @@ public class ReadOldVersionTest {
 
 		XMCDADoc.Factory.parse(otherVersion.openBufferedStream());
 	}
+
+	@Test
+	public void testWriteOldVersion() throws Exception {
+		final ByteSource supplier = Resources.asByteSource(getClass().getResource("SixRealCars v2.0.0 - Criteria.xml"));
+		final XMCDADoc doc = new XMCDAReadUtils().getXMCDADoc(supplier);
+
+		final ByteArrayOutputStream written = new ByteArrayOutputStream();
+		new XMCDAWriteUtils().write(doc, new ByteSink() {
+			@Override
+			public OutputStream openStream() {
+				return written;
+			}
+		}, "2.0.0");
+		assertTrue(written.toString(Charsets.UTF_8.name()).contains("http://www.decision-deck.org/2009/XMCDA-2.0.0"));
+
+		final XMCDAReadUtils readUtils = new XMCDAReadUtils();
+		final XCriteria xCriteria = Iterables
+				.getOnlyElement(readUtils.getXMCDA(ByteSource.wrap(written.toByteArray())).getCriteriaList());
+		assertEquals("2.0.0", readUtils.getLastVersionRead());
+		assertEquals(SixRealCars.getInstance().getCriteria(), new XMCDACriteria().read(xCriteria));
+	}
+
+	@Test
+	public void testRootAfterLookupWindow() throws Exception {
+		final String content = Resources
+				.asByteSource(getClass().getResource("SixRealCars v2.0.0 - Criteria.xml")).asCharSource(Charsets.UTF_8)
+				.read();
+		final int rootStart = content.indexOf("<xmcda:XMCDA");
+		final String padded = content.substring(0, rootStart) + "<!--" + Strings.repeat(" ", 100 * 1024) + "-->\n"
+				+ content.substring(rootStart);
+
+		final AtomicInteger opened = new AtomicInteger();
+		final ByteSource source = new ByteSource() {
+			@Override
+			public InputStream openStream() throws IOException {
+				opened.incrementAndGet();
+				return new ByteArrayInputStream(padded.getBytes(Charsets.UTF_8));
+			}
+		};
+
+		final XMCDAReadUtils readUtils = new XMCDAReadUtils();
+		final XCriteria xCriteria = Iterables.getOnlyElement(readUtils.getXMCDA(source).getCriteriaList());
+		assertEquals("2.0.0", readUtils.getLastVersionRead());
+		assertEquals(SixRealCars.getInstance().getCriteria(), new XMCDACriteria().read(xCriteria));
+		assertEquals(1, opened.get());
+	}
+
+	@Test
+	public void testVersionResetOnFailure() throws Exception {
+		final XMCDAReadUtils readUtils = new XMCDAReadUtils();
+		readUtils.getXMCDA(Resources.asByteSource(getClass().getResource("SixRealCars v2.0.0 - Criteria.xml")));
+		assertEquals("2.0.0", readUtils.getLastVersionRead());
+		try {
+			readUtils.getXMCDA(ByteSource.wrap("<notXMCDA/>".getBytes(Charsets.UTF_8)));
+			fail("Expected the read to fail.");
+		} catch (XmlException exc) {
+			/** Expected. */
+		}
+		assertNull(readUtils.getLastVersionRead());
+	}
 }
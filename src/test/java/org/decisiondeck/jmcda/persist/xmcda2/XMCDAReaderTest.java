@@ -1,20 +1,47 @@
 package org.decisiondeck.jmcda.persist.xmcda2;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.decision_deck.jmcda.structure.Alternative;
 import org.decision_deck.jmcda.structure.Criterion;
+import org.decision_deck.jmcda.structure.DecisionMaker;
+import org.decision_deck.jmcda.structure.matrix.Evaluations;
+import org.decision_deck.jmcda.structure.matrix.EvaluationsRead;
+import org.decision_deck.jmcda.structure.matrix.EvaluationsUtils;
+import org.decision_deck.jmcda.structure.sorting.category.Category;
+import org.decision_deck.jmcda.structure.weights.Weights;
 import org.decisiondeck.jmcda.exc.InvalidInputException;
+import org.decisiondeck.jmcda.persist.xmcda2.XMCDAAlternatives.AlternativesParsingMethod;
 import org.decisiondeck.jmcda.persist.xmcda2.aggregates.XMCDAProblemReader;
 import org.decisiondeck.jmcda.persist.xmcda2.aggregates.XMCDASortingProblemReader;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XAlternative;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XAlternatives;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc.XMCDA;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XPerformanceTable;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager.ErrorManagement;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAObjectPool;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAReadUtils;
 import org.decisiondeck.jmcda.structure.sorting.problem.data.ISortingData;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.io.ByteSource;
 import com.google.common.io.Resources;
 
@@ -59,4 +86,270 @@ public class XMCDAReaderTest {
 		data.getAlternativesEvaluations().getEntry(new Alternative("15"), new Criterion("2")).doubleValue(),
 		1e-4d);
     }
+
+    @Test
+    public void testStreamEvaluations() throws Exception {
+	final ByteSource source = Resources.asByteSource(getClass().getResource(
+		"SixRealCars - Expected written preferences.xml"));
+	final XMCDA xmcda = new XMCDAReadUtils().getXMCDA(source);
+	final XMCDAEvaluations evaluations = new XMCDAEvaluations();
+	final XMCDAEvaluationsStreamReader streamReader = new XMCDAEvaluationsStreamReader(evaluations);
+
+	final Evaluations all = streamReader.read(source);
+	assertEquals(evaluations.read(xmcda.getPerformanceTableList()), all);
+
+	evaluations.setConceptToRead(X2Concept.FICTIVE);
+	final Evaluations fictive = streamReader.read(source);
+	assertEquals(evaluations.read(xmcda.getPerformanceTableList()), fictive);
+	assertTrue(fictive.getValueCount() < all.getValueCount());
+    }
+
+    @Test
+    public void testStreamDocument() throws Exception {
+	final ByteSource source = Resources.asByteSource(getClass().getResource(
+		"SixRealCars - Assignments both, threshold 75.xml"));
+	final Set<Alternative> alternatives = Sets.newLinkedHashSet();
+	final Set<Criterion> criteria = Sets.newLinkedHashSet();
+	final Evaluations evaluations = EvaluationsUtils.newEvaluationMatrix();
+	final Map<Alternative, Set<Category>> assignments = Maps.newLinkedHashMap();
+	final Map<String, Weights> criteriaSets = Maps.newLinkedHashMap();
+	new XMCDAStreamReader().read(source, new XMCDAStreamHandler() {
+	    @Override
+	    public void alternative(Alternative alternative) {
+		alternatives.add(alternative);
+	    }
+
+	    @Override
+	    public void criterion(Criterion criterion) {
+		criteria.add(criterion);
+	    }
+
+	    @Override
+	    public void criteriaSet(String name, Weights weights) {
+		criteriaSets.put(name, weights);
+	    }
+
+	    @Override
+	    public void performances(String tableName, Alternative alternative, EvaluationsRead row) {
+		for (Criterion criterion : row.getColumns()) {
+		    evaluations.put(alternative, criterion, row.getEntry(alternative, criterion).doubleValue());
+		}
+	    }
+
+	    @Override
+	    public void assignment(String name, Alternative alternative, Set<Category> categories) {
+		assignments.put(alternative, categories);
+	    }
+
+	    @Override
+	    public void comparison(String name, Alternative initial, Alternative terminal, double value) {
+		throw new AssertionError();
+	    }
+	});
+
+	final XMCDAProblemReader reader = new XMCDAProblemReader();
+	reader.setSourceMain(source);
+	assertEquals(8, alternatives.size());
+	assertEquals(reader.readCriteria(), criteria);
+	assertEquals(reader.readEvaluationsIgnoreConcept(), evaluations);
+	assertEquals(6, assignments.size());
+	assertEquals(1, criteriaSets.size());
+    }
+
+    @Test
+    public void testPooledEvaluations() throws Exception {
+	final ByteSource source = Resources.asByteSource(getClass().getResource(
+		"SixRealCars - Expected written preferences.xml"));
+	final XMCDA xmcda = new XMCDAReadUtils().getXMCDA(source);
+	final XMCDAEvaluations evaluations = new XMCDAEvaluations();
+	final XMCDAObjectPool pool = new XMCDAObjectPool();
+	evaluations.setPool(pool);
+
+	final Evaluations pooled = evaluations.read(xmcda.getPerformanceTableList());
+	evaluations.setPool(null);
+	assertEquals(evaluations.read(xmcda.getPerformanceTableList()), pooled);
+	assertEquals(pooled.getRows().size() + pooled.getColumns().size(), pool.size());
+	for (Alternative alternative : pooled.getRows()) {
+	    assertSame(pool.getAlternative(alternative.getId()), alternative);
+	}
+	for (Criterion criterion : pooled.getColumns()) {
+	    assertSame(pool.getCriterion(criterion.getId()), criterion);
+	}
+    }
+
+    @Test
+    public void testReaderSharesPool() throws Exception {
+	final ByteSource source = Resources.asByteSource(getClass().getResource(
+		"SixRealCars - Expected written preferences.xml"));
+	final XMCDAProblemReader reader = new XMCDAProblemReader(source);
+	reader.setAlternativesParsingMethod(AlternativesParsingMethod.TAKE_ALL);
+	final Map<String, Alternative> alternatives = Maps.newHashMap();
+	for (Alternative alternative : reader.readAlternatives()) {
+	    alternatives.put(alternative.getId(), alternative);
+	}
+	final Map<String, Criterion> criteria = Maps.newHashMap();
+	for (Criterion criterion : reader.readCriteria()) {
+	    criteria.put(criterion.getId(), criterion);
+	}
+	final EvaluationsRead evaluations = reader.readEvaluationsIgnoreConcept();
+	assertFalse(evaluations.isEmpty());
+	for (Alternative alternative : evaluations.getRows()) {
+	    assertSame(alternatives.get(alternative.getId()), alternative);
+	}
+	for (Criterion criterion : evaluations.getColumns()) {
+	    assertSame(criteria.get(criterion.getId()), criterion);
+	}
+
+	reader.clearCache();
+	final Alternative first = reader.readAlternatives().iterator().next();
+	assertEquals(alternatives.get(first.getId()), first);
+	assertNotSame(alternatives.get(first.getId()), first);
+    }
+
+    @Test
+    public void testDenseEvaluations() throws Exception {
+	final ByteSource source = Resources.asByteSource(getClass().getResource(
+		"SixRealCars - Expected written preferences.xml"));
+	final XMCDA xmcda = new XMCDAReadUtils().getXMCDA(source);
+	final XMCDAEvaluations evaluations = new XMCDAEvaluations();
+
+	final Evaluations sparse = evaluations.read(xmcda.getPerformanceTableList());
+	final DenseEvaluations dense = evaluations.readDense(xmcda.getPerformanceTableList());
+	assertTrue(dense.approxEquals(sparse, 0d));
+	assertEquals(sparse.getValueCount(), dense.getValueCount());
+	for (Alternative alternative : dense.getRows()) {
+	    final int row = dense.getAlternativeIndex(alternative);
+	    assertSame(alternative, dense.getAlternative(row));
+	    for (Criterion criterion : dense.getColumns()) {
+		final int column = dense.getCriterionIndex(criterion);
+		final Double entry = sparse.getEntry(alternative, criterion);
+		assertEquals(entry != null, dense.isSet(row, column));
+		if (entry != null) {
+		    assertEquals(entry.doubleValue(), dense.getValue(row, column), 0d);
+		}
+	    }
+	}
+
+	final XMCDAProblemReader reader = new XMCDAProblemReader(source);
+	reader.setDenseEvaluations(true);
+	final EvaluationsRead denseRead = reader.readEvaluationsIgnoreConcept();
+	assertEquals(dense, denseRead);
+	assertEquals(dense.hashCode(), denseRead.hashCode());
+	assertFalse(dense.equals(sparse));
+    }
+
+    @Test
+    public void testMergeTables() throws Exception {
+	final Alternative a1 = new Alternative("a1");
+	final Alternative a2 = new Alternative("a2");
+	final Criterion g1 = new Criterion("g1");
+	final Evaluations first = EvaluationsUtils.newEvaluationMatrix();
+	first.put(a1, g1, 1d);
+	final Evaluations same = EvaluationsUtils.newEvaluationMatrix();
+	same.put(a1, g1, 1d);
+	same.put(a2, g1, 2d);
+	final Evaluations conflicting = EvaluationsUtils.newEvaluationMatrix();
+	conflicting.put(a1, g1, 3d);
+	conflicting.put(a2, g1, 4d);
+
+	final XMCDAEvaluations writer = new XMCDAEvaluations();
+	final List<XPerformanceTable> xTables = ImmutableList.of(writer.write(first), writer.write(same),
+		writer.write(conflicting));
+	final XMCDAErrorsManager errorsManager = new XMCDAErrorsManager(ErrorManagement.COLLECT);
+	final XMCDAEvaluations evaluations = new XMCDAEvaluations(errorsManager);
+	final Evaluations read = evaluations.read(xTables);
+	assertEquals(same, read);
+	assertEquals(1, errorsManager.getErrors().size());
+	assertTrue(evaluations.readDense(xTables).approxEquals(read, 0d));
+	assertEquals(2, errorsManager.getErrors().size());
+    }
+
+    @Test
+    public void testIncompleteRowsReportedByAllReaders() throws Exception {
+	final String document = "<xmcda:XMCDA xmlns:xmcda=\"" + XMCDAReadUtils.XMCDA_NAMESPACE_PREFIX
+		+ XMCDAReadUtils.DEFAULT_XMCDA_VERSION + "\">" + "<performanceTable>"
+		+ "<alternativePerformances><alternativeID>a1</alternativeID>" + performance("g1", "1")
+		+ "<performance><value><real>2</real></value></performance>"
+		+ "<performance><criterionID>g2</criterionID></performance>" + "</alternativePerformances>"
+		+ "<alternativePerformances>" + performance("g1", "3") + "</alternativePerformances>"
+		+ "</performanceTable>" + "</xmcda:XMCDA>";
+	final Evaluations expected = EvaluationsUtils.newEvaluationMatrix();
+	expected.put(new Alternative("a1"), new Criterion("g1"), 1d);
+
+	final XMCDAErrorsManager treeErrors = new XMCDAErrorsManager(ErrorManagement.COLLECT);
+	final XMCDAEvaluations treeReader = new XMCDAEvaluations(treeErrors);
+	final List<XPerformanceTable> xTables = XMCDADoc.Factory.parse(document).getXMCDA()
+		.getPerformanceTableList();
+	assertEquals(expected, treeReader.read(xTables));
+	/** Two incomplete performances, one row without alternative. */
+	assertEquals(3, treeErrors.getErrors().size());
+	assertTrue(treeReader.readDense(xTables).approxEquals(expected, 0d));
+	assertEquals(6, treeErrors.getErrors().size());
+
+	final XMCDAErrorsManager streamErrors = new XMCDAErrorsManager(ErrorManagement.COLLECT);
+	final XMCDAEvaluationsStreamReader streamReader = new XMCDAEvaluationsStreamReader(new XMCDAEvaluations(
+		streamErrors));
+	assertEquals(expected, streamReader.read(ByteSource.wrap(document.getBytes(Charsets.UTF_8))));
+	assertEquals(3, streamErrors.getErrors().size());
+    }
+
+    @Test
+    public void testParallelEvaluationsKeepSettings() throws Exception {
+	final Alternative a1 = new Alternative("a1");
+	final Criterion g1 = new Criterion("g1");
+	final XMCDAEvaluations writer = new XMCDAEvaluations();
+	final List<XPerformanceTable> xTables = Lists.newArrayList();
+	for (int i = 1; i <= 3; ++i) {
+	    final Evaluations evaluations = EvaluationsUtils.newEvaluationMatrix();
+	    evaluations.put(a1, g1, i);
+	    final XPerformanceTable xTable = writer.write(evaluations);
+	    xTable.setName("dm" + i);
+	    xTable.setMcdaConcept(i == 2 ? "fictive" : "real");
+	    xTables.add(xTable);
+	}
+
+	final XMCDAEvaluations sequential = new XMCDAEvaluations();
+	sequential.setConceptToRead(X2Concept.REAL);
+	final XMCDAObjectPool pool = new XMCDAObjectPool();
+	final XMCDAEvaluations parallel = new XMCDAEvaluations();
+	parallel.setConceptToRead(X2Concept.REAL);
+	parallel.setPool(pool);
+	parallel.setParallelism(2);
+	final Map<DecisionMaker, Evaluations> read = parallel.readPerDecisionMaker(xTables);
+	assertEquals(sequential.readPerDecisionMaker(xTables), read);
+	assertEquals(2, read.size());
+	for (Map.Entry<DecisionMaker, Evaluations> entry : read.entrySet()) {
+	    assertSame(pool.getDecisionMaker(entry.getKey().getId()), entry.getKey());
+	    assertSame(pool.getAlternative("a1"), Iterables.getOnlyElement(entry.getValue().getRows()));
+	}
+    }
+    @Test
+    public void testStreamEvaluationsErrors() throws Exception {
+	final String document = "<xmcda:XMCDA xmlns:xmcda=\"http://www.decision-deck.org/2009/XMCDA-2.1.0\">"
+		+ "<performanceTable>" + "<alternativePerformances><alternativeID>a1</alternativeID>"
+		+ performance("g1", "1f") + performance("g2", "Infinity") + performance("g3", "0x1p3")
+		+ performance("g4", "INF") + performance("g5", "-INF") + performance("g6", "-1.5E2")
+		+ performance("g7", ".5") + "<performance><value><real>1</real></value></performance>"
+		+ "<performance><criterionID>g8</criterionID></performance>" + "</alternativePerformances>"
+		+ "<alternativePerformances>" + performance("g1", "1") + "</alternativePerformances>"
+		+ "</performanceTable>" + "</xmcda:XMCDA>";
+	final XMCDAErrorsManager errorsManager = new XMCDAErrorsManager(ErrorManagement.COLLECT);
+	final XMCDAEvaluationsStreamReader streamReader = new XMCDAEvaluationsStreamReader(new XMCDAEvaluations(
+		errorsManager));
+	final Evaluations read = streamReader.read(ByteSource.wrap(document.getBytes(Charsets.UTF_8)));
+
+	final Alternative a1 = new Alternative("a1");
+	assertEquals(4, read.getValueCount());
+	assertEquals(Double.POSITIVE_INFINITY, read.getEntry(a1, new Criterion("g4")).doubleValue(), 0d);
+	assertEquals(Double.NEGATIVE_INFINITY, read.getEntry(a1, new Criterion("g5")).doubleValue(), 0d);
+	assertEquals(-150d, read.getEntry(a1, new Criterion("g6")).doubleValue(), 0d);
+	assertEquals(0.5d, read.getEntry(a1, new Criterion("g7")).doubleValue(), 0d);
+	/** Three invalid reals, two incomplete performances, one row without alternative. */
+	assertEquals(6, errorsManager.getErrors().size());
+    }
+
+    private static String performance(String criterionId, String real) {
+	return "<performance><criterionID>" + criterionId + "</criterionID><value><real>" + real
+		+ "</real></value></performance>";
+    }
 }
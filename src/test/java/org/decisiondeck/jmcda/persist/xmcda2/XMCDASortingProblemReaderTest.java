@@ -2,17 +2,24 @@ package org.decisiondeck.jmcda.persist.xmcda2;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlCursor.TokenType;
 import org.apache.xmlbeans.XmlOptions;
 import org.apache.xmlbeans.XmlTokenSource;
+import org.decision_deck.jmcda.structure.Alternative;
 import org.decision_deck.jmcda.structure.Criterion;
 import org.decision_deck.jmcda.structure.DecisionMaker;
 import org.decision_deck.jmcda.structure.interval.Interval;
@@ -20,12 +27,17 @@ import org.decision_deck.jmcda.structure.matrix.EvaluationsRead;
 import org.decision_deck.jmcda.structure.sorting.SortingMode;
 import org.decisiondeck.jmcda.exc.InvalidInputException;
 import org.decisiondeck.jmcda.persist.xmcda2.XMCDAAlternatives.AlternativesParsingMethod;
+import org.decisiondeck.jmcda.persist.xmcda2.aggregates.SortingSnapshotReader;
+import org.decisiondeck.jmcda.persist.xmcda2.aggregates.SortingSnapshotWriter;
 import org.decisiondeck.jmcda.persist.xmcda2.aggregates.X2SimpleReader;
 import org.decisiondeck.jmcda.persist.xmcda2.aggregates.XMCDAGroupSortingProblemReader;
 import org.decisiondeck.jmcda.persist.xmcda2.aggregates.XMCDASortingProblemReader;
 import org.decisiondeck.jmcda.persist.xmcda2.generated.XCriteria;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc.XMCDA;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAReadUtils;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDASectionIndex;
 import org.decisiondeck.jmcda.sample_problems.SixRealCars;
+import org.decisiondeck.jmcda.structure.sorting.assignment.IAssignmentsToMultipleRead;
 import org.decisiondeck.jmcda.structure.sorting.problem.group_preferences.IGroupSortingPreferences;
 import org.decisiondeck.jmcda.structure.sorting.problem.group_results.IGroupSortingResults;
 import org.decisiondeck.jmcda.structure.sorting.problem.preferences.ISortingPreferences;
@@ -36,8 +48,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
+import com.google.common.io.ByteSink;
 import com.google.common.io.ByteSource;
 import com.google.common.io.Resources;
 
@@ -187,6 +203,112 @@ public class XMCDASortingProblemReaderTest {
 	assertTrue(profilesEvaluations.isEmpty());
     }
 
+    @Test
+    public void testSnapshotPreferences() throws Exception {
+	final ByteSource readerSupplier = Resources.asByteSource(getClass()
+		.getResource("SixRealCars with criteriaSet.xml"));
+	final ISortingPreferences read = new X2SimpleReader(new XMCDAReadUtils().getXMCDA(readerSupplier))
+		.readSortingPreferences();
+
+	final ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+	new SortingSnapshotWriter().writePreferences(read, new ByteSink() {
+	    @Override
+	    public OutputStream openStream() {
+		return snapshot;
+	    }
+	});
+	final ISortingPreferences results = new SortingSnapshotReader().readPreferences(ByteSource.wrap(snapshot
+		.toByteArray()));
+
+	assertEquals(read.getAlternatives(), results.getAlternatives());
+	assertEquals(read.getProfiles(), results.getProfiles());
+	assertEquals(read.getCriteria(), results.getCriteria());
+	assertEquals(read.getScales(), results.getScales());
+	assertEquals(read.getCatsAndProfs(), results.getCatsAndProfs());
+	assertEquals(read.getAlternativesEvaluations(), results.getAlternativesEvaluations());
+	assertEquals(read.getProfilesEvaluations(), results.getProfilesEvaluations());
+	assertTrue(read.getCoalitions().getWeights().approxEquals(results.getCoalitions().getWeights(), 0d));
+	assertEquals(read.getThresholds(), results.getThresholds());
+    }
+
+    @Test
+    public void testSectionsIndexed() throws Exception {
+	final ByteSource source = Resources.asByteSource(getClass().getResource(
+		"SixRealCars - Expected written preferences.xml"));
+	final XMCDASectionIndex index = XMCDASectionIndex.build(source);
+	assertEquals(8, index.getSections().size());
+	assertEquals(2, index.getSections("performanceTable").size());
+	assertEquals("FICTIVE", index.getSections("performanceTable").get(1).getConcept());
+	final XMCDA criteriaOnly = new XMCDAReadUtils().getXMCDA(index.getSectionsSource(source,
+		ImmutableSet.of("criteria")));
+	assertEquals(1, criteriaOnly.getCriteriaList().size());
+	assertTrue(criteriaOnly.getPerformanceTableList().isEmpty());
+
+	final ByteArrayOutputStream written = new ByteArrayOutputStream();
+	index.write(new ByteSink() {
+	    @Override
+	    public OutputStream openStream() {
+		return written;
+	    }
+	});
+	final XMCDASectionIndex read = XMCDASectionIndex.read(ByteSource.wrap(written.toByteArray()));
+	assertEquals(index.getSections(), read.getSections());
+	assertEquals(source.size(), read.getSourceSize());
+
+	final XMCDASortingProblemReader reader = new XMCDASortingProblemReader();
+	reader.setSourceMain(source);
+	final ISortingPreferences expected = reader.readSortingPreferences();
+	final XMCDASortingProblemReader indexed = new XMCDASortingProblemReader();
+	indexed.setSourceMain(source);
+	indexed.setSectionsIndexed(true);
+	indexed.putSectionIndex(source, read);
+	final ISortingPreferences results = indexed.readSortingPreferences();
+	assertEquals(expected.getAlternatives(), results.getAlternatives());
+	assertEquals(expected.getProfiles(), results.getProfiles());
+	assertEquals(expected.getCriteria(), results.getCriteria());
+	assertEquals(expected.getCatsAndProfs(), results.getCatsAndProfs());
+	assertEquals(expected.getAlternativesEvaluations(), results.getAlternativesEvaluations());
+	assertEquals(expected.getProfilesEvaluations(), results.getProfilesEvaluations());
+	assertEquals(expected.getThresholds(), results.getThresholds());
+    }
+
+    @Test
+    public void testSectionIndexOutOfDate() throws Exception {
+	final ByteSource source = ByteSource.wrap(Resources.toByteArray(getClass().getResource(
+		"SixRealCars - Expected written preferences.xml")));
+	final ByteSource other = Resources.asByteSource(getClass().getResource("SixRealCars with criteriaSet.xml"));
+	final XMCDASectionIndex stale = XMCDASectionIndex.build(other);
+	assertFalse(stale.getSourceSize() == source.size());
+
+	final XMCDASortingProblemReader reader = new XMCDASortingProblemReader();
+	reader.setSourceMain(source);
+	final XMCDASortingProblemReader indexed = new XMCDASortingProblemReader();
+	indexed.setSourceMain(source);
+	indexed.setSectionsIndexed(true);
+	indexed.putSectionIndex(source, stale);
+	assertEquals(reader.readCriteria(), indexed.readCriteria());
+	assertEquals(reader.readAlternativesEvaluations(), indexed.readAlternativesEvaluations());
+    }
+
+    @Test(expected = IOException.class)
+    public void testSnapshotCorrupted() throws Exception {
+	final ByteSource readerSupplier = Resources.asByteSource(getClass()
+		.getResource("SixRealCars with criteriaSet.xml"));
+	final ISortingPreferences read = new X2SimpleReader(new XMCDAReadUtils().getXMCDA(readerSupplier))
+		.readSortingPreferences();
+
+	final ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+	new SortingSnapshotWriter().writePreferences(read, new ByteSink() {
+	    @Override
+	    public OutputStream openStream() {
+		return snapshot;
+	    }
+	});
+	final byte[] bytes = snapshot.toByteArray();
+	bytes[bytes.length - 5] ^= 1;
+	new SortingSnapshotReader().readPreferences(ByteSource.wrap(bytes));
+    }
+
     @Test
     public void testCarsAssignments75Optimistic() throws Exception {
 	final ByteSource readerSupplier = Resources.asByteSource(getClass()
@@ -223,6 +345,97 @@ public class XMCDASortingProblemReaderTest {
 	assertEquals(data.getAssignments75(SortingMode.PESSIMISTIC), results.getAssignments(pessimistic));
     }
 
+    @Test
+    public void testCarsGroupAssignments75Parallel() throws Exception {
+	final ByteSource readerSupplier = Resources.asByteSource(getClass()
+		.getResource("SixRealCars - Group assignments, threshold 75.xml"));
+	final XMCDAGroupSortingProblemReader reader = new XMCDAGroupSortingProblemReader();
+	reader.setSourceMain(readerSupplier);
+	reader.setAlternativesParsingMethod(AlternativesParsingMethod.SEEK_CONCEPT);
+	reader.setParallelism(2);
+	final IGroupSortingResults results = reader.readGroupResults();
+
+	final SixRealCars data = SixRealCars.getInstance();
+
+	final DecisionMaker optimistic = new DecisionMaker("optimistic");
+	final DecisionMaker pessimistic = new DecisionMaker("pessimistic");
+	assertTrue(Iterables.elementsEqual(ImmutableList.of(optimistic, pessimistic), results.getDms()));
+	assertEquals(data.getAssignments75(SortingMode.OPTIMISTIC), results.getAssignments(optimistic));
+	assertEquals(data.getAssignments75(SortingMode.PESSIMISTIC), results.getAssignments(pessimistic));
+    }
+
+    @Test
+    public void testParallelReadSharesPool() throws Exception {
+	final ByteSource readerSupplier = Resources.asByteSource(getClass()
+		.getResource("SixRealCars - Group assignments, threshold 75.xml"));
+	final XMCDAGroupSortingProblemReader reader = new XMCDAGroupSortingProblemReader();
+	reader.setSourceMain(readerSupplier);
+	reader.setAlternativesParsingMethod(AlternativesParsingMethod.SEEK_CONCEPT);
+	reader.setParallelism(2);
+	final Map<DecisionMaker, IAssignmentsToMultipleRead> all = reader.readAllAssignmentsToMultiple();
+	final Set<Alternative> alternatives = reader.readAlternatives();
+
+	assertEquals(2, all.size());
+	for (IAssignmentsToMultipleRead assignments : all.values()) {
+	    assertFalse(assignments.getAlternatives().isEmpty());
+	    for (Alternative alternative : assignments.getAlternatives()) {
+		assertSame(Iterables.find(alternatives, Predicates.equalTo(alternative)), alternative);
+	    }
+	}
+    }
+
+    @Test
+    public void testSharedSourceReadOnce() throws Exception {
+	final ByteSource delegate = Resources.asByteSource(getClass().getResource("SixRealCars with criteriaSet.xml"));
+	final int[] opened = new int[] { 0 };
+	final ByteSource readerSupplier = new ByteSource() {
+	    @Override
+	    public InputStream openStream() throws IOException {
+		++opened[0];
+		return delegate.openStream();
+	    }
+	};
+	final XMCDASortingProblemReader reader = new XMCDASortingProblemReader();
+	reader.setSourceMain(readerSupplier);
+	reader.setAlternativesParsingMethod(AlternativesParsingMethod.SEEK_CONCEPT);
+
+	reader.readCriteria();
+	final int openedByOneRead = opened[0];
+	assertTrue(openedByOneRead >= 1);
+	final ISortingPreferences results = reader.readSortingPreferences();
+	assertEquals(openedByOneRead, opened[0]);
+	assertEquals(SixRealCars.getInstance().getAlternatives(), results.getAlternatives());
+
+	reader.clearCache();
+	reader.readCriteria();
+	assertEquals(2 * openedByOneRead, opened[0]);
+    }
+
+    @Test
+    public void testConcurrentParsing() throws Exception {
+	final URL url = getClass().getResource("SixRealCars with criteriaSet.xml");
+	final XMCDASortingProblemReader reader = new XMCDASortingProblemReader();
+	reader.setSourceMain(Resources.asByteSource(url));
+	reader.setSourceCriteria(Resources.asByteSource(url));
+	reader.setSourceCoalitions(Resources.asByteSource(url));
+	reader.setAlternativesParsingMethod(AlternativesParsingMethod.SEEK_CONCEPT);
+	final ExecutorService executor = Executors.newFixedThreadPool(3);
+	final ISortingPreferences results;
+	try {
+	    reader.setExecutor(executor);
+	    results = reader.readSortingPreferences();
+	} finally {
+	    executor.shutdown();
+	}
+
+	final SixRealCars data = SixRealCars.getInstance();
+	assertEquals(data.getAlternatives(), results.getAlternatives());
+	assertEquals(data.getCriteria(), results.getCriteria());
+	assertEquals(data.getCatsAndProfs(), results.getCatsAndProfs());
+	assertTrue(data.getWeights().approxEquals(results.getCoalitions().getWeights(), 1e-6));
+	assertEquals(XMCDAReadUtils.DEFAULT_XMCDA_VERSION, reader.getSourceVersion());
+    }
+
     @Test
     public void testCarsAssignments75Both() throws Exception {
 	final ByteSource readerSupplier = Resources.asByteSource(getClass()
@@ -1,9 +1,28 @@
 package org.decisiondeck.jmcda.persist.xmcda2;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.xmlbeans.XmlException;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc.XMCDA;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.MappedFileByteSource;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDACompression;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDADocumentsCache;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAErrorsManager;
 import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAReadUtils;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAReadUtils.ValidationMode;
 import org.junit.Test;
 
+import com.google.common.io.ByteSink;
 import com.google.common.io.ByteSource;
 import com.google.common.io.Resources;
 
@@ -23,4 +42,141 @@ public class XMCDAUtilsTest {
 	new XMCDAReadUtils().getXMCDA(supplier);
     }
 
+    @Test(expected = XmlException.class)
+    public void testInvalidXMCDAFragment() throws Exception {
+	final ByteSource supplier = Resources.asByteSource(getClass().getResource(
+		"Invalid xmcda.txt"));
+	final XMCDAReadUtils utils = new XMCDAReadUtils();
+	utils.setValidationMode(ValidationMode.FRAGMENT);
+	final XMCDA xmcda = utils.getXMCDA(supplier);
+	assertEquals(1, xmcda.getProjectReferenceList().size());
+	utils.validateFragments(xmcda.getProjectReferenceList());
+    }
+
+    @Test
+    public void testInvalidXMCDANotValidated() throws Exception {
+	final ByteSource supplier = Resources.asByteSource(getClass().getResource(
+		"Invalid xmcda.txt"));
+	final XMCDAReadUtils utils = new XMCDAReadUtils();
+	utils.setValidationMode(ValidationMode.NONE);
+	final XMCDA xmcda = utils.getXMCDA(supplier);
+	utils.validateFragments(xmcda.getProjectReferenceList());
+	assertEquals(1, xmcda.getProjectReferenceList().size());
+    }
+
+    @Test
+    public void testOldVersionOpenedOnce() throws Exception {
+	final ByteSource delegate = Resources.asByteSource(getClass().getResource(
+		"SixRealCars v2.0.0 - Criteria.xml"));
+	final int[] opened = new int[] { 0 };
+	final ByteSource supplier = new ByteSource() {
+	    @Override
+	    public InputStream openStream() throws IOException {
+		++opened[0];
+		return delegate.openStream();
+	    }
+	};
+	final XMCDAReadUtils utils = new XMCDAReadUtils();
+	assertEquals(1, utils.getXMCDA(supplier).getCriteriaList().size());
+	assertEquals("2.0.0", utils.getLastVersionRead());
+	assertEquals(1, opened[0]);
+    }
+
+    @Test
+    public void testMappedSource() throws Exception {
+	final URL url = getClass().getResource("SixRealCars v2.0.0 - Criteria.xml");
+	final ByteSource mapped = new MappedFileByteSource(new File(url.toURI()));
+	assertTrue(mapped.contentEquals(Resources.asByteSource(url)));
+	assertEquals(1, new XMCDAReadUtils().getXMCDA(mapped).getCriteriaList().size());
+    }
+
+    @Test
+    public void testCompressedSource() throws Exception {
+	final ByteSource source = Resources.asByteSource(getClass().getResource("SixRealCars v2.0.0 - Criteria.xml"));
+	for (XMCDACompression compression : XMCDACompression.values()) {
+	    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+	    source.copyTo(compression.compressing(new ByteSink() {
+		@Override
+		public OutputStream openStream() {
+		    return compressed;
+		}
+	    }));
+	    final ByteSource compressedSource = ByteSource.wrap(compressed.toByteArray());
+	    assertEquals(compression, XMCDACompression.detect(compressedSource.openBufferedStream()));
+	    assertTrue(source.contentEquals(XMCDACompression.decompressing(compressedSource)));
+	    assertEquals(1, new XMCDAReadUtils().getXMCDA(compressedSource).getCriteriaList().size());
+	}
+    }
+
+    @Test
+    public void testDocumentsCache() throws Exception {
+	final XMCDADocumentsCache cache = new XMCDADocumentsCache(XMCDADocumentsCache.DEFAULT_MAXIMUM_WEIGHT);
+	final ByteSource source = Resources.asByteSource(getClass().getResource("SixRealCars v2.0.0 - Criteria.xml"));
+	final ByteSource copy = ByteSource.wrap(source.read());
+	final XMCDAReadUtils utils = new XMCDAReadUtils(new XMCDAErrorsManager(), cache);
+	final XMCDA xmcda = utils.getXMCDA(source);
+	assertSame(xmcda, new XMCDAReadUtils(new XMCDAErrorsManager(), cache).getXMCDA(copy));
+	assertEquals("2.0.0", utils.getLastVersionRead());
+	assertEquals(1, cache.getStats().missCount());
+	assertEquals(1, cache.getStats().hitCount());
+	assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testDocumentsCacheHitDoesNotParse() throws Exception {
+	final XMCDADocumentsCache cache = new XMCDADocumentsCache(XMCDADocumentsCache.DEFAULT_MAXIMUM_WEIGHT);
+	final ByteSource source = Resources.asByteSource(getClass().getResource("SixRealCars v2.0.0 - Criteria.xml"));
+	final AtomicInteger opened = new AtomicInteger();
+	final ByteSource counting = new ByteSource() {
+	    @Override
+	    public InputStream openStream() throws IOException {
+		opened.incrementAndGet();
+		return source.openStream();
+	    }
+	};
+	final XMCDAReadUtils utils = new XMCDAReadUtils(new XMCDAErrorsManager(), cache);
+	final XMCDA xmcda = utils.getXMCDA(counting);
+	/** Hashed, then parsed. */
+	assertEquals(2, opened.get());
+	assertSame(xmcda, utils.getXMCDA(counting));
+	/** Hashed only. */
+	assertEquals(3, opened.get());
+	assertEquals(1, cache.getStats().missCount());
+	assertEquals(1, cache.getStats().hitCount());
+    }
+
+    @Test
+    public void testDocumentsCacheKnownFile() throws Exception {
+	final XMCDADocumentsCache cache = new XMCDADocumentsCache(XMCDADocumentsCache.DEFAULT_MAXIMUM_WEIGHT);
+	final URL url = getClass().getResource("SixRealCars v2.0.0 - Criteria.xml");
+	final AtomicInteger opened = new AtomicInteger();
+	final ByteSource counting = new MappedFileByteSource(new File(url.toURI())) {
+	    @Override
+	    public InputStream openStream() throws IOException {
+		opened.incrementAndGet();
+		return super.openStream();
+	    }
+	};
+	final XMCDAReadUtils utils = new XMCDAReadUtils(new XMCDAErrorsManager(), cache);
+	final XMCDA xmcda = utils.getXMCDA(counting);
+	/** Hashed while parsed. */
+	assertEquals(1, opened.get());
+	assertSame(xmcda, utils.getXMCDA(counting));
+	/** Neither hashed nor parsed. */
+	assertEquals(1, opened.get());
+	assertEquals(1, cache.getStats().hitCount());
+	assertSame(xmcda, utils.getXMCDA(Resources.asByteSource(url)));
+	assertEquals(2, cache.getStats().hitCount());
+    }
+
+    @Test(expected = XmlException.class)
+    public void testDocumentsCacheValidates() throws Exception {
+	final XMCDADocumentsCache cache = new XMCDADocumentsCache(XMCDADocumentsCache.DEFAULT_MAXIMUM_WEIGHT);
+	final ByteSource supplier = Resources.asByteSource(getClass().getResource("Invalid xmcda.txt"));
+	final XMCDAReadUtils notValidating = new XMCDAReadUtils(new XMCDAErrorsManager(), cache);
+	notValidating.setValidationMode(ValidationMode.NONE);
+	notValidating.getXMCDA(supplier);
+	new XMCDAReadUtils(new XMCDAErrorsManager(), cache).getXMCDA(supplier);
+    }
+
 }
@@ -1,10 +1,24 @@
 package org.decisiondeck.jmcda.persist.xmcda2;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import org.apache.xmlbeans.XmlCursor;
 import org.decision_deck.utils.ByteArraysSupplier;
 import org.decision_deck.utils.StringUtils;
+import org.decisiondeck.jmcda.persist.xmcda2.aggregates.XMCDASortingProblemReader;
 import org.decisiondeck.jmcda.persist.xmcda2.aggregates.XMCDASortingProblemWriter;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XAlternativeType;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XAlternatives;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XCriteria;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc.XMCDA;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XPerformanceTable;
+import org.decisiondeck.jmcda.persist.xmcda2.utils.XMCDAWriteUtils;
 import org.decisiondeck.jmcda.sample_problems.SixRealCars;
 import org.decisiondeck.jmcda.structure.sorting.problem.data.ISortingData;
 import org.decisiondeck.jmcda.structure.sorting.problem.preferences.ISortingPreferences;
@@ -13,6 +27,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteSource;
 import com.google.common.io.Resources;
 
 public class XMCDAWriterTest {
@@ -51,4 +68,66 @@ public class XMCDAWriterTest {
 		getClass().getResource("SixRealCars - Expected written preferences.xml"), Charsets.UTF_8);
 	assertEquals(expected, written);
     }
+
+    @Test
+    public void testStreamWriteData() throws Exception {
+	final ISortingData data = SixRealCars.getInstance().getAsSortingPreferences70();
+	final ByteArrayOutputStream out = new ByteArrayOutputStream();
+	try (XMCDAStreamWriter writer = new XMCDAStreamWriter(out)) {
+	    writer.writeAlternatives(data.getAlternatives(), XAlternativeType.REAL);
+	    writer.getCriteria().setScales(data.getScales());
+	    writer.writeCriteria(data.getCriteria());
+	    writer.getEvaluations().setConceptToWrite(X2Concept.REAL);
+	    writer.writePerformanceTable(data.getAlternativesEvaluations(), null);
+	}
+
+	final XMCDASortingProblemReader reader = new XMCDASortingProblemReader(ByteSource.wrap(out.toByteArray()));
+	assertEquals(data.getAlternatives(), reader.readAlternatives());
+	assertEquals(data.getCriteria(), reader.readCriteria());
+	assertEquals(data.getScales(), reader.readScales());
+	assertEquals(data.getAlternativesEvaluations(), reader.readAlternativesEvaluations());
+    }
+
+    @Test
+    public void testAppendFragments() throws Exception {
+	final ISortingData data = SixRealCars.getInstance().getAsSortingPreferences70();
+	final XCriteria xCriteria = new XMCDACriteria().write(data.getCriteria());
+	final XAlternatives xAlternatives = new XMCDAAlternatives().writeAlternatives(data.getAlternatives(),
+		XAlternativeType.REAL);
+	final XPerformanceTable xPerformanceTable = new XMCDAEvaluations().write(data.getAlternativesEvaluations());
+
+	final XMCDA xmcda = XMCDADoc.Factory.newInstance().addNewXMCDA();
+	XMCDAWriteUtils.appendTo(ImmutableList.of(xCriteria, xAlternatives, xPerformanceTable), xmcda, true);
+	final List<String> names = Lists.newArrayList();
+	final XmlCursor cursor = xmcda.newCursor();
+	try {
+	    for (boolean found = cursor.toFirstChild(); found; found = cursor.toNextSibling()) {
+		names.add(cursor.getName().getLocalPart());
+	    }
+	} finally {
+	    cursor.dispose();
+	}
+	assertEquals(ImmutableList.of("criteria", "alternatives", "performanceTable"), names);
+	assertEquals(data.getCriteria(), new XMCDACriteria().read(xmcda.getCriteriaArray(0)));
+	assertEquals(data.getAlternatives(), new XMCDAAlternatives().readAll(xmcda.getAlternativesArray(0)));
+	assertEquals(data.getAlternativesEvaluations().getValueCount(),
+		new XMCDAEvaluations().read(xmcda.getPerformanceTableArray(0)).getValueCount());
+
+	/** A criterion is not allowed as a direct child of the XMCDA tag. */
+	final XMCDA invalid = XMCDADoc.Factory.newInstance().addNewXMCDA();
+	try {
+	    XMCDAWriteUtils.appendTo(ImmutableList.of(xAlternatives, xCriteria.getCriterionArray(0), xCriteria),
+		    invalid, true);
+	    fail("Expected the invalid document to be rejected.");
+	} catch (IllegalStateException exc) {
+	    s_logger.info("Expected invalid document exception message: '{}'.", exc.getMessage());
+	}
+	/** The document is validated once, after every fragment has been appended. */
+	assertEquals(1, invalid.getAlternativesList().size());
+	assertEquals(1, invalid.getCriteriaList().size());
+	assertFalse(invalid.validate());
+	final XMCDA unchecked = XMCDADoc.Factory.newInstance().addNewXMCDA();
+	XMCDAWriteUtils.appendTo(ImmutableList.of(xCriteria.getCriterionArray(0)), unchecked, false);
+	assertFalse(unchecked.validate());
+    }
 }
@@ -0,0 +1,157 @@
+package org.decisiondeck.jmcda.xws.transformer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.xmlbeans.XmlObject;
+import org.decisiondeck.jmcda.exc.FunctionWithInputCheck;
+import org.decisiondeck.jmcda.exc.InvalidInputException;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XCriteria;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XMCDADoc;
+import org.decisiondeck.jmcda.persist.xmcda2.generated.XPerformanceTable;
+import org.junit.Test;
+
+import com.google.common.io.ByteSource;
+import com.google.common.io.Resources;
+
+public class InputTransformerTest {
+    private static final String FILE_NAME = "SixRealCars with criteriaSet.xml";
+
+    /**
+     * Reads documents using the default transformer, and counts the documents read.
+     */
+    private static class CountingSourceToDoc implements FunctionWithInputCheck<ByteSource, XMCDADoc> {
+	private final AtomicInteger m_count = new AtomicInteger();
+	private final FunctionWithInputCheck<ByteSource, XMCDADoc> m_delegate = InputTransformer
+		.functionSourceToDoc();
+
+	@Override
+	public XMCDADoc apply(ByteSource input) throws InvalidInputException {
+	    m_count.incrementAndGet();
+	    return m_delegate.apply(input);
+	}
+
+	public int getCount() {
+	    return m_count.get();
+	}
+    }
+
+    /**
+     * Reads sources using the default transformer, and counts the sources read.
+     */
+    private static class CountingFileToSource implements FunctionWithInputCheck<File, ByteSource> {
+	private final AtomicInteger m_count = new AtomicInteger();
+	private final FunctionWithInputCheck<File, ByteSource> m_delegate = InputTransformer.functionFileToSource();
+
+	@Override
+	public ByteSource apply(File input) throws InvalidInputException {
+	    m_count.incrementAndGet();
+	    return m_delegate.apply(input);
+	}
+
+	public int getCount() {
+	    return m_count.get();
+	}
+    }
+
+    /**
+     * Transforms any criteria to the same label.
+     */
+    private static class CriteriaToLabel implements FunctionWithInputCheck<XCriteria, CharSequence> {
+	@Override
+	public CharSequence apply(XCriteria input) {
+	    return "label";
+	}
+    }
+
+    private File getInputDirectory() throws Exception {
+	final URL url = getClass().getResource("/org/decisiondeck/jmcda/persist/xmcda2/" + FILE_NAME);
+	return new File(url.toURI()).getParentFile();
+    }
+
+    @Test
+    public void testSharedFileParsedOnce() throws Exception {
+	final InputTransformer transformer = new InputTransformer();
+	final CountingSourceToDoc sourceToDoc = new CountingSourceToDoc();
+	transformer.setSourceToDoc(sourceToDoc);
+
+	final InputInvocation invocation = new InputInvocation(transformer, getInputDirectory());
+	final XCriteria criteria = invocation.get(XCriteria.class, null, FILE_NAME, false);
+	final XPerformanceTable performances = invocation.get(XPerformanceTable.class, null, FILE_NAME, false);
+	assertNotNull(criteria);
+	assertNotNull(performances);
+	assertEquals(1, sourceToDoc.getCount());
+	final XMCDADoc doc = invocation.get(XMCDADoc.class, null, FILE_NAME, false);
+	assertSame(doc, invocation.getDocuments().values().iterator().next());
+	assertEquals(1, sourceToDoc.getCount());
+
+	final InputInvocation other = new InputInvocation(transformer, getInputDirectory());
+	other.get(XCriteria.class, null, FILE_NAME, false);
+	assertEquals(2, sourceToDoc.getCount());
+
+	transformer.get(XCriteria.class, null, FILE_NAME, getInputDirectory(), false);
+	transformer.get(XCriteria.class, null, FILE_NAME, getInputDirectory(), false);
+	assertEquals(4, sourceToDoc.getCount());
+    }
+
+    @Test
+    public void testChildren() throws Exception {
+	final ByteSource source = Resources.asByteSource(getClass().getResource(
+		"/org/decisiondeck/jmcda/persist/xmcda2/" + FILE_NAME));
+	final XMCDADoc doc = InputTransformer.functionSourceToDoc().apply(source);
+	for (String tagName : new String[] { "alternatives", "criteria", "performanceTable", "hierarchy" }) {
+	    final List<XmlObject> children = InputTransformerChildren.getChildren(doc, tagName);
+	    final XmlObject[] expected = doc.getXMCDA().selectPath("$this/child::" + tagName);
+	    assertEquals(expected.length, children.size());
+	    for (int i = 0; i < expected.length; ++i) {
+		assertEquals(expected[i].xmlText(), children.get(i).xmlText());
+	    }
+	}
+	assertEquals(2, InputTransformerChildren.getChildren(doc, "alternatives").size());
+	assertTrue(InputTransformerChildren.getChildren(doc, "hierarchy").isEmpty());
+    }
+
+    @Test
+    public void testChainsInvalidated() throws Exception {
+	final InputTransformer transformer = new InputTransformer();
+	final File inputDirectory = getInputDirectory();
+
+	final FunctionWithInputCheck<String, ?> toCriteria = transformer.getTransformer(XCriteria.class, null,
+		inputDirectory, false);
+	assertSame(toCriteria, transformer.getTransformer(XCriteria.class, null, inputDirectory, false));
+	assertNotNull(transformer.get(XCriteria.class, null, FILE_NAME, inputDirectory, false));
+	final CountingFileToSource fileToSource = new CountingFileToSource();
+	transformer.setFileToSource(fileToSource);
+	assertNotNull(transformer.get(XCriteria.class, null, FILE_NAME, inputDirectory, false));
+	assertEquals(1, fileToSource.getCount());
+
+	final FunctionWithInputCheck<String, ?> toLabel = transformer.getTransformer(CharSequence.class, null,
+		inputDirectory, false);
+	assertSame(toLabel, transformer.getTransformer(CharSequence.class, null, inputDirectory, false));
+	transformer.add(new CriteriaToLabel());
+	final Object label = transformer.get(CharSequence.class, null, FILE_NAME, inputDirectory, false);
+	assertEquals("label", label);
+	assertEquals(2, fileToSource.getCount());
+    }
+
+    @Test
+    public void testChainsBounded() throws Exception {
+	final InputTransformer transformer = new InputTransformer();
+	final File inputDirectory = getInputDirectory();
+
+	final FunctionWithInputCheck<String, ?> toCriteria = transformer.getTransformer(XCriteria.class, null,
+		inputDirectory, false);
+	for (int i = 0; i < 2 * InputTransformer.MAXIMUM_CHAINS; ++i) {
+	    transformer.getTransformer(XCriteria.class, null, new File(inputDirectory, "request" + i), false);
+	}
+	assertNotSame(toCriteria, transformer.getTransformer(XCriteria.class, null, inputDirectory, false));
+    }
+}